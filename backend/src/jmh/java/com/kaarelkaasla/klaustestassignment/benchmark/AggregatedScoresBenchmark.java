@@ -0,0 +1,62 @@
+package com.kaarelkaasla.klaustestassignment.benchmark;
+
+import com.kaarelkaasla.klaustestassignment.AggregatedScoresRequest;
+import com.kaarelkaasla.klaustestassignment.AggregatedScoresResponse;
+import com.kaarelkaasla.klaustestassignment.metrics.ScoreMetrics;
+import com.kaarelkaasla.klaustestassignment.repository.RatingCategoryRepository;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
+import com.kaarelkaasla.klaustestassignment.service.RatingServiceImpl;
+import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the aggregated category scores pipeline from the rows of the aggregation query to the protobuf response:
+ * {@code processAggregatedRatings} turns every row into a result and {@code mergeCategoryResults} folds the results of
+ * a category together. The periods are a month by day (31), a year by week (53) and ten years by week (520), with four
+ * categories each. The rows are returned by a repository stub.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AggregatedScoresBenchmark {
+
+    private static final int CATEGORIES = 4;
+
+    @Param({ "31", "53", "520" })
+    private int periods;
+
+    private RatingServiceImpl ratingService;
+    private AggregatedScoresRequest request;
+    private final BenchmarkFixtures.LastValueObserver<AggregatedScoresResponse> observer =
+            new BenchmarkFixtures.LastValueObserver<>();
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.quietLogging();
+        boolean weekly = periods > 31;
+        List<Object[]> rows = BenchmarkFixtures.aggregatedRows(periods, CATEGORIES, weekly, 42);
+        RatingRepository ratingRepository = BenchmarkFixtures.stubRepository(RatingRepository.class,
+                Map.of("findAggregatedRatingsBetween", rows, "findWeeklyAggregatedRatingsBetween", rows));
+        RatingCategoryUtils ratingCategoryUtils = new RatingCategoryUtils(BenchmarkFixtures.stubRepository(
+                RatingCategoryRepository.class, Map.of("findAll", BenchmarkFixtures.categories(CATEGORIES))), Duration.ofMinutes(1));
+        ratingService = new RatingServiceImpl(ratingRepository, ratingCategoryUtils,
+                new ScoreMetrics(new SimpleMeterRegistry()));
+        request = AggregatedScoresRequest.newBuilder().setStartDate("2019-01-01T00:00:00")
+                .setEndDate(weekly ? "2028-12-31T23:59:59" : "2019-01-31T23:59:59").build();
+    }
+
+    @Benchmark
+    public AggregatedScoresResponse aggregatedScores() {
+        ratingService.getAggregatedScores(request, observer);
+        return observer.take();
+    }
+}
@@ -0,0 +1,191 @@
+package com.kaarelkaasla.klaustestassignment.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.kaarelkaasla.klaustestassignment.entity.RatingCategory;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic inputs shared by the benchmarks. All data is generated from fixed seeds, so every run measures the same
+ * rows. Repositories are replaced by stubs that return pre-built results, which keeps the database out of the
+ * measurements.
+ */
+final class BenchmarkFixtures {
+
+    /**
+     * The rating categories of the sample database; larger category counts add generated categories after them.
+     */
+    private static final String[] CATEGORY_NAMES = { "Spelling", "Grammar", "GDPR", "Randomness" };
+    private static final double[] CATEGORY_WEIGHTS = { 1.0, 0.7, 1.2, 0.0 };
+
+    /**
+     * Ratings given per category of a ticket on average, as in the sample database.
+     */
+    private static final int RATINGS_PER_TICKET_CATEGORY = 2;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Raises the root log level to WARN, so that the INFO logging of every service call is not measured.
+     */
+    static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    /**
+     * Creates a repository stub that answers the named methods with fixed results and rejects everything else.
+     *
+     * @param type
+     *            The repository interface.
+     * @param results
+     *            The results by method name.
+     * @param <T>
+     *            The repository type.
+     *
+     * @return The stub.
+     */
+    static <T> T stubRepository(Class<T> type, Map<String, Object> results) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> switch (method.getName()) {
+                case "toString" -> type.getSimpleName() + " stub";
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> {
+                    if (!results.containsKey(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    yield results.get(method.getName());
+                }
+                }));
+    }
+
+    /**
+     * Returns rating categories with IDs starting from 1.
+     *
+     * @param count
+     *            The number of categories.
+     *
+     * @return The categories.
+     */
+    static List<RatingCategory> categories(int count) {
+        List<RatingCategory> categories = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = i < CATEGORY_NAMES.length ? CATEGORY_NAMES[i] : "Category " + (i + 1);
+            double weight = i < CATEGORY_WEIGHTS.length ? CATEGORY_WEIGHTS[i] : 0.1 * (i % 10 + 1);
+            categories.add(new RatingCategory((long) (i + 1), name, weight));
+        }
+        return categories;
+    }
+
+    /**
+     * Returns the map from category IDs to names that the services get from the category cache.
+     *
+     * @param categories
+     *            The categories.
+     *
+     * @return The map in category order.
+     */
+    static Map<Long, String> categoryIdToNameMap(List<RatingCategory> categories) {
+        Map<Long, String> idToName = new LinkedHashMap<>();
+        for (RatingCategory category : categories) {
+            idToName.put(category.getId(), category.getName());
+        }
+        return idToName;
+    }
+
+    /**
+     * Generates rows of {@code SELECT ticket_id, rating_category_id, rating}, in the interleaved ticket order of a scan
+     * by creation time. Every ticket has about two ratings per category.
+     *
+     * @param rows
+     *            The number of rows.
+     * @param categoryCount
+     *            The number of categories.
+     * @param seed
+     *            The random seed.
+     *
+     * @return The rows.
+     */
+    static List<Object[]> ratingRows(int rows, int categoryCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int tickets = Math.max(1, rows / (categoryCount * RATINGS_PER_TICKET_CATEGORY));
+        List<Object[]> result = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            result.add(new Object[] { random.nextInt(tickets) + 1, (long) (i % categoryCount + 1),
+                    random.nextInt(6) });
+        }
+        return result;
+    }
+
+    /**
+     * Generates rows of the aggregated ratings queries: period, category ID, frequency and average rating. Periods are
+     * days, or weeks written as {@code "start to end"}, from 2019-01-01 on.
+     *
+     * @param periods
+     *            The number of periods.
+     * @param categoryCount
+     *            The number of categories.
+     * @param weekly
+     *            Whether the periods are weeks.
+     * @param seed
+     *            The random seed.
+     *
+     * @return The rows, ordered by period and category.
+     */
+    static List<Object[]> aggregatedRows(int periods, int categoryCount, boolean weekly, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDate start = LocalDate.of(2019, 1, 1);
+        List<Object[]> result = new ArrayList<>(periods * categoryCount);
+        for (int p = 0; p < periods; p++) {
+            String period = weekly
+                    ? start.plusWeeks(p) + " to " + start.plusWeeks(p).plusDays(6)
+                    : start.plusDays(p).toString();
+            for (int c = 1; c <= categoryCount; c++) {
+                result.add(new Object[] { period, (long) c, random.nextInt(1, 200), random.nextDouble(0, 5) });
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stream observer that keeps the last response of a unary call and fails on errors, so that a broken setup cannot
+     * be mistaken for a fast one.
+     *
+     * @param <T>
+     *            The response type.
+     */
+    static final class LastValueObserver<T> implements StreamObserver<T> {
+
+        private T value;
+
+        @Override
+        public void onNext(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            throw new IllegalStateException("Benchmark call failed", t);
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+
+        T take() {
+            T result = value;
+            value = null;
+            return result;
+        }
+    }
+}
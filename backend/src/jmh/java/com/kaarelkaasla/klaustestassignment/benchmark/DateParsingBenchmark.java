@@ -0,0 +1,81 @@
+package com.kaarelkaasla.klaustestassignment.benchmark;
+
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link IsoDateTime} with {@link SimpleDateFormat} and {@link DateTimeFormatter} for parsing and formatting
+ * the {@code yyyy-MM-dd'T'HH:mm:ss} date-times stored in the database. SimpleDateFormat is not thread-safe, so each
+ * benchmark thread gets its own instance.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DateParsingBenchmark {
+
+    private static final String PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(PATTERN);
+
+    private final SimpleDateFormat simpleDateFormat = new SimpleDateFormat(PATTERN);
+
+    private final String[] texts = new String[1024];
+    private final long[] epochSeconds = new long[1024];
+    private int index;
+
+    @Setup
+    public void setUp() {
+        simpleDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long start = LocalDateTime.of(2019, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        for (int i = 0; i < texts.length; i++) {
+            epochSeconds[i] = start + i * 7_919L * 13;
+            texts[i] = IsoDateTime.format(epochSeconds[i]);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (texts.length - 1);
+        return index;
+    }
+
+    @Benchmark
+    public long parseIsoDateTime() {
+        return IsoDateTime.parseEpochSecond(texts[next()]);
+    }
+
+    @Benchmark
+    public long parseDateTimeFormatter() {
+        return LocalDateTime.parse(texts[next()], DATE_TIME_FORMATTER).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Benchmark
+    public long parseSimpleDateFormat() throws ParseException {
+        return simpleDateFormat.parse(texts[next()]).getTime() / 1000;
+    }
+
+    @Benchmark
+    public String formatIsoDateTime() {
+        return IsoDateTime.format(epochSeconds[next()]);
+    }
+
+    @Benchmark
+    public String formatDateTimeFormatter() {
+        return LocalDateTime.ofEpochSecond(epochSeconds[next()], 0, ZoneOffset.UTC).format(DATE_TIME_FORMATTER);
+    }
+
+    @Benchmark
+    public String formatSimpleDateFormat() {
+        return simpleDateFormat.format(new Date(epochSeconds[next()] * 1000));
+    }
+}
@@ -0,0 +1,63 @@
+package com.kaarelkaasla.klaustestassignment.benchmark;
+
+import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link DateUtils} helpers used on request dates and stored timestamps. {@link DateParsingBenchmark}
+ * compares the underlying codec with the JDK formatters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DateUtilsBenchmark {
+
+    private final String[] texts = new String[1024];
+    private int index;
+
+    @Setup
+    public void setUp() {
+        long start = LocalDateTime.of(2019, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = IsoDateTime.format(start + i * 7_919L * 13);
+        }
+    }
+
+    private String next() {
+        index = (index + 1) & (texts.length - 1);
+        return texts[index];
+    }
+
+    @Benchmark
+    public LocalDateTime parseDateTime() {
+        return DateUtils.parseDateTime(next());
+    }
+
+    @Benchmark
+    public long toEpochSecond() {
+        return DateUtils.toEpochSecond(next());
+    }
+
+    @Benchmark
+    public boolean isValidDate() {
+        return DateUtils.isValidDate(next());
+    }
+
+    @Benchmark
+    public long getDaysBetween() {
+        return DateUtils.getDaysBetween(texts[0], next());
+    }
+
+    @Benchmark
+    public String getWeekOfYearKey() {
+        return DateUtils.getWeekOfYearKey(next());
+    }
+}
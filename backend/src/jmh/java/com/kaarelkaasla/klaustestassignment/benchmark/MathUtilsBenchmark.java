@@ -0,0 +1,47 @@
+package com.kaarelkaasla.klaustestassignment.benchmark;
+
+import com.kaarelkaasla.klaustestassignment.util.MathUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rounding helpers of {@link MathUtils} on score percentages, which are computed for every category of
+ * every ticket and period.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MathUtilsBenchmark {
+
+    private final double[] percentages = new double[1024];
+    private int index;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < percentages.length; i++) {
+            // Averages of ratings from 0 to 5 scaled to percent, as produced by the services.
+            percentages[i] = random.nextInt(0, 501) / (double) random.nextInt(1, 8) * 20 / 5;
+        }
+    }
+
+    private double next() {
+        index = (index + 1) & (percentages.length - 1);
+        return percentages[index];
+    }
+
+    @Benchmark
+    public double roundToTwoDecimalPlaces() {
+        return MathUtils.roundToTwoDecimalPlaces(next());
+    }
+
+    @Benchmark
+    public int toBasisPoints() {
+        return MathUtils.toBasisPoints(next());
+    }
+}
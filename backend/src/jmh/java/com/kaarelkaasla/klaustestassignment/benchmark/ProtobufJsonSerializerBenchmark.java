@@ -0,0 +1,113 @@
+package com.kaarelkaasla.klaustestassignment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import com.kaarelkaasla.klaustestassignment.DenseTicketCategoryScoresResponse;
+import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresRequest;
+import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresResponse;
+import com.kaarelkaasla.klaustestassignment.config.ProtobufConfig;
+import com.kaarelkaasla.klaustestassignment.metrics.ScoreMetrics;
+import com.kaarelkaasla.klaustestassignment.repository.RatingCategoryRepository;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
+import com.kaarelkaasla.klaustestassignment.service.TicketScoreServiceImpl;
+import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing ticket category scores responses as JSON with {@link ProtobufConfig.ProtobufJsonSerializer}, the
+ * serializer the REST controllers use, against printing them with {@link JsonFormat} as it was done before. Output is
+ * written to a stream that only counts bytes, so the results exclude network I/O.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtobufJsonSerializerBenchmark {
+
+    private static final int CATEGORIES = 4;
+
+    @Param({ "100", "1000", "10000" })
+    private int tickets;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonFormat.Printer printer = JsonFormat.printer().includingDefaultValueFields()
+            .preservingProtoFieldNames().omittingInsignificantWhitespace();
+    private TicketCategoryScoresResponse response;
+    private DenseTicketCategoryScoresResponse denseResponse;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.quietLogging();
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(Message.class, new ProtobufConfig.ProtobufJsonSerializer());
+        objectMapper.registerModule(module);
+
+        // Two ratings per category and ticket give one response entry per ticket.
+        int rows = tickets * CATEGORIES * 2;
+        TicketScoreServiceImpl ticketScoreService = new TicketScoreServiceImpl(
+                BenchmarkFixtures.stubRepository(RatingRepository.class,
+                        Map.of("findRatingsWithinPeriod", BenchmarkFixtures.ratingRows(rows, CATEGORIES, 42))),
+                new RatingCategoryUtils(BenchmarkFixtures.stubRepository(RatingCategoryRepository.class,
+                        Map.of("findAll", BenchmarkFixtures.categories(CATEGORIES))), Duration.ofMinutes(1)),
+                new ScoreMetrics(new SimpleMeterRegistry()));
+        TicketCategoryScoresRequest request = TicketCategoryScoresRequest.newBuilder()
+                .setStartDate("2019-01-01T00:00:00").setEndDate("2019-03-31T23:59:59").build();
+
+        BenchmarkFixtures.LastValueObserver<TicketCategoryScoresResponse> observer =
+                new BenchmarkFixtures.LastValueObserver<>();
+        ticketScoreService.getTicketCategoryScores(request, observer);
+        response = observer.take();
+        BenchmarkFixtures.LastValueObserver<DenseTicketCategoryScoresResponse> denseObserver =
+                new BenchmarkFixtures.LastValueObserver<>();
+        ticketScoreService.getDenseTicketCategoryScores(request, denseObserver);
+        denseResponse = denseObserver.take();
+    }
+
+    @Benchmark
+    public long serializer() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        objectMapper.writeValue(out, response);
+        return out.count;
+    }
+
+    @Benchmark
+    public long serializerDense() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        objectMapper.writeValue(out, denseResponse);
+        return out.count;
+    }
+
+    @Benchmark
+    public long jsonFormatPrinter() throws IOException {
+        return printer.print(response).length();
+    }
+
+    /**
+     * Output stream that discards its input and counts the bytes.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
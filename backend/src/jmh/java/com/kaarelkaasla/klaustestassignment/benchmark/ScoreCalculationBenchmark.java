@@ -0,0 +1,60 @@
+package com.kaarelkaasla.klaustestassignment.benchmark;
+
+import com.kaarelkaasla.klaustestassignment.entity.RatingCategory;
+import com.kaarelkaasla.klaustestassignment.repository.RatingCategoryRepository;
+import com.kaarelkaasla.klaustestassignment.service.ScoreServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ScoreServiceImpl#calculateScore(Map)}, which the weighted scores service calls once per ticket. Each
+ * ticket rates every category, and the category list is returned by a repository stub.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoreCalculationBenchmark {
+
+    @Param({ "4", "16", "64" })
+    private int categories;
+
+    private ScoreServiceImpl scoreService;
+    private final Map<String, Integer>[] ratings = newRatingsArray(1024);
+    private int index;
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Integer>[] newRatingsArray(int size) {
+        return new Map[size];
+    }
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.quietLogging();
+        List<RatingCategory> ratingCategories = BenchmarkFixtures.categories(categories);
+        scoreService = new ScoreServiceImpl(BenchmarkFixtures.stubRepository(RatingCategoryRepository.class,
+                Map.of("findAll", ratingCategories)));
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < ratings.length; i++) {
+            Map<String, Integer> ticketRatings = new HashMap<>();
+            for (RatingCategory category : ratingCategories) {
+                ticketRatings.put(category.getName(), random.nextInt(6));
+            }
+            ratings[i] = ticketRatings;
+        }
+    }
+
+    @Benchmark
+    public double calculateScore() {
+        index = (index + 1) & (ratings.length - 1);
+        return scoreService.calculateScore(ratings[index]);
+    }
+}
@@ -0,0 +1,66 @@
+package com.kaarelkaasla.klaustestassignment.benchmark;
+
+import com.kaarelkaasla.klaustestassignment.DenseTicketCategoryScoresResponse;
+import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresRequest;
+import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresResponse;
+import com.kaarelkaasla.klaustestassignment.metrics.ScoreMetrics;
+import com.kaarelkaasla.klaustestassignment.repository.RatingCategoryRepository;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
+import com.kaarelkaasla.klaustestassignment.service.TicketScoreServiceImpl;
+import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ticket category scores pipeline from the fetched rating rows to the protobuf response: grouping the rows
+ * by ticket and category, averaging, and building the response. The dense variant, which accumulates into primitive
+ * arrays, is measured on the same rows for comparison. The rows are returned by a repository stub.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TicketScoresBenchmark {
+
+    private static final int CATEGORIES = 4;
+
+    @Param({ "1000", "10000", "100000" })
+    private int rows;
+
+    private TicketScoreServiceImpl ticketScoreService;
+    private final TicketCategoryScoresRequest request = TicketCategoryScoresRequest.newBuilder()
+            .setStartDate("2019-01-01T00:00:00").setEndDate("2019-03-31T23:59:59").build();
+    private final BenchmarkFixtures.LastValueObserver<TicketCategoryScoresResponse> observer =
+            new BenchmarkFixtures.LastValueObserver<>();
+    private final BenchmarkFixtures.LastValueObserver<DenseTicketCategoryScoresResponse> denseObserver =
+            new BenchmarkFixtures.LastValueObserver<>();
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.quietLogging();
+        RatingRepository ratingRepository = BenchmarkFixtures.stubRepository(RatingRepository.class,
+                Map.of("findRatingsWithinPeriod", BenchmarkFixtures.ratingRows(rows, CATEGORIES, 42)));
+        RatingCategoryUtils ratingCategoryUtils = new RatingCategoryUtils(BenchmarkFixtures.stubRepository(
+                RatingCategoryRepository.class, Map.of("findAll", BenchmarkFixtures.categories(CATEGORIES))), Duration.ofMinutes(1));
+        ticketScoreService = new TicketScoreServiceImpl(ratingRepository, ratingCategoryUtils,
+                new ScoreMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public TicketCategoryScoresResponse ticketCategoryScores() {
+        ticketScoreService.getTicketCategoryScores(request, observer);
+        return observer.take();
+    }
+
+    @Benchmark
+    public DenseTicketCategoryScoresResponse denseTicketCategoryScores() {
+        ticketScoreService.getDenseTicketCategoryScores(request, denseObserver);
+        return denseObserver.take();
+    }
+}
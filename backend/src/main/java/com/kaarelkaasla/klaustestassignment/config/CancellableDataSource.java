@@ -0,0 +1,146 @@
+package com.kaarelkaasla.klaustestassignment.config;
+
+import com.kaarelkaasla.klaustestassignment.util.GrpcContextUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * DataSource that ties JDBC statements to the gRPC call they run in. When a statement is executed inside a gRPC call, a
+ * listener is registered on the call's context that cancels the statement if the client cancels the call or its
+ * deadline expires. For SQLite, {@link Statement#cancel()} interrupts the running query, so the connection is freed
+ * instead of finishing a scan whose result nobody will read. Statements executed outside of a gRPC call are not
+ * affected.
+ */
+@Slf4j
+public class CancellableDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    /**
+     * Constructs a cancellable wrapper around the given DataSource.
+     *
+     * @param targetDataSource
+     *            The DataSource to delegate to.
+     */
+    public CancellableDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    /**
+     * Closes the target DataSource if it is closeable, so that connection pools are shut down with the context.
+     *
+     * @throws Exception
+     *             If closing the target DataSource fails.
+     */
+    @Override
+    public void close() throws Exception {
+        if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(CancellableDataSource.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandler(connection));
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Wraps every statement created by the connection.
+     */
+    private record ConnectionHandler(Connection connection) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokeTarget(connection, method, args);
+            if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return Proxy.newProxyInstance(CancellableDataSource.class.getClassLoader(),
+                        new Class<?>[] { method.getReturnType() }, new StatementHandler(statement));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Registers a cancellation listener on the first execution of a statement and removes it when the statement is
+     * closed. The listener stays registered while the result set is read, as SQLite evaluates queries lazily.
+     */
+    private static class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private GrpcContextUtils.Registration registration;
+        private boolean closed;
+
+        StatementHandler(Statement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                registerCancellation();
+            } else if (name.equals("close")) {
+                release();
+            }
+            return invokeTarget(statement, method, args);
+        }
+
+        private synchronized void registerCancellation() throws SQLException {
+            if (GrpcContextUtils.isCancelled()) {
+                throw new SQLException("Statement not executed: the gRPC call was cancelled");
+            }
+            if (registration == null && !closed) {
+                registration = GrpcContextUtils.onCancel(this::cancel);
+            }
+        }
+
+        /**
+         * Cancels the statement. Runs on the thread that cancelled the gRPC call and does nothing once the statement is
+         * closed, so a connection returned to the pool is never interrupted.
+         */
+        private synchronized void cancel() {
+            if (closed) {
+                return;
+            }
+            try {
+                log.info("Cancelling database statement of a cancelled gRPC call");
+                statement.cancel();
+            } catch (SQLException e) {
+                log.warn("Failed to cancel database statement: {}", e.getMessage());
+            }
+        }
+
+        private synchronized void release() {
+            closed = true;
+            if (registration != null) {
+                registration.close();
+                registration = null;
+            }
+        }
+    }
+}
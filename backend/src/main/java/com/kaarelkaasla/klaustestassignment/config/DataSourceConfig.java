@@ -0,0 +1,51 @@
+package com.kaarelkaasla.klaustestassignment.config;
+
+import com.kaarelkaasla.klaustestassignment.profiling.SlowQueryLog;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Configuration class for decorating the application DataSource.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * Wraps the DataSource so that database statements are timed for the slow query log and cancelled together with the
+     * gRPC call that issued them. Declared static so that it is registered before the DataSource bean is created; the
+     * slow query log is looked up lazily for the same reason.
+     *
+     * @param slowQueryLog
+     *            provider of the log that executed statements are reported to
+     *
+     * @return a {@link BeanPostProcessor} that wraps DataSource beans in a {@link SlowQueryDataSource} and a
+     *         {@link CancellableDataSource}
+     */
+    @Bean
+    public static BeanPostProcessor dataSourcePostProcessor(ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new BeanPostProcessor() {
+
+            /**
+             * Wraps DataSource beans after they are initialized.
+             *
+             * @param bean
+             *            the initialized bean
+             * @param beanName
+             *            the name of the bean
+             *
+             * @return the wrapped DataSource, or the bean itself if it is not a DataSource
+             */
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof CancellableDataSource)) {
+                    return new CancellableDataSource(new SlowQueryDataSource(dataSource, slowQueryLog.getObject()));
+                }
+                return bean;
+            }
+        };
+    }
+}
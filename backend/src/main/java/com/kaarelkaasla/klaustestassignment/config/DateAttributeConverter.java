@@ -1,29 +1,20 @@
 package com.kaarelkaasla.klaustestassignment.config;
 
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 
 /**
  * JPA attribute converter to handle the conversion between {@link java.util.Date} and its {@link String} representation
- * in the database. Applies the converter automatically to all entity attributes of type {@link Date}.
+ * in the database. Applies the converter automatically to all entity attributes of type {@link Date}. Dates are stored
+ * in the {@code yyyy-MM-dd'T'HH:mm:ss} format as UTC wall-clock time using the thread-safe {@link IsoDateTime}.
  */
 @Converter(autoApply = true)
 public class DateAttributeConverter implements AttributeConverter<Date, String> {
 
-    /**
-     * Date format pattern used for conversion.
-     */
-    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
-
-    /**
-     * Formatter instance for date conversion.
-     */
-    private static final SimpleDateFormat formatter = new SimpleDateFormat(DATE_FORMAT);
-
     /**
      * Converts {@link Date} to its {@link String} representation for database storage.
      *
@@ -34,7 +25,7 @@ public class DateAttributeConverter implements AttributeConverter<Date, String>
      */
     @Override
     public String convertToDatabaseColumn(Date date) {
-        return date == null ? null : formatter.format(date);
+        return date == null ? null : IsoDateTime.format(Math.floorDiv(date.getTime(), 1000));
     }
 
     /**
@@ -51,8 +42,8 @@ public class DateAttributeConverter implements AttributeConverter<Date, String>
     @Override
     public Date convertToEntityAttribute(String dbData) {
         try {
-            return dbData == null ? null : formatter.parse(dbData);
-        } catch (ParseException e) {
+            return dbData == null ? null : new Date(IsoDateTime.parseEpochSecond(dbData) * 1000);
+        } catch (DateTimeParseException e) {
             throw new RuntimeException("Failed to parse date: " + dbData, e);
         }
     }
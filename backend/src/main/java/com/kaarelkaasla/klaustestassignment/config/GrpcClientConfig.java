@@ -0,0 +1,31 @@
+package com.kaarelkaasla.klaustestassignment.config;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for the gRPC client used by the REST bridge controllers.
+ */
+@Configuration
+public class GrpcClientConfig {
+
+    /**
+     * Creates the channel to the local gRPC server. The channel is shared by all controllers and reused across
+     * requests, so connections are not re-established for every REST call.
+     *
+     * @param host
+     *            the gRPC server host
+     * @param port
+     *            the gRPC server port
+     *
+     * @return the managed channel, shut down when the application context closes
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ManagedChannel grpcChannel(@Value("${grpc.server.host}") String host,
+            @Value("${grpc.server.port}") int port) {
+        return ManagedChannelBuilder.forAddress(host, port).usePlaintext().build();
+    }
+}
@@ -1,14 +1,25 @@
 package com.kaarelkaasla.klaustestassignment.config;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
 import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
 import com.google.protobuf.util.JsonFormat;
+import com.kaarelkaasla.klaustestassignment.profiling.JsonPrintEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
 import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
 
 /**
  * Configuration class for setting up custom serialization for Protobuf messages with Jackson.
@@ -35,8 +46,30 @@ public class ProtobufConfig {
 
     /**
      * Custom serializer for Protobuf messages to convert them to JSON format.
+     * <p>
+     * Walks the message descriptor and writes tokens straight into the {@link JsonGenerator}, so large responses are
+     * streamed to the client instead of being rendered into an intermediate string first. The output follows the
+     * {@link JsonFormat} conventions of a printer configured with {@code includingDefaultValueFields()} and
+     * {@code preservingProtoFieldNames()}. Well-known types, which have special JSON mappings, are delegated to a
+     * single cached printer with that configuration.
      */
-    public static class ProtobufJsonSerializer extends com.fasterxml.jackson.databind.JsonSerializer<Message> {
+    public static class ProtobufJsonSerializer extends JsonSerializer<Message> {
+
+        /**
+         * Shared printer for well-known types. {@link JsonFormat.Printer} is immutable and thread-safe.
+         */
+        private static final JsonFormat.Printer PRINTER = JsonFormat.printer().includingDefaultValueFields()
+                .preservingProtoFieldNames().omittingInsignificantWhitespace();
+
+        /**
+         * Package prefix of the well-known types that have special JSON mappings.
+         */
+        private static final String WELL_KNOWN_TYPE_PREFIX = "google.protobuf.";
+
+        /**
+         * Full name of the enum that is mapped to JSON null.
+         */
+        private static final String NULL_VALUE_TYPE = "google.protobuf.NullValue";
 
         /**
          * Serializes a Protobuf message to its JSON representation.
@@ -52,10 +85,172 @@ public class ProtobufConfig {
          *             if an I/O error occurs during serialization
          */
         @Override
-        public void serialize(Message value, com.fasterxml.jackson.core.JsonGenerator gen,
-                com.fasterxml.jackson.databind.SerializerProvider serializers) throws IOException {
-            String json = JsonFormat.printer().includingDefaultValueFields().preservingProtoFieldNames().print(value);
-            gen.writeRawValue(json);
+        public void serialize(Message value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            JsonPrintEvent event = new JsonPrintEvent();
+            event.begin();
+            writeMessage(value, gen);
+            if (event.shouldCommit()) {
+                event.finish(value.getDescriptorForType().getName(), countRepeatedElements(value));
+            }
+        }
+
+        /**
+         * Counts the elements of the repeated fields of a message, without descending into nested messages.
+         *
+         * @param message
+         *            the message
+         *
+         * @return the number of elements
+         */
+        private long countRepeatedElements(Message message) {
+            long count = 0;
+            for (FieldDescriptor field : message.getDescriptorForType().getFields()) {
+                if (field.isRepeated()) {
+                    count += message.getRepeatedFieldCount(field);
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Writes a message as a JSON object, including fields set to their default values.
+         *
+         * @param message
+         *            the message to write
+         * @param gen
+         *            the JsonGenerator used to write the JSON
+         *
+         * @throws IOException
+         *             if an I/O error occurs during serialization
+         */
+        private void writeMessage(MessageOrBuilder message, JsonGenerator gen) throws IOException {
+            Descriptor descriptor = message.getDescriptorForType();
+            if (descriptor.getFullName().startsWith(WELL_KNOWN_TYPE_PREFIX)) {
+                gen.writeRawValue(PRINTER.print(message));
+                return;
+            }
+
+            gen.writeStartObject();
+            for (FieldDescriptor field : descriptor.getFields()) {
+                if (!field.isRepeated() && field.hasPresence() && !message.hasField(field)) {
+                    continue;
+                }
+                gen.writeFieldName(field.getName());
+                Object fieldValue = message.getField(field);
+                if (field.isMapField()) {
+                    writeMap(field, (List<?>) fieldValue, gen);
+                } else if (field.isRepeated()) {
+                    gen.writeStartArray();
+                    for (Object element : (List<?>) fieldValue) {
+                        writeValue(field, element, gen);
+                    }
+                    gen.writeEndArray();
+                } else {
+                    writeValue(field, fieldValue, gen);
+                }
+            }
+            gen.writeEndObject();
+        }
+
+        /**
+         * Writes a map field as a JSON object keyed by the string form of the map keys.
+         *
+         * @param field
+         *            the map field descriptor
+         * @param entries
+         *            the map entries as returned by {@link Message#getField(FieldDescriptor)}
+         * @param gen
+         *            the JsonGenerator used to write the JSON
+         *
+         * @throws IOException
+         *             if an I/O error occurs during serialization
+         */
+        private void writeMap(FieldDescriptor field, List<?> entries, JsonGenerator gen) throws IOException {
+            Descriptor entryType = field.getMessageType();
+            FieldDescriptor keyField = entryType.findFieldByNumber(1);
+            FieldDescriptor valueField = entryType.findFieldByNumber(2);
+
+            gen.writeStartObject();
+            for (Object entry : entries) {
+                Message entryMessage = (Message) entry;
+                gen.writeFieldName(mapKeyToString(keyField, entryMessage.getField(keyField)));
+                writeValue(valueField, entryMessage.getField(valueField), gen);
+            }
+            gen.writeEndObject();
+        }
+
+        /**
+         * Converts a map key to its JSON object key representation.
+         *
+         * @param keyField
+         *            the key field descriptor of the map entry
+         * @param key
+         *            the key value
+         *
+         * @return the key as a string
+         */
+        private String mapKeyToString(FieldDescriptor keyField, Object key) {
+            return switch (keyField.getType()) {
+            case UINT32, FIXED32 -> Integer.toUnsignedString((Integer) key);
+            case UINT64, FIXED64 -> Long.toUnsignedString((Long) key);
+            default -> key.toString();
+            };
+        }
+
+        /**
+         * Writes a single (non-repeated) field value.
+         *
+         * @param field
+         *            the field descriptor
+         * @param value
+         *            the field value
+         * @param gen
+         *            the JsonGenerator used to write the JSON
+         *
+         * @throws IOException
+         *             if an I/O error occurs during serialization
+         */
+        private void writeValue(FieldDescriptor field, Object value, JsonGenerator gen) throws IOException {
+            switch (field.getType()) {
+            case INT32, SINT32, SFIXED32 -> gen.writeNumber((Integer) value);
+            case UINT32, FIXED32 -> gen.writeNumber(Integer.toUnsignedLong((Integer) value));
+            case INT64, SINT64, SFIXED64 -> gen.writeString(value.toString());
+            case UINT64, FIXED64 -> gen.writeString(Long.toUnsignedString((Long) value));
+            case BOOL -> gen.writeBoolean((Boolean) value);
+            case FLOAT -> writeFloat((Float) value, gen);
+            case DOUBLE -> writeDouble((Double) value, gen);
+            case STRING -> gen.writeString((String) value);
+            case BYTES -> gen.writeString(Base64.getEncoder().encodeToString(((ByteString) value).toByteArray()));
+            case ENUM -> writeEnum((EnumValueDescriptor) value, gen);
+            case MESSAGE, GROUP -> writeMessage((Message) value, gen);
+            }
+        }
+
+        private void writeFloat(float value, JsonGenerator gen) throws IOException {
+            if (Float.isNaN(value) || Float.isInfinite(value)) {
+                gen.writeString(Float.toString(value));
+            } else {
+                gen.writeNumber(value);
+            }
+        }
+
+        private void writeDouble(double value, JsonGenerator gen) throws IOException {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                gen.writeString(Double.toString(value));
+            } else {
+                gen.writeNumber(value);
+            }
+        }
+
+        private void writeEnum(EnumValueDescriptor value, JsonGenerator gen) throws IOException {
+            if (NULL_VALUE_TYPE.equals(value.getType().getFullName())) {
+                gen.writeNull();
+            } else if (value.getIndex() == -1) {
+                // Unrecognized enum values are printed by number, as JsonFormat does.
+                gen.writeNumber(value.getNumber());
+            } else {
+                gen.writeString(value.getName());
+            }
         }
     }
 }
@@ -0,0 +1,263 @@
+package com.kaarelkaasla.klaustestassignment.config;
+
+import com.kaarelkaasla.klaustestassignment.profiling.SlowQueryLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * DataSource that times every JDBC statement and reports it to a {@link SlowQueryLog}. A statement is timed from its
+ * execution until its result set or the statement itself is closed, as SQLite evaluates queries while the rows are
+ * read. The bound parameters and the number of rows read or updated are recorded with it, and for slow statements the
+ * query plan is taken with {@code EXPLAIN QUERY PLAN} on the same connection.
+ */
+@Slf4j
+public class SlowQueryDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    /**
+     * Longest parameter value kept in the log; longer strings are truncated.
+     */
+    private static final int MAX_PARAMETER_LENGTH = 200;
+
+    private final SlowQueryLog slowQueryLog;
+
+    /**
+     * Constructs a timing wrapper around the given DataSource.
+     *
+     * @param targetDataSource
+     *            The DataSource to delegate to.
+     * @param slowQueryLog
+     *            The log that executed statements are reported to.
+     */
+    public SlowQueryDataSource(DataSource targetDataSource, SlowQueryLog slowQueryLog) {
+        super(targetDataSource);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    /**
+     * Closes the target DataSource if it is closeable, so that connection pools are shut down with the context.
+     *
+     * @throws Exception
+     *             If closing the target DataSource fails.
+     */
+    @Override
+    public void close() throws Exception {
+        if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Connection wrap(Connection connection) {
+        if (!slowQueryLog.isEnabled()) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(SlowQueryDataSource.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandler(connection));
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Returns the query plan of a statement as indented lines, or null if it cannot be explained.
+     */
+    private static List<String> explain(Connection connection, String sql, List<Object> parameters) {
+        String verb = sql.stripLeading().toUpperCase(Locale.ROOT);
+        if (!(verb.startsWith("SELECT") || verb.startsWith("WITH") || verb.startsWith("INSERT")
+                || verb.startsWith("UPDATE") || verb.startsWith("DELETE"))) {
+            return null;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            List<String> plan = new ArrayList<>();
+            Map<Integer, Integer> depths = new HashMap<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int depth = depths.getOrDefault(resultSet.getInt("parent"), -1) + 1;
+                    depths.put(resultSet.getInt("id"), depth);
+                    plan.add("  ".repeat(depth) + resultSet.getString("detail"));
+                }
+            }
+            return plan;
+        } catch (SQLException e) {
+            log.debug("Failed to explain query {}: {}", sql, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Wraps every statement created by the connection, remembering the SQL of prepared statements.
+     */
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokeTarget(connection, method, args);
+            if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                return Proxy.newProxyInstance(SlowQueryDataSource.class.getClassLoader(),
+                        new Class<?>[] { method.getReturnType() }, new StatementHandler(statement, sql));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Captures the bound parameters of a statement and starts an {@link Execution} each time it is executed.
+     */
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+        private final String preparedSql;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+        private Execution execution;
+
+        StatementHandler(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.equals("getResultSet")) {
+                Object result = invokeTarget(statement, method, args);
+                return result instanceof ResultSet resultSet && execution != null ? wrapResultSet(resultSet, execution)
+                        : result;
+            }
+            if (name.equals("close")) {
+                finish(execution);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index
+                    && PreparedStatement.class.isAssignableFrom(method.getDeclaringClass())) {
+                parameters.put(index, name.equals("setNull") ? null : toLoggedValue(args[1]));
+            }
+            return invokeTarget(statement, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finish(execution);
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+            Execution current = new Execution(sql != null ? sql : "<unknown>", new ArrayList<>(parameters.values()),
+                    statement);
+            execution = current;
+            Object result = invokeTarget(statement, method, args);
+
+            if (result instanceof ResultSet resultSet) {
+                return wrapResultSet(resultSet, current);
+            }
+            if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    current.rows += Math.max(count, 0);
+                }
+                finish(current);
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    current.rows += Math.max(count, 0);
+                }
+                finish(current);
+            } else if (result instanceof Number count) {
+                current.rows = count.longValue();
+                finish(current);
+            }
+            // execute() returning a boolean is finished when its result set or the statement is closed.
+            return result;
+        }
+
+        private ResultSet wrapResultSet(ResultSet resultSet, Execution current) {
+            return new CountingResultSet(resultSet, rows -> {
+                current.rows = rows;
+                finish(current);
+            });
+        }
+    }
+
+    /**
+     * Reports an execution to the slow query log once. Slow executions are explained first.
+     */
+    private void finish(Execution execution) {
+        if (execution == null || execution.finished) {
+            return;
+        }
+        execution.finished = true;
+        long elapsedNanos = System.nanoTime() - execution.startNanos;
+        List<String> plan = null;
+        if (slowQueryLog.isSlow(elapsedNanos)) {
+            try {
+                plan = explain(execution.statement.getConnection(), execution.sql, execution.parameters);
+            } catch (SQLException e) {
+                log.debug("Failed to get the connection of a slow statement: {}", e.getMessage());
+            }
+        }
+        slowQueryLog.record(execution.sql, execution.parameters, execution.rows, elapsedNanos, plan);
+    }
+
+    private static Object toLoggedValue(Object value) {
+        if (value instanceof String s && s.length() > MAX_PARAMETER_LENGTH) {
+            return s.substring(0, MAX_PARAMETER_LENGTH) + "...";
+        }
+        return value;
+    }
+
+    /**
+     * One execution of a statement, from execute until its results are closed.
+     */
+    private static class Execution {
+
+        private final String sql;
+        private final List<Object> parameters;
+        private final Statement statement;
+        private final long startNanos = System.nanoTime();
+        private long rows;
+        private boolean finished;
+
+        Execution(String sql, List<Object> parameters, Statement statement) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.statement = statement;
+        }
+    }
+}
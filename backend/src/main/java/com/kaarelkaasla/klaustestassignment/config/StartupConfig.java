@@ -0,0 +1,34 @@
+package com.kaarelkaasla.klaustestassignment.config;
+
+import com.kaarelkaasla.klaustestassignment.controller.RatingController;
+import com.kaarelkaasla.klaustestassignment.controller.TicketScoreController;
+import com.kaarelkaasla.klaustestassignment.controller.TicketWeightedScoreController;
+import com.kaarelkaasla.klaustestassignment.service.RatingServiceImpl;
+import com.kaarelkaasla.klaustestassignment.service.TicketScoreServiceImpl;
+import com.kaarelkaasla.klaustestassignment.service.TicketWeightedScoreServiceImpl;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for the startup-optimized run mode of the {@code fast-startup} profile, which enables lazy bean
+ * initialization.
+ */
+@Configuration
+public class StartupConfig {
+
+    /**
+     * Keeps the beans that serve score requests eager when lazy initialization is enabled, so that the first request
+     * does not wait for them and their repositories, the EntityManagerFactory and the gRPC channel to be created. Admin
+     * endpoints, profiling and the other beans are still created on first use. Has no effect without lazy
+     * initialization.
+     *
+     * @return a {@link LazyInitializationExcludeFilter} that matches the gRPC services and their REST bridges
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter scoreRequestBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(RatingServiceImpl.class, TicketScoreServiceImpl.class,
+                TicketWeightedScoreServiceImpl.class, RatingController.class, TicketScoreController.class,
+                TicketWeightedScoreController.class);
+    }
+}
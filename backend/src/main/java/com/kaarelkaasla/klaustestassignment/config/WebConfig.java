@@ -1,10 +1,15 @@
 package com.kaarelkaasla.klaustestassignment.config;
 
+import com.kaarelkaasla.klaustestassignment.profiling.RequestCost;
+import com.kaarelkaasla.klaustestassignment.util.GrpcFutureUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Configuration class for setting up web-related configurations, such as CORS (Cross-Origin Resource Sharing) settings.
  */
@@ -21,7 +26,7 @@ public class WebConfig {
         return new WebMvcConfigurer() {
 
             /**
-             * Adds CORS mappings to allow specified origins to access the API.
+             * Adds CORS mappings to allow specified origins to access the API and read the request cost headers.
              *
              * @param registry
              *            the {@link CorsRegistry} to add the CORS mappings to
@@ -30,8 +35,14 @@ public class WebConfig {
             public void addCorsMappings(CorsRegistry registry) {
                 registry.addMapping("/api/v1/**").allowedOriginPatterns("*") // Allow all origins for testing purposes
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS").allowedHeaders("*")
-                        .allowCredentials(true);
+                        .exposedHeaders(exposedHeaders()).allowCredentials(true);
             }
         };
     }
+
+    private static String[] exposedHeaders() {
+        List<String> headers = new ArrayList<>(RequestCost.HEADERS);
+        headers.add(GrpcFutureUtils.SERVER_TIMING_HEADER);
+        return headers.toArray(String[]::new);
+    }
 }
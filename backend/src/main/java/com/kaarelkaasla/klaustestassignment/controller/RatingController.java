@@ -3,7 +3,9 @@ package com.kaarelkaasla.klaustestassignment.controller;
 import com.kaarelkaasla.klaustestassignment.AggregatedScoresRequest;
 import com.kaarelkaasla.klaustestassignment.AggregatedScoresResponse;
 import com.kaarelkaasla.klaustestassignment.RatingServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.util.ApiKeyUtils;
 import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import com.kaarelkaasla.klaustestassignment.util.GrpcFutureUtils;
 import io.grpc.*;
 import io.grpc.stub.MetadataUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -12,10 +14,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Controller for handling rating-related API requests.
@@ -26,22 +31,23 @@ import java.time.format.DateTimeParseException;
 public class RatingController {
 
     private final DateUtils dateUtils;
-    @Value("${grpc.server.host}")
-    private String grpcServerHost;
-    @Value("${grpc.server.port}")
-    private int grpcServerPort;
+    private final ManagedChannel grpcChannel;
+    private final ApiKeyUtils apiKeyUtils;
     @Value("${api.key-header}")
     private String apiKeyHeader;
-    @Value("${api.key}")
-    private String apiKey;
+    @Value("${api.timeouts.aggregated-scores}")
+    private Duration timeout;
 
     @Autowired
-    public RatingController(DateUtils dateUtils) {
+    public RatingController(DateUtils dateUtils, ManagedChannel grpcChannel, ApiKeyUtils apiKeyUtils) {
         this.dateUtils = dateUtils;
+        this.grpcChannel = grpcChannel;
+        this.apiKeyUtils = apiKeyUtils;
     }
 
     /**
-     * Retrieves aggregated scores within the specified date range.
+     * Retrieves aggregated scores within the specified date range. The servlet thread is released while the gRPC call
+     * is in flight.
      *
      * @param requestApiKey
      *            The API key for authentication.
@@ -54,16 +60,17 @@ public class RatingController {
      */
 
     @GetMapping("/aggregated")
-    public ResponseEntity<Object> getAggregatedScores(
+    public DeferredResult<ResponseEntity<Object>> getAggregatedScores(
             @RequestHeader(value = "${api.key-header}", required = false) String requestApiKey,
             @RequestParam String startDate, @RequestParam String endDate) {
 
         log.info("Received an API request to get aggregated scores with startDate: {} and endDate: {}", startDate,
                 endDate);
 
-        if (requestApiKey == null || !requestApiKey.equals(apiKey)) {
+        if (!apiKeyUtils.isValid(requestApiKey)) {
             log.warn("Unauthorized access attempt with invalid API key.");
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized: Invalid API key.");
+            return GrpcFutureUtils
+                    .completed(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized: Invalid API key."));
         }
 
         try {
@@ -72,67 +79,93 @@ public class RatingController {
 
             if (startDateTime.isAfter(endDateTime)) {
                 log.warn("Start date {} is after end date {}", startDateTime, endDateTime);
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                        .body("Start date must be earlier than or equal to end date.");
+                return GrpcFutureUtils.completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("Start date must be earlier than or equal to end date."));
             }
 
-            ManagedChannel channel = ManagedChannelBuilder.forAddress(grpcServerHost, grpcServerPort).usePlaintext()
+            Metadata metadata = new Metadata();
+            Metadata.Key<String> apiKeyHeader = Metadata.Key.of(this.apiKeyHeader, Metadata.ASCII_STRING_MARSHALLER);
+            metadata.put(apiKeyHeader, requestApiKey);
+
+            AtomicReference<Metadata> trailers = new AtomicReference<>();
+            RatingServiceGrpc.RatingServiceFutureStub stub = RatingServiceGrpc.newFutureStub(grpcChannel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata),
+                            GrpcFutureUtils.captureTrailers(trailers))
+                    .withDeadlineAfter(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            AggregatedScoresRequest request = AggregatedScoresRequest.newBuilder()
+                    .setStartTime(DateUtils.toTimestamp(startDateTime)).setEndTime(DateUtils.toTimestamp(endDateTime))
                     .build();
 
-            try {
-                Metadata metadata = new Metadata();
-                Metadata.Key<String> apiKeyHeader = Metadata.Key.of(this.apiKeyHeader,
-                        Metadata.ASCII_STRING_MARSHALLER);
-                metadata.put(apiKeyHeader, requestApiKey);
-
-                RatingServiceGrpc.RatingServiceBlockingStub stub = RatingServiceGrpc.newBlockingStub(channel);
-                stub = MetadataUtils.attachHeaders(stub, metadata);
-
-                AggregatedScoresRequest request = AggregatedScoresRequest.newBuilder()
-                        .setStartDate(startDateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                        .setEndDate(endDateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).build();
-
-                AggregatedScoresResponse response = stub.getAggregatedScores(request);
-
-                log.info("Successfully retrieved aggregated scores");
-                return ResponseEntity.ok(response);
-
-            } catch (StatusRuntimeException e) {
-                Status status = e.getStatus();
-                return switch (status.getCode()) {
-                case NOT_FOUND -> {
-                    log.info("No aggregated scores found for the given period.");
-                    yield ResponseEntity.status(HttpStatus.NOT_FOUND)
-                            .body("No aggregated scores found for the given period.");
-                }
-                case INVALID_ARGUMENT -> {
-                    log.warn("Invalid argument provided: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid argument provided.");
-                }
-                case UNAUTHENTICATED -> {
-                    log.warn("Unauthenticated request: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthenticated request.");
-                }
-                case INTERNAL -> {
-                    log.error("Internal server error: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error.");
-                }
-                default -> {
-                    log.error("Unexpected gRPC error: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred.");
-                }
-                };
-            } finally {
-                channel.shutdown();
-                log.debug("gRPC channel shut down");
-            }
+            return GrpcFutureUtils.toDeferredResult(stub.getAggregatedScores(request), timeout, trailers,
+                    this::handleResponse, this::handleError);
         } catch (DateTimeParseException e) {
             log.warn("Invalid date format: {}", e.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body("Invalid date format. Please use the format yyyy-MM-dd'T'HH:mm:ss.");
+            return GrpcFutureUtils.completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Invalid date format. Please use the format yyyy-MM-dd'T'HH:mm:ss."));
         } catch (Exception e) {
             log.error("An unexpected error occurred", e);
+            return GrpcFutureUtils.completed(
+                    ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred."));
+        }
+    }
+
+    /**
+     * Maps a successful gRPC response to the HTTP response.
+     *
+     * @param response
+     *            The aggregated scores response.
+     *
+     * @return The HTTP response.
+     */
+    private ResponseEntity<Object> handleResponse(AggregatedScoresResponse response) {
+        log.info("Successfully retrieved aggregated scores");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Maps a failed gRPC call to the HTTP response.
+     *
+     * @param throwable
+     *            The failure.
+     *
+     * @return The HTTP response.
+     */
+    private ResponseEntity<Object> handleError(Throwable throwable) {
+        if (!(throwable instanceof StatusRuntimeException e)) {
+            log.error("An unexpected error occurred", throwable);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred.");
         }
+        Status status = e.getStatus();
+        return switch (status.getCode()) {
+        case NOT_FOUND -> {
+            log.info("No aggregated scores found for the given period.");
+            yield ResponseEntity.status(HttpStatus.NOT_FOUND).body("No aggregated scores found for the given period.");
+        }
+        case INVALID_ARGUMENT -> {
+            log.warn("Invalid argument provided: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid argument provided.");
+        }
+        case UNAUTHENTICATED -> {
+            log.warn("Unauthenticated request: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthenticated request.");
+        }
+        case DEADLINE_EXCEEDED -> {
+            log.warn("Request timed out after {}: {}", timeout, e.getMessage());
+            yield ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("Request timed out.");
+        }
+        case RESOURCE_EXHAUSTED -> {
+            log.warn("Request rejected by the server: {}", e.getMessage());
+            yield GrpcFutureUtils.resourceExhausted(e);
+        }
+        case INTERNAL -> {
+            log.error("Internal server error: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error.");
+        }
+        default -> {
+            log.error("Unexpected gRPC error: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred.");
+        }
+        };
     }
 }
@@ -0,0 +1,153 @@
+package com.kaarelkaasla.klaustestassignment.controller;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+import com.kaarelkaasla.klaustestassignment.AddRatingsRequest;
+import com.kaarelkaasla.klaustestassignment.AddRatingsResponse;
+import com.kaarelkaasla.klaustestassignment.RatingIngestServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.util.ApiKeyUtils;
+import com.kaarelkaasla.klaustestassignment.util.GrpcFutureUtils;
+import io.grpc.*;
+import io.grpc.stub.MetadataUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Controller for handling rating ingestion API requests.
+ */
+@RestController
+@RequestMapping("/api/v1/ratings")
+@Slf4j
+public class RatingIngestController {
+
+    private static final JsonFormat.Parser JSON_PARSER = JsonFormat.parser();
+
+    private final ManagedChannel grpcChannel;
+    private final ApiKeyUtils apiKeyUtils;
+    @Value("${api.key-header}")
+    private String apiKeyHeader;
+    @Value("${api.timeouts.add-ratings}")
+    private Duration timeout;
+
+    @Autowired
+    public RatingIngestController(ManagedChannel grpcChannel, ApiKeyUtils apiKeyUtils) {
+        this.grpcChannel = grpcChannel;
+        this.apiKeyUtils = apiKeyUtils;
+    }
+
+    /**
+     * Stores ratings. The servlet thread is released while the ratings wait to be committed.
+     *
+     * @param requestApiKey
+     *            The API key for authentication.
+     * @param body
+     *            The ratings as the JSON form of an AddRatingsRequest, for example {@code {"ratings": [{"rating": 4,
+     *            "ticketId": 1, ...}]}}.
+     *
+     * @return The number of stored ratings and the ID of the first one.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ResponseEntity<Object>> addRatings(
+            @RequestHeader(value = "${api.key-header}", required = false) String requestApiKey,
+            @RequestBody String body) {
+
+        if (!apiKeyUtils.isValid(requestApiKey)) {
+            log.warn("Unauthorized access attempt with invalid API key.");
+            return GrpcFutureUtils
+                    .completed(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized: Invalid API key."));
+        }
+
+        try {
+            AddRatingsRequest.Builder request = AddRatingsRequest.newBuilder();
+            JSON_PARSER.merge(body, request);
+            log.info("Received an API request to add {} ratings", request.getRatingsCount());
+
+            Metadata metadata = new Metadata();
+            Metadata.Key<String> apiKeyHeader = Metadata.Key.of(this.apiKeyHeader, Metadata.ASCII_STRING_MARSHALLER);
+            metadata.put(apiKeyHeader, requestApiKey);
+
+            AtomicReference<Metadata> trailers = new AtomicReference<>();
+            RatingIngestServiceGrpc.RatingIngestServiceFutureStub stub = RatingIngestServiceGrpc
+                    .newFutureStub(grpcChannel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata),
+                            GrpcFutureUtils.captureTrailers(trailers))
+                    .withDeadlineAfter(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            return GrpcFutureUtils.toDeferredResult(stub.addRatings(request.build()), timeout, trailers,
+                    this::handleResponse, this::handleError);
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("Invalid ratings body: {}", e.getMessage());
+            return GrpcFutureUtils.completed(
+                    ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid ratings body: " + e.getMessage()));
+        } catch (Exception e) {
+            log.error("An unexpected error occurred", e);
+            return GrpcFutureUtils.completed(
+                    ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred."));
+        }
+    }
+
+    /**
+     * Maps a successful gRPC response to the HTTP response.
+     *
+     * @param response
+     *            The add ratings response.
+     *
+     * @return The HTTP response.
+     */
+    private ResponseEntity<Object> handleResponse(AddRatingsResponse response) {
+        log.info("Successfully stored {} ratings", response.getCount());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * Maps a failed gRPC call to the HTTP response.
+     *
+     * @param throwable
+     *            The failure.
+     *
+     * @return The HTTP response.
+     */
+    private ResponseEntity<Object> handleError(Throwable throwable) {
+        if (!(throwable instanceof StatusRuntimeException e)) {
+            log.error("An unexpected error occurred", throwable);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred.");
+        }
+        Status status = e.getStatus();
+        return switch (status.getCode()) {
+        case INVALID_ARGUMENT -> {
+            log.warn("Invalid argument provided: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body(status.getDescription());
+        }
+        case UNAUTHENTICATED -> {
+            log.warn("Unauthenticated request: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthenticated request.");
+        }
+        case DEADLINE_EXCEEDED -> {
+            log.warn("Request timed out after {}: {}", timeout, e.getMessage());
+            yield ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("Request timed out.");
+        }
+        case RESOURCE_EXHAUSTED -> {
+            log.warn("Request rejected by the server: {}", e.getMessage());
+            yield GrpcFutureUtils.resourceExhausted(e);
+        }
+        case UNAVAILABLE -> {
+            log.error("Failed to store the ratings: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Failed to store the ratings.");
+        }
+        default -> {
+            log.error("Unexpected gRPC error: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred.");
+        }
+        };
+    }
+}
@@ -0,0 +1,134 @@
+package com.kaarelkaasla.klaustestassignment.controller;
+
+import com.kaarelkaasla.klaustestassignment.profiling.FlightRecordings;
+import com.kaarelkaasla.klaustestassignment.util.AdminKeyUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+/**
+ * Controller for profiling a live instance with JDK Flight Recorder. A recording is started and later stopped, which
+ * returns the recorded .jfr file for opening in JDK Mission Control or {@code jfr print}. The endpoints take the admin
+ * key, not a client key, since a recording shows the inner workings of the instance.
+ */
+@RestController
+@RequestMapping("/api/v1/admin/recording")
+@Slf4j
+public class RecordingController {
+
+    private final FlightRecordings flightRecordings;
+    private final AdminKeyUtils adminKeyUtils;
+
+    @Autowired
+    public RecordingController(FlightRecordings flightRecordings, AdminKeyUtils adminKeyUtils) {
+        this.flightRecordings = flightRecordings;
+        this.adminKeyUtils = adminKeyUtils;
+    }
+
+    /**
+     * Starts a flight recording.
+     *
+     * @param requestAdminKey
+     *            The admin key for authentication.
+     * @param settings
+     *            The JFR settings to record with, "default" or "profile".
+     * @param duration
+     *            The optional time after which the recording stops by itself, such as 60s or 5m, capped at the
+     *            configured maximum.
+     *
+     * @return A confirmation, or the reason the recording could not be started.
+     */
+    @PostMapping("/start")
+    public ResponseEntity<Object> start(
+            @RequestHeader(value = "${api.admin-key-header}", required = false) String requestAdminKey,
+            @RequestParam(defaultValue = "profile") String settings, @RequestParam(required = false) String duration) {
+        if (!adminKeyUtils.isValid(requestAdminKey)) {
+            log.warn("Unauthorized access attempt with invalid admin key.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized: Invalid admin key.");
+        }
+
+        Duration recordingDuration;
+        try {
+            recordingDuration = duration != null ? DurationStyle.detectAndParse(duration) : null;
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid recording duration: {}", duration);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Invalid duration. Use a value such as 60s or 5m.");
+        }
+
+        try {
+            flightRecordings.start(settings, recordingDuration);
+            return ResponseEntity.ok("Recording started.");
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot start recording: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Unknown settings. Use default or profile.");
+        } catch (IllegalStateException e) {
+            log.warn("Cannot start recording: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("A recording is already running.");
+        }
+    }
+
+    /**
+     * Stops the flight recording and returns its data. The temporary file is deleted when the response has been
+     * written.
+     *
+     * @param requestAdminKey
+     *            The admin key for authentication.
+     *
+     * @return The .jfr file, or the reason it could not be produced.
+     */
+    @PostMapping("/stop")
+    public ResponseEntity<Object> stop(
+            @RequestHeader(value = "${api.admin-key-header}", required = false) String requestAdminKey) {
+        if (!adminKeyUtils.isValid(requestAdminKey)) {
+            log.warn("Unauthorized access attempt with invalid admin key.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized: Invalid admin key.");
+        }
+
+        Path file;
+        try {
+            file = flightRecordings.stop();
+        } catch (IllegalStateException e) {
+            log.warn("Cannot stop recording: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("No recording was started.");
+        } catch (IOException e) {
+            log.error("Failed to write the recording", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to write the recording.");
+        }
+
+        try {
+            long size = Files.size(file);
+            InputStream content = Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).contentLength(size)
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString())
+                    .body(new InputStreamResource(content));
+        } catch (IOException e) {
+            log.error("Failed to read the recording", e);
+            deleteQuietly(file);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to read the recording.");
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+}
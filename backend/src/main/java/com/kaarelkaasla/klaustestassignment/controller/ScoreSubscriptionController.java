@@ -0,0 +1,237 @@
+package com.kaarelkaasla.klaustestassignment.controller;
+
+import com.kaarelkaasla.klaustestassignment.ScoreSubscriptionServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.ScoreUpdate;
+import com.kaarelkaasla.klaustestassignment.SubscribeScoresRequest;
+import com.kaarelkaasla.klaustestassignment.util.ApiKeyUtils;
+import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller for following scores as new ratings arrive, as server-sent events. A comment is written to idle streams at
+ * the keep-alive interval, so that subscriptions of clients that have gone away are noticed and cancelled.
+ */
+@RestController
+@RequestMapping("/api/v1/scores")
+@Slf4j
+public class ScoreSubscriptionController {
+
+    @Value("${api.key-header}")
+    private String apiKeyHeader;
+
+    @Value("${api.score-subscriptions.sse-timeout}")
+    private Duration timeout;
+
+    @Value("${api.score-subscriptions.sse-keep-alive}")
+    private Duration keepAlive;
+
+    private final DateUtils dateUtils;
+    private final ManagedChannel grpcChannel;
+    private final ApiKeyUtils apiKeyUtils;
+    private final ScheduledExecutorService keepAliveScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sse-keep-alive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ScoreSubscriptionController(DateUtils dateUtils, ManagedChannel grpcChannel, ApiKeyUtils apiKeyUtils) {
+        this.dateUtils = dateUtils;
+        this.grpcChannel = grpcChannel;
+        this.apiKeyUtils = apiKeyUtils;
+    }
+
+    /**
+     * Streams the scores of a period. The first event, named {@code snapshot}, holds all daily category scores and the
+     * weighted score of the period; each following {@code update} event holds the scores that changed since the
+     * previous event. The data of both is the JSON form of a ScoreUpdate. The next update is only requested from the
+     * gRPC service once the previous one has been written, so a slow client receives merged updates. If the
+     * subscription fails, an {@code error} event with the reason ends the stream.
+     *
+     * @param startDate
+     *            The start date of the period.
+     * @param endDate
+     *            The end date of the period.
+     * @param requestApiKey
+     *            The API key for authentication.
+     *
+     * @return The event stream.
+     */
+    @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeScores(@RequestParam String startDate, @RequestParam String endDate,
+            @RequestHeader(value = "${api.key-header}", required = false) String requestApiKey) {
+
+        log.info("Received an API request to subscribe to scores with startDate: {} and endDate: {}", startDate,
+                endDate);
+
+        if (!apiKeyUtils.isValid(requestApiKey)) {
+            log.warn("Unauthorized access attempt with invalid API key.");
+            return error(HttpStatus.UNAUTHORIZED, "Invalid or missing API key.");
+        }
+
+        LocalDateTime startDateTime;
+        LocalDateTime endDateTime;
+        try {
+            startDateTime = dateUtils.parseDateTime(startDate);
+            endDateTime = dateUtils.parseDateTime(endDate);
+        } catch (DateTimeParseException e) {
+            log.warn("Invalid date format: {}", e.getMessage());
+            return error(HttpStatus.BAD_REQUEST, "Invalid date format. Please use the format yyyy-MM-dd'T'HH:mm:ss.");
+        }
+        if (startDateTime.isAfter(endDateTime)) {
+            log.warn("Start date {} is after end date {}", startDateTime, endDateTime);
+            return error(HttpStatus.BAD_REQUEST, "Start date must be earlier than or equal to end date.");
+        }
+
+        Metadata metadata = new Metadata();
+        metadata.put(Metadata.Key.of(apiKeyHeader, Metadata.ASCII_STRING_MARSHALLER), requestApiKey);
+        ScoreSubscriptionServiceGrpc.ScoreSubscriptionServiceStub stub = ScoreSubscriptionServiceGrpc
+                .newStub(grpcChannel).withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata));
+        SubscribeScoresRequest request = SubscribeScoresRequest.newBuilder()
+                .setStartTime(DateUtils.toTimestamp(startDateTime)).setEndTime(DateUtils.toTimestamp(endDateTime))
+                .build();
+
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        UpdateForwarder forwarder = new UpdateForwarder(emitter);
+        emitter.onTimeout(() -> forwarder.cancel("The event stream timed out"));
+        emitter.onError(throwable -> forwarder.cancel("The event stream failed"));
+        emitter.onCompletion(() -> forwarder.cancel("The event stream completed"));
+        stub.subscribeScores(request, forwarder);
+        forwarder.keepAlive = keepAliveScheduler.scheduleWithFixedDelay(forwarder::sendKeepAlive, keepAlive.toMillis(),
+                keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+        return ResponseEntity.ok(emitter);
+    }
+
+    @PreDestroy
+    public void close() {
+        keepAliveScheduler.shutdownNow();
+    }
+
+    /**
+     * Returns a stream with a single {@code error} event.
+     */
+    private static ResponseEntity<SseEmitter> error(HttpStatus status, String message) {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(SseEmitter.event().name("error").data(message, MediaType.TEXT_PLAIN));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return ResponseEntity.status(status).body(emitter);
+    }
+
+    /**
+     * Maps a failed subscription to the message of the {@code error} event.
+     */
+    private static String errorMessage(Status status) {
+        return switch (status.getCode()) {
+        case INVALID_ARGUMENT -> "Invalid argument: " + status.getDescription();
+        case UNAUTHENTICATED -> "Unauthenticated request.";
+        case RESOURCE_EXHAUSTED -> "Too many requests: " + status.getDescription();
+        case UNAVAILABLE -> "The service is unavailable, please reconnect.";
+        default -> "Internal server error.";
+        };
+    }
+
+    /**
+     * Writes the updates of a subscription to the event stream, requesting the next update from the gRPC service only
+     * after the previous one has been written.
+     */
+    private static final class UpdateForwarder implements ClientResponseObserver<SubscribeScoresRequest, ScoreUpdate> {
+
+        private final SseEmitter emitter;
+        private volatile ClientCallStreamObserver<SubscribeScoresRequest> call;
+        private volatile ScheduledFuture<?> keepAlive;
+        private volatile boolean cancelled;
+
+        UpdateForwarder(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<SubscribeScoresRequest> requestStream) {
+            this.call = requestStream;
+            requestStream.disableAutoRequestWithInitial(1);
+        }
+
+        @Override
+        public void onNext(ScoreUpdate update) {
+            try {
+                emitter.send(SseEmitter.event().name(update.getSnapshot() ? "snapshot" : "update")
+                        .id(Long.toString(update.getSequence())).data(update, MediaType.APPLICATION_JSON));
+                call.request(1);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Failed to write a score update: {}", e.getMessage());
+                cancel("The client disconnected");
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (cancelled) {
+                return;
+            }
+            Status status = Status.fromThrowable(throwable);
+            log.warn("Score subscription failed: {}", status);
+            try {
+                emitter.send(SseEmitter.event().name("error").data(errorMessage(status), MediaType.TEXT_PLAIN));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            emitter.complete();
+        }
+
+        void sendKeepAlive() {
+            try {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Failed to write a keep-alive comment: {}", e.getMessage());
+                cancel("The client disconnected");
+            }
+        }
+
+        void cancel(String reason) {
+            ScheduledFuture<?> current = keepAlive;
+            if (current != null) {
+                current.cancel(false);
+            }
+            if (!cancelled) {
+                cancelled = true;
+                call.cancel(reason, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.kaarelkaasla.klaustestassignment.controller;
+
+import com.kaarelkaasla.klaustestassignment.profiling.SlowQueryLog;
+import com.kaarelkaasla.klaustestassignment.util.AdminKeyUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller for inspecting the slowest database query shapes recorded by the {@link SlowQueryLog}. The endpoints take
+ * the admin key, not a client key, since the recorded parameters are the values of real queries.
+ */
+@RestController
+@RequestMapping("/api/v1/admin/slow-queries")
+@Slf4j
+public class SlowQueryController {
+
+    private final SlowQueryLog slowQueryLog;
+    private final AdminKeyUtils adminKeyUtils;
+    @Value("${api.slow-query.top}")
+    private int defaultLimit;
+
+    @Autowired
+    public SlowQueryController(SlowQueryLog slowQueryLog, AdminKeyUtils adminKeyUtils) {
+        this.slowQueryLog = slowQueryLog;
+        this.adminKeyUtils = adminKeyUtils;
+    }
+
+    /**
+     * Retrieves the query shapes with the longest executions, with the parameters, row count and query plan of their
+     * slowest execution.
+     *
+     * @param requestAdminKey
+     *            The admin key for authentication.
+     * @param limit
+     *            The optional maximum number of shapes to return.
+     *
+     * @return The query shapes, slowest first.
+     */
+    @GetMapping
+    public ResponseEntity<Object> getSlowQueries(
+            @RequestHeader(value = "${api.admin-key-header}", required = false) String requestAdminKey,
+            @RequestParam(required = false) Integer limit) {
+        if (!adminKeyUtils.isValid(requestAdminKey)) {
+            log.warn("Unauthorized access attempt with invalid admin key.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized: Invalid admin key.");
+        }
+        if (limit != null && limit <= 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Limit must be positive.");
+        }
+        return ResponseEntity.ok(slowQueryLog.getSlowest(limit != null ? limit : defaultLimit));
+    }
+
+    /**
+     * Clears the recorded query shapes, for example after adding an index.
+     *
+     * @param requestAdminKey
+     *            The admin key for authentication.
+     *
+     * @return An empty response.
+     */
+    @DeleteMapping
+    public ResponseEntity<Object> clearSlowQueries(
+            @RequestHeader(value = "${api.admin-key-header}", required = false) String requestAdminKey) {
+        if (!adminKeyUtils.isValid(requestAdminKey)) {
+            log.warn("Unauthorized access attempt with invalid admin key.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized: Invalid admin key.");
+        }
+        slowQueryLog.clear();
+        return ResponseEntity.noContent().build();
+    }
+}
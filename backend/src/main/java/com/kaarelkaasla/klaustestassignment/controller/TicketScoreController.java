@@ -1,12 +1,15 @@
 package com.kaarelkaasla.klaustestassignment.controller;
 
+import com.kaarelkaasla.klaustestassignment.DenseTicketCategoryScoresResponse;
 import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresRequest;
 import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresResponse;
 import com.kaarelkaasla.klaustestassignment.TicketScoreServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.service.TicketCategoryScoresView;
 import com.kaarelkaasla.klaustestassignment.service.TicketScoreServiceImpl;
+import com.kaarelkaasla.klaustestassignment.util.ApiKeyUtils;
 import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import com.kaarelkaasla.klaustestassignment.util.GrpcFutureUtils;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
 import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -21,49 +24,78 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api/v1/tickets")
 @Slf4j
 public class TicketScoreController {
 
-    @Value("${grpc.server.host}")
-    private String grpcServerHost;
-
-    @Value("${grpc.server.port}")
-    private int grpcServerPort;
+    /**
+     * Dense response format: category names listed once and per-ticket score arrays in basis points.
+     */
+    private static final String DENSE_FORMAT = "dense";
 
     @Value("${api.key-header}")
     private String apiKeyHeader;
 
-    @Value("${api.key}")
-    private String apiKey;
+    @Value("${api.timeouts.ticket-category-scores}")
+    private Duration timeout;
 
     private final TicketScoreServiceImpl ticketService;
     private final DateUtils dateUtils;
+    private final ManagedChannel grpcChannel;
+    private final ApiKeyUtils apiKeyUtils;
 
     @Autowired
-    public TicketScoreController(TicketScoreServiceImpl ticketService, DateUtils dateUtils) {
+    public TicketScoreController(TicketScoreServiceImpl ticketService, DateUtils dateUtils, ManagedChannel grpcChannel,
+            ApiKeyUtils apiKeyUtils) {
         this.ticketService = ticketService;
         this.dateUtils = dateUtils;
+        this.grpcChannel = grpcChannel;
+        this.apiKeyUtils = apiKeyUtils;
     }
 
+    /**
+     * Retrieves ticket category scores within the specified date range. By default every ticket is returned with a map
+     * of category names to percentages; with {@code format=dense} the category names are sent once and each ticket
+     * carries a positional array of scores in basis points, with -1 for categories without ratings.
+     *
+     * @param startDate
+     *            The start date of the period in ISO 8601 format.
+     * @param endDate
+     *            The end date of the period in ISO 8601 format.
+     * @param format
+     *            The optional response format, either omitted or "dense".
+     * @param requestApiKey
+     *            The API key for authentication.
+     *
+     * @return The ticket category scores.
+     */
     @GetMapping("/category-scores")
-    public ResponseEntity<Object> getTicketCategoryScores(@RequestParam String startDate, @RequestParam String endDate,
+    public DeferredResult<ResponseEntity<Object>> getTicketCategoryScores(@RequestParam String startDate,
+            @RequestParam String endDate, @RequestParam(required = false) String format,
             @RequestHeader(value = "${api.key-header}", required = false) String requestApiKey) {
 
         log.info("Received an API request to get ticket category scores with startDate: {} and endDate: {}", startDate,
                 endDate);
 
-        if (requestApiKey == null || !requestApiKey.equals(apiKey)) {
+        if (!apiKeyUtils.isValid(requestApiKey)) {
             log.warn("Unauthorized access attempt with invalid API key.");
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid or missing API key.");
+            return GrpcFutureUtils
+                    .completed(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid or missing API key."));
+        }
+
+        if (format != null && !DENSE_FORMAT.equals(format)) {
+            log.warn("Unsupported response format: {}", format);
+            return GrpcFutureUtils.completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Unsupported format. Omit the parameter or use format=dense."));
         }
 
         try {
@@ -72,75 +104,121 @@ public class TicketScoreController {
 
             if (startDateTime.isAfter(endDateTime)) {
                 log.warn("Start date {} is after end date {}", startDateTime, endDateTime);
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                        .body("Start date must be earlier than or equal to end date.");
+                return GrpcFutureUtils.completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("Start date must be earlier than or equal to end date."));
             }
 
-            ManagedChannel channel = ManagedChannelBuilder.forAddress(grpcServerHost, grpcServerPort).usePlaintext()
+            Metadata metadata = new Metadata();
+            Metadata.Key<String> apiKeyHeader = Metadata.Key.of(this.apiKeyHeader, Metadata.ASCII_STRING_MARSHALLER);
+            metadata.put(apiKeyHeader, requestApiKey);
+
+            AtomicReference<Metadata> trailers = new AtomicReference<>();
+            TicketScoreServiceGrpc.TicketScoreServiceFutureStub stub = TicketScoreServiceGrpc.newFutureStub(grpcChannel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata),
+                            GrpcFutureUtils.captureTrailers(trailers))
+                    .withDeadlineAfter(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            TicketCategoryScoresRequest request = TicketCategoryScoresRequest.newBuilder()
+                    .setStartTime(DateUtils.toTimestamp(startDateTime)).setEndTime(DateUtils.toTimestamp(endDateTime))
                     .build();
 
-            try {
-                Metadata metadata = new Metadata();
-                Metadata.Key<String> apiKeyHeader = Metadata.Key.of(this.apiKeyHeader,
-                        Metadata.ASCII_STRING_MARSHALLER);
-                metadata.put(apiKeyHeader, apiKey);
-
-                TicketScoreServiceGrpc.TicketScoreServiceBlockingStub stub = TicketScoreServiceGrpc
-                        .newBlockingStub(channel);
-                stub = MetadataUtils.attachHeaders(stub, metadata);
-
-                TicketCategoryScoresRequest request = TicketCategoryScoresRequest.newBuilder()
-                        .setStartDate(startDateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                        .setEndDate(endDateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).build();
-
-                TicketCategoryScoresResponse response = stub.getTicketCategoryScores(request);
-
-                if (response.getTicketCategoryScoresList().isEmpty()) {
-                    log.info("No ratings found for the specified period.");
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                            .body("No ratings found for the specified period.");
-                }
-
-                List<Map<String, Object>> result = ticketService.processTicketCategoryScores(response);
-                log.info("Successfully retrieved ticket category scores");
-                return ResponseEntity.ok(result);
-
-            } catch (StatusRuntimeException e) {
-                Status status = e.getStatus();
-                return switch (status.getCode()) {
-                case NOT_FOUND -> {
-                    log.info("No ratings found for the specified period.");
-                    yield ResponseEntity.status(HttpStatus.NOT_FOUND)
-                            .body("No ratings found for the specified period.");
-                }
-                case INVALID_ARGUMENT -> {
-                    log.warn("Invalid argument: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid argument.");
-                }
-                case UNAUTHENTICATED -> {
-                    log.warn("Unauthenticated request: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthenticated request.");
-                }
-                case INTERNAL -> {
-                    log.error("Internal server error: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error.");
-                }
-                default -> {
-                    log.error("Unexpected gRPC error: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Unexpected error.");
-                }
-                };
-            } finally {
-                channel.shutdown();
-                log.debug("gRPC channel shut down");
+            if (DENSE_FORMAT.equals(format)) {
+                return GrpcFutureUtils.toDeferredResult(stub.getDenseTicketCategoryScores(request), timeout, trailers,
+                        this::handleDenseResponse, this::handleError);
             }
+            return GrpcFutureUtils.toDeferredResult(stub.getTicketCategoryScores(request), timeout, trailers,
+                    this::handleResponse, this::handleError);
         } catch (DateTimeParseException e) {
             log.warn("Invalid date format: {}", e.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body("Invalid date format. Please use the format yyyy-MM-dd'T'HH:mm:ss.");
+            return GrpcFutureUtils.completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Invalid date format. Please use the format yyyy-MM-dd'T'HH:mm:ss."));
         } catch (Exception e) {
             log.error("An unexpected error occurred", e);
+            return GrpcFutureUtils.completed(
+                    ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred."));
+        }
+    }
+
+    /**
+     * Maps a successful gRPC response to the HTTP response.
+     *
+     * @param response
+     *            The ticket category scores response.
+     *
+     * @return The HTTP response.
+     */
+    private ResponseEntity<Object> handleResponse(TicketCategoryScoresResponse response) {
+        if (response.getTicketCategoryScoresList().isEmpty()) {
+            log.info("No ratings found for the specified period.");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No ratings found for the specified period.");
+        }
+
+        TicketCategoryScoresView result = ticketService.processTicketCategoryScores(response);
+        log.info("Successfully retrieved ticket category scores");
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Maps a successful dense gRPC response to the HTTP response. The protobuf message is streamed as is.
+     *
+     * @param response
+     *            The dense ticket category scores response.
+     *
+     * @return The HTTP response.
+     */
+    private ResponseEntity<Object> handleDenseResponse(DenseTicketCategoryScoresResponse response) {
+        if (response.getTicketCategoryScoresList().isEmpty()) {
+            log.info("No ratings found for the specified period.");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No ratings found for the specified period.");
+        }
+
+        log.info("Successfully retrieved dense ticket category scores");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Maps a failed gRPC call to the HTTP response.
+     *
+     * @param throwable
+     *            The failure.
+     *
+     * @return The HTTP response.
+     */
+    private ResponseEntity<Object> handleError(Throwable throwable) {
+        if (!(throwable instanceof StatusRuntimeException e)) {
+            log.error("An unexpected error occurred", throwable);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred.");
         }
+        Status status = e.getStatus();
+        return switch (status.getCode()) {
+        case NOT_FOUND -> {
+            log.info("No ratings found for the specified period.");
+            yield ResponseEntity.status(HttpStatus.NOT_FOUND).body("No ratings found for the specified period.");
+        }
+        case INVALID_ARGUMENT -> {
+            log.warn("Invalid argument: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid argument.");
+        }
+        case UNAUTHENTICATED -> {
+            log.warn("Unauthenticated request: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthenticated request.");
+        }
+        case DEADLINE_EXCEEDED -> {
+            log.warn("Request timed out after {}: {}", timeout, e.getMessage());
+            yield ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("Request timed out.");
+        }
+        case RESOURCE_EXHAUSTED -> {
+            log.warn("Request rejected by the server: {}", e.getMessage());
+            yield GrpcFutureUtils.resourceExhausted(e);
+        }
+        case INTERNAL -> {
+            log.error("Internal server error: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error.");
+        }
+        default -> {
+            log.error("Unexpected gRPC error: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Unexpected error.");
+        }
+        };
     }
 }
@@ -3,9 +3,10 @@ package com.kaarelkaasla.klaustestassignment.controller;
 import com.kaarelkaasla.klaustestassignment.TicketWeightedScoreServiceGrpc;
 import com.kaarelkaasla.klaustestassignment.WeightedScoresRequest;
 import com.kaarelkaasla.klaustestassignment.WeightedScoresResponse;
+import com.kaarelkaasla.klaustestassignment.util.ApiKeyUtils;
 import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import com.kaarelkaasla.klaustestassignment.util.GrpcFutureUtils;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
 import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -20,10 +21,13 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Controller for handling weighted score-related API requests.
@@ -33,27 +37,26 @@ import java.time.format.DateTimeParseException;
 @Slf4j
 public class TicketWeightedScoreController {
 
-    @Value("${grpc.server.host}")
-    private String grpcServerHost;
-
-    @Value("${grpc.server.port}")
-    private int grpcServerPort;
-
     @Value("${api.key-header}")
     private String apiKeyHeader;
 
-    @Value("${api.key}")
-    private String apiKey;
+    @Value("${api.timeouts.weighted-scores}")
+    private Duration timeout;
 
     private final DateUtils dateUtils;
+    private final ManagedChannel grpcChannel;
+    private final ApiKeyUtils apiKeyUtils;
 
     @Autowired
-    public TicketWeightedScoreController(DateUtils dateUtils) {
+    public TicketWeightedScoreController(DateUtils dateUtils, ManagedChannel grpcChannel, ApiKeyUtils apiKeyUtils) {
         this.dateUtils = dateUtils;
+        this.grpcChannel = grpcChannel;
+        this.apiKeyUtils = apiKeyUtils;
     }
 
     @GetMapping("/weighted-scores")
-    public ResponseEntity<Object> getWeightedScores(@RequestParam String startDate, @RequestParam String endDate,
+    public DeferredResult<ResponseEntity<Object>> getWeightedScores(@RequestParam String startDate,
+            @RequestParam String endDate,
             @RequestParam(required = false, defaultValue = "false") String includePreviousPeriod,
             @RequestHeader(value = "${api.key-header}", required = false) String requestApiKey) {
 
@@ -63,15 +66,16 @@ public class TicketWeightedScoreController {
 
         if (!includePreviousPeriod.equals("true") && !includePreviousPeriod.equals("false")) {
             log.warn("Invalid value for includePreviousPeriod: {}", includePreviousPeriod);
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body("Invalid value for includePreviousPeriod. Must be true or false.");
+            return GrpcFutureUtils.completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Invalid value for includePreviousPeriod. Must be true or false."));
         }
 
         boolean includePrevious = Boolean.parseBoolean(includePreviousPeriod);
 
-        if (requestApiKey == null || !requestApiKey.equals(apiKey)) {
+        if (!apiKeyUtils.isValid(requestApiKey)) {
             log.warn("Unauthorized access attempt with invalid API key.");
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid or missing API key.");
+            return GrpcFutureUtils
+                    .completed(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid or missing API key."));
         }
 
         try {
@@ -80,75 +84,100 @@ public class TicketWeightedScoreController {
 
             if (startDateTime.isAfter(endDateTime)) {
                 log.warn("Start date {} is after end date {}", startDateTime, endDateTime);
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                        .body("Start date must be earlier than or equal to end date.");
+                return GrpcFutureUtils.completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("Start date must be earlier than or equal to end date."));
             }
 
-            ManagedChannel channel = ManagedChannelBuilder.forAddress(grpcServerHost, grpcServerPort).usePlaintext()
-                    .build();
-
-            try {
-                Metadata metadata = new Metadata();
-                Metadata.Key<String> apiKeyHeader = Metadata.Key.of(this.apiKeyHeader,
-                        Metadata.ASCII_STRING_MARSHALLER);
-                metadata.put(apiKeyHeader, requestApiKey);
-
-                TicketWeightedScoreServiceGrpc.TicketWeightedScoreServiceBlockingStub stub = TicketWeightedScoreServiceGrpc
-                        .newBlockingStub(channel);
-                stub = MetadataUtils.attachHeaders(stub, metadata);
-
-                WeightedScoresRequest request = WeightedScoresRequest.newBuilder()
-                        .setStartDate(startDateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                        .setEndDate(endDateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                        .setIncludePreviousPeriod(includePrevious).build();
-
-                WeightedScoresResponse response = stub.getWeightedScores(request);
-
-                if (response.getCurrentPeriodScore().getAverageScorePercentage() == 0
-                        && response.getPreviousPeriodScore().getAverageScorePercentage() == 0) {
-                    log.info("No ratings found for the specified periods.");
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                            .body("No ratings found for the specified periods.");
-                }
-
-                log.info("Successfully retrieved weighted scores");
-                return ResponseEntity.ok(response);
-            } catch (StatusRuntimeException e) {
-                Status status = e.getStatus();
-                return switch (status.getCode()) {
-                case NOT_FOUND -> {
-                    log.info("No ratings found for the specified periods.");
-                    yield ResponseEntity.status(HttpStatus.NOT_FOUND)
-                            .body("No ratings found for the specified periods.");
-                }
-                case INVALID_ARGUMENT -> {
-                    log.warn("Invalid argument: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid argument.");
-                }
-                case UNAUTHENTICATED -> {
-                    log.warn("Unauthenticated request: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthenticated request.");
-                }
-                case INTERNAL -> {
-                    log.error("Internal server error: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error.");
-                }
-                default -> {
-                    log.error("Unexpected gRPC error: {}", e.getMessage());
-                    yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Unexpected error.");
-                }
-                };
-            } finally {
-                channel.shutdown();
-                log.debug("gRPC channel shut down");
-            }
+            Metadata metadata = new Metadata();
+            Metadata.Key<String> apiKeyHeader = Metadata.Key.of(this.apiKeyHeader, Metadata.ASCII_STRING_MARSHALLER);
+            metadata.put(apiKeyHeader, requestApiKey);
+
+            AtomicReference<Metadata> trailers = new AtomicReference<>();
+            TicketWeightedScoreServiceGrpc.TicketWeightedScoreServiceFutureStub stub = TicketWeightedScoreServiceGrpc
+                    .newFutureStub(grpcChannel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata),
+                            GrpcFutureUtils.captureTrailers(trailers))
+                    .withDeadlineAfter(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            WeightedScoresRequest request = WeightedScoresRequest.newBuilder()
+                    .setStartTime(DateUtils.toTimestamp(startDateTime)).setEndTime(DateUtils.toTimestamp(endDateTime))
+                    .setIncludePreviousPeriod(includePrevious).build();
+
+            return GrpcFutureUtils.toDeferredResult(stub.getWeightedScores(request), timeout, trailers,
+                    this::handleResponse, this::handleError);
         } catch (DateTimeParseException e) {
             log.warn("Invalid date format: {}", e.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body("Invalid date format. Please use the format yyyy-MM-dd'T'HH:mm:ss.");
+            return GrpcFutureUtils.completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Invalid date format. Please use the format yyyy-MM-dd'T'HH:mm:ss."));
         } catch (Exception e) {
             log.error("An unexpected error occurred", e);
+            return GrpcFutureUtils.completed(
+                    ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred."));
+        }
+    }
+
+    /**
+     * Maps a successful gRPC response to the HTTP response.
+     *
+     * @param response
+     *            The weighted scores response.
+     *
+     * @return The HTTP response.
+     */
+    private ResponseEntity<Object> handleResponse(WeightedScoresResponse response) {
+        if (response.getCurrentPeriodScore().getAverageScorePercentage() == 0
+                && response.getPreviousPeriodScore().getAverageScorePercentage() == 0) {
+            log.info("No ratings found for the specified periods.");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No ratings found for the specified periods.");
+        }
+
+        log.info("Successfully retrieved weighted scores");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Maps a failed gRPC call to the HTTP response.
+     *
+     * @param throwable
+     *            The failure.
+     *
+     * @return The HTTP response.
+     */
+    private ResponseEntity<Object> handleError(Throwable throwable) {
+        if (!(throwable instanceof StatusRuntimeException e)) {
+            log.error("An unexpected error occurred", throwable);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred.");
         }
+        Status status = e.getStatus();
+        return switch (status.getCode()) {
+        case NOT_FOUND -> {
+            log.info("No ratings found for the specified periods.");
+            yield ResponseEntity.status(HttpStatus.NOT_FOUND).body("No ratings found for the specified periods.");
+        }
+        case INVALID_ARGUMENT -> {
+            log.warn("Invalid argument: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid argument.");
+        }
+        case UNAUTHENTICATED -> {
+            log.warn("Unauthenticated request: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthenticated request.");
+        }
+        case DEADLINE_EXCEEDED -> {
+            log.warn("Request timed out after {}: {}", timeout, e.getMessage());
+            yield ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("Request timed out.");
+        }
+        case RESOURCE_EXHAUSTED -> {
+            log.warn("Request rejected by the server: {}", e.getMessage());
+            yield GrpcFutureUtils.resourceExhausted(e);
+        }
+        case INTERNAL -> {
+            log.error("Internal server error: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error.");
+        }
+        default -> {
+            log.error("Unexpected gRPC error: {}", e.getMessage());
+            yield ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Unexpected error.");
+        }
+        };
     }
 }
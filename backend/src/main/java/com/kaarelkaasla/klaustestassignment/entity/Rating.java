@@ -20,10 +20,12 @@ import java.util.Date;
 public class Rating {
 
     /**
-     * Unique identifier for the rating. Auto-generated by the database.
+     * Unique identifier for the rating. Auto-generated by the database. Declared as INTEGER, the type of the SQLite
+     * rowid column, so that schema validation accepts the existing table.
      */
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "INTEGER")
     private Long id;
 
     /**
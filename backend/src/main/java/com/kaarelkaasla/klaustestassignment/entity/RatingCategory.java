@@ -1,5 +1,6 @@
 package com.kaarelkaasla.klaustestassignment.entity;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -20,10 +21,12 @@ import lombok.NoArgsConstructor;
 public class RatingCategory {
 
     /**
-     * Unique identifier for the rating category. Auto-generated by the database.
+     * Unique identifier for the rating category. Auto-generated by the database. Declared as INTEGER, the type of the
+     * SQLite rowid column, so that schema validation accepts the existing table.
      */
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(columnDefinition = "INTEGER")
     private Long id;
 
     /**
@@ -1,16 +1,21 @@
 package com.kaarelkaasla.klaustestassignment.interceptor;
 
+import com.kaarelkaasla.klaustestassignment.util.ApiKeyUtils;
 import io.grpc.*;
+import net.devh.boot.grpc.common.util.InterceptorOrder;
 import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 /**
- * Interceptor to check for a valid API key in gRPC calls. Ensures that only requests with the correct API key are
- * processed.
+ * Interceptor to check for a valid API key in gRPC calls. Ensures that only requests with the key of a configured
+ * client are processed.
  */
 @Component
 @GrpcGlobalServerInterceptor
+@Order(InterceptorOrder.ORDER_SECURITY_AUTHENTICATION)
 public class ApiKeyInterceptor implements ServerInterceptor {
 
     /**
@@ -20,10 +25,10 @@ public class ApiKeyInterceptor implements ServerInterceptor {
     private String apiKeyHeader;
 
     /**
-     * The valid API key retrieved from the application properties.
+     * The API keys of the configured clients.
      */
-    @Value("${api.key}")
-    private String validApiKey;
+    @Autowired
+    private ApiKeyUtils apiKeyUtils;
 
     /**
      * Intercepts incoming gRPC calls to check for the presence and validity of an API key.
@@ -42,7 +47,7 @@ public class ApiKeyInterceptor implements ServerInterceptor {
             ServerCallHandler<ReqT, RespT> next) {
         String apiKey = headers.get(Metadata.Key.of(apiKeyHeader, Metadata.ASCII_STRING_MARSHALLER));
 
-        if (validApiKey.equals(apiKey)) {
+        if (apiKeyUtils.isValid(apiKey)) {
             return next.startCall(call, headers);
         } else {
             call.close(Status.PERMISSION_DENIED.withDescription("Invalid API key"), new Metadata());
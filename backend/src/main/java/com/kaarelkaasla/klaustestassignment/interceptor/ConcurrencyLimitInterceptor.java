@@ -0,0 +1,280 @@
+package com.kaarelkaasla.klaustestassignment.interceptor;
+
+import com.kaarelkaasla.klaustestassignment.RatingIngestServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.profiling.RequestCost;
+import io.grpc.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.common.util.InterceptorOrder;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interceptor that sheds load before it reaches the database. Each gRPC method has its own
+ * {@link GradientConcurrencyLimit} that adapts to the observed latency of the method's calls; calls over the limit are
+ * rejected immediately with RESOURCE_EXHAUSTED instead of queuing on the SQLite file. Optionally, a rejected unary call
+ * is answered with the last successful response to the same request, marked with the {@value #STALE_RESPONSE_HEADER}
+ * header. Writes are never answered from the cache, since a stale response would claim that they were stored. Streaming
+ * calls are not limited: they last as long as their data takes to send, which says nothing about the load on the
+ * database, and bulk ingestion is held back by the write queue instead.
+ *
+ * <p>
+ * Runs after {@link ApiKeyInterceptor}, so calls with an invalid API key never take a permit. The current limit, the
+ * calls in flight and the rejections are published as metrics tagged with the method name.
+ */
+@Slf4j
+@Component
+@GrpcGlobalServerInterceptor
+@Order(InterceptorOrder.ORDER_LAST)
+public class ConcurrencyLimitInterceptor implements ServerInterceptor {
+
+    /**
+     * Header set on responses served from the stale response cache.
+     */
+    public static final String STALE_RESPONSE_HEADER = "x-stale-response";
+
+    private static final Metadata.Key<String> STALE_RESPONSE_KEY = Metadata.Key.of(STALE_RESPONSE_HEADER,
+            Metadata.ASCII_STRING_MARSHALLER);
+
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final StaleResponseCache staleResponses;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, MethodLimit> limits = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ConcurrencyLimitInterceptor(@Value("${api.concurrency-limit.enabled}") boolean enabled,
+            @Value("${api.concurrency-limit.initial-limit}") int initialLimit,
+            @Value("${api.concurrency-limit.min-limit}") int minLimit,
+            @Value("${api.concurrency-limit.max-limit}") int maxLimit,
+            @Value("${api.concurrency-limit.tolerance}") double tolerance,
+            @Value("${api.concurrency-limit.smoothing}") double smoothing,
+            @Value("${api.concurrency-limit.stale-responses.enabled}") boolean staleResponsesEnabled,
+            @Value("${api.concurrency-limit.stale-responses.max-entries}") int staleResponsesMaxEntries,
+            @Value("${api.concurrency-limit.stale-responses.max-age}") Duration staleResponsesMaxAge,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.staleResponses = staleResponsesEnabled
+                ? new StaleResponseCache(staleResponsesMaxEntries, staleResponsesMaxAge) : null;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Intercepts incoming gRPC calls, letting them through while the method is under its concurrency limit.
+     *
+     * @param call
+     *            the server call
+     * @param headers
+     *            the call headers
+     * @param next
+     *            the next server call handler
+     *
+     * @return a listener for server call events
+     */
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        if (!enabled || method.getType() != MethodDescriptor.MethodType.UNARY) {
+            return next.startCall(call, headers);
+        }
+
+        MethodLimit methodLimit = limits.computeIfAbsent(method.getFullMethodName(), this::createMethodLimit);
+        boolean cacheable = staleResponses != null
+                && !RatingIngestServiceGrpc.SERVICE_NAME.equals(method.getServiceName());
+
+        if (!methodLimit.limit().tryAcquire()) {
+            return reject(call, methodLimit, cacheable);
+        }
+
+        LimitedCall<ReqT, RespT> limitedCall = new LimitedCall<>(call, methodLimit.limit(), cacheable);
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(limitedCall, headers);
+        } catch (RuntimeException e) {
+            limitedCall.release(Status.INTERNAL);
+            throw e;
+        }
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onMessage(ReqT message) {
+                limitedCall.request = message;
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onCancel() {
+                limitedCall.release(Contexts.statusFromCancelled(Context.current()));
+                super.onCancel();
+            }
+        };
+    }
+
+    /**
+     * Answers a call over the limit, either from the stale response cache or with RESOURCE_EXHAUSTED.
+     */
+    private <ReqT, RespT> ServerCall.Listener<ReqT> reject(ServerCall<ReqT, RespT> call, MethodLimit methodLimit,
+            boolean cacheable) {
+        if (!cacheable) {
+            methodLimit.rejected().increment();
+            closeExhausted(call, methodLimit);
+            return new ServerCall.Listener<>() {
+            };
+        }
+
+        // The cache is keyed by the request, so it has to be read before answering.
+        call.request(1);
+        return new ServerCall.Listener<>() {
+            private boolean answered;
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void onMessage(ReqT message) {
+                answered = true;
+                RespT response = (RespT) staleResponses.get(call.getMethodDescriptor().getFullMethodName(), message);
+                if (response == null) {
+                    RequestCost.current().cacheMiss();
+                    methodLimit.rejected().increment();
+                    closeExhausted(call, methodLimit);
+                    return;
+                }
+                RequestCost.current().cacheHit();
+                methodLimit.servedStale().increment();
+                Metadata responseHeaders = new Metadata();
+                responseHeaders.put(STALE_RESPONSE_KEY, "true");
+                call.sendHeaders(responseHeaders);
+                call.sendMessage(response);
+                call.close(Status.OK, new Metadata());
+            }
+
+            @Override
+            public void onHalfClose() {
+                if (!answered) {
+                    answered = true;
+                    methodLimit.rejected().increment();
+                    closeExhausted(call, methodLimit);
+                }
+            }
+        };
+    }
+
+    private static void closeExhausted(ServerCall<?, ?> call, MethodLimit methodLimit) {
+        log.debug("Rejecting call to {}: concurrency limit {} reached", call.getMethodDescriptor().getFullMethodName(),
+                methodLimit.limit().getLimit());
+        call.close(Status.RESOURCE_EXHAUSTED.withDescription("Too many concurrent requests, try again later"),
+                new Metadata());
+    }
+
+    private MethodLimit createMethodLimit(String methodName) {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance,
+                smoothing);
+        Gauge.builder("grpc.server.concurrency.limit", limit, GradientConcurrencyLimit::getLimit)
+                .description("Current adaptive concurrency limit").tag("method", methodName).register(meterRegistry);
+        Gauge.builder("grpc.server.concurrency.in.flight", limit, GradientConcurrencyLimit::getInFlight)
+                .description("Calls currently holding a concurrency permit").tag("method", methodName)
+                .register(meterRegistry);
+        Counter rejected = Counter.builder("grpc.server.concurrency.rejected")
+                .description("Calls shed because the concurrency limit was reached").tag("method", methodName)
+                .tag("outcome", "rejected").register(meterRegistry);
+        Counter servedStale = Counter.builder("grpc.server.concurrency.rejected")
+                .description("Calls shed because the concurrency limit was reached").tag("method", methodName)
+                .tag("outcome", "stale").register(meterRegistry);
+        return new MethodLimit(limit, rejected, servedStale);
+    }
+
+    /**
+     * Returns the concurrency limit of a method, for monitoring and tests.
+     *
+     * @param fullMethodName
+     *            The full gRPC method name.
+     *
+     * @return The limit, or null if the method has not been called yet.
+     */
+    GradientConcurrencyLimit getLimit(String fullMethodName) {
+        MethodLimit methodLimit = limits.get(fullMethodName);
+        return methodLimit != null ? methodLimit.limit() : null;
+    }
+
+    private record MethodLimit(GradientConcurrencyLimit limit, Counter rejected, Counter servedStale) {
+    }
+
+    /**
+     * Releases the permit when the call completes, using its latency as a sample, and remembers successful unary
+     * responses for the stale response cache.
+     */
+    private class LimitedCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final GradientConcurrencyLimit limit;
+        private final boolean cacheable;
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+        private volatile ReqT request;
+        private RespT response;
+
+        LimitedCall(ServerCall<ReqT, RespT> delegate, GradientConcurrencyLimit limit, boolean cacheable) {
+            super(delegate);
+            this.limit = limit;
+            this.cacheable = cacheable;
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            if (cacheable) {
+                response = message;
+            }
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            try {
+                super.close(status, trailers);
+            } finally {
+                if (status.isOk() && cacheable && request != null && response != null) {
+                    staleResponses.put(getMethodDescriptor().getFullMethodName(), request, response);
+                }
+                release(status);
+            }
+        }
+
+        /**
+         * Releases the permit once. Timed-out calls reduce the limit, cancelled calls are not used as samples.
+         */
+        void release(Status status) {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            Status.Code code = status != null ? status.getCode() : Status.Code.CANCELLED;
+            if (code == Status.Code.DEADLINE_EXCEEDED) {
+                limit.onDropped();
+            } else if (code == Status.Code.CANCELLED) {
+                limit.onIgnored();
+            } else {
+                limit.onSuccess(System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.kaarelkaasla.klaustestassignment.interceptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive concurrency limit that follows the latency of completed calls. A long-term average of the call latency is
+ * kept as the baseline; while recent calls are about as fast as the baseline the limit grows, and when they become
+ * slower (because calls are queuing on the database) the limit shrinks proportionally. Calls that time out cut the
+ * limit multiplicatively.
+ *
+ * <p>
+ * Acquiring and releasing a permit is lock-free; only updating the estimated limit after a call completes is
+ * synchronized.
+ */
+public class GradientConcurrencyLimit {
+
+    /**
+     * Weight of a new sample in the long-term latency average, roughly a window of the last 600 calls.
+     */
+    private static final double LONG_RTT_WEIGHT = 2.0 / 601;
+
+    /**
+     * Factor the limit is multiplied by when a call times out.
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    private double estimatedLimit;
+    private double longRttNanos;
+
+    /**
+     * Constructs a limit with the given bounds.
+     *
+     * @param initialLimit
+     *            The limit before any call has completed.
+     * @param minLimit
+     *            The lowest the limit can go.
+     * @param maxLimit
+     *            The highest the limit can go.
+     * @param tolerance
+     *            How much slower than the baseline calls may be before the limit shrinks, e.g. 1.5 for 50%.
+     * @param smoothing
+     *            Weight of each new estimate in the limit, between 0 and 1.
+     */
+    public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limit bounds: " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Tries to start a call.
+     *
+     * @return True if the call may proceed and must later be released, false if the limit has been reached.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a call that completed, updating the limit with its latency.
+     *
+     * @param rttNanos
+     *            The latency of the call in nanoseconds.
+     */
+    public void onSuccess(long rttNanos) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        update(rttNanos, inFlightAtCompletion);
+    }
+
+    /**
+     * Ends a call that ran out of time, reducing the limit.
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            setEstimatedLimit(estimatedLimit * BACKOFF_RATIO);
+        }
+    }
+
+    /**
+     * Ends a call without using it as a sample, e.g. when the client cancelled it.
+     */
+    public void onIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return The maximum number of concurrent calls.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of calls currently in flight.
+     *
+     * @return The number of acquired but not yet released calls.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void update(long rttNanos, int inFlightAtCompletion) {
+        double rtt = Math.max(rttNanos, 1);
+        if (longRttNanos == 0) {
+            longRttNanos = rtt;
+        } else {
+            longRttNanos += (rtt - longRttNanos) * LONG_RTT_WEIGHT;
+        }
+
+        // After a period of overload the baseline is inflated; let it recover once calls are fast again.
+        if (longRttNanos / rtt > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        // Calls are not limited by the limit, so their latency says nothing about whether it is too low.
+        if (inFlightAtCompletion < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / rtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        setEstimatedLimit(estimatedLimit * (1 - smoothing) + newLimit * smoothing);
+    }
+
+    private void setEstimatedLimit(double value) {
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, value));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,187 @@
+package com.kaarelkaasla.klaustestassignment.interceptor;
+
+import com.kaarelkaasla.klaustestassignment.ratelimit.ApiKeyRateLimiter;
+import com.kaarelkaasla.klaustestassignment.util.ApiKeyUtils;
+import io.grpc.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.common.util.InterceptorOrder;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Interceptor that rate limits gRPC calls per client with {@link ApiKeyRateLimiter}. Calls over the limit are closed
+ * with RESOURCE_EXHAUSTED and a {@value #RETRY_AFTER_HEADER} trailer holding the number of seconds to wait.
+ *
+ * <p>
+ * The cost of a unary call depends on its request, so the call is only started once the request message has arrived and
+ * been paid for; a rejected call never reaches the service or the concurrency limit. Streaming calls are charged the
+ * cost of their method when they start. Runs after {@link ApiKeyInterceptor}, so every call has a configured client.
+ */
+@Slf4j
+@Component
+@GrpcGlobalServerInterceptor
+@Order(InterceptorOrder.ORDER_SECURITY_AUTHORISATION)
+public class RateLimitInterceptor implements ServerInterceptor {
+
+    /**
+     * Trailer set on rejected calls with the number of seconds after which the call may be retried.
+     */
+    public static final String RETRY_AFTER_HEADER = "retry-after";
+
+    /**
+     * Metadata key of the {@value #RETRY_AFTER_HEADER} trailer.
+     */
+    public static final Metadata.Key<String> RETRY_AFTER_KEY = Metadata.Key.of(RETRY_AFTER_HEADER,
+            Metadata.ASCII_STRING_MARSHALLER);
+
+    private final ApiKeyRateLimiter rateLimiter;
+    private final ApiKeyUtils apiKeyUtils;
+    private final Metadata.Key<String> apiKeyHeader;
+    private final Counter rejected;
+
+    @Autowired
+    public RateLimitInterceptor(ApiKeyRateLimiter rateLimiter, ApiKeyUtils apiKeyUtils,
+            @Value("${api.key-header}") String apiKeyHeader, MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.apiKeyUtils = apiKeyUtils;
+        this.apiKeyHeader = Metadata.Key.of(apiKeyHeader, Metadata.ASCII_STRING_MARSHALLER);
+        this.rejected = Counter.builder("grpc.server.rate.limited")
+                .description("Calls rejected because their client ran out of tokens").register(meterRegistry);
+    }
+
+    /**
+     * Intercepts incoming gRPC calls and takes tokens from the bucket of the client the call's API key belongs to.
+     *
+     * @param call
+     *            the server call
+     * @param headers
+     *            the call headers
+     * @param next
+     *            the next server call handler
+     *
+     * @return a listener for server call events
+     */
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+        if (!rateLimiter.isEnabled()) {
+            return next.startCall(call, headers);
+        }
+
+        String clientId = apiKeyUtils.getClientId(headers.get(apiKeyHeader));
+        if (clientId == null) {
+            // Only reachable without ApiKeyInterceptor, which rejects unknown keys first.
+            call.close(Status.PERMISSION_DENIED.withDescription("Invalid API key"), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+        String methodName = call.getMethodDescriptor().getFullMethodName();
+
+        if (call.getMethodDescriptor().getType() != MethodDescriptor.MethodType.UNARY) {
+            if (!tryAcquire(call, clientId, rateLimiter.getCost(methodName, null))) {
+                return new ServerCall.Listener<>() {
+                };
+            }
+            return next.startCall(call, headers);
+        }
+
+        call.request(1);
+        return new DeferredStartListener<>(call, headers, next, clientId);
+    }
+
+    /**
+     * Takes tokens for a call, closing the call if there are not enough.
+     *
+     * @return True if the call may proceed.
+     */
+    private boolean tryAcquire(ServerCall<?, ?> call, String clientId, int cost) {
+        long retryAfterNanos = rateLimiter.tryAcquire(clientId, cost);
+        if (retryAfterNanos == 0) {
+            return true;
+        }
+        long retryAfterSeconds = ApiKeyRateLimiter.toRetryAfterSeconds(retryAfterNanos);
+        log.debug("Rate limit exceeded for client {} on {}, retry after {} s", clientId,
+                call.getMethodDescriptor().getFullMethodName(), retryAfterSeconds);
+        rejected.increment();
+        Metadata trailers = new Metadata();
+        trailers.put(RETRY_AFTER_KEY, Long.toString(retryAfterSeconds));
+        call.close(Status.RESOURCE_EXHAUSTED
+                .withDescription("Rate limit exceeded, retry after " + retryAfterSeconds + " seconds"), trailers);
+        return false;
+    }
+
+    /**
+     * Listener of a unary call that starts the call once its request message has been paid for, then forwards all
+     * events to the started call's listener.
+     */
+    private class DeferredStartListener<ReqT, RespT> extends ServerCall.Listener<ReqT> {
+
+        private final ServerCall<ReqT, RespT> call;
+        private final Metadata headers;
+        private final ServerCallHandler<ReqT, RespT> next;
+        private final String clientId;
+        private ServerCall.Listener<ReqT> delegate;
+        private boolean rejected;
+
+        DeferredStartListener(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next,
+                String clientId) {
+            this.call = call;
+            this.headers = headers;
+            this.next = next;
+            this.clientId = clientId;
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            if (delegate == null) {
+                int cost = rateLimiter.getCost(call.getMethodDescriptor().getFullMethodName(), message);
+                if (rejected || !tryAcquire(call, clientId, cost)) {
+                    rejected = true;
+                    return;
+                }
+                delegate = next.startCall(call, headers);
+                if (call.isReady()) {
+                    delegate.onReady();
+                }
+            }
+            delegate.onMessage(message);
+        }
+
+        @Override
+        public void onHalfClose() {
+            if (delegate == null && !rejected) {
+                // No request message: let the service report the malformed call.
+                delegate = next.startCall(call, headers);
+            }
+            if (delegate != null) {
+                delegate.onHalfClose();
+            }
+        }
+
+        @Override
+        public void onCancel() {
+            if (delegate != null) {
+                delegate.onCancel();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (delegate != null) {
+                delegate.onComplete();
+            }
+        }
+
+        @Override
+        public void onReady() {
+            if (delegate != null) {
+                delegate.onReady();
+            }
+        }
+    }
+}
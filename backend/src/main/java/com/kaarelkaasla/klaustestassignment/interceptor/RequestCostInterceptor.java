@@ -0,0 +1,86 @@
+package com.kaarelkaasla.klaustestassignment.interceptor;
+
+import com.kaarelkaasla.klaustestassignment.profiling.RequestCost;
+import io.grpc.*;
+import net.devh.boot.grpc.common.util.InterceptorOrder;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Interceptor that reports what each call cost. A {@link RequestCost} is attached to the context of the call for the
+ * services to fill in, the time spent serializing response messages is added to it, and the totals are sent to the
+ * client as trailers when the call is closed.
+ *
+ * <p>
+ * Runs before the security and load shedding interceptors, so rejected calls carry the cost trailers too. When
+ * disabled, calls are passed through unchanged and {@link RequestCost#current()} ignores all updates.
+ */
+@Component
+@GrpcGlobalServerInterceptor
+@Order(InterceptorOrder.ORDER_TRACING_METRICS)
+public class RequestCostInterceptor implements ServerInterceptor {
+
+    private final boolean enabled;
+
+    @Autowired
+    public RequestCostInterceptor(@Value("${api.cost-report.enabled}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Intercepts incoming gRPC calls, attaching a cost accumulator to their context.
+     *
+     * @param call
+     *            the server call
+     * @param headers
+     *            the call headers
+     * @param next
+     *            the next server call handler
+     *
+     * @return a listener for server call events
+     */
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+        if (!enabled) {
+            return next.startCall(call, headers);
+        }
+        RequestCost cost = new RequestCost();
+        return Contexts.interceptCall(cost.attachTo(Context.current()), new CostReportingCall<>(call, cost), headers,
+                next);
+    }
+
+    /**
+     * Times the serialization of response messages, which happens while they are written to the transport, and adds the
+     * cost trailers on close.
+     */
+    private static class CostReportingCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final RequestCost cost;
+
+        CostReportingCall(ServerCall<ReqT, RespT> delegate, RequestCost cost) {
+            super(delegate);
+            this.cost = cost;
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            long startNanos = System.nanoTime();
+            try {
+                super.sendMessage(message);
+            } finally {
+                cost.addSerializationNanos(System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            cost.writeTo(trailers);
+            super.close(status, trailers);
+        }
+    }
+}
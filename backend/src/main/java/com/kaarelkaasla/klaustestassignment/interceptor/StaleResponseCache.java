@@ -0,0 +1,79 @@
+package com.kaarelkaasla.klaustestassignment.interceptor;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the last successful response of unary gRPC calls, keyed by method and request message. Used to
+ * answer calls that are shed under load with a possibly outdated response instead of an error. The least recently used
+ * entry is evicted when the cache is full, and entries older than the maximum age are never returned.
+ */
+public class StaleResponseCache {
+
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final Map<Key, Entry> entries;
+
+    /**
+     * Constructs a cache with the given bounds.
+     *
+     * @param maxEntries
+     *            The maximum number of cached responses.
+     * @param maxAge
+     *            The maximum age of a response that may still be returned.
+     */
+    public StaleResponseCache(int maxEntries, Duration maxAge) {
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > StaleResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Stores the response of a successful call.
+     *
+     * @param method
+     *            The full gRPC method name.
+     * @param request
+     *            The request message.
+     * @param response
+     *            The response message.
+     */
+    public synchronized void put(String method, Object request, Object response) {
+        entries.put(new Key(method, request), new Entry(response, System.nanoTime()));
+    }
+
+    /**
+     * Returns the cached response for a request, if one exists and is not too old.
+     *
+     * @param method
+     *            The full gRPC method name.
+     * @param request
+     *            The request message.
+     *
+     * @return The cached response, or null if there is none.
+     */
+    public synchronized Object get(String method, Object request) {
+        Key key = new Key(method, request);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.storedAtNanos() > maxAgeNanos) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.response();
+    }
+
+    private record Key(String method, Object request) {
+    }
+
+    private record Entry(Object response, long storedAtNanos) {
+    }
+}
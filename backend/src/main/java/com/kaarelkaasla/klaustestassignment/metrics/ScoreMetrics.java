@@ -0,0 +1,140 @@
+package com.kaarelkaasla.klaustestassignment.metrics;
+
+import com.kaarelkaasla.klaustestassignment.profiling.RequestCost;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics of the score services, tagged with the gRPC method they serve. The time of a request is split into the
+ * database phase, which covers the queries, and the aggregation phase, which covers turning the fetched rows into the
+ * response. Counters record how much data each method works through.
+ *
+ * <ul>
+ * <li>{@value #PHASE_TIMER}: duration of each phase, tagged with {@code method} and {@code phase} ({@code db} or
+ * {@code aggregation}), published with a percentile histogram.</li>
+ * <li>{@value #ROWS_COUNTER}: rows fetched from the database.</li>
+ * <li>{@value #TICKETS_COUNTER}: tickets scored.</li>
+ * <li>{@value #CATEGORIES_COUNTER}: category scores resolved, i.e. category IDs turned into named scores of a ticket or
+ * period.</li>
+ * </ul>
+ *
+ * <p>
+ * Phase durations, rows and tickets are also added to the {@link RequestCost} of the current call.
+ */
+@Component
+public class ScoreMetrics {
+
+    public static final String PHASE_TIMER = "scores.phase.duration";
+    public static final String ROWS_COUNTER = "scores.rows.fetched";
+    public static final String TICKETS_COUNTER = "scores.tickets.scored";
+    public static final String CATEGORIES_COUNTER = "scores.categories.resolved";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ScoreMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Starts timing a phase.
+     *
+     * @return The started sample, to be passed to {@link #recordQuery} or {@link #recordAggregation}.
+     */
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records the duration of a database phase.
+     *
+     * @param sample
+     *            The sample started at the beginning of the phase.
+     * @param method
+     *            The gRPC method name.
+     */
+    public void recordQuery(Timer.Sample sample, String method) {
+        RequestCost.current().addDbNanos(sample.stop(get(method).query()));
+    }
+
+    /**
+     * Records the duration of an aggregation phase.
+     *
+     * @param sample
+     *            The sample started at the beginning of the phase.
+     * @param method
+     *            The gRPC method name.
+     */
+    public void recordAggregation(Timer.Sample sample, String method) {
+        RequestCost.current().addComputeNanos(sample.stop(get(method).aggregation()));
+    }
+
+    /**
+     * Counts rows fetched from the database.
+     *
+     * @param method
+     *            The gRPC method name.
+     * @param rows
+     *            The number of rows.
+     */
+    public void rowsFetched(String method, long rows) {
+        get(method).rows().increment(rows);
+        RequestCost.current().addRowsScanned(rows);
+    }
+
+    /**
+     * Counts tickets scored.
+     *
+     * @param method
+     *            The gRPC method name.
+     * @param tickets
+     *            The number of tickets.
+     */
+    public void ticketsScored(String method, long tickets) {
+        get(method).tickets().increment(tickets);
+        RequestCost.current().addTicketsAggregated(tickets);
+    }
+
+    /**
+     * Counts category scores resolved.
+     *
+     * @param method
+     *            The gRPC method name.
+     * @param categories
+     *            The number of category scores.
+     */
+    public void categoriesResolved(String method, long categories) {
+        get(method).categories().increment(categories);
+    }
+
+    private MethodMeters get(String method) {
+        MethodMeters methodMeters = meters.get(method);
+        return methodMeters != null ? methodMeters : meters.computeIfAbsent(method, this::register);
+    }
+
+    private MethodMeters register(String method) {
+        return new MethodMeters(phaseTimer(method, "db"), phaseTimer(method, "aggregation"),
+                counter(ROWS_COUNTER, "Rows fetched from the database", method),
+                counter(TICKETS_COUNTER, "Tickets scored", method),
+                counter(CATEGORIES_COUNTER, "Category scores resolved", method));
+    }
+
+    private Timer phaseTimer(String method, String phase) {
+        return Timer.builder(PHASE_TIMER).description("Duration of the database and aggregation phases of a request")
+                .tag("method", method).tag("phase", phase).publishPercentileHistogram().register(meterRegistry);
+    }
+
+    private Counter counter(String name, String description, String method) {
+        return Counter.builder(name).description(description).tag("method", method).register(meterRegistry);
+    }
+
+    private record MethodMeters(Timer query, Timer aggregation, Counter rows, Counter tickets, Counter categories) {
+    }
+}
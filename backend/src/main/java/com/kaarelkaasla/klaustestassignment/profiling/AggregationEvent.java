@@ -0,0 +1,14 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Aggregation of decoded ratings into per-period or per-ticket averages.
+ */
+@Name("com.kaarelkaasla.klaustestassignment.Aggregation")
+@Label("Aggregation")
+@Description("Aggregation of decoded ratings into per-period or per-ticket averages")
+public class AggregationEvent extends ScoreEvent {
+}
@@ -0,0 +1,127 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Starts and stops JDK Flight Recorder recordings of the running instance on demand. At most one recording runs at a
+ * time. A recording stops by itself after the maximum duration, so a forgotten recording does not keep profiling the
+ * instance; its data can still be collected with {@link #stop()} afterwards.
+ */
+@Slf4j
+@Component
+public class FlightRecordings {
+
+    /**
+     * Events of the stock configurations that are never recorded. They hold the environment variables, system
+     * properties and command lines of the process, which include the API keys and the database URL.
+     */
+    static final List<String> EXCLUDED_EVENTS = List.of("jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty",
+            "jdk.SystemProcess");
+
+    private final Duration maxDuration;
+    private Recording recording;
+
+    @Autowired
+    public FlightRecordings(@Value("${api.recording.max-duration}") Duration maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Starts a recording with the given JFR settings, without the {@link #EXCLUDED_EVENTS}. The data of an earlier
+     * recording that was never collected is discarded.
+     *
+     * @param settings
+     *            The name of a JFR configuration, such as "default" or "profile".
+     * @param duration
+     *            How long to record before stopping by itself, or null for the maximum duration. Longer durations are
+     *            capped at the maximum.
+     *
+     * @throws IllegalArgumentException
+     *             If there is no configuration with the given name.
+     * @throws IllegalStateException
+     *             If a recording is already running.
+     */
+    public synchronized void start(String settings, Duration duration) {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings);
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown recording settings: " + settings, e);
+        }
+        closeRecording();
+
+        Recording newRecording = new Recording(configuration);
+        EXCLUDED_EVENTS.forEach(newRecording::disable);
+        newRecording.setName("klaus-on-demand");
+        newRecording.setToDisk(true);
+        newRecording.setDuration(duration == null || duration.compareTo(maxDuration) > 0 ? maxDuration : duration);
+        newRecording.start();
+        recording = newRecording;
+        log.info("Started flight recording with {} settings for at most {}", settings, newRecording.getDuration());
+    }
+
+    /**
+     * Stops the recording, if it is still running, and writes its data to a temporary file. The caller owns the file
+     * and should delete it once it has been sent.
+     *
+     * @return The path of the .jfr file.
+     *
+     * @throws IllegalStateException
+     *             If no recording was started.
+     * @throws IOException
+     *             If the recording cannot be written.
+     */
+    public synchronized Path stop() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("No recording was started");
+        }
+        try {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.stop();
+            }
+            Path file = Files.createTempFile("recording-", ".jfr");
+            try {
+                recording.dump(file);
+            } catch (IOException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+            log.info("Stopped flight recording, wrote {} bytes", Files.size(file));
+            return file;
+        } finally {
+            closeRecording();
+        }
+    }
+
+    /**
+     * Returns whether a recording is running.
+     *
+     * @return True if a recording is running.
+     */
+    public synchronized boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
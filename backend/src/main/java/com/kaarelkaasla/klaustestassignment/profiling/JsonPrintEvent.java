@@ -0,0 +1,44 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Printing of a REST response body as JSON. The period of the request is not known once the body is being written, so
+ * unlike the {@link ScoreEvent} phases this event carries the type of the printed object instead of a range width.
+ */
+@Name("com.kaarelkaasla.klaustestassignment.JsonPrint")
+@Label("JSON Print")
+@Description("Printing of a REST response body as JSON")
+@Category({ "Klaus", "Scores" })
+@StackTrace(false)
+public class JsonPrintEvent extends Event {
+
+    @Label("Type")
+    @Description("Simple name of the printed message or view")
+    String type;
+
+    @Label("Rows")
+    @Description("Elements of the top-level repeated fields or arrays printed")
+    long rows;
+
+    /**
+     * Ends the printing and commits the event if it is enabled in a running recording.
+     *
+     * @param type
+     *            The simple name of the printed message or view.
+     * @param rows
+     *            The number of top-level elements printed.
+     */
+    public void finish(String type, long rows) {
+        if (shouldCommit()) {
+            this.type = type;
+            this.rows = rows;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Assembly of the gRPC response message.
+ */
+@Name("com.kaarelkaasla.klaustestassignment.ProtobufBuild")
+@Label("Protobuf Build")
+@Description("Assembly of the gRPC response message")
+public class ProtobufBuildEvent extends ScoreEvent {
+}
@@ -0,0 +1,14 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Database query, including reading the result rows from the driver.
+ */
+@Name("com.kaarelkaasla.klaustestassignment.Query")
+@Label("Query")
+@Description("Database query, including reading the result rows from the driver")
+public class QueryEvent extends ScoreEvent {
+}
@@ -0,0 +1,188 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import io.grpc.Context;
+import io.grpc.Metadata;
+
+import java.util.List;
+
+/**
+ * Accumulates what a single gRPC call cost: rows scanned, tickets aggregated, cache hits and misses, and the time spent
+ * in the database, in computation and in serializing the response. The accumulator of the current call is attached to
+ * the gRPC {@link Context} by the {@code RequestCostInterceptor} and returned to the client as trailers.
+ *
+ * <p>
+ * When cost reporting is disabled, {@link #current()} returns a shared instance that ignores all updates, so callers
+ * never need to check whether reporting is on. An accumulator is only updated by the thread running its call.
+ */
+public class RequestCost {
+
+    public static final String ROWS_SCANNED_HEADER = "x-cost-rows-scanned";
+    public static final String TICKETS_AGGREGATED_HEADER = "x-cost-tickets-aggregated";
+    public static final String CACHE_HITS_HEADER = "x-cost-cache-hits";
+    public static final String CACHE_MISSES_HEADER = "x-cost-cache-misses";
+    public static final String DB_TIME_HEADER = "x-cost-db-ms";
+    public static final String COMPUTE_TIME_HEADER = "x-cost-compute-ms";
+    public static final String SERIALIZATION_TIME_HEADER = "x-cost-serialization-ms";
+
+    /**
+     * Names of all cost trailers, in the order they are written.
+     */
+    public static final List<String> HEADERS = List.of(ROWS_SCANNED_HEADER, TICKETS_AGGREGATED_HEADER,
+            CACHE_HITS_HEADER, CACHE_MISSES_HEADER, DB_TIME_HEADER, COMPUTE_TIME_HEADER, SERIALIZATION_TIME_HEADER);
+
+    private static final Metadata.Key<String> ROWS_SCANNED_KEY = key(ROWS_SCANNED_HEADER);
+    private static final Metadata.Key<String> TICKETS_AGGREGATED_KEY = key(TICKETS_AGGREGATED_HEADER);
+    private static final Metadata.Key<String> CACHE_HITS_KEY = key(CACHE_HITS_HEADER);
+    private static final Metadata.Key<String> CACHE_MISSES_KEY = key(CACHE_MISSES_HEADER);
+    private static final Metadata.Key<String> DB_TIME_KEY = key(DB_TIME_HEADER);
+    private static final Metadata.Key<String> COMPUTE_TIME_KEY = key(COMPUTE_TIME_HEADER);
+    private static final Metadata.Key<String> SERIALIZATION_TIME_KEY = key(SERIALIZATION_TIME_HEADER);
+
+    static final Context.Key<RequestCost> CONTEXT_KEY = Context.key("request-cost");
+
+    private static final RequestCost DISABLED = new RequestCost(false);
+
+    private final boolean recording;
+    private long rowsScanned;
+    private long ticketsAggregated;
+    private long cacheHits;
+    private long cacheMisses;
+    private long dbNanos;
+    private long computeNanos;
+    private long serializationNanos;
+
+    /**
+     * Constructs an empty accumulator that records updates.
+     */
+    public RequestCost() {
+        this(true);
+    }
+
+    private RequestCost(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Returns the accumulator of the current gRPC call.
+     *
+     * @return The accumulator, or an instance that ignores updates if cost reporting is disabled or there is no call.
+     */
+    public static RequestCost current() {
+        RequestCost cost = CONTEXT_KEY.get();
+        return cost != null ? cost : DISABLED;
+    }
+
+    /**
+     * Returns a context in which {@link #current()} returns this accumulator.
+     *
+     * @param context
+     *            The context to extend.
+     *
+     * @return The extended context.
+     */
+    public Context attachTo(Context context) {
+        return context.withValue(CONTEXT_KEY, this);
+    }
+
+    /**
+     * Counts rows read from the database.
+     *
+     * @param rows
+     *            The number of rows.
+     */
+    public void addRowsScanned(long rows) {
+        if (recording) {
+            rowsScanned += rows;
+        }
+    }
+
+    /**
+     * Counts tickets aggregated into the response.
+     *
+     * @param tickets
+     *            The number of tickets.
+     */
+    public void addTicketsAggregated(long tickets) {
+        if (recording) {
+            ticketsAggregated += tickets;
+        }
+    }
+
+    /**
+     * Counts a lookup answered from a cache.
+     */
+    public void cacheHit() {
+        if (recording) {
+            cacheHits++;
+        }
+    }
+
+    /**
+     * Counts a cache lookup that had to load the value.
+     */
+    public void cacheMiss() {
+        if (recording) {
+            cacheMisses++;
+        }
+    }
+
+    /**
+     * Adds time spent executing queries and reading their rows.
+     *
+     * @param nanos
+     *            The time in nanoseconds.
+     */
+    public void addDbNanos(long nanos) {
+        if (recording) {
+            dbNanos += nanos;
+        }
+    }
+
+    /**
+     * Adds time spent turning the fetched rows into the response.
+     *
+     * @param nanos
+     *            The time in nanoseconds.
+     */
+    public void addComputeNanos(long nanos) {
+        if (recording) {
+            computeNanos += nanos;
+        }
+    }
+
+    /**
+     * Adds time spent serializing the response.
+     *
+     * @param nanos
+     *            The time in nanoseconds.
+     */
+    public void addSerializationNanos(long nanos) {
+        if (recording) {
+            serializationNanos += nanos;
+        }
+    }
+
+    /**
+     * Writes the accumulated cost to the given metadata, with times in milliseconds.
+     *
+     * @param metadata
+     *            The trailers of the call.
+     */
+    public void writeTo(Metadata metadata) {
+        metadata.put(ROWS_SCANNED_KEY, Long.toString(rowsScanned));
+        metadata.put(TICKETS_AGGREGATED_KEY, Long.toString(ticketsAggregated));
+        metadata.put(CACHE_HITS_KEY, Long.toString(cacheHits));
+        metadata.put(CACHE_MISSES_KEY, Long.toString(cacheMisses));
+        metadata.put(DB_TIME_KEY, toMillis(dbNanos));
+        metadata.put(COMPUTE_TIME_KEY, toMillis(computeNanos));
+        metadata.put(SERIALIZATION_TIME_KEY, toMillis(serializationNanos));
+    }
+
+    private static Metadata.Key<String> key(String name) {
+        return Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER);
+    }
+
+    private static String toMillis(long nanos) {
+        return Double.toString(Math.round(nanos / 10_000.0) / 100.0);
+    }
+}
@@ -0,0 +1,14 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Decoding of raw result rows into typed values grouped by ticket and category.
+ */
+@Name("com.kaarelkaasla.klaustestassignment.RowDecode")
+@Label("Row Decode")
+@Description("Decoding of raw result rows into typed values grouped by ticket and category")
+public class RowDecodeEvent extends ScoreEvent {
+}
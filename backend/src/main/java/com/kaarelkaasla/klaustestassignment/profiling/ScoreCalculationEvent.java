@@ -0,0 +1,14 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Weighted score calculation of the tickets of a period.
+ */
+@Name("com.kaarelkaasla.klaustestassignment.ScoreCalculation")
+@Label("Score Calculation")
+@Description("Weighted score calculation of the tickets of a period")
+public class ScoreCalculationEvent extends ScoreEvent {
+}
@@ -0,0 +1,54 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Base class of the JDK Flight Recorder events that time one phase of a score request. Every event carries the gRPC
+ * method it belongs to, the number of rows or items it worked through and the width of the requested period, so slow
+ * phases can be told apart from large requests in a recording.
+ *
+ * <p>
+ * Events are used as {@code event.begin()} before the phase and {@link #finish(String, long, long)} after it. When no
+ * recording is running the fields are never set and the event is not committed.
+ */
+@Category({ "Klaus", "Scores" })
+@StackTrace(false)
+public abstract class ScoreEvent extends Event {
+
+    @Label("Method")
+    @Description("gRPC method the phase belongs to")
+    String method;
+
+    @Label("Rows")
+    @Description("Rows or items processed in the phase")
+    long rows;
+
+    @Label("Range Width")
+    @Description("Width of the requested period")
+    @Timespan(Timespan.SECONDS)
+    long rangeSeconds;
+
+    /**
+     * Ends the phase and commits the event if it is enabled in a running recording.
+     *
+     * @param method
+     *            The gRPC method name.
+     * @param rows
+     *            The number of rows or items processed in the phase.
+     * @param rangeSeconds
+     *            The width of the requested period in seconds.
+     */
+    public void finish(String method, long rows, long rangeSeconds) {
+        if (shouldCommit()) {
+            this.method = method;
+            this.rows = rows;
+            this.rangeSeconds = rangeSeconds;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps timing statistics of the SQL statements executed by the application, grouped by query shape: the SQL with
+ * literals replaced by placeholders and whitespace collapsed. Statements slower than the threshold are logged with
+ * their parameters, row count and query plan, and the slowest execution of each shape is kept for
+ * {@link #getSlowest(int)}.
+ *
+ * <p>
+ * The number of shapes is bounded. When the table is full, a new shape replaces the shape with the lowest maximum
+ * duration if it was slower than that.
+ */
+@Slf4j
+@Component
+public class SlowQueryLog {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int MAX_SHAPE_LENGTH = 2000;
+
+    private final boolean enabled;
+    private final long thresholdNanos;
+    private final int maxShapes;
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SlowQueryLog(@Value("${api.slow-query.enabled}") boolean enabled,
+            @Value("${api.slow-query.threshold}") Duration threshold,
+            @Value("${api.slow-query.max-shapes}") int maxShapes) {
+        this.enabled = enabled;
+        this.thresholdNanos = threshold.toNanos();
+        this.maxShapes = maxShapes;
+    }
+
+    /**
+     * Returns whether statements are timed.
+     *
+     * @return True if statements are timed.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns whether a statement that took the given time is slow, in which case its query plan should be passed to
+     * {@link #record}.
+     *
+     * @param elapsedNanos
+     *            The execution time in nanoseconds.
+     *
+     * @return True if the execution time reaches the threshold.
+     */
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    /**
+     * Records an executed statement and logs it if it was slow.
+     *
+     * @param sql
+     *            The SQL of the statement.
+     * @param parameters
+     *            The bound parameters in index order.
+     * @param rows
+     *            The rows read or updated.
+     * @param elapsedNanos
+     *            The time from execution until the results were closed, in nanoseconds.
+     * @param plan
+     *            The lines of the query plan of a slow statement, or null if it was not slow or could not be explained.
+     */
+    public void record(String sql, List<Object> parameters, long rows, long elapsedNanos, List<String> plan) {
+        boolean slow = isSlow(elapsedNanos);
+        if (slow) {
+            log.warn("Slow query took {} ms and returned {} rows: {} parameters: {} plan:{}", elapsedNanos / 1_000_000,
+                    rows, sql, parameters, formatPlan(plan));
+        }
+
+        String shape = toShape(sql);
+        ShapeStats stats = shapes.get(shape);
+        if (stats == null) {
+            stats = addShape(shape, elapsedNanos);
+            if (stats == null) {
+                return;
+            }
+        }
+        stats.add(parameters, rows, elapsedNanos, slow, plan);
+    }
+
+    /**
+     * Returns the query shapes with the highest maximum duration.
+     *
+     * @param limit
+     *            The maximum number of shapes to return.
+     *
+     * @return The shapes, slowest first.
+     */
+    public List<QueryShape> getSlowest(int limit) {
+        return shapes.entrySet().stream().map(entry -> entry.getValue().snapshot(entry.getKey()))
+                .sorted(Comparator.comparingDouble(QueryShape::maxMillis).reversed()).limit(limit).toList();
+    }
+
+    /**
+     * Forgets all recorded shapes.
+     */
+    public void clear() {
+        shapes.clear();
+    }
+
+    /**
+     * Reduces SQL to its shape by replacing string and number literals with placeholders and collapsing whitespace.
+     *
+     * @param sql
+     *            The SQL.
+     *
+     * @return The shape of the SQL.
+     */
+    static String toShape(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        return shape.length() > MAX_SHAPE_LENGTH ? shape.substring(0, MAX_SHAPE_LENGTH) : shape;
+    }
+
+    private synchronized ShapeStats addShape(String shape, long elapsedNanos) {
+        ShapeStats stats = shapes.get(shape);
+        if (stats != null) {
+            return stats;
+        }
+        if (shapes.size() >= maxShapes) {
+            Map.Entry<String, ShapeStats> fastest = shapes.entrySet().stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().getMaxNanos())).orElse(null);
+            if (fastest == null || fastest.getValue().getMaxNanos() >= elapsedNanos) {
+                return null;
+            }
+            shapes.remove(fastest.getKey());
+        }
+        stats = new ShapeStats();
+        shapes.put(shape, stats);
+        return stats;
+    }
+
+    private static String formatPlan(List<String> plan) {
+        if (plan == null || plan.isEmpty()) {
+            return " unavailable";
+        }
+        return "\n    " + String.join("\n    ", plan);
+    }
+
+    /**
+     * Returns whether a query plan contains a full scan of a table. Scans of an index are not counted.
+     *
+     * @param plan
+     *            The lines of the query plan.
+     *
+     * @return True if a table is scanned without an index.
+     */
+    static boolean hasFullTableScan(List<String> plan) {
+        if (plan == null) {
+            return false;
+        }
+        return plan.stream().map(String::trim).anyMatch(line -> line.startsWith("SCAN ") && !line.contains(" USING "));
+    }
+
+    /**
+     * Statistics of one query shape, with the details of its slowest execution.
+     */
+    private static class ShapeStats {
+
+        private long executions;
+        private long slowExecutions;
+        private long totalNanos;
+        private long maxNanos;
+        private long maxRows;
+        private List<Object> maxParameters;
+        private List<String> plan;
+        private Instant lastSlowAt;
+
+        synchronized void add(List<Object> parameters, long rows, long elapsedNanos, boolean slow, List<String> plan) {
+            executions++;
+            totalNanos += elapsedNanos;
+            if (slow) {
+                slowExecutions++;
+                lastSlowAt = Instant.now();
+                if (plan != null) {
+                    this.plan = plan;
+                }
+            }
+            if (elapsedNanos > maxNanos) {
+                maxNanos = elapsedNanos;
+                maxRows = rows;
+                maxParameters = parameters;
+            }
+        }
+
+        synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+
+        synchronized QueryShape snapshot(String sql) {
+            return new QueryShape(sql, executions, slowExecutions, toMillis(totalNanos),
+                    toMillis(totalNanos / Math.max(executions, 1)), toMillis(maxNanos), maxRows, maxParameters, plan,
+                    hasFullTableScan(plan), lastSlowAt);
+        }
+
+        private static double toMillis(long nanos) {
+            return Math.round(nanos / 10_000.0) / 100.0;
+        }
+    }
+
+    /**
+     * Timing statistics of a query shape.
+     *
+     * @param sql
+     *            The query shape.
+     * @param executions
+     *            The number of executions.
+     * @param slowExecutions
+     *            The number of executions that reached the threshold.
+     * @param totalMillis
+     *            The total execution time in milliseconds.
+     * @param meanMillis
+     *            The mean execution time in milliseconds.
+     * @param maxMillis
+     *            The longest execution time in milliseconds.
+     * @param maxRows
+     *            The rows of the longest execution.
+     * @param maxParameters
+     *            The parameters of the longest execution.
+     * @param plan
+     *            The query plan of the last slow execution, or null if no execution was slow.
+     * @param fullTableScan
+     *            Whether the query plan scans a table without an index.
+     * @param lastSlowAt
+     *            The time of the last slow execution, or null if no execution was slow.
+     */
+    public record QueryShape(String sql, long executions, long slowExecutions, double totalMillis, double meanMillis,
+            double maxMillis, long maxRows, List<Object> maxParameters, List<String> plan, boolean fullTableScan,
+            Instant lastSlowAt) {
+    }
+}
@@ -0,0 +1,132 @@
+package com.kaarelkaasla.klaustestassignment.ratelimit;
+
+import com.kaarelkaasla.klaustestassignment.AddRatingsRequest;
+import com.kaarelkaasla.klaustestassignment.BatchAggregatedScoresRequest;
+import com.kaarelkaasla.klaustestassignment.TicketScoreServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.WeightedScoresRequest;
+import com.kaarelkaasla.klaustestassignment.util.ApiKeyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter with a {@link TokenBucket} per client, as configured in {@link ApiKeyUtils}. Every request costs a
+ * number of tokens depending on how much work it causes, so that one noisy integration cannot starve the others.
+ *
+ * <p>
+ * The buckets are created at startup for the configured clients and never added or removed, so the map is bounded by
+ * the configuration, lookups need no locking and taking tokens is a single compare-and-set.
+ */
+@Component
+public class ApiKeyRateLimiter {
+
+    /**
+     * Costs of methods that are more expensive than a single aggregated scores query.
+     */
+    private static final Map<String, Integer> METHOD_COSTS = Map.of(
+            TicketScoreServiceGrpc.getGetTicketCategoryScoresMethod().getFullMethodName(), 2,
+            TicketScoreServiceGrpc.getGetDenseTicketCategoryScoresMethod().getFullMethodName(), 2);
+
+    private final boolean enabled;
+    private final int burst;
+    private final LongSupplier nanoClock;
+
+    /**
+     * Buckets by client ID, one for each configured client.
+     */
+    private final Map<String, TokenBucket> buckets;
+
+    @Autowired
+    public ApiKeyRateLimiter(@Value("${api.rate-limit.enabled}") boolean enabled,
+            @Value("${api.rate-limit.tokens-per-second}") double tokensPerSecond,
+            @Value("${api.rate-limit.burst}") int burst, ApiKeyUtils apiKeyUtils) {
+        this(enabled, tokensPerSecond, burst, apiKeyUtils.getClientIds(), System::nanoTime);
+    }
+
+    ApiKeyRateLimiter(boolean enabled, double tokensPerSecond, int burst, Set<String> clientIds,
+            LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.burst = burst;
+        this.nanoClock = nanoClock;
+        long now = nanoClock.getAsLong();
+        Map<String, TokenBucket> clientBuckets = new HashMap<>();
+        for (String clientId : clientIds) {
+            clientBuckets.put(clientId, new TokenBucket(tokensPerSecond, burst, now));
+        }
+        this.buckets = Map.copyOf(clientBuckets);
+    }
+
+    /**
+     * Checks whether rate limiting is enabled.
+     *
+     * @return True if requests are rate limited.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the number of tokens a request costs. Requests that include the previous period run two queries and cost
+     * double; batch requests cost one token per period beyond the first, at half price as they share a single scan.
+     * Writes cost one token per 100 ratings beyond the first 100, as they are committed in shared transactions.
+     *
+     * @param fullMethodName
+     *            The full gRPC method name.
+     * @param request
+     *            The request message, or null if it is not known yet.
+     *
+     * @return The number of tokens to take.
+     */
+    public int getCost(String fullMethodName, Object request) {
+        int cost = METHOD_COSTS.getOrDefault(fullMethodName, 1);
+        if (request instanceof WeightedScoresRequest weighted && weighted.getIncludePreviousPeriod()) {
+            cost *= 2;
+        } else if (request instanceof BatchAggregatedScoresRequest batch) {
+            cost += (batch.getRangesCount() - 1) / 2;
+        } else if (request instanceof AddRatingsRequest add) {
+            cost += Math.max(0, add.getRatingsCount() - 1) / 100;
+        }
+        return Math.max(1, Math.min(cost, burst));
+    }
+
+    /**
+     * Tries to take tokens for a request.
+     *
+     * @param clientId
+     *            The client ID of the request, as returned by {@link ApiKeyUtils#getClientId(String)}.
+     * @param cost
+     *            The number of tokens the request costs.
+     *
+     * @return 0 if the request is allowed, otherwise the number of nanoseconds after which it could be retried.
+     *
+     * @throws IllegalArgumentException
+     *             If the client is not configured.
+     */
+    public long tryAcquire(String clientId, int cost) {
+        if (!enabled) {
+            return 0;
+        }
+        TokenBucket bucket = buckets.get(clientId);
+        if (bucket == null) {
+            throw new IllegalArgumentException("Unknown client: " + clientId);
+        }
+        return bucket.tryConsume(cost, nanoClock.getAsLong());
+    }
+
+    /**
+     * Converts a wait time to the value of a Retry-After header.
+     *
+     * @param retryAfterNanos
+     *            The wait time returned by {@link #tryAcquire(String, int)}.
+     *
+     * @return The wait time in whole seconds, rounded up and at least 1.
+     */
+    public static long toRetryAfterSeconds(long retryAfterNanos) {
+        return Math.max(1, (retryAfterNanos + 999_999_999L) / 1_000_000_000L);
+    }
+}
@@ -0,0 +1,61 @@
+package com.kaarelkaasla.klaustestassignment.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Instead of a token count and a refill timestamp, the bucket stores a single value: the time
+ * at which it will be full again. Taking tokens moves that time forward by the time it takes to refill them, and a
+ * request is refused if this would put it further ahead of now than the time to refill the whole bucket. This behaves
+ * exactly like a token bucket refilled continuously, but the state fits in one {@link AtomicLong} and is updated with a
+ * single compare-and-set.
+ */
+public class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private final AtomicLong fullAtNanos;
+
+    /**
+     * Constructs a full bucket.
+     *
+     * @param tokensPerSecond
+     *            The rate at which tokens are refilled.
+     * @param capacity
+     *            The maximum number of tokens, i.e. the largest burst allowed.
+     * @param nowNanos
+     *            The current time in nanoseconds.
+     */
+    public TokenBucket(double tokensPerSecond, int capacity, long nowNanos) {
+        if (tokensPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid token bucket: " + tokensPerSecond + "/s, capacity " + capacity);
+        }
+        this.nanosPerToken = Math.max(1, (long) (1_000_000_000L / tokensPerSecond));
+        this.capacityNanos = nanosPerToken * capacity;
+        this.fullAtNanos = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Tries to take tokens from the bucket.
+     *
+     * @param tokens
+     *            The number of tokens to take.
+     * @param nowNanos
+     *            The current time in nanoseconds.
+     *
+     * @return 0 if the tokens were taken, otherwise the number of nanoseconds until enough tokens are available.
+     */
+    public long tryConsume(int tokens, long nowNanos) {
+        long costNanos = nanosPerToken * tokens;
+        while (true) {
+            long fullAt = fullAtNanos.get();
+            long newFullAt = Math.max(fullAt, nowNanos) + costNanos;
+            long excess = newFullAt - nowNanos - capacityNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, newFullAt)) {
+                return 0;
+            }
+        }
+    }
+}
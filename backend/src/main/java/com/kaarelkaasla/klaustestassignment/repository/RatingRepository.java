@@ -10,10 +10,10 @@ import java.util.List;
 
 /**
  * Repository interface for the Rating entity. Extends JpaRepository to provide basic CRUD operations. Contains custom
- * queries to aggregate ratings data.
+ * queries to aggregate ratings data, and streaming scans from {@link RatingRepositoryCustom}.
  */
 @Repository
-public interface RatingRepository extends JpaRepository<Rating, Long> {
+public interface RatingRepository extends JpaRepository<Rating, Long>, RatingRepositoryCustom {
 
     /**
      * Finds aggregated ratings between the specified start and end dates.
@@ -61,4 +61,12 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
     @Query(value = "SELECT ticket_id, rating_category_id, rating FROM ratings WHERE created_at "
             + "BETWEEN :startDate AND :endDate", nativeQuery = true)
     List<Object[]> findRatingsWithinPeriod(String startDate, String endDate);
+
+    /**
+     * Finds the most recently inserted rating. Reads the last row of the rowid index, so it is cheap on any table size.
+     *
+     * @return a list with at most one object array containing the ID and the creation time of the rating.
+     */
+    @Query(value = "SELECT id, created_at FROM ratings ORDER BY id DESC LIMIT 1", nativeQuery = true)
+    List<Object[]> findLatestRating();
 }
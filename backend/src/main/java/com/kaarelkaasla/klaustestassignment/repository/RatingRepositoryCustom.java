@@ -0,0 +1,49 @@
+package com.kaarelkaasla.klaustestassignment.repository;
+
+import com.kaarelkaasla.klaustestassignment.entity.Rating;
+
+import java.util.List;
+
+/**
+ * Custom repository fragment for queries that stream rows instead of materializing them into a list, and for batched
+ * inserts that bypass the persistence context.
+ */
+public interface RatingRepositoryCustom {
+
+    /**
+     * Streams all ratings created within the specified period to the given handler, one row at a time.
+     *
+     * @param startDate
+     *            the start date of the period in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param endDate
+     *            the end date of the period in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param handler
+     *            the handler receiving each row.
+     */
+    void scanRatingsBetween(String startDate, String endDate, RatingRowHandler handler);
+
+    /**
+     * Streams the ratings created within the specified period whose ID is at most the given one to the given handler,
+     * one row at a time. Together with the ID of the latest rating, this gives a view of the period that later inserts
+     * can be applied to without counting any rating twice.
+     *
+     * @param startDate
+     *            the start date of the period in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param endDate
+     *            the end date of the period in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param maxId
+     *            the largest rating ID to include.
+     * @param handler
+     *            the handler receiving each row.
+     */
+    void scanRatingsBetween(String startDate, String endDate, long maxId, RatingRowHandler handler);
+
+    /**
+     * Inserts ratings with multi-row statements and sets the IDs the database generated for them. Within a transaction,
+     * no other insert can interleave, so the IDs are consecutive.
+     *
+     * @param ratings
+     *            the ratings to insert, without IDs.
+     */
+    void insertRatings(List<Rating> ratings);
+}
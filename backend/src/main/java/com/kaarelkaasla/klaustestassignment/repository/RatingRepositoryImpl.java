@@ -0,0 +1,164 @@
+package com.kaarelkaasla.klaustestassignment.repository;
+
+import com.kaarelkaasla.klaustestassignment.config.DateAttributeConverter;
+import com.kaarelkaasla.klaustestassignment.entity.Rating;
+import com.kaarelkaasla.klaustestassignment.util.GrpcContextUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link RatingRepositoryCustom}. Rows are read from the result set and handed to the callback
+ * as they arrive, so memory use does not grow with the size of the scanned period. Scans stop early when the gRPC call
+ * they serve is cancelled. Inserts are sent as multi-row statements that return the IDs of their rows, and take part in
+ * the transaction of the caller.
+ */
+public class RatingRepositoryImpl implements RatingRepositoryCustom {
+
+    private static final String SCAN_RATINGS_SQL = "SELECT created_at, ticket_id, rating_category_id, rating "
+            + "FROM ratings WHERE created_at BETWEEN ? AND ?";
+
+    private static final String SCAN_RATINGS_UP_TO_ID_SQL = SCAN_RATINGS_SQL + " AND id <= ?";
+
+    /**
+     * Rows per INSERT statement. SQLite allows 32766 bound parameters per statement.
+     */
+    static final int ROWS_PER_INSERT = 500;
+
+    private static final int INSERT_COLUMNS = 6;
+
+    private static final String INSERT_RATINGS_SQL = insertSql(ROWS_PER_INSERT);
+
+    private static final DateAttributeConverter DATE_CONVERTER = new DateAttributeConverter();
+
+    /**
+     * Number of rows fetched from the driver per round trip.
+     */
+    private static final int FETCH_SIZE = 1000;
+
+    /**
+     * Number of rows between checks for cancellation of the current gRPC call.
+     */
+    private static final int CANCELLATION_CHECK_INTERVAL = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public RatingRepositoryImpl(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws io.grpc.StatusRuntimeException
+     *             If the current gRPC call is cancelled or passes its deadline during the scan.
+     */
+    @Override
+    public void scanRatingsBetween(String startDate, String endDate, RatingRowHandler handler) {
+        scan(SCAN_RATINGS_SQL, handler, startDate, endDate);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws io.grpc.StatusRuntimeException
+     *             If the current gRPC call is cancelled or passes its deadline during the scan.
+     */
+    @Override
+    public void scanRatingsBetween(String startDate, String endDate, long maxId, RatingRowHandler handler) {
+        scan(SCAN_RATINGS_UP_TO_ID_SQL, handler, startDate, endDate, maxId);
+    }
+
+    private void scan(String sql, RatingRowHandler handler, Object... args) {
+        int[] rowCount = { 0 };
+        jdbcTemplate.query(sql, rs -> {
+            if (++rowCount[0] % CANCELLATION_CHECK_INTERVAL == 0) {
+                GrpcContextUtils.throwIfCancelled();
+            }
+            handler.handle(rs.getString(1), rs.getInt(2), rs.getLong(3), rs.getInt(4));
+        }, args);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Every statement returns the IDs of its rows with {@code RETURNING id}. SQLite does not promise the order of those
+     * rows, but assigns the IDs of a multi-row insert in ascending order of its values, so the IDs are sorted before
+     * they are set.
+     */
+    @Override
+    public void insertRatings(List<Rating> ratings) {
+        if (ratings.isEmpty()) {
+            return;
+        }
+        int fullRows = ratings.size() - ratings.size() % ROWS_PER_INSERT;
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (fullRows > 0) {
+                // One statement is prepared and bound again for every group of rows.
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_RATINGS_SQL)) {
+                    for (int first = 0; first < fullRows; first += ROWS_PER_INSERT) {
+                        insertAndSetIds(insert, ratings, first, ROWS_PER_INSERT);
+                    }
+                }
+            }
+            if (fullRows < ratings.size()) {
+                try (PreparedStatement insert = connection.prepareStatement(insertSql(ratings.size() - fullRows))) {
+                    insertAndSetIds(insert, ratings, fullRows, ratings.size() - fullRows);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void insertAndSetIds(PreparedStatement insert, List<Rating> ratings, int firstRow, int rows)
+            throws SQLException {
+        bind(insert, ratings, firstRow, rows);
+        List<Long> ids = new ArrayList<>(rows);
+        try (ResultSet rs = insert.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        }
+        if (ids.size() != rows) {
+            throw new IllegalStateException("The insert of " + rows + " ratings returned " + ids.size() + " IDs");
+        }
+        Collections.sort(ids);
+        for (int i = 0; i < rows; i++) {
+            ratings.get(firstRow + i).setId(ids.get(i));
+        }
+    }
+
+    private static void bind(PreparedStatement statement, List<Rating> ratings, int firstRow, int rows)
+            throws SQLException {
+        for (int i = 0; i < rows; i++) {
+            Rating rating = ratings.get(firstRow + i);
+            int offset = i * INSERT_COLUMNS;
+            statement.setInt(offset + 1, rating.getRating());
+            statement.setInt(offset + 2, rating.getTicketId());
+            statement.setInt(offset + 3, rating.getRatingCategoryId());
+            statement.setInt(offset + 4, rating.getReviewerId());
+            statement.setInt(offset + 5, rating.getRevieweeId());
+            statement.setString(offset + 6, DATE_CONVERTER.convertToDatabaseColumn(rating.getCreatedAt()));
+        }
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ratings "
+                + "(rating, ticket_id, rating_category_id, reviewer_id, reviewee_id, created_at) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+        }
+        return sql.append(" RETURNING id").toString();
+    }
+}
@@ -0,0 +1,22 @@
+package com.kaarelkaasla.klaustestassignment.repository;
+
+/**
+ * Callback that receives individual rating rows while they are streamed from the database.
+ */
+@FunctionalInterface
+public interface RatingRowHandler {
+
+    /**
+     * Handles a single rating row.
+     *
+     * @param createdAt
+     *            the creation timestamp of the rating in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param ticketId
+     *            the identifier of the rated ticket.
+     * @param ratingCategoryId
+     *            the identifier of the rating category.
+     * @param rating
+     *            the rating value.
+     */
+    void handle(String createdAt, int ticketId, long ratingCategoryId, int rating);
+}
@@ -0,0 +1,131 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates individual ratings of one requested period into the same per-period, per-category aggregates that
+ * {@link com.kaarelkaasla.klaustestassignment.repository.RatingRepository#findAggregatedRatingsBetween} and
+ * {@link com.kaarelkaasla.klaustestassignment.repository.RatingRepository#findWeeklyAggregatedRatingsBetween} return.
+ * This lets several periods be served from one shared scan of the ratings table.
+ */
+public class AggregatedScoresAccumulator {
+
+    private final String startDate;
+    private final String endDate;
+    private final boolean weekly;
+
+    /**
+     * Aggregates keyed by period key (day or SQLite week key) and rating category ID.
+     */
+    private final Map<String, Map<Long, Group>> groups = new HashMap<>();
+
+    /**
+     * Constructs an accumulator for the given period.
+     *
+     * @param startDate
+     *            The start date of the period in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param endDate
+     *            The end date of the period in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param weekly
+     *            Whether ratings are grouped by week instead of by day.
+     */
+    public AggregatedScoresAccumulator(String startDate, String endDate, boolean weekly) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.weekly = weekly;
+    }
+
+    public String getStartDate() {
+        return startDate;
+    }
+
+    public String getEndDate() {
+        return endDate;
+    }
+
+    public boolean isWeekly() {
+        return weekly;
+    }
+
+    /**
+     * Checks whether a rating created at the given time belongs to this period, using the same text comparison as the
+     * SQL {@code BETWEEN} clause.
+     *
+     * @param createdAt
+     *            The creation timestamp of the rating.
+     *
+     * @return True if the rating falls within the period.
+     */
+    public boolean contains(String createdAt) {
+        return createdAt.compareTo(startDate) >= 0 && createdAt.compareTo(endDate) <= 0;
+    }
+
+    /**
+     * Adds a rating to the aggregates.
+     *
+     * @param day
+     *            The day of the rating in 'yyyy-MM-dd' format.
+     * @param weekKey
+     *            The SQLite week key of the day, only used for weekly periods.
+     * @param categoryId
+     *            The rating category ID.
+     * @param rating
+     *            The rating value.
+     */
+    public void add(String day, String weekKey, long categoryId, int rating) {
+        String periodKey = weekly ? weekKey : day;
+        Group group = groups.computeIfAbsent(periodKey, k -> new HashMap<>()).computeIfAbsent(categoryId,
+                k -> new Group(categoryId, day));
+        group.add(day, rating);
+    }
+
+    /**
+     * Returns the aggregates as rows of period, rating category ID, frequency and average rating, ordered by period
+     * start and category ID like the repository queries.
+     *
+     * @return The aggregated rows.
+     */
+    public List<Object[]> toAggregatedRows() {
+        List<Group> sorted = new ArrayList<>();
+        groups.values().forEach(byCategory -> sorted.addAll(byCategory.values()));
+        sorted.sort(Comparator.comparing((Group group) -> group.minDay).thenComparingLong(group -> group.categoryId));
+
+        List<Object[]> rows = new ArrayList<>(sorted.size());
+        for (Group group : sorted) {
+            String period = weekly ? group.minDay + " to " + group.maxDay : group.minDay;
+            rows.add(new Object[] { period, group.categoryId, group.count, (double) group.sum / group.count });
+        }
+        return rows;
+    }
+
+    /**
+     * Running aggregate of one period and category.
+     */
+    private static final class Group {
+        private final long categoryId;
+        private String minDay;
+        private String maxDay;
+        private int count;
+        private long sum;
+
+        Group(long categoryId, String day) {
+            this.categoryId = categoryId;
+            this.minDay = day;
+            this.maxDay = day;
+        }
+
+        void add(String day, int rating) {
+            if (day.compareTo(minDay) < 0) {
+                minDay = day;
+            } else if (day.compareTo(maxDay) > 0) {
+                maxDay = day;
+            }
+            count++;
+            sum += rating;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.AggregatedScoresRequest;
+import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresRequest;
+import com.kaarelkaasla.klaustestassignment.WeightedScoresRequest;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms the instance up for the date ranges the dashboard is opened with most, such as the last 7 days, by running the
+ * score requests of all dashboard components for them in the background. The first users after a restart then find the
+ * database pages, the category cache and the compiled code paths of those requests already warm.
+ *
+ * <p>
+ * The warm-up starts when the application is ready and runs again when the day of the ranges rolls over or new ratings
+ * are inserted, which is checked at a fixed interval. The requests call the services directly, so they are not rate
+ * limited or shed, and at most the configured number of them run at a time so that live traffic is not starved.
+ *
+ * <p>
+ * As a health indicator, it reports out of service until the first warm-up has finished, so that the readiness probe
+ * only admits traffic to a warm instance. A failed warm-up is logged and does not keep the instance out of service.
+ */
+@Slf4j
+@Component
+public class CacheWarmUp implements HealthIndicator {
+
+    private static final String ANCHOR_TODAY = "today";
+    private static final String ANCHOR_LATEST_RATING = "latest-rating";
+
+    private final boolean enabled;
+    private final List<String> rangeNames;
+    private final String anchor;
+    private final Duration checkInterval;
+    private final RatingRepository ratingRepository;
+    private final RatingServiceImpl ratingService;
+    private final TicketScoreServiceImpl ticketScoreService;
+    private final TicketWeightedScoreServiceImpl ticketWeightedScoreService;
+    private final Clock clock;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean warm;
+    private volatile LocalDate warmedAnchorDate;
+    private volatile long warmedRatingId = -1;
+    private volatile String lastResult = "not run yet";
+
+    @Autowired
+    public CacheWarmUp(@Value("${api.warm-up.enabled}") boolean enabled,
+            @Value("${api.warm-up.ranges}") List<String> rangeNames, @Value("${api.warm-up.anchor}") String anchor,
+            @Value("${api.warm-up.max-concurrency}") int maxConcurrency,
+            @Value("${api.warm-up.check-interval}") Duration checkInterval, RatingRepository ratingRepository,
+            RatingServiceImpl ratingService, TicketScoreServiceImpl ticketScoreService,
+            TicketWeightedScoreServiceImpl ticketWeightedScoreService) {
+        this(enabled, rangeNames, anchor, maxConcurrency, checkInterval, ratingRepository, ratingService,
+                ticketScoreService, ticketWeightedScoreService, Clock.systemUTC());
+    }
+
+    CacheWarmUp(boolean enabled, List<String> rangeNames, String anchor, int maxConcurrency, Duration checkInterval,
+            RatingRepository ratingRepository, RatingServiceImpl ratingService,
+            TicketScoreServiceImpl ticketScoreService, TicketWeightedScoreServiceImpl ticketWeightedScoreService,
+            Clock clock) {
+        if (!anchor.equals(ANCHOR_TODAY) && !anchor.equals(ANCHOR_LATEST_RATING)) {
+            throw new IllegalArgumentException("Unknown warm-up anchor " + anchor + ", use today or latest-rating");
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Warm-up concurrency must be at least 1");
+        }
+        // Fails at startup on an unknown range name rather than at the first warm-up.
+        ranges(rangeNames, LocalDate.EPOCH);
+        this.enabled = enabled;
+        this.rangeNames = List.copyOf(rangeNames);
+        this.anchor = anchor;
+        this.checkInterval = checkInterval;
+        this.ratingRepository = ratingRepository;
+        this.ratingService = ratingService;
+        this.ticketScoreService = ticketScoreService;
+        this.ticketWeightedScoreService = ticketWeightedScoreService;
+        this.clock = clock;
+        this.executor = Executors.newFixedThreadPool(maxConcurrency, daemonThreads("cache-warm-up-"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("cache-warm-up-scheduler-"));
+    }
+
+    /**
+     * Starts the first warm-up and the periodic checks once the application is ready to serve.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Cache warm-up is disabled");
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the warm-up threads when the application context closes.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Reports whether the instance has been warmed up.
+     *
+     * @return Up once the first warm-up has finished or if warm-up is disabled, out of service before.
+     */
+    @Override
+    public Health health() {
+        if (!enabled) {
+            return Health.up().withDetail("warmUp", "disabled").build();
+        }
+        Health.Builder health = warm ? Health.up() : Health.outOfService();
+        health.withDetail("ranges", rangeNames).withDetail("lastWarmUp", lastResult);
+        if (warmedAnchorDate != null) {
+            health.withDetail("anchorDate", warmedAnchorDate.toString());
+        }
+        return health.build();
+    }
+
+    /**
+     * Warms the ranges up if this has not been done for the current day and data yet.
+     */
+    void check() {
+        try {
+            List<Object[]> latest = ratingRepository.findLatestRating();
+            long latestRatingId = latest.isEmpty() ? 0 : ((Number) latest.get(0)[0]).longValue();
+            LocalDate anchorDate = anchor.equals(ANCHOR_LATEST_RATING) && !latest.isEmpty()
+                    ? LocalDate.parse(latest.get(0)[1].toString().substring(0, 10)) : LocalDate.now(clock);
+            if (anchorDate.equals(warmedAnchorDate) && latestRatingId == warmedRatingId) {
+                return;
+            }
+            warmUp(anchorDate);
+            warmedAnchorDate = anchorDate;
+            warmedRatingId = latestRatingId;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            lastResult = "failed: " + e.getMessage();
+            log.warn("Cache warm-up failed", e);
+        } finally {
+            warm = true;
+        }
+    }
+
+    private void warmUp(LocalDate anchorDate) throws InterruptedException, ExecutionException {
+        long startNanos = System.nanoTime();
+        List<Future<?>> calls = new ArrayList<>();
+        for (Range range : ranges(rangeNames, anchorDate)) {
+            String startDate = IsoDateTime.format(range.start().atStartOfDay().toEpochSecond(ZoneOffset.UTC));
+            String endDate = IsoDateTime
+                    .format(range.end().plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC) - 1);
+            calls.add(executor.submit(() -> ratingService.getAggregatedScores(
+                    AggregatedScoresRequest.newBuilder().setStartDate(startDate).setEndDate(endDate).build(),
+                    new CompletionObserver<>())));
+            calls.add(executor.submit(() -> ticketScoreService.getTicketCategoryScores(
+                    TicketCategoryScoresRequest.newBuilder().setStartDate(startDate).setEndDate(endDate).build(),
+                    new CompletionObserver<>())));
+            for (boolean includePreviousPeriod : new boolean[] { false, true }) {
+                calls.add(
+                        executor.submit(() -> ticketWeightedScoreService.getWeightedScores(
+                                WeightedScoresRequest.newBuilder().setStartDate(startDate).setEndDate(endDate)
+                                        .setIncludePreviousPeriod(includePreviousPeriod).build(),
+                                new CompletionObserver<>())));
+            }
+        }
+        for (Future<?> call : calls) {
+            call.get();
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        lastResult = calls.size() + " requests in " + millis + " ms";
+        log.info("Warmed up {} for {} with {} requests in {} ms", rangeNames, anchorDate, calls.size(), millis);
+    }
+
+    /**
+     * Resolves range names against the day they end on.
+     *
+     * @param names
+     *            The range names: {@code last-N-days} for the N days up to and including the anchor day, or
+     *            {@code this-month} for the month of the anchor day up to and including it.
+     * @param anchorDate
+     *            The last day of the ranges.
+     *
+     * @return The ranges, in the given order.
+     *
+     * @throws IllegalArgumentException
+     *             If a name is not a known range.
+     */
+    static List<Range> ranges(List<String> names, LocalDate anchorDate) {
+        List<Range> ranges = new ArrayList<>();
+        for (String name : names) {
+            if (name.equals("this-month")) {
+                ranges.add(new Range(name, anchorDate.withDayOfMonth(1), anchorDate));
+            } else if (name.matches("last-[1-9][0-9]{0,3}-days?")) {
+                int days = Integer.parseInt(name.substring(5, name.indexOf('-', 5)));
+                ranges.add(new Range(name, anchorDate.minusDays(days - 1), anchorDate));
+            } else {
+                throw new IllegalArgumentException(
+                        "Unknown warm-up range " + name + ", use this-month or last-N-days like last-7-days");
+            }
+        }
+        return ranges;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A date range to warm up.
+     *
+     * @param name
+     *            The configured name of the range.
+     * @param start
+     *            The first day.
+     * @param end
+     *            The last day, included.
+     */
+    record Range(String name, LocalDate start, LocalDate end) {
+    }
+
+    /**
+     * Discards the response of a warm-up request. An empty period is a valid outcome; other errors are logged, since
+     * the warm-up of the other requests is still useful.
+     */
+    private static final class CompletionObserver<T> implements StreamObserver<T> {
+
+        @Override
+        public void onNext(T value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (Status.fromThrowable(t).getCode() != Status.Code.NOT_FOUND) {
+                log.warn("Cache warm-up request failed: {}", Status.fromThrowable(t));
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}
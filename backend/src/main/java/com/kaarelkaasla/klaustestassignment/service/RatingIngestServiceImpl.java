@@ -0,0 +1,440 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.AddRatingsRequest;
+import com.kaarelkaasla.klaustestassignment.AddRatingsResponse;
+import com.kaarelkaasla.klaustestassignment.IngestSummary;
+import com.kaarelkaasla.klaustestassignment.NewRating;
+import com.kaarelkaasla.klaustestassignment.RatingIngestServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.RejectedRating;
+import com.kaarelkaasla.klaustestassignment.entity.Rating;
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
+import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * RatingIngestServiceImpl is a gRPC service implementation that stores new ratings through the
+ * {@link RatingWriteQueue}. Calls complete once their ratings are committed, without holding a thread while they wait
+ * in the queue.
+ */
+@GrpcService
+@Slf4j
+public class RatingIngestServiceImpl extends RatingIngestServiceGrpc.RatingIngestServiceImplBase {
+
+    /**
+     * The highest rating value a reviewer can give.
+     */
+    static final int MAX_RATING = 5;
+
+    /**
+     * The number of skipped ratings an ingest summary describes.
+     */
+    static final int MAX_REPORTED_REJECTIONS = 100;
+
+    /**
+     * The number of chunks of a stream that may wait in the write queue at once. Further ratings are not read from the
+     * stream until a chunk is committed, so a fast client is slowed down to the speed of the writer.
+     */
+    static final int MAX_CHUNKS_IN_FLIGHT = 2;
+
+    /**
+     * How long a stream waits for room in the write queue when other writers have filled it.
+     */
+    private static final Duration QUEUE_WAIT = Duration.ofSeconds(30);
+
+    private final RatingWriteQueue ratingWriteQueue;
+    private final RatingCategoryUtils ratingCategoryUtils;
+    private final Clock clock;
+
+    /**
+     * Runs the waits of streams for room in the write queue, so that they do not hold the gRPC callback thread of the
+     * call. A stream has at most one chunk waiting for room at a time.
+     */
+    private final Executor queueWaitExecutor;
+
+    @Autowired
+    public RatingIngestServiceImpl(RatingWriteQueue ratingWriteQueue, RatingCategoryUtils ratingCategoryUtils) {
+        this(ratingWriteQueue, ratingCategoryUtils, Clock.systemUTC(), Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "rating-ingest-queue");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    RatingIngestServiceImpl(RatingWriteQueue ratingWriteQueue, RatingCategoryUtils ratingCategoryUtils, Clock clock,
+            Executor queueWaitExecutor) {
+        this.ratingWriteQueue = ratingWriteQueue;
+        this.ratingCategoryUtils = ratingCategoryUtils;
+        this.clock = clock;
+        this.queueWaitExecutor = queueWaitExecutor;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (queueWaitExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Stores the ratings of the request in one transaction.
+     *
+     * @param request
+     *            The request containing the ratings.
+     * @param responseObserver
+     *            The response observer to send the number of stored ratings and the first ID to.
+     */
+    @Override
+    public void addRatings(AddRatingsRequest request, StreamObserver<AddRatingsResponse> responseObserver) {
+        List<Rating> ratings;
+        try {
+            ratings = toRatings(request.getRatingsList());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid ratings: {}", e.getMessage());
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+
+        CompletableFuture<List<Rating>> committed;
+        try {
+            committed = ratingWriteQueue.submit(ratings);
+        } catch (IllegalArgumentException e) {
+            log.warn("Too many ratings in one request: {}", e.getMessage());
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        } catch (RejectedExecutionException e) {
+            log.warn("Ratings rejected: {}", e.getMessage());
+            responseObserver.onError(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+
+        committed.whenComplete((stored, failure) -> {
+            if (failure != null) {
+                log.error("Failed to store {} ratings", ratings.size(), failure);
+                responseObserver.onError(Status.UNAVAILABLE.withDescription("Failed to store the ratings")
+                        .withCause(failure).asRuntimeException());
+                return;
+            }
+            AddRatingsResponse.Builder response = AddRatingsResponse.newBuilder().setCount(stored.size());
+            if (!stored.isEmpty()) {
+                response.setFirstId(stored.get(0).getId());
+            }
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+            log.info("Stored {} ratings", stored.size());
+        });
+    }
+
+    /**
+     * Stores a stream of ratings. Valid ratings are collected into chunks of the write queue's batch size and queued as
+     * they fill up; invalid ones are counted and skipped. Messages are read from the stream only as fast as chunks are
+     * committed, so memory use does not depend on the length of the stream.
+     *
+     * @param responseObserver
+     *            The response observer to send the summary to once all ratings are committed.
+     *
+     * @return The observer receiving the ratings.
+     */
+    @Override
+    public StreamObserver<NewRating> ingestRatings(StreamObserver<IngestSummary> responseObserver) {
+        ServerCallStreamObserver<IngestSummary> call = (ServerCallStreamObserver<IngestSummary>) responseObserver;
+        call.disableAutoRequest();
+        IngestStream stream = new IngestStream(call, ratingCategoryUtils.getCategoryIdToNameMap(),
+                ratingWriteQueue.getBatchSize());
+        call.request(stream.chunkSize);
+        return stream;
+    }
+
+    /**
+     * Validates the ratings of a request against the rating categories and converts them to entities.
+     *
+     * @param newRatings
+     *            The ratings of the request.
+     *
+     * @return The entities, without IDs.
+     *
+     * @throws IllegalArgumentException
+     *             If any of the ratings is invalid, see {@link #toRating(NewRating, Map, Date)}.
+     */
+    List<Rating> toRatings(List<NewRating> newRatings) {
+        Map<Long, String> categories = ratingCategoryUtils.getCategoryIdToNameMap();
+        Date now = Date.from(clock.instant());
+        List<Rating> ratings = new ArrayList<>(newRatings.size());
+        for (int i = 0; i < newRatings.size(); i++) {
+            try {
+                ratings.add(toRating(newRatings.get(i), categories, now));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Rating " + i + ": " + e.getMessage(), e);
+            }
+        }
+        return ratings;
+    }
+
+    /**
+     * Validates a new rating and converts it to an entity.
+     *
+     * @param newRating
+     *            The rating.
+     * @param categories
+     *            The known rating categories by ID.
+     * @param now
+     *            The creation time of a rating without one.
+     *
+     * @return The entity, without ID.
+     *
+     * @throws IllegalArgumentException
+     *             If the rating is out of range, has a non-positive identifier, an unknown category or an invalid
+     *             creation time.
+     */
+    static Rating toRating(NewRating newRating, Map<Long, String> categories, Date now) {
+        if (newRating.getRating() < 0 || newRating.getRating() > MAX_RATING) {
+            throw new IllegalArgumentException("rating must be between 0 and " + MAX_RATING);
+        }
+        if (newRating.getTicketId() <= 0 || newRating.getRatingCategoryId() <= 0 || newRating.getReviewerId() <= 0
+                || newRating.getRevieweeId() <= 0) {
+            throw new IllegalArgumentException("identifiers must be positive");
+        }
+        if (!categories.containsKey((long) newRating.getRatingCategoryId())) {
+            throw new IllegalArgumentException("unknown rating category " + newRating.getRatingCategoryId());
+        }
+        Date createdAt = now;
+        if (!newRating.getCreatedAt().isEmpty()) {
+            try {
+                createdAt = new Date(IsoDateTime.parseEpochSecond(newRating.getCreatedAt()) * 1000);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("invalid createdAt " + newRating.getCreatedAt(), e);
+            }
+        }
+        return Rating.builder().rating(newRating.getRating()).ticketId(newRating.getTicketId())
+                .ratingCategoryId(newRating.getRatingCategoryId()).reviewerId(newRating.getReviewerId())
+                .revieweeId(newRating.getRevieweeId()).createdAt(createdAt).build();
+    }
+
+    /**
+     * State of one IngestRatings call. Messages arrive on a gRPC thread one at a time, and chunks are committed on the
+     * writer thread, so the counters they share are guarded by the stream itself.
+     *
+     * <p>
+     * Messages are requested one chunk at a time. After a chunk is handed off, the next one is requested unless
+     * {@link #MAX_CHUNKS_IN_FLIGHT} chunks are waiting to be committed, in which case the commit of one of them
+     * requests it. Chunks are submitted to the write queue in order on the {@code queueWaitExecutor}, as waiting for
+     * room in the queue would otherwise block the gRPC thread, and with it the cancellation of the call.
+     */
+    private final class IngestStream implements StreamObserver<NewRating> {
+
+        private final ServerCallStreamObserver<IngestSummary> call;
+        private final Map<Long, String> categories;
+        private final int chunkSize;
+        private final Date now;
+        private final List<RejectedRating> rejections = new ArrayList<>();
+
+        /**
+         * Completes once the last handed-off chunk has been submitted to the write queue.
+         */
+        private CompletableFuture<Void> submitted = CompletableFuture.completedFuture(null);
+
+        private List<Rating> pending;
+        private long received;
+        private long startNanos;
+        private long acceptedRows;
+        private long rejectedRows;
+        private int chunksInFlight;
+        private boolean paused;
+        private boolean halfClosed;
+        private boolean done;
+
+        IngestStream(ServerCallStreamObserver<IngestSummary> call, Map<Long, String> categories, int chunkSize) {
+            this.call = call;
+            this.categories = categories;
+            this.chunkSize = chunkSize;
+            this.now = Date.from(clock.instant());
+            this.pending = new ArrayList<>(chunkSize);
+        }
+
+        @Override
+        public void onNext(NewRating newRating) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                if (received == 0) {
+                    startNanos = System.nanoTime();
+                }
+                long index = received++;
+                try {
+                    pending.add(toRating(newRating, categories, now));
+                } catch (IllegalArgumentException e) {
+                    rejectedRows++;
+                    if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                        rejections.add(RejectedRating.newBuilder().setIndex(index).setReason(e.getMessage()).build());
+                    }
+                }
+                if (received % chunkSize != 0) {
+                    return;
+                }
+            }
+            // The messages requested for this chunk have all arrived.
+            if (queuePending() && requestNextChunk()) {
+                call.request(chunkSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            synchronized (this) {
+                done = true;
+            }
+            log.info("Rating ingestion cancelled by the client after {} committed ratings: {}", acceptedRows(),
+                    Status.fromThrowable(t));
+        }
+
+        @Override
+        public void onCompleted() {
+            if (!queuePending()) {
+                return;
+            }
+            synchronized (this) {
+                halfClosed = true;
+            }
+            finishIfCommitted();
+        }
+
+        /**
+         * Hands the pending ratings off as a chunk, to be submitted to the write queue after the previous chunks.
+         *
+         * @return False if the stream has failed.
+         */
+        private boolean queuePending() {
+            synchronized (this) {
+                if (done) {
+                    return false;
+                }
+                if (pending.isEmpty()) {
+                    return true;
+                }
+                List<Rating> chunk = pending;
+                pending = new ArrayList<>(chunkSize);
+                chunksInFlight++;
+                submitted = submitted.thenRunAsync(() -> submit(chunk), queueWaitExecutor);
+            }
+            return true;
+        }
+
+        /**
+         * Submits a chunk to the write queue, waiting for room if other writers have filled it.
+         */
+        private void submit(List<Rating> chunk) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+            }
+            CompletableFuture<List<Rating>> committed;
+            try {
+                committed = ratingWriteQueue.submit(chunk, QUEUE_WAIT);
+            } catch (RejectedExecutionException e) {
+                fail(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()));
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(Status.CANCELLED.withDescription("Interrupted while queuing ratings"));
+                return;
+            }
+            committed.whenComplete((stored, failure) -> chunkCommitted(chunk.size(), failure));
+        }
+
+        /**
+         * Decides whether the next chunk can be requested right away.
+         */
+        private synchronized boolean requestNextChunk() {
+            if (done) {
+                return false;
+            }
+            if (chunksInFlight >= MAX_CHUNKS_IN_FLIGHT) {
+                paused = true;
+                return false;
+            }
+            return true;
+        }
+
+        private void chunkCommitted(int rows, Throwable failure) {
+            if (failure != null) {
+                log.error("Failed to store {} ingested ratings", rows, failure);
+                fail(Status.UNAVAILABLE.withDescription("Failed to store the ratings").withCause(failure));
+                return;
+            }
+            boolean resume;
+            synchronized (this) {
+                chunksInFlight--;
+                acceptedRows += rows;
+                resume = paused && !done;
+                paused = false;
+            }
+            if (resume) {
+                call.request(chunkSize);
+            }
+            finishIfCommitted();
+        }
+
+        private void finishIfCommitted() {
+            IngestSummary summary;
+            synchronized (this) {
+                if (done || !halfClosed || chunksInFlight > 0) {
+                    return;
+                }
+                done = true;
+                long elapsedNanos = received == 0 ? 0 : System.nanoTime() - startNanos;
+                summary = IngestSummary.newBuilder().setAcceptedRows(acceptedRows).setRejectedRows(rejectedRows)
+                        .setRowsPerSecond(elapsedNanos == 0 ? 0 : acceptedRows * 1e9 / elapsedNanos)
+                        .setElapsedMillis(elapsedNanos / 1_000_000).addAllRejections(rejections).build();
+            }
+            if (call.isCancelled()) {
+                return;
+            }
+            call.onNext(summary);
+            call.onCompleted();
+            log.info("Ingested {} ratings and skipped {} at {} rows/s", summary.getAcceptedRows(),
+                    summary.getRejectedRows(), Math.round(summary.getRowsPerSecond()));
+        }
+
+        /**
+         * Ends the call with an error, keeping the chunks that have already been committed.
+         */
+        private void fail(Status status) {
+            long committedRows;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                committedRows = acceptedRows;
+            }
+            if (!call.isCancelled()) {
+                call.onError(status.augmentDescription(committedRows + " ratings were committed before the failure")
+                        .asRuntimeException());
+            }
+        }
+
+        private synchronized long acceptedRows() {
+            return acceptedRows;
+        }
+    }
+}
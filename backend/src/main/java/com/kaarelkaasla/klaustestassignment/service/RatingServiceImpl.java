@@ -1,18 +1,25 @@
 package com.kaarelkaasla.klaustestassignment.service;
 
 import com.kaarelkaasla.klaustestassignment.*;
+import com.kaarelkaasla.klaustestassignment.metrics.ScoreMetrics;
+import com.kaarelkaasla.klaustestassignment.profiling.AggregationEvent;
+import com.kaarelkaasla.klaustestassignment.profiling.ProtobufBuildEvent;
+import com.kaarelkaasla.klaustestassignment.profiling.QueryEvent;
 import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
 import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import com.kaarelkaasla.klaustestassignment.util.GrpcContextUtils;
 import com.kaarelkaasla.klaustestassignment.util.MathUtils;
 import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Timer;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.springframework.beans.factory.annotation.Autowired;
 import lombok.extern.slf4j.Slf4j;
 
-import java.time.format.DateTimeParseException;
+import java.time.DateTimeException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -25,13 +32,21 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RatingServiceImpl extends RatingServiceGrpc.RatingServiceImplBase {
 
+    private static final String AGGREGATED_SCORES_METHOD = RatingServiceGrpc.getGetAggregatedScoresMethod()
+            .getBareMethodName();
+    private static final String BATCH_AGGREGATED_SCORES_METHOD = RatingServiceGrpc.getBatchGetAggregatedScoresMethod()
+            .getBareMethodName();
+
     private final RatingRepository ratingRepository;
     private final RatingCategoryUtils ratingCategoryUtils;
+    private final ScoreMetrics scoreMetrics;
 
     @Autowired
-    public RatingServiceImpl(RatingRepository ratingRepository, RatingCategoryUtils ratingCategoryUtils) {
+    public RatingServiceImpl(RatingRepository ratingRepository, RatingCategoryUtils ratingCategoryUtils,
+            ScoreMetrics scoreMetrics) {
         this.ratingRepository = ratingRepository;
         this.ratingCategoryUtils = ratingCategoryUtils;
+        this.scoreMetrics = scoreMetrics;
     }
 
     /**
@@ -46,40 +61,48 @@ public class RatingServiceImpl extends RatingServiceGrpc.RatingServiceImplBase {
     public void getAggregatedScores(AggregatedScoresRequest request,
             StreamObserver<AggregatedScoresResponse> responseObserver) {
         try {
-            String startDateStr = request.getStartDate();
-            String endDateStr = request.getEndDate();
-
-            log.info("Received a gRPC request to get aggregated scores with startDate: {} and endDate: {}",
-                    startDateStr, endDateStr);
-
-            if (!DateUtils.isValidDate(startDateStr) || !DateUtils.isValidDate(endDateStr)) {
-                log.warn("Invalid date format for startDate: {} or endDate: {}", startDateStr, endDateStr);
-                responseObserver
-                        .onError(Status.INVALID_ARGUMENT.withDescription("Invalid date format").asRuntimeException());
-                return;
-            }
-
-            long daysBetween;
+            long startEpochSecond;
+            long endEpochSecond;
             try {
-                daysBetween = DateUtils.getDaysBetween(startDateStr, endDateStr);
-            } catch (DateTimeParseException e) {
-                log.warn("DateTimeParseException while calculating days between dates: {}", e.getMessage());
+                startEpochSecond = getStartEpochSecond(request);
+                endEpochSecond = getEndEpochSecond(request);
+            } catch (DateTimeException e) {
+                log.warn("Invalid date for startDate: {} or endDate: {}: {}", request.getStartDate(),
+                        request.getEndDate(), e.getMessage());
                 responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid date format").withCause(e)
                         .asRuntimeException());
                 return;
             }
 
+            String startDateStr = DateUtils.formatEpochSecond(startEpochSecond);
+            String endDateStr = DateUtils.formatEpochSecond(endEpochSecond);
+
+            log.info("Received a gRPC request to get aggregated scores with startDate: {} and endDate: {}",
+                    startDateStr, endDateStr);
+
+            long rangeSeconds = endEpochSecond - startEpochSecond;
+            Timer.Sample querySample = scoreMetrics.start();
+            QueryEvent queryEvent = new QueryEvent();
+            queryEvent.begin();
             List<Object[]> aggregatedRatingsRaw;
             try {
-                aggregatedRatingsRaw = (daysBetween > 31 || DateUtils.isDifferentMonthOrYear(startDateStr, endDateStr))
+                aggregatedRatingsRaw = isWeeklyPeriod(startEpochSecond, endEpochSecond)
                         ? ratingRepository.findWeeklyAggregatedRatingsBetween(startDateStr, endDateStr)
                         : ratingRepository.findAggregatedRatingsBetween(startDateStr, endDateStr);
             } catch (Exception e) {
+                if (GrpcContextUtils.isCancelled()) {
+                    log.info("Request cancelled while querying the database: {}", e.getMessage());
+                    responseObserver.onError(GrpcContextUtils.cancelledException());
+                    return;
+                }
                 log.error("Database query failed", e);
                 responseObserver.onError(Status.INTERNAL.withDescription("Failed to retrieve data from database")
                         .withCause(e).asRuntimeException());
                 return;
             }
+            queryEvent.finish(AGGREGATED_SCORES_METHOD, aggregatedRatingsRaw.size(), rangeSeconds);
+            scoreMetrics.recordQuery(querySample, AGGREGATED_SCORES_METHOD);
+            scoreMetrics.rowsFetched(AGGREGATED_SCORES_METHOD, aggregatedRatingsRaw.size());
 
             // Check if the response is empty
             if (aggregatedRatingsRaw.isEmpty()) {
@@ -89,12 +112,21 @@ public class RatingServiceImpl extends RatingServiceGrpc.RatingServiceImplBase {
                 return;
             }
 
+            Timer.Sample aggregationSample = scoreMetrics.start();
             Map<Long, String> categoryIdToNameMap = ratingCategoryUtils.getCategoryIdToNameMap();
 
+            AggregationEvent aggregationEvent = new AggregationEvent();
+            aggregationEvent.begin();
             Map<String, CategoryRatingResult> categoryResultsMap = processAggregatedRatings(aggregatedRatingsRaw,
                     categoryIdToNameMap, endDateStr);
+            aggregationEvent.finish(AGGREGATED_SCORES_METHOD, aggregatedRatingsRaw.size(), rangeSeconds);
 
+            ProtobufBuildEvent buildEvent = new ProtobufBuildEvent();
+            buildEvent.begin();
             AggregatedScoresResponse response = buildAggregatedScoresResponse(categoryResultsMap);
+            buildEvent.finish(AGGREGATED_SCORES_METHOD, categoryResultsMap.size(), rangeSeconds);
+            scoreMetrics.recordAggregation(aggregationSample, AGGREGATED_SCORES_METHOD);
+            scoreMetrics.categoriesResolved(AGGREGATED_SCORES_METHOD, aggregatedRatingsRaw.size());
 
             responseObserver.onNext(response);
             responseObserver.onCompleted();
@@ -106,6 +138,173 @@ public class RatingServiceImpl extends RatingServiceGrpc.RatingServiceImplBase {
         }
     }
 
+    /**
+     * Aggregates category rating scores for several time periods with a single scan of the ratings table. The scan
+     * covers the union of all periods and each rating is added to every period that contains it.
+     *
+     * @param request
+     *            The request containing the periods to aggregate.
+     * @param responseObserver
+     *            The response observer to send one aggregated scores response per period.
+     */
+    @Override
+    public void batchGetAggregatedScores(BatchAggregatedScoresRequest request,
+            StreamObserver<BatchAggregatedScoresResponse> responseObserver) {
+        try {
+            log.info("Received a gRPC request to get aggregated scores for {} periods", request.getRangesCount());
+
+            if (request.getRangesCount() == 0) {
+                log.warn("No periods provided for batch aggregated scores");
+                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("At least one period is required")
+                        .asRuntimeException());
+                return;
+            }
+
+            List<AggregatedScoresAccumulator> accumulators = new ArrayList<>(request.getRangesCount());
+            long unionStartEpochSecond = Long.MAX_VALUE;
+            long unionEndEpochSecond = Long.MIN_VALUE;
+            for (AggregatedScoresRequest range : request.getRangesList()) {
+                long startEpochSecond;
+                long endEpochSecond;
+                try {
+                    startEpochSecond = getStartEpochSecond(range);
+                    endEpochSecond = getEndEpochSecond(range);
+                } catch (DateTimeException e) {
+                    log.warn("Invalid date for startDate: {} or endDate: {}: {}", range.getStartDate(),
+                            range.getEndDate(), e.getMessage());
+                    responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid date format").withCause(e)
+                            .asRuntimeException());
+                    return;
+                }
+
+                accumulators.add(new AggregatedScoresAccumulator(DateUtils.formatEpochSecond(startEpochSecond),
+                        DateUtils.formatEpochSecond(endEpochSecond), isWeeklyPeriod(startEpochSecond, endEpochSecond)));
+                unionStartEpochSecond = Math.min(unionStartEpochSecond, startEpochSecond);
+                unionEndEpochSecond = Math.max(unionEndEpochSecond, endEpochSecond);
+            }
+
+            boolean anyWeekly = accumulators.stream().anyMatch(AggregatedScoresAccumulator::isWeekly);
+            Map<String, String> weekKeysByDay = new HashMap<>();
+            long[] rowCount = { 0 };
+            long rangeSeconds = unionEndEpochSecond - unionStartEpochSecond;
+            Timer.Sample querySample = scoreMetrics.start();
+            QueryEvent queryEvent = new QueryEvent();
+            queryEvent.begin();
+            try {
+                ratingRepository.scanRatingsBetween(DateUtils.formatEpochSecond(unionStartEpochSecond),
+                        DateUtils.formatEpochSecond(unionEndEpochSecond), (createdAt, ticketId, categoryId, rating) -> {
+                            rowCount[0]++;
+                            String day = createdAt.substring(0, 10);
+                            String weekKey = anyWeekly ? weekKeysByDay.computeIfAbsent(day, DateUtils::getWeekOfYearKey)
+                                    : null;
+                            for (AggregatedScoresAccumulator accumulator : accumulators) {
+                                if (accumulator.contains(createdAt)) {
+                                    accumulator.add(day, weekKey, categoryId, rating);
+                                }
+                            }
+                        });
+            } catch (Exception e) {
+                if (GrpcContextUtils.isCancelled()) {
+                    log.info("Request cancelled while querying the database: {}", e.getMessage());
+                    responseObserver.onError(GrpcContextUtils.cancelledException());
+                    return;
+                }
+                log.error("Database query failed", e);
+                responseObserver.onError(Status.INTERNAL.withDescription("Failed to retrieve data from database")
+                        .withCause(e).asRuntimeException());
+                return;
+            }
+            // Rows are accumulated while they are read, so the database phase of a batch includes the accumulation.
+            queryEvent.finish(BATCH_AGGREGATED_SCORES_METHOD, rowCount[0], rangeSeconds);
+            scoreMetrics.recordQuery(querySample, BATCH_AGGREGATED_SCORES_METHOD);
+            scoreMetrics.rowsFetched(BATCH_AGGREGATED_SCORES_METHOD, rowCount[0]);
+
+            Timer.Sample aggregationSample = scoreMetrics.start();
+            AggregationEvent aggregationEvent = new AggregationEvent();
+            aggregationEvent.begin();
+            long categoriesResolved = 0;
+            Map<Long, String> categoryIdToNameMap = ratingCategoryUtils.getCategoryIdToNameMap();
+            BatchAggregatedScoresResponse.Builder responseBuilder = BatchAggregatedScoresResponse.newBuilder();
+            for (AggregatedScoresAccumulator accumulator : accumulators) {
+                List<Object[]> aggregatedRatingsRaw = accumulator.toAggregatedRows();
+                if (aggregatedRatingsRaw.isEmpty()) {
+                    log.info("No aggregated scores found for period {} to {}", accumulator.getStartDate(),
+                            accumulator.getEndDate());
+                    responseBuilder.addResponses(AggregatedScoresResponse.getDefaultInstance());
+                    continue;
+                }
+                categoriesResolved += aggregatedRatingsRaw.size();
+                Map<String, CategoryRatingResult> categoryResultsMap = processAggregatedRatings(aggregatedRatingsRaw,
+                        categoryIdToNameMap, accumulator.getEndDate());
+                responseBuilder.addResponses(buildAggregatedScoresResponse(categoryResultsMap));
+            }
+
+            aggregationEvent.finish(BATCH_AGGREGATED_SCORES_METHOD, categoriesResolved, rangeSeconds);
+
+            ProtobufBuildEvent buildEvent = new ProtobufBuildEvent();
+            buildEvent.begin();
+            BatchAggregatedScoresResponse response = responseBuilder.build();
+            buildEvent.finish(BATCH_AGGREGATED_SCORES_METHOD, response.getResponsesCount(), rangeSeconds);
+            scoreMetrics.recordAggregation(aggregationSample, BATCH_AGGREGATED_SCORES_METHOD);
+            scoreMetrics.categoriesResolved(BATCH_AGGREGATED_SCORES_METHOD, categoriesResolved);
+
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+            log.info("Successfully sent batch aggregated scores response");
+        } catch (Exception e) {
+            log.error("Unexpected error occurred", e);
+            responseObserver.onError(
+                    Status.INTERNAL.withDescription("Internal server error").withCause(e).asRuntimeException());
+        }
+    }
+
+    /**
+     * Returns the start of the requested period, preferring the typed timestamp over the date string.
+     *
+     * @param request
+     *            The request containing the period.
+     *
+     * @return The start of the period in seconds since the epoch.
+     *
+     * @throws DateTimeException
+     *             If the start of the period is invalid.
+     */
+    private long getStartEpochSecond(AggregatedScoresRequest request) {
+        return request.hasStartTime() ? DateUtils.toEpochSecond(request.getStartTime())
+                : DateUtils.toEpochSecond(request.getStartDate());
+    }
+
+    /**
+     * Returns the end of the requested period, preferring the typed timestamp over the date string.
+     *
+     * @param request
+     *            The request containing the period.
+     *
+     * @return The end of the period in seconds since the epoch.
+     *
+     * @throws DateTimeException
+     *             If the end of the period is invalid.
+     */
+    private long getEndEpochSecond(AggregatedScoresRequest request) {
+        return request.hasEndTime() ? DateUtils.toEpochSecond(request.getEndTime())
+                : DateUtils.toEpochSecond(request.getEndDate());
+    }
+
+    /**
+     * Determines whether a period is aggregated by week rather than by day.
+     *
+     * @param startEpochSecond
+     *            The start of the period in seconds since the epoch.
+     * @param endEpochSecond
+     *            The end of the period in seconds since the epoch.
+     *
+     * @return True if the period spans more than 31 days or crosses a month boundary.
+     */
+    private boolean isWeeklyPeriod(long startEpochSecond, long endEpochSecond) {
+        return DateUtils.getDaysBetween(startEpochSecond, endEpochSecond) > 31
+                || DateUtils.isDifferentMonthOrYear(startEpochSecond, endEpochSecond);
+    }
+
     /**
      * Processes raw aggregated ratings into a map of category rating results.
      *
@@ -0,0 +1,330 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.entity.Rating;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded queue of rating writes, drained by a single writer thread that commits them to the database in groups.
+ *
+ * <p>
+ * SQLite allows one writer at a time and syncs the file on every commit, so inserting from request threads would make
+ * them wait for each other and pay a commit each. Instead, writes are queued, and the writer takes as many of them as
+ * arrive within the linger time, up to the batch size, and inserts them in one transaction. A write is never split
+ * across transactions, so a batch may exceed the batch size by less than one write.
+ *
+ * <p>
+ * The queue holds at most the configured number of ratings. Writes that do not fit are rejected right away, so that
+ * callers are pushed back instead of piling up in memory. After each commit, a {@link RatingsCommittedEvent} is
+ * published on the writer thread before the futures of the writes complete. If a transaction fails, its writes are
+ * retried one per transaction, so that one bad write does not fail the others it was grouped with.
+ */
+@Slf4j
+@Component
+public class RatingWriteQueue {
+
+    /**
+     * How long the writer waits for the first write of a batch before checking whether it should stop.
+     */
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /**
+     * How long closing the queue waits for the writer to commit the queued writes.
+     */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final int capacity;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final RatingRepository ratingRepository;
+    private final TransactionOperations transactions;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Semaphore freeRows;
+    private final DistributionSummary batchRows;
+    private final Timer commitTimer;
+    private final Counter rejected;
+    private final Thread writer;
+
+    /**
+     * Held for reading while a write is queued and for writing while the queue is closed, so that no write can be
+     * queued after the writer has drained the queue.
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public RatingWriteQueue(@Value("${api.ingest.queue-capacity}") int capacity,
+            @Value("${api.ingest.batch-size}") int batchSize, @Value("${api.ingest.linger}") Duration linger,
+            RatingRepository ratingRepository, PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this(capacity, batchSize, linger, ratingRepository, new TransactionTemplate(transactionManager), eventPublisher,
+                meterRegistry);
+    }
+
+    RatingWriteQueue(int capacity, int batchSize, Duration linger, RatingRepository ratingRepository,
+            TransactionOperations transactions, ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Ingest queue capacity and batch size must be at least 1");
+        }
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.lingerNanos = linger.toNanos();
+        this.ratingRepository = ratingRepository;
+        this.transactions = transactions;
+        this.eventPublisher = eventPublisher;
+        this.freeRows = new Semaphore(capacity);
+        Gauge.builder("ratings.ingest.queue.rows", () -> capacity - freeRows.availablePermits())
+                .description("Ratings waiting to be committed").register(meterRegistry);
+        this.batchRows = DistributionSummary.builder("ratings.ingest.batch.rows")
+                .description("Ratings committed per transaction").register(meterRegistry);
+        this.commitTimer = Timer.builder("ratings.ingest.commit.duration")
+                .description("Duration of the transactions that insert queued ratings").register(meterRegistry);
+        this.rejected = Counter.builder("ratings.ingest.rejected")
+                .description("Writes rejected because the queue was full").register(meterRegistry);
+        this.writer = new Thread(this::run, "rating-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Returns the number of ratings the writer aims to commit per transaction, limited by the queue capacity. Callers
+     * splitting a large load into writes should use writes of this size.
+     *
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return Math.min(batchSize, capacity);
+    }
+
+    /**
+     * Queues ratings to be inserted together, rejecting them right away if the queue is full.
+     *
+     * @param ratings
+     *            The ratings to insert, without IDs. Their IDs are set once they are committed.
+     *
+     * @return A future that completes with the given ratings once they are committed, or exceptionally if the
+     *         transaction fails.
+     *
+     * @throws IllegalArgumentException
+     *             If there are more ratings than the queue can hold.
+     * @throws RejectedExecutionException
+     *             If the queue is full or closed.
+     */
+    public CompletableFuture<List<Rating>> submit(List<Rating> ratings) {
+        if (ratings.isEmpty()) {
+            return CompletableFuture.completedFuture(ratings);
+        }
+        checkSubmittable(ratings);
+        if (!freeRows.tryAcquire(ratings.size())) {
+            throw rejection();
+        }
+        return enqueue(ratings);
+    }
+
+    /**
+     * Queues ratings to be inserted together, waiting for room in the queue if it is full.
+     *
+     * @param ratings
+     *            The ratings to insert, without IDs. Their IDs are set once they are committed.
+     * @param maxWait
+     *            How long to wait for room in the queue.
+     *
+     * @return A future that completes with the given ratings once they are committed, or exceptionally if the
+     *         transaction fails.
+     *
+     * @throws IllegalArgumentException
+     *             If there are more ratings than the queue can hold.
+     * @throws RejectedExecutionException
+     *             If the queue is still full after the wait, or closed.
+     * @throws InterruptedException
+     *             If the calling thread is interrupted while waiting.
+     */
+    public CompletableFuture<List<Rating>> submit(List<Rating> ratings, Duration maxWait) throws InterruptedException {
+        if (ratings.isEmpty()) {
+            return CompletableFuture.completedFuture(ratings);
+        }
+        checkSubmittable(ratings);
+        if (!freeRows.tryAcquire(ratings.size(), maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+            throw rejection();
+        }
+        return enqueue(ratings);
+    }
+
+    private void checkSubmittable(List<Rating> ratings) {
+        if (ratings.size() > capacity) {
+            throw new IllegalArgumentException(
+                    "A write of " + ratings.size() + " ratings exceeds the queue capacity of " + capacity);
+        }
+        if (!running) {
+            throw new RejectedExecutionException("The rating write queue is closed");
+        }
+    }
+
+    private RejectedExecutionException rejection() {
+        rejected.increment();
+        return new RejectedExecutionException("The rating write queue is full");
+    }
+
+    private CompletableFuture<List<Rating>> enqueue(List<Rating> ratings) {
+        PendingWrite write = new PendingWrite(ratings, new CompletableFuture<>());
+        closeLock.readLock().lock();
+        try {
+            if (!running) {
+                freeRows.release(ratings.size());
+                throw new RejectedExecutionException("The rating write queue is closed");
+            }
+            queue.add(write);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return write.future();
+    }
+
+    /**
+     * Stops accepting writes and waits for the writer to commit the queued ones. Writes still queued after the timeout
+     * are failed.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        closeLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        writer.join(SHUTDOWN_TIMEOUT.toMillis());
+        if (writer.isAlive()) {
+            log.warn("The rating writer did not finish within {}", SHUTDOWN_TIMEOUT);
+            writer.interrupt();
+        }
+        List<PendingWrite> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (PendingWrite write : remaining) {
+            write.future().completeExceptionally(new RejectedExecutionException("The rating write queue is closed"));
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    commit(collectBatch(first));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Collects the writes that arrive within the linger time after the first one, until the batch size is reached.
+     */
+    private List<PendingWrite> collectBatch(PendingWrite first) throws InterruptedException {
+        List<PendingWrite> batch = new ArrayList<>();
+        batch.add(first);
+        int rows = first.ratings().size();
+        long deadline = System.nanoTime() + lingerNanos;
+        while (rows < batchSize) {
+            PendingWrite next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            rows += next.ratings().size();
+        }
+        return batch;
+    }
+
+    /**
+     * Commits a batch of writes in one transaction. If the transaction fails, each write of the batch is retried in a
+     * transaction of its own, and only the writes that fail again are failed.
+     */
+    private void commit(List<PendingWrite> batch) {
+        List<Rating> ratings = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            ratings.addAll(write.ratings());
+        }
+        RuntimeException failure = insert(ratings);
+        if (failure != null) {
+            if (batch.size() > 1) {
+                log.warn("Failed to commit {} ratings from {} writes, retrying the writes one by one: {}",
+                        ratings.size(), batch.size(), failure.getMessage());
+                for (PendingWrite write : batch) {
+                    commit(List.of(write));
+                }
+                return;
+            }
+            log.error("Failed to commit a write of {} ratings", ratings.size(), failure);
+            freeRows.release(ratings.size());
+            batch.get(0).future().completeExceptionally(failure);
+            return;
+        }
+        freeRows.release(ratings.size());
+        batchRows.record(ratings.size());
+        try {
+            eventPublisher.publishEvent(new RatingsCommittedEvent(List.copyOf(ratings)));
+        } catch (RuntimeException e) {
+            log.error("A listener failed to handle {} committed ratings", ratings.size(), e);
+        }
+        for (PendingWrite write : batch) {
+            write.future().complete(write.ratings());
+        }
+    }
+
+    /**
+     * Inserts ratings in one transaction.
+     *
+     * @return Null if the transaction was committed, otherwise the exception it failed with.
+     */
+    private RuntimeException insert(List<Rating> ratings) {
+        Timer.Sample sample = Timer.start();
+        try {
+            transactions.executeWithoutResult(status -> ratingRepository.insertRatings(ratings));
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        } finally {
+            sample.stop(commitTimer);
+        }
+    }
+
+    /**
+     * Ratings waiting to be committed together, and the future completed when they are.
+     *
+     * @param ratings
+     *            The ratings to insert.
+     * @param future
+     *            The future of the write.
+     */
+    private record PendingWrite(List<Rating> ratings, CompletableFuture<List<Rating>> future) {
+    }
+}
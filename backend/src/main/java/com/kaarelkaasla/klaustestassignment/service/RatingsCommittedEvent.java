@@ -0,0 +1,16 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.entity.Rating;
+
+import java.util.List;
+
+/**
+ * Application event published by {@link RatingWriteQueue} after a transaction of new ratings has been committed. It is
+ * delivered synchronously on the writer thread, so listeners that keep aggregates up to date should be quick and hand
+ * longer work off to another thread; the next batch is not written until they return.
+ *
+ * @param ratings
+ *            The committed ratings with their IDs, in insertion order. Must not be modified.
+ */
+public record RatingsCommittedEvent(List<Rating> ratings) {
+}
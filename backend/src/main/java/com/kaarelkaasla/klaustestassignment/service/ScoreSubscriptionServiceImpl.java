@@ -0,0 +1,115 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.ScoreSubscriptionServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.ScoreUpdate;
+import com.kaarelkaasla.klaustestassignment.SubscribeScoresRequest;
+import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import com.kaarelkaasla.klaustestassignment.util.GrpcContextUtils;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.DateTimeException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ScoreSubscriptionServiceImpl is a gRPC service implementation that streams the scores of a period to subscribers as
+ * new ratings are committed. The scores are kept by {@link ScoreSubscriptions}, which only learns of ratings committed
+ * through the {@link RatingWriteQueue} of this server.
+ */
+@GrpcService
+@Slf4j
+public class ScoreSubscriptionServiceImpl extends ScoreSubscriptionServiceGrpc.ScoreSubscriptionServiceImplBase {
+
+    private final ScoreSubscriptions scoreSubscriptions;
+    private final long maxDays;
+
+    @Autowired
+    public ScoreSubscriptionServiceImpl(ScoreSubscriptions scoreSubscriptions,
+            @Value("${api.score-subscriptions.max-days}") long maxDays) {
+        this.scoreSubscriptions = scoreSubscriptions;
+        this.maxDays = maxDays;
+    }
+
+    /**
+     * Subscribes to the scores of a period. The stream stays open until the client cancels it.
+     *
+     * @param request
+     *            The request containing the start and end times of the period.
+     * @param responseObserver
+     *            The response observer to send the score updates to.
+     */
+    @Override
+    public void subscribeScores(SubscribeScoresRequest request, StreamObserver<ScoreUpdate> responseObserver) {
+        ServerCallStreamObserver<ScoreUpdate> call = (ServerCallStreamObserver<ScoreUpdate>) responseObserver;
+        AtomicReference<ScoreSubscriptions.Subscription> subscription = new AtomicReference<>();
+        call.setOnReadyHandler(() -> {
+            ScoreSubscriptions.Subscription current = subscription.get();
+            if (current != null) {
+                current.onReady();
+            }
+        });
+        call.setOnCancelHandler(() -> {
+            ScoreSubscriptions.Subscription current = subscription.get();
+            if (current != null) {
+                current.cancel();
+            }
+        });
+
+        if (!request.hasStartTime() || !request.hasEndTime()) {
+            call.onError(Status.INVALID_ARGUMENT.withDescription("Start time and end time are required")
+                    .asRuntimeException());
+            return;
+        }
+        long startEpochSecond;
+        long endEpochSecond;
+        try {
+            startEpochSecond = DateUtils.toEpochSecond(request.getStartTime());
+            endEpochSecond = DateUtils.toEpochSecond(request.getEndTime());
+        } catch (DateTimeException e) {
+            log.warn("Invalid period: {}", e.getMessage());
+            call.onError(Status.INVALID_ARGUMENT.withDescription("Start time or end time is out of range").withCause(e)
+                    .asRuntimeException());
+            return;
+        }
+        if (startEpochSecond > endEpochSecond) {
+            call.onError(Status.INVALID_ARGUMENT.withDescription("Start date must not be after end date")
+                    .asRuntimeException());
+            return;
+        }
+        if (DateUtils.getDaysBetween(startEpochSecond, endEpochSecond) >= maxDays) {
+            call.onError(Status.INVALID_ARGUMENT.withDescription("Period must not be longer than " + maxDays + " days")
+                    .asRuntimeException());
+            return;
+        }
+
+        String startDate = DateUtils.formatEpochSecond(startEpochSecond);
+        String endDate = DateUtils.formatEpochSecond(endEpochSecond);
+        log.info("Received a gRPC request to subscribe to scores with startDate: {} and endDate: {}", startDate,
+                endDate);
+        try {
+            subscription.set(scoreSubscriptions.subscribe(startDate, endDate, call));
+        } catch (RejectedExecutionException e) {
+            log.warn("Score subscription rejected: {}", e.getMessage());
+            call.onError(Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        } catch (Exception e) {
+            if (GrpcContextUtils.isCancelled()) {
+                log.info("Score subscription cancelled: {}", e.getMessage());
+                call.onError(GrpcContextUtils.cancelledException());
+                return;
+            }
+            log.error("Unexpected error occurred", e);
+            call.onError(Status.INTERNAL.withDescription("Internal server error").withCause(e).asRuntimeException());
+            return;
+        }
+        if (call.isCancelled()) {
+            subscription.get().cancel();
+        }
+    }
+}
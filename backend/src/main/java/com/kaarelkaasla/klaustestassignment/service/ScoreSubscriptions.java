@@ -0,0 +1,459 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.CategoryDayScore;
+import com.kaarelkaasla.klaustestassignment.PeriodScore;
+import com.kaarelkaasla.klaustestassignment.ScoreUpdate;
+import com.kaarelkaasla.klaustestassignment.entity.Rating;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
+import com.kaarelkaasla.klaustestassignment.service.ScoreWindowAccumulator.CategoryDay;
+import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscriptions to the scores of periods, kept up to date from the ratings committed by {@link RatingWriteQueue}.
+ *
+ * <p>
+ * Subscribers of the same period share a {@link ScoreWindowAccumulator}. It is filled by one scan of the period when
+ * the first subscriber arrives and then updated from each {@link RatingsCommittedEvent}, so no query runs while ratings
+ * arrive. The scan only reads ratings up to the latest ID at its start; committed ratings with higher IDs are held back
+ * until it ends and then added, so none is missed or counted twice. The accumulator is dropped with the last subscriber
+ * of its period.
+ *
+ * <p>
+ * The writer thread only records which category days changed for each subscriber. Updates are built and sent on a
+ * separate thread, at most one per subscriber per minimum interval and only while the subscriber's stream is ready.
+ * Changes that arrive in the meantime are merged, so a slow subscriber receives fewer, larger updates instead of a
+ * growing backlog, and never holds up the writer.
+ */
+@Slf4j
+@Component
+public class ScoreSubscriptions {
+
+    private static final String UNKNOWN_CATEGORY = "Unknown Category";
+
+    private final RatingRepository ratingRepository;
+    private final RatingCategoryUtils ratingCategoryUtils;
+    private final int maxSubscribers;
+    private final long minIntervalNanos;
+    private final ScheduledExecutorService sender;
+    private final Counter updatesSent;
+    private final DistributionSummary commitsPerUpdate;
+
+    /**
+     * Windows by period, guarded by this object.
+     */
+    private final Map<List<String>, Window> windows = new HashMap<>();
+
+    /**
+     * Number of subscribers, including those waiting for their window to be filled. Guarded by this object.
+     */
+    private int subscriberCount;
+
+    @Autowired
+    public ScoreSubscriptions(RatingRepository ratingRepository, RatingCategoryUtils ratingCategoryUtils,
+            @Value("${api.score-subscriptions.max-subscribers}") int maxSubscribers,
+            @Value("${api.score-subscriptions.min-interval}") Duration minInterval, MeterRegistry meterRegistry) {
+        this.ratingRepository = ratingRepository;
+        this.ratingCategoryUtils = ratingCategoryUtils;
+        this.maxSubscribers = maxSubscribers;
+        this.minIntervalNanos = minInterval.toNanos();
+        this.sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "score-subscriptions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("scores.subscriptions.active", this, ScoreSubscriptions::getSubscriberCount)
+                .description("Open score subscriptions").register(meterRegistry);
+        Gauge.builder("scores.subscriptions.windows", this, ScoreSubscriptions::getWindowCount)
+                .description("Periods with open score subscriptions").register(meterRegistry);
+        this.updatesSent = Counter.builder("scores.subscriptions.updates")
+                .description("Score updates sent to subscribers").register(meterRegistry);
+        this.commitsPerUpdate = DistributionSummary.builder("scores.subscriptions.merged.commits")
+                .description("Committed batches of ratings merged into one score update").register(meterRegistry);
+    }
+
+    /**
+     * Subscribes a stream to the scores of a period. Fills the period's accumulator first if this is its first
+     * subscriber, or waits for another subscriber to fill it, so this may take as long as a scan of the period. The
+     * first update, a snapshot of all scores, is sent once the stream is ready.
+     *
+     * @param startDate
+     *            The start date of the period in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param endDate
+     *            The end date of the period in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param observer
+     *            The stream to send the updates to. Its ready and cancel handlers must call
+     *            {@link Subscription#onReady()} and {@link Subscription#cancel()}.
+     *
+     * @return The subscription.
+     *
+     * @throws RejectedExecutionException
+     *             If the maximum number of subscribers is reached.
+     */
+    public Subscription subscribe(String startDate, String endDate, ServerCallStreamObserver<ScoreUpdate> observer) {
+        List<String> key = List.of(startDate, endDate);
+        Window window;
+        boolean fill;
+        synchronized (this) {
+            if (subscriberCount >= maxSubscribers) {
+                throw new RejectedExecutionException("Too many score subscriptions, at most " + maxSubscribers);
+            }
+            window = windows.get(key);
+            fill = window == null;
+            if (fill) {
+                window = new Window(key);
+                windows.put(key, window);
+            }
+            window.references++;
+            subscriberCount++;
+        }
+        try {
+            if (fill) {
+                window.fill();
+            } else {
+                window.filled.join();
+            }
+        } catch (RuntimeException e) {
+            release(window);
+            throw e instanceof CompletionException && e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        Subscriber subscriber = new Subscriber(window, observer);
+        synchronized (window) {
+            window.subscribers.add(subscriber);
+            subscriber.scheduleLocked();
+        }
+        return subscriber;
+    }
+
+    /**
+     * Applies committed ratings to the accumulators of all subscribed periods. Runs on the writer thread.
+     *
+     * @param event
+     *            The event with the committed ratings.
+     */
+    @EventListener
+    public void onRatingsCommitted(RatingsCommittedEvent event) {
+        List<Window> current;
+        synchronized (this) {
+            if (windows.isEmpty()) {
+                return;
+            }
+            current = List.copyOf(windows.values());
+        }
+        List<CommittedRating> ratings = new ArrayList<>(event.ratings().size());
+        for (Rating rating : event.ratings()) {
+            String createdAt = DateUtils.formatEpochSecond(Math.floorDiv(rating.getCreatedAt().getTime(), 1000));
+            ratings.add(new CommittedRating(rating.getId(), createdAt, rating.getTicketId(),
+                    rating.getRatingCategoryId(), rating.getRating()));
+        }
+        for (Window window : current) {
+            window.apply(ratings);
+        }
+    }
+
+    /**
+     * Ends all subscriptions with UNAVAILABLE, so that clients reconnect to another instance.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        List<Window> current;
+        synchronized (this) {
+            current = List.copyOf(windows.values());
+        }
+        for (Window window : current) {
+            List<Subscriber> subscribers;
+            synchronized (window) {
+                subscribers = List.copyOf(window.subscribers);
+            }
+            for (Subscriber subscriber : subscribers) {
+                sender.execute(subscriber::closeUnavailable);
+            }
+        }
+        sender.shutdown();
+        sender.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    synchronized int getSubscriberCount() {
+        return subscriberCount;
+    }
+
+    synchronized int getWindowCount() {
+        return windows.size();
+    }
+
+    private synchronized void release(Window window) {
+        subscriberCount--;
+        if (--window.references == 0) {
+            windows.remove(window.key, window);
+        }
+    }
+
+    /**
+     * A subscription returned by {@link #subscribe}.
+     */
+    public interface Subscription {
+
+        /**
+         * Sends the pending update, if any. Called when the stream becomes ready.
+         */
+        void onReady();
+
+        /**
+         * Ends the subscription. Called when the stream is cancelled.
+         */
+        void cancel();
+    }
+
+    /**
+     * A committed rating with its creation time in the format of the ratings table.
+     */
+    private record CommittedRating(long id, String createdAt, int ticketId, long categoryId, int rating) {
+    }
+
+    /**
+     * The accumulator and subscribers of one period. The accumulator, the pending ratings and the subscribers, along
+     * with the pending changes of each subscriber, are guarded by this object.
+     */
+    private final class Window {
+        private final List<String> key;
+        private final CompletableFuture<Void> filled = new CompletableFuture<>();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private Map<Long, String> categoryNames;
+        private ScoreWindowAccumulator accumulator;
+        private List<CommittedRating> pending = new ArrayList<>();
+        private int references;
+
+        Window(List<String> key) {
+            this.key = key;
+        }
+
+        String startDate() {
+            return key.get(0);
+        }
+
+        String endDate() {
+            return key.get(1);
+        }
+
+        /**
+         * Scans the period into a new accumulator, then adds the ratings committed since the scan started.
+         */
+        void fill() {
+            try {
+                Map<Long, String> names = ratingCategoryUtils.getCategoryIdToNameMap();
+                ScoreWindowAccumulator filling = new ScoreWindowAccumulator(startDate(), endDate(),
+                        ratingCategoryUtils.getCategoryWeights());
+                List<Object[]> latest = ratingRepository.findLatestRating();
+                long maxId = latest.isEmpty() ? 0 : ((Number) latest.get(0)[0]).longValue();
+                ratingRepository.scanRatingsBetween(startDate(), endDate(), maxId, filling::add);
+                synchronized (this) {
+                    for (CommittedRating rating : pending) {
+                        if (rating.id() > maxId) {
+                            filling.add(rating.createdAt(), rating.ticketId(), rating.categoryId(), rating.rating());
+                        }
+                    }
+                    pending = null;
+                    categoryNames = names;
+                    accumulator = filling;
+                }
+                log.info("Filled the score window {} to {} with {} category days", startDate(), endDate(),
+                        filling.getCategoryDays().size());
+                filled.complete(null);
+            } catch (RuntimeException e) {
+                synchronized (ScoreSubscriptions.this) {
+                    windows.remove(key, this);
+                }
+                synchronized (this) {
+                    pending = null;
+                }
+                filled.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        synchronized void apply(List<CommittedRating> ratings) {
+            if (accumulator == null) {
+                if (pending != null) {
+                    for (CommittedRating rating : ratings) {
+                        if (rating.createdAt().compareTo(startDate()) >= 0
+                                && rating.createdAt().compareTo(endDate()) <= 0) {
+                            pending.add(rating);
+                        }
+                    }
+                }
+                return;
+            }
+            Set<CategoryDay> changed = new HashSet<>();
+            for (CommittedRating rating : ratings) {
+                CategoryDay day = accumulator.add(rating.createdAt(), rating.ticketId(), rating.categoryId(),
+                        rating.rating());
+                if (day != null) {
+                    changed.add(day);
+                }
+            }
+            if (changed.isEmpty()) {
+                return;
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.changes.addAll(changed);
+                subscriber.mergedCommits++;
+                subscriber.scheduleLocked();
+            }
+        }
+    }
+
+    /**
+     * One subscribed stream. Its pending changes are guarded by its window, and updates are only sent from the sender
+     * thread.
+     */
+    private final class Subscriber implements Subscription {
+        private final Window window;
+        private final ServerCallStreamObserver<ScoreUpdate> observer;
+        private final Set<CategoryDay> changes = new HashSet<>();
+        private boolean snapshot = true;
+        private int mergedCommits;
+        private long sequence;
+        private long nextSendNanos = System.nanoTime();
+        private boolean scheduled;
+        private boolean closed;
+
+        Subscriber(Window window, ServerCallStreamObserver<ScoreUpdate> observer) {
+            this.window = window;
+            this.observer = observer;
+        }
+
+        @Override
+        public void onReady() {
+            synchronized (window) {
+                scheduleLocked();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            close();
+        }
+
+        /**
+         * Removes the subscriber from its window.
+         *
+         * @return False if it was already removed.
+         */
+        private boolean close() {
+            synchronized (window) {
+                if (closed) {
+                    return false;
+                }
+                closed = true;
+                window.subscribers.remove(this);
+            }
+            release(window);
+            return true;
+        }
+
+        /**
+         * Schedules sending the pending update, unless it is already scheduled or nothing is pending.
+         */
+        void scheduleLocked() {
+            if (scheduled || closed || (!snapshot && changes.isEmpty())) {
+                return;
+            }
+            scheduled = true;
+            long delayNanos = Math.max(0, nextSendNanos - System.nanoTime());
+            try {
+                sender.schedule(this::send, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                scheduled = false;
+            }
+        }
+
+        /**
+         * Sends the changes pending since the previous update. If the stream is not ready, they stay pending and are
+         * sent when it is.
+         */
+        private void send() {
+            ScoreUpdate update;
+            int merged;
+            synchronized (window) {
+                scheduled = false;
+                if (closed || (!snapshot && changes.isEmpty()) || !observer.isReady()) {
+                    return;
+                }
+                update = buildUpdateLocked();
+                merged = mergedCommits;
+                snapshot = false;
+                changes.clear();
+                mergedCommits = 0;
+                nextSendNanos = System.nanoTime() + minIntervalNanos;
+            }
+            try {
+                observer.onNext(update);
+                updatesSent.increment();
+                if (merged > 0) {
+                    commitsPerUpdate.record(merged);
+                }
+            } catch (RuntimeException e) {
+                log.debug("Failed to send a score update: {}", e.getMessage());
+                cancel();
+            }
+        }
+
+        private ScoreUpdate buildUpdateLocked() {
+            ScoreWindowAccumulator accumulator = window.accumulator;
+            ScoreUpdate.Builder update = ScoreUpdate.newBuilder().setSnapshot(snapshot).setSequence(++sequence)
+                    .setMergedCommits(mergedCommits).setRatedTickets(accumulator.getRatedTickets());
+            for (CategoryDay day : new TreeSet<>(snapshot ? accumulator.getCategoryDays() : changes)) {
+                update.addScores(CategoryDayScore.newBuilder()
+                        .setCategoryName(window.categoryNames.getOrDefault(day.categoryId(), UNKNOWN_CATEGORY))
+                        .setDay(day.day()).setFrequency(accumulator.getFrequency(day))
+                        .setAverageScorePercentage(accumulator.getAverageScorePercentage(day)));
+            }
+            PeriodScore.Builder weightedScore = PeriodScore.newBuilder()
+                    .setPeriod(window.startDate() + " to " + window.endDate())
+                    .setAverageScorePercentage(accumulator.getWeightedScorePercentage());
+            if (accumulator.getRatedTickets() == 0) {
+                weightedScore.setMessage("N/A");
+            }
+            return update.setWeightedScore(weightedScore).build();
+        }
+
+        void closeUnavailable() {
+            if (!close()) {
+                return;
+            }
+            try {
+                observer.onError(
+                        Status.UNAVAILABLE.withDescription("The server is shutting down").asRuntimeException());
+            } catch (RuntimeException e) {
+                log.debug("Failed to close a score subscription: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.util.MathUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the scores of one period up to date as ratings are added to it, without querying the ratings again. It holds
+ * the frequency and rating sum of each category on each day, like
+ * {@link com.kaarelkaasla.klaustestassignment.repository.RatingRepository#findAggregatedRatingsBetween}, and the
+ * ratings of each ticket, from which the weighted score of the period is computed the way
+ * {@link TicketWeightedScoreServiceImpl} does: the weighted score of each ticket, rounded to two decimals, averaged
+ * over the tickets. When a ticket has several ratings in one category, the last one added counts.
+ *
+ * <p>
+ * Ticket scores are summed in basis points, so adding and replacing ratings does not accumulate rounding errors. Not
+ * thread-safe.
+ */
+public class ScoreWindowAccumulator {
+
+    private final String startDate;
+    private final String endDate;
+
+    /**
+     * IDs of the weighted categories, in slot order.
+     */
+    private final long[] categoryIds;
+    private final double[] weights;
+
+    private final Map<CategoryDay, Aggregate> aggregates = new HashMap<>();
+
+    /**
+     * Ratings of each ticket by category slot, stored as the rating plus one so that zero means no rating.
+     */
+    private final Map<Integer, byte[]> ticketRatings = new HashMap<>();
+
+    private long ticketScoreSum;
+
+    /**
+     * Constructs an accumulator for the given period.
+     *
+     * @param startDate
+     *            The start date of the period in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param endDate
+     *            The end date of the period in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param categoryWeights
+     *            The weights of the rating categories by ID. Ratings of other categories are aggregated by day but not
+     *            weighted.
+     */
+    public ScoreWindowAccumulator(String startDate, String endDate, Map<Long, Double> categoryWeights) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.categoryIds = new long[categoryWeights.size()];
+        this.weights = new double[categoryWeights.size()];
+        int slot = 0;
+        for (Map.Entry<Long, Double> entry : categoryWeights.entrySet()) {
+            categoryIds[slot] = entry.getKey();
+            weights[slot] = entry.getValue();
+            slot++;
+        }
+    }
+
+    public String getStartDate() {
+        return startDate;
+    }
+
+    public String getEndDate() {
+        return endDate;
+    }
+
+    /**
+     * Checks whether a rating created at the given time belongs to this period, using the same text comparison as the
+     * SQL {@code BETWEEN} clause.
+     *
+     * @param createdAt
+     *            The creation timestamp of the rating in 'yyyy-MM-ddTHH:mm:ss' format.
+     *
+     * @return True if the rating falls within the period.
+     */
+    public boolean contains(String createdAt) {
+        return createdAt.compareTo(startDate) >= 0 && createdAt.compareTo(endDate) <= 0;
+    }
+
+    /**
+     * Adds a rating to the scores if it belongs to this period.
+     *
+     * @param createdAt
+     *            The creation timestamp of the rating in 'yyyy-MM-ddTHH:mm:ss' format.
+     * @param ticketId
+     *            The identifier of the rated ticket.
+     * @param categoryId
+     *            The rating category ID.
+     * @param rating
+     *            The rating value, from 0 to 5.
+     *
+     * @return The category and day whose score changed, or null if the rating is outside the period.
+     */
+    public CategoryDay add(String createdAt, int ticketId, long categoryId, int rating) {
+        if (!contains(createdAt)) {
+            return null;
+        }
+        CategoryDay key = new CategoryDay(createdAt.substring(0, 10), categoryId);
+        aggregates.computeIfAbsent(key, k -> new Aggregate()).add(rating);
+
+        int slot = slotOf(categoryId);
+        if (slot >= 0) {
+            byte[] ratings = ticketRatings.get(ticketId);
+            if (ratings == null) {
+                ratings = new byte[categoryIds.length];
+                ticketRatings.put(ticketId, ratings);
+            } else {
+                ticketScoreSum -= ticketScore(ratings);
+            }
+            ratings[slot] = (byte) (rating + 1);
+            ticketScoreSum += ticketScore(ratings);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the categories and days that have ratings.
+     *
+     * @return A view of the keys; must not be modified.
+     */
+    public Set<CategoryDay> getCategoryDays() {
+        return aggregates.keySet();
+    }
+
+    /**
+     * Returns the number of ratings of a category on a day.
+     *
+     * @param key
+     *            The category and day.
+     *
+     * @return The number of ratings, or 0 if there are none.
+     */
+    public int getFrequency(CategoryDay key) {
+        Aggregate aggregate = aggregates.get(key);
+        return aggregate == null ? 0 : aggregate.count;
+    }
+
+    /**
+     * Returns the average rating of a category on a day as a percentage of the maximum rating, rounded to two decimals.
+     *
+     * @param key
+     *            The category and day.
+     *
+     * @return The average score percentage, or 0 if there are no ratings.
+     */
+    public double getAverageScorePercentage(CategoryDay key) {
+        Aggregate aggregate = aggregates.get(key);
+        if (aggregate == null) {
+            return 0;
+        }
+        return MathUtils.roundToTwoDecimalPlaces(((double) aggregate.sum / aggregate.count / 5) * 100);
+    }
+
+    /**
+     * Returns the number of tickets with ratings in weighted categories.
+     *
+     * @return The number of tickets.
+     */
+    public int getRatedTickets() {
+        return ticketRatings.size();
+    }
+
+    /**
+     * Returns the average of the weighted scores of the tickets, rounded to two decimals.
+     *
+     * @return The weighted score percentage, or 0 if no ticket has ratings.
+     */
+    public double getWeightedScorePercentage() {
+        if (ticketRatings.isEmpty()) {
+            return 0;
+        }
+        return MathUtils.roundToTwoDecimalPlaces((double) ticketScoreSum / ticketRatings.size() / 100);
+    }
+
+    private int slotOf(long categoryId) {
+        for (int slot = 0; slot < categoryIds.length; slot++) {
+            if (categoryIds[slot] == categoryId) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the weighted score of a ticket in basis points, like {@link ScoreServiceImpl#calculateScore}.
+     */
+    private int ticketScore(byte[] ratings) {
+        double totalWeight = 0;
+        double weightedSum = 0;
+        for (int slot = 0; slot < ratings.length; slot++) {
+            if (ratings[slot] != 0) {
+                totalWeight += weights[slot];
+                weightedSum += (ratings[slot] - 1) * weights[slot];
+            }
+        }
+        if (totalWeight == 0) {
+            return 0;
+        }
+        return MathUtils.toBasisPoints((weightedSum / (totalWeight * 5)) * 100);
+    }
+
+    /**
+     * A rating category on a day. Ordered by day, then category ID.
+     *
+     * @param day
+     *            The day in 'yyyy-MM-dd' format.
+     * @param categoryId
+     *            The rating category ID.
+     */
+    public record CategoryDay(String day, long categoryId) implements Comparable<CategoryDay> {
+
+        @Override
+        public int compareTo(CategoryDay other) {
+            int byDay = day.compareTo(other.day);
+            return byDay != 0 ? byDay : Long.compare(categoryId, other.categoryId);
+        }
+    }
+
+    /**
+     * Running aggregate of one category on one day.
+     */
+    private static final class Aggregate {
+        private int count;
+        private long sum;
+
+        void add(int rating) {
+            count++;
+            sum += rating;
+        }
+    }
+}
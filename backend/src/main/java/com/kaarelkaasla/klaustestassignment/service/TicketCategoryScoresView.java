@@ -0,0 +1,82 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.kaarelkaasla.klaustestassignment.TicketCategoryScore;
+import com.kaarelkaasla.klaustestassignment.profiling.JsonPrintEvent;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * REST representation of ticket category scores that Jackson streams straight to the response body.
+ * <p>
+ * Each ticket is written as {@code {"TicketId": 1, "CategoryScores": {"Spelling": 80.0, ...}}}, with every known
+ * category present and missing categories reported as {@code 0.0}. Rows are written directly from the protobuf
+ * messages, so no intermediate map is built per ticket.
+ */
+public class TicketCategoryScoresView implements JsonSerializable {
+
+    private final List<TicketCategoryScore> ticketCategoryScores;
+    private final List<String> categoryNames;
+
+    /**
+     * Constructs a view over the given scores.
+     *
+     * @param ticketCategoryScores
+     *            The ticket category scores, sorted by ticket ID.
+     * @param categoryNames
+     *            The names of all rating categories, in output order.
+     */
+    public TicketCategoryScoresView(List<TicketCategoryScore> ticketCategoryScores, List<String> categoryNames) {
+        this.ticketCategoryScores = ticketCategoryScores;
+        this.categoryNames = categoryNames;
+    }
+
+    /**
+     * Returns the number of tickets in the view.
+     *
+     * @return The number of tickets.
+     */
+    public int size() {
+        return ticketCategoryScores.size();
+    }
+
+    /**
+     * Writes the tickets as a JSON array.
+     *
+     * @param gen
+     *            The JsonGenerator used to write the JSON.
+     * @param serializers
+     *            The SerializerProvider.
+     *
+     * @throws IOException
+     *             If an I/O error occurs during serialization.
+     */
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        JsonPrintEvent event = new JsonPrintEvent();
+        event.begin();
+        gen.writeStartArray();
+        for (TicketCategoryScore score : ticketCategoryScores) {
+            gen.writeStartObject();
+            gen.writeNumberField("TicketId", score.getTicketId());
+            gen.writeObjectFieldStart("CategoryScores");
+            for (String categoryName : categoryNames) {
+                gen.writeNumberField(categoryName, score.getCategoryScoresOrDefault(categoryName, 0.0));
+            }
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        event.finish(TicketCategoryScoresView.class.getSimpleName(), ticketCategoryScores.size());
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        serialize(gen, serializers);
+    }
+}
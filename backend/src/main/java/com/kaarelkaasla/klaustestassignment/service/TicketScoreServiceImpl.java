@@ -1,22 +1,29 @@
 package com.kaarelkaasla.klaustestassignment.service;
 
+import com.kaarelkaasla.klaustestassignment.DenseTicketCategoryScore;
+import com.kaarelkaasla.klaustestassignment.DenseTicketCategoryScoresResponse;
 import com.kaarelkaasla.klaustestassignment.TicketCategoryScore;
 import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresRequest;
 import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresResponse;
 import com.kaarelkaasla.klaustestassignment.TicketScoreServiceGrpc;
-import com.kaarelkaasla.klaustestassignment.entity.RatingCategory;
-import com.kaarelkaasla.klaustestassignment.repository.RatingCategoryRepository;
+import com.kaarelkaasla.klaustestassignment.metrics.ScoreMetrics;
+import com.kaarelkaasla.klaustestassignment.profiling.AggregationEvent;
+import com.kaarelkaasla.klaustestassignment.profiling.ProtobufBuildEvent;
+import com.kaarelkaasla.klaustestassignment.profiling.QueryEvent;
+import com.kaarelkaasla.klaustestassignment.profiling.RowDecodeEvent;
 import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
 import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import com.kaarelkaasla.klaustestassignment.util.GrpcContextUtils;
 import com.kaarelkaasla.klaustestassignment.util.MathUtils;
 import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.text.ParseException;
+import java.time.DateTimeException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -28,18 +35,26 @@ import java.util.stream.Collectors;
 @Slf4j
 public class TicketScoreServiceImpl extends TicketScoreServiceGrpc.TicketScoreServiceImplBase {
 
+    /**
+     * Dense score value for a category that has no ratings on a ticket.
+     */
+    public static final int MISSING_SCORE = -1;
+
+    private static final String TICKET_CATEGORY_SCORES_METHOD = TicketScoreServiceGrpc
+            .getGetTicketCategoryScoresMethod().getBareMethodName();
+    private static final String DENSE_TICKET_CATEGORY_SCORES_METHOD = TicketScoreServiceGrpc
+            .getGetDenseTicketCategoryScoresMethod().getBareMethodName();
+
     private final RatingRepository ratingRepository;
-    private final RatingCategoryRepository ratingCategoryRepository;
-    private final DateUtils dateUtils;
     private final RatingCategoryUtils ratingCategoryUtils;
+    private final ScoreMetrics scoreMetrics;
 
     @Autowired
-    public TicketScoreServiceImpl(RatingRepository ratingRepository, RatingCategoryRepository ratingCategoryRepository,
-            DateUtils dateUtils, RatingCategoryUtils ratingCategoryUtils) {
+    public TicketScoreServiceImpl(RatingRepository ratingRepository, RatingCategoryUtils ratingCategoryUtils,
+            ScoreMetrics scoreMetrics) {
         this.ratingRepository = ratingRepository;
-        this.ratingCategoryRepository = ratingCategoryRepository;
-        this.dateUtils = dateUtils;
         this.ratingCategoryUtils = ratingCategoryUtils;
+        this.scoreMetrics = scoreMetrics;
     }
 
     /**
@@ -54,51 +69,39 @@ public class TicketScoreServiceImpl extends TicketScoreServiceGrpc.TicketScoreSe
     public void getTicketCategoryScores(TicketCategoryScoresRequest request,
             StreamObserver<TicketCategoryScoresResponse> responseObserver) {
         try {
-            String startDateStr = request.getStartDate();
-            String endDateStr = request.getEndDate();
-
-            log.info("Received a gRPC request to get ticket category scores with startDate: {} and endDate: {}",
-                    startDateStr, endDateStr);
-
-            Date startDate;
-            Date endDate;
-            try {
-                startDate = dateUtils.parseDate(startDateStr);
-                endDate = dateUtils.parseDate(endDateStr);
-            } catch (ParseException e) {
-                log.warn("Error parsing dates: {}", e.getMessage());
-                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid date format").withCause(e)
-                        .asRuntimeException());
-                return;
-            }
+            log.info("Received a gRPC request to get ticket category scores");
 
-            List<Object[]> ratingsRaw;
-            try {
-                ratingsRaw = ratingRepository.findRatingsWithinPeriod(dateUtils.formatDate(startDate),
-                        dateUtils.formatDate(endDate));
-            } catch (Exception e) {
-                log.error("Database query failed", e);
-                responseObserver.onError(Status.INTERNAL.withDescription("Failed to retrieve data from database")
-                        .withCause(e).asRuntimeException());
-                return;
-            }
-
-            if (ratingsRaw.isEmpty()) {
-                log.info("No ratings found for the specified period.");
-                responseObserver.onError(Status.NOT_FOUND.withDescription("No ratings found for the specified period.")
-                        .asRuntimeException());
+            PeriodRatings periodRatings = findRatingsWithinPeriod(request, responseObserver,
+                    TICKET_CATEGORY_SCORES_METHOD);
+            if (periodRatings == null) {
                 return;
             }
+            List<Object[]> ratingsRaw = periodRatings.rows();
+            long rangeSeconds = periodRatings.rangeSeconds();
 
+            Timer.Sample aggregationSample = scoreMetrics.start();
             Map<Long, String> categoryIdToNameMap = ratingCategoryUtils.getCategoryIdToNameMap();
+            RowDecodeEvent decodeEvent = new RowDecodeEvent();
+            decodeEvent.begin();
             Map<Integer, Map<String, List<Integer>>> ticketCategoryRatingsMap = getTicketCategoryRatingsMap(ratingsRaw,
                     categoryIdToNameMap);
+            decodeEvent.finish(TICKET_CATEGORY_SCORES_METHOD, ratingsRaw.size(), rangeSeconds);
 
+            AggregationEvent aggregationEvent = new AggregationEvent();
+            aggregationEvent.begin();
             List<TicketCategoryScore> ticketCategoryScoresList = buildTicketCategoryScoresList(
                     ticketCategoryRatingsMap);
+            aggregationEvent.finish(TICKET_CATEGORY_SCORES_METHOD, ticketCategoryRatingsMap.size(), rangeSeconds);
 
+            ProtobufBuildEvent buildEvent = new ProtobufBuildEvent();
+            buildEvent.begin();
             TicketCategoryScoresResponse response = TicketCategoryScoresResponse.newBuilder()
                     .addAllTicketCategoryScores(ticketCategoryScoresList).build();
+            buildEvent.finish(TICKET_CATEGORY_SCORES_METHOD, ticketCategoryScoresList.size(), rangeSeconds);
+            scoreMetrics.recordAggregation(aggregationSample, TICKET_CATEGORY_SCORES_METHOD);
+            scoreMetrics.ticketsScored(TICKET_CATEGORY_SCORES_METHOD, ticketCategoryScoresList.size());
+            scoreMetrics.categoriesResolved(TICKET_CATEGORY_SCORES_METHOD,
+                    ticketCategoryScoresList.stream().mapToLong(TicketCategoryScore::getCategoryScoresCount).sum());
 
             responseObserver.onNext(response);
             responseObserver.onCompleted();
@@ -111,7 +114,135 @@ public class TicketScoreServiceImpl extends TicketScoreServiceGrpc.TicketScoreSe
     }
 
     /**
-     * Creates a map of ticket IDs to category ratings from raw rating data.
+     * Retrieves ticket category scores for a specified period in a dictionary-encoded form: category names are sent
+     * once, and each ticket carries a packed array of scores in basis points aligned to those names.
+     *
+     * @param request
+     *            The request containing start and end dates.
+     * @param responseObserver
+     *            The response observer to send the dense ticket category scores.
+     */
+    @Override
+    public void getDenseTicketCategoryScores(TicketCategoryScoresRequest request,
+            StreamObserver<DenseTicketCategoryScoresResponse> responseObserver) {
+        try {
+            log.info("Received a gRPC request to get dense ticket category scores");
+
+            PeriodRatings periodRatings = findRatingsWithinPeriod(request, responseObserver,
+                    DENSE_TICKET_CATEGORY_SCORES_METHOD);
+            if (periodRatings == null) {
+                return;
+            }
+
+            Timer.Sample aggregationSample = scoreMetrics.start();
+            // Rows are decoded, summed and written into the response in a single pass.
+            AggregationEvent aggregationEvent = new AggregationEvent();
+            aggregationEvent.begin();
+            DenseTicketCategoryScoresResponse response = buildDenseTicketCategoryScores(periodRatings.rows(),
+                    ratingCategoryUtils.getCategoryIdToNameMap());
+            aggregationEvent.finish(DENSE_TICKET_CATEGORY_SCORES_METHOD, periodRatings.rows().size(),
+                    periodRatings.rangeSeconds());
+            scoreMetrics.recordAggregation(aggregationSample, DENSE_TICKET_CATEGORY_SCORES_METHOD);
+            scoreMetrics.ticketsScored(DENSE_TICKET_CATEGORY_SCORES_METHOD, response.getTicketCategoryScoresCount());
+            scoreMetrics.categoriesResolved(DENSE_TICKET_CATEGORY_SCORES_METHOD,
+                    response.getTicketCategoryScoresList().stream()
+                            .mapToLong(score -> score.getScoresList().stream().filter(v -> v != MISSING_SCORE).count())
+                            .sum());
+
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+            log.info("Successfully sent dense ticket category scores response");
+        } catch (Exception e) {
+            log.error("Unexpected error occurred", e);
+            responseObserver.onError(
+                    Status.INTERNAL.withDescription("Internal server error").withCause(e).asRuntimeException());
+        }
+    }
+
+    /**
+     * Resolves the requested period and retrieves the ratings within it. The typed timestamps take precedence over the
+     * date strings. If the period is invalid, the query fails or no ratings are found, the error is sent to the
+     * response observer and null is returned.
+     *
+     * @param request
+     *            The request containing the period.
+     * @param responseObserver
+     *            The response observer to send errors to.
+     * @param method
+     *            The gRPC method name the query phase is recorded under.
+     *
+     * @return The raw rating data with the width of the period, or null if an error was sent.
+     */
+    private PeriodRatings findRatingsWithinPeriod(TicketCategoryScoresRequest request,
+            StreamObserver<?> responseObserver, String method) {
+        long startEpochSecond;
+        long endEpochSecond;
+        try {
+            startEpochSecond = request.hasStartTime() ? DateUtils.toEpochSecond(request.getStartTime())
+                    : DateUtils.toEpochSecond(request.getStartDate());
+            endEpochSecond = request.hasEndTime() ? DateUtils.toEpochSecond(request.getEndTime())
+                    : DateUtils.toEpochSecond(request.getEndDate());
+        } catch (DateTimeException e) {
+            log.warn("Error parsing dates: {}", e.getMessage());
+            responseObserver.onError(
+                    Status.INVALID_ARGUMENT.withDescription("Invalid date format").withCause(e).asRuntimeException());
+            return null;
+        }
+        String startDateStr = DateUtils.formatEpochSecond(startEpochSecond);
+        String endDateStr = DateUtils.formatEpochSecond(endEpochSecond);
+        long rangeSeconds = endEpochSecond - startEpochSecond;
+
+        log.info("Retrieving ratings with startDate: {} and endDate: {}", startDateStr, endDateStr);
+
+        Timer.Sample querySample = scoreMetrics.start();
+        QueryEvent queryEvent = new QueryEvent();
+        queryEvent.begin();
+        List<Object[]> ratingsRaw;
+        try {
+            ratingsRaw = ratingRepository.findRatingsWithinPeriod(startDateStr, endDateStr);
+        } catch (Exception e) {
+            if (GrpcContextUtils.isCancelled()) {
+                log.info("Request cancelled while querying the database: {}", e.getMessage());
+                responseObserver.onError(GrpcContextUtils.cancelledException());
+                return null;
+            }
+            log.error("Database query failed", e);
+            responseObserver.onError(Status.INTERNAL.withDescription("Failed to retrieve data from database")
+                    .withCause(e).asRuntimeException());
+            return null;
+        }
+        queryEvent.finish(method, ratingsRaw.size(), rangeSeconds);
+        scoreMetrics.recordQuery(querySample, method);
+        scoreMetrics.rowsFetched(method, ratingsRaw.size());
+
+        if (GrpcContextUtils.isCancelled()) {
+            log.info("Request cancelled before aggregating {} ratings", ratingsRaw.size());
+            responseObserver.onError(GrpcContextUtils.cancelledException());
+            return null;
+        }
+
+        if (ratingsRaw.isEmpty()) {
+            log.info("No ratings found for the specified period.");
+            responseObserver.onError(Status.NOT_FOUND.withDescription("No ratings found for the specified period.")
+                    .asRuntimeException());
+            return null;
+        }
+        return new PeriodRatings(ratingsRaw, rangeSeconds);
+    }
+
+    /**
+     * Ratings retrieved for a requested period.
+     *
+     * @param rows
+     *            The raw rating data.
+     * @param rangeSeconds
+     *            The width of the period in seconds.
+     */
+    private record PeriodRatings(List<Object[]> rows, long rangeSeconds) {
+    }
+
+    /**
+     * Creates a map of ticket IDs to category ratings from raw rating data. Tickets are kept in ascending ID order.
      *
      * @param ratingsRaw
      *            The raw rating data.
@@ -123,11 +254,64 @@ public class TicketScoreServiceImpl extends TicketScoreServiceGrpc.TicketScoreSe
     private Map<Integer, Map<String, List<Integer>>> getTicketCategoryRatingsMap(List<Object[]> ratingsRaw,
             Map<Long, String> categoryIdToNameMap) {
         return ratingsRaw.stream()
-                .collect(Collectors.groupingBy(row -> ((Number) row[0]).intValue(),
+                .collect(Collectors.groupingBy(row -> ((Number) row[0]).intValue(), TreeMap::new,
                         Collectors.groupingBy(row -> categoryIdToNameMap.get(((Number) row[1]).longValue()),
                                 Collectors.mapping(row -> ((Number) row[2]).intValue(), Collectors.toList()))));
     }
 
+    /**
+     * Builds the dense ticket category scores response. Category names are listed once in cache order and every ticket
+     * carries one score per category at the same position, expressed in basis points of a percent (8050 for 80.50%).
+     * Categories without ratings on a ticket are reported as {@link #MISSING_SCORE}. Rating sums and counts are
+     * accumulated in a single primitive array per ticket, so no per-ticket maps or boxed lists are built.
+     *
+     * @param ratingsRaw
+     *            The raw rating data.
+     * @param categoryIdToNameMap
+     *            A map from category IDs to category names.
+     *
+     * @return The dense ticket category scores response, ordered by ticket ID.
+     */
+    DenseTicketCategoryScoresResponse buildDenseTicketCategoryScores(List<Object[]> ratingsRaw,
+            Map<Long, String> categoryIdToNameMap) {
+        int categoryCount = categoryIdToNameMap.size();
+        Map<Long, Integer> categoryIndexes = new HashMap<>();
+        DenseTicketCategoryScoresResponse.Builder response = DenseTicketCategoryScoresResponse.newBuilder();
+        for (Map.Entry<Long, String> category : categoryIdToNameMap.entrySet()) {
+            categoryIndexes.put(category.getKey(), categoryIndexes.size());
+            response.addCategoryNames(category.getValue());
+        }
+
+        // Per ticket: rating sums in [0, categoryCount) and rating counts in [categoryCount, 2 * categoryCount).
+        Map<Integer, int[]> totalsByTicket = new TreeMap<>();
+        int unknownCategoryRows = 0;
+        for (Object[] row : ratingsRaw) {
+            Integer index = categoryIndexes.get(((Number) row[1]).longValue());
+            if (index == null) {
+                unknownCategoryRows++;
+                continue;
+            }
+            int[] totals = totalsByTicket.computeIfAbsent(((Number) row[0]).intValue(),
+                    ticketId -> new int[2 * categoryCount]);
+            totals[index] += ((Number) row[2]).intValue();
+            totals[categoryCount + index]++;
+        }
+        if (unknownCategoryRows > 0) {
+            log.warn("Skipped {} ratings with unknown rating categories", unknownCategoryRows);
+        }
+
+        for (Map.Entry<Integer, int[]> entry : totalsByTicket.entrySet()) {
+            int[] totals = entry.getValue();
+            DenseTicketCategoryScore.Builder score = DenseTicketCategoryScore.newBuilder().setTicketId(entry.getKey());
+            for (int i = 0; i < categoryCount; i++) {
+                int count = totals[categoryCount + i];
+                score.addScores(count == 0 ? MISSING_SCORE : MathUtils.toBasisPoints((double) totals[i] / count * 20));
+            }
+            response.addTicketCategoryScores(score);
+        }
+        return response.build();
+    }
+
     /**
      * Builds a list of TicketCategoryScore objects from the given ticket category ratings map.
      *
@@ -149,28 +333,29 @@ public class TicketScoreServiceImpl extends TicketScoreServiceGrpc.TicketScoreSe
     }
 
     /**
-     * Processes the TicketCategoryScoresResponse into a list of maps for each ticket.
+     * Prepares the TicketCategoryScoresResponse for streaming to REST clients. Tickets are ordered by ticket ID and
+     * every cached rating category is included for each ticket.
      *
      * @param response
      *            The response containing ticket category scores.
      *
-     * @return A list of maps containing ticket data.
+     * @return A view that writes the ticket data as a JSON array.
      */
-    public List<Map<String, Object>> processTicketCategoryScores(TicketCategoryScoresResponse response) {
-        List<String> allCategoryNames = ratingCategoryRepository.findAll().stream().map(RatingCategory::getName)
-                .toList();
-
-        return response.getTicketCategoryScoresList().stream()
-                .sorted(Comparator.comparingInt(TicketCategoryScore::getTicketId)).map(score -> {
-                    Map<String, Object> ticketData = new HashMap<>();
-                    ticketData.put("TicketId", score.getTicketId());
-
-                    Map<String, Double> categoryScores = allCategoryNames.stream()
-                            .collect(Collectors.toMap(category -> category,
-                                    category -> score.getCategoryScoresMap().getOrDefault(category, 0.0)));
-
-                    ticketData.put("CategoryScores", categoryScores);
-                    return ticketData;
-                }).toList();
+    public TicketCategoryScoresView processTicketCategoryScores(TicketCategoryScoresResponse response) {
+        List<TicketCategoryScore> scores = response.getTicketCategoryScoresList();
+        if (!isSortedByTicketId(scores)) {
+            scores = new ArrayList<>(scores);
+            scores.sort(Comparator.comparingInt(TicketCategoryScore::getTicketId));
+        }
+        return new TicketCategoryScoresView(scores, ratingCategoryUtils.getCategoryNames());
+    }
+
+    private static boolean isSortedByTicketId(List<TicketCategoryScore> scores) {
+        for (int i = 1; i < scores.size(); i++) {
+            if (scores.get(i - 1).getTicketId() > scores.get(i).getTicketId()) {
+                return false;
+            }
+        }
+        return true;
     }
 }
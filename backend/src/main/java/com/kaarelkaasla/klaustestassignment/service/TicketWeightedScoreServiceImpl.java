@@ -2,21 +2,24 @@ package com.kaarelkaasla.klaustestassignment.service;
 
 import com.kaarelkaasla.klaustestassignment.*;
 import com.kaarelkaasla.klaustestassignment.entity.RatingCategory;
+import com.kaarelkaasla.klaustestassignment.metrics.ScoreMetrics;
+import com.kaarelkaasla.klaustestassignment.profiling.ProtobufBuildEvent;
+import com.kaarelkaasla.klaustestassignment.profiling.QueryEvent;
+import com.kaarelkaasla.klaustestassignment.profiling.RowDecodeEvent;
+import com.kaarelkaasla.klaustestassignment.profiling.ScoreCalculationEvent;
 import com.kaarelkaasla.klaustestassignment.repository.RatingCategoryRepository;
 import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
 import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import com.kaarelkaasla.klaustestassignment.util.GrpcContextUtils;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.text.DecimalFormat;
-import java.text.ParseException;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
-import java.util.Date;
+import java.time.DateTimeException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,18 +34,21 @@ import java.util.stream.Collectors;
 public class TicketWeightedScoreServiceImpl extends TicketWeightedScoreServiceGrpc.TicketWeightedScoreServiceImplBase {
 
     private static final DecimalFormat df = new DecimalFormat("0.00");
+    private static final String WEIGHTED_SCORES_METHOD = TicketWeightedScoreServiceGrpc.getGetWeightedScoresMethod()
+            .getBareMethodName();
+
     private final RatingRepository ratingRepository;
     private final RatingCategoryRepository ratingCategoryRepository;
     private final ScoreService scoreService;
-    private final DateUtils dateUtils;
+    private final ScoreMetrics scoreMetrics;
 
     @Autowired
     public TicketWeightedScoreServiceImpl(RatingRepository ratingRepository,
-            RatingCategoryRepository ratingCategoryRepository, ScoreService scoreService, DateUtils dateUtils) {
+            RatingCategoryRepository ratingCategoryRepository, ScoreService scoreService, ScoreMetrics scoreMetrics) {
         this.ratingRepository = ratingRepository;
         this.ratingCategoryRepository = ratingCategoryRepository;
         this.scoreService = scoreService;
-        this.dateUtils = dateUtils;
+        this.scoreMetrics = scoreMetrics;
     }
 
     /**
@@ -57,28 +63,28 @@ public class TicketWeightedScoreServiceImpl extends TicketWeightedScoreServiceGr
     public void getWeightedScores(WeightedScoresRequest request,
             StreamObserver<WeightedScoresResponse> responseObserver) {
         try {
-            String startDateStr = request.getStartDate();
-            String endDateStr = request.getEndDate();
-
-            log.info("Received a gRPC request to get weighted scores with startDate: {} and endDate: {}", startDateStr,
-                    endDateStr);
-
-            Date startDate;
-            Date endDate;
+            long startEpochSecond;
+            long endEpochSecond;
             try {
-                startDate = dateUtils.parseDate(startDateStr);
-                endDate = dateUtils.parseDate(endDateStr);
-            } catch (ParseException e) {
+                startEpochSecond = request.hasStartTime() ? DateUtils.toEpochSecond(request.getStartTime())
+                        : DateUtils.toEpochSecond(request.getStartDate());
+                endEpochSecond = request.hasEndTime() ? DateUtils.toEpochSecond(request.getEndTime())
+                        : DateUtils.toEpochSecond(request.getEndDate());
+            } catch (DateTimeException e) {
                 log.warn("Error parsing dates: {}", e.getMessage());
                 responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid date format").withCause(e)
                         .asRuntimeException());
                 return;
             }
 
-            String startDateString = dateUtils.formatDate(startDate);
-            String endDateString = dateUtils.formatDate(endDate);
+            String startDateString = DateUtils.formatEpochSecond(startEpochSecond);
+            String endDateString = DateUtils.formatEpochSecond(endEpochSecond);
+
+            log.info("Received a gRPC request to get weighted scores with startDate: {} and endDate: {}",
+                    startDateString, endDateString);
 
-            double averageScore = calculateAverageScore(startDateString, endDateString);
+            long rangeSeconds = endEpochSecond - startEpochSecond;
+            double averageScore = calculateAverageScore(startDateString, endDateString, rangeSeconds);
             String currentPeriod = startDateString + " to " + endDateString;
 
             PeriodScore.Builder currentPeriodScoreBuilder = PeriodScore.newBuilder().setPeriod(currentPeriod)
@@ -92,20 +98,18 @@ public class TicketWeightedScoreServiceImpl extends TicketWeightedScoreServiceGr
                     .setCurrentPeriodScore(currentPeriodScoreBuilder.build());
 
             if (request.getIncludePreviousPeriod()) {
-                LocalDate startLocalDate = LocalDate.parse(startDateStr.substring(0, 10));
-                LocalDate endLocalDate = LocalDate.parse(endDateStr.substring(0, 10));
-                long daysBetween = ChronoUnit.DAYS.between(startLocalDate, endLocalDate);
+                GrpcContextUtils.throwIfCancelled();
 
-                LocalDate previousStartLocalDate = startLocalDate.minusDays(daysBetween + 1);
-                LocalDate previousEndLocalDate = startLocalDate.minusDays(1);
+                long startEpochDay = DateUtils.toEpochDay(startEpochSecond);
+                long daysBetween = DateUtils.getDaysBetween(startEpochSecond, endEpochSecond);
 
-                String previousStartDateString = previousStartLocalDate.atStartOfDay()
-                        .format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
-                String previousEndDateString = previousEndLocalDate.atTime(23, 59, 59)
-                        .format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
+                long previousStartEpochSecond = DateUtils.startOfEpochDay(startEpochDay - daysBetween - 1);
+                long previousEndEpochSecond = DateUtils.startOfEpochDay(startEpochDay) - 1;
+                String previousStartDateString = DateUtils.formatEpochSecond(previousStartEpochSecond);
+                String previousEndDateString = DateUtils.formatEpochSecond(previousEndEpochSecond);
 
                 double previousPeriodAverageScore = calculateAverageScore(previousStartDateString,
-                        previousEndDateString);
+                        previousEndDateString, previousEndEpochSecond - previousStartEpochSecond);
                 String previousPeriod = previousStartDateString + " to " + previousEndDateString;
 
                 PeriodScore.Builder previousPeriodScoreBuilder = PeriodScore.newBuilder().setPeriod(previousPeriod)
@@ -126,12 +130,20 @@ public class TicketWeightedScoreServiceImpl extends TicketWeightedScoreServiceGr
                 }
                 responseBuilder.setScoreChange(scoreChangeBuilder.build());
             }
+            ProtobufBuildEvent buildEvent = new ProtobufBuildEvent();
+            buildEvent.begin();
             WeightedScoresResponse response = responseBuilder.build();
+            buildEvent.finish(WEIGHTED_SCORES_METHOD, request.getIncludePreviousPeriod() ? 2 : 1, rangeSeconds);
 
             responseObserver.onNext(response);
             responseObserver.onCompleted();
             log.info("Successfully sent weighted scores response");
         } catch (Exception e) {
+            if (GrpcContextUtils.isCancelled()) {
+                log.info("Weighted scores request cancelled: {}", e.getMessage());
+                responseObserver.onError(GrpcContextUtils.cancelledException());
+                return;
+            }
             log.error("Unexpected error occurred", e);
             responseObserver.onError(
                     Status.INTERNAL.withDescription("Internal server error").withCause(e).asRuntimeException());
@@ -139,16 +151,22 @@ public class TicketWeightedScoreServiceImpl extends TicketWeightedScoreServiceGr
     }
 
     /**
-     * Calculates the average score for the specified period.
+     * Calculates the average score for the specified period. The ratings and categories queries are recorded as the
+     * database phase and the scoring of tickets as the aggregation phase.
      *
      * @param startDate
      *            The start date of the period.
      * @param endDate
      *            The end date of the period.
+     * @param rangeSeconds
+     *            The width of the period in seconds, recorded with the profiling events.
      *
      * @return The average score for the period.
      */
-    private double calculateAverageScore(String startDate, String endDate) {
+    private double calculateAverageScore(String startDate, String endDate, long rangeSeconds) {
+        Timer.Sample querySample = scoreMetrics.start();
+        QueryEvent queryEvent = new QueryEvent();
+        queryEvent.begin();
         List<Object[]> ratingsRaw;
         try {
             ratingsRaw = ratingRepository.findRatingsWithinPeriod(startDate, endDate);
@@ -156,8 +174,11 @@ public class TicketWeightedScoreServiceImpl extends TicketWeightedScoreServiceGr
             log.error("Database query failed", e);
             throw new RuntimeException("Failed to retrieve data from database", e);
         }
+        scoreMetrics.rowsFetched(WEIGHTED_SCORES_METHOD, ratingsRaw.size());
 
         if (ratingsRaw.isEmpty()) {
+            queryEvent.finish(WEIGHTED_SCORES_METHOD, 0, rangeSeconds);
+            scoreMetrics.recordQuery(querySample, WEIGHTED_SCORES_METHOD);
             return 0;
         }
 
@@ -169,7 +190,13 @@ public class TicketWeightedScoreServiceImpl extends TicketWeightedScoreServiceGr
             log.error("Failed to retrieve rating categories from the database", e);
             throw new RuntimeException("Failed to retrieve rating categories from the database", e);
         }
+        queryEvent.finish(WEIGHTED_SCORES_METHOD, ratingsRaw.size(), rangeSeconds);
+        scoreMetrics.recordQuery(querySample, WEIGHTED_SCORES_METHOD);
 
+        Timer.Sample aggregationSample = scoreMetrics.start();
+        RowDecodeEvent decodeEvent = new RowDecodeEvent();
+        decodeEvent.begin();
+        long categoriesResolved = 0;
         Map<Integer, Map<String, Integer>> ticketCategoryRatingsMap = new HashMap<>();
 
         for (Object[] row : ratingsRaw) {
@@ -184,11 +211,21 @@ public class TicketWeightedScoreServiceImpl extends TicketWeightedScoreServiceGr
             }
 
             ticketCategoryRatingsMap.computeIfAbsent(ticketId, k -> new HashMap<>()).put(categoryName, rating);
+            categoriesResolved++;
         }
 
+        decodeEvent.finish(WEIGHTED_SCORES_METHOD, ratingsRaw.size(), rangeSeconds);
+
+        ScoreCalculationEvent scoreEvent = new ScoreCalculationEvent();
+        scoreEvent.begin();
         List<Double> ticketScores = ticketCategoryRatingsMap.values().stream().map(scoreService::calculateScore)
                 .toList();
 
-        return ticketScores.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        double averageScore = ticketScores.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        scoreEvent.finish(WEIGHTED_SCORES_METHOD, ticketScores.size(), rangeSeconds);
+        scoreMetrics.recordAggregation(aggregationSample, WEIGHTED_SCORES_METHOD);
+        scoreMetrics.ticketsScored(WEIGHTED_SCORES_METHOD, ticketScores.size());
+        scoreMetrics.categoriesResolved(WEIGHTED_SCORES_METHOD, categoriesResolved);
+        return averageScore;
     }
 }
@@ -0,0 +1,338 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parser for the {@code --name value} and {@code --name=value} options of the command line tools. A name without a
+ * value is a flag. Options that are never read are reported by {@link #checkAllUsed()}, so typos are not silently
+ * ignored.
+ */
+public class CommandLineOptions {
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+    private final Set<String> used = new HashSet<>();
+
+    /**
+     * Parses the given arguments.
+     *
+     * @param args
+     *            The command line arguments.
+     *
+     * @throws IllegalArgumentException
+     *             If an argument is not an option or an option is given twice.
+     */
+    public CommandLineOptions(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || arg.length() == 2) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String name;
+            String value;
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                name = arg.substring(2, equals);
+                value = arg.substring(equals + 1);
+            } else {
+                name = arg.substring(2);
+                value = i + 1 < args.length && !args[i + 1].startsWith("--") ? args[++i] : null;
+            }
+            if (values.containsKey(name)) {
+                throw new IllegalArgumentException("Option --" + name + " is given more than once");
+            }
+            values.put(name, value);
+        }
+    }
+
+    /**
+     * Returns whether a flag or option is present.
+     *
+     * @param name
+     *            The option name without dashes.
+     *
+     * @return True if the option is present.
+     */
+    public boolean has(String name) {
+        used.add(name);
+        return values.containsKey(name);
+    }
+
+    /**
+     * Returns the value of an option.
+     *
+     * @param name
+     *            The option name without dashes.
+     * @param defaultValue
+     *            The value if the option is absent, or null if it is required.
+     *
+     * @return The value.
+     *
+     * @throws IllegalArgumentException
+     *             If a required option is absent or the option has no value.
+     */
+    public String getString(String name, String defaultValue) {
+        used.add(name);
+        if (!values.containsKey(name)) {
+            if (defaultValue == null) {
+                throw new IllegalArgumentException("Option --" + name + " is required");
+            }
+            return defaultValue;
+        }
+        String value = values.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Option --" + name + " needs a value");
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of an option as an int within a range.
+     *
+     * @param name
+     *            The option name without dashes.
+     * @param defaultValue
+     *            The value if the option is absent.
+     * @param min
+     *            The smallest allowed value.
+     * @param max
+     *            The largest allowed value.
+     *
+     * @return The value.
+     *
+     * @throws IllegalArgumentException
+     *             If the value is not an integer or is out of range.
+     */
+    public int getInt(String name, int defaultValue, int min, int max) {
+        return (int) getLong(name, defaultValue, min, max);
+    }
+
+    /**
+     * Returns the value of an option as a long within a range.
+     *
+     * @param name
+     *            The option name without dashes.
+     * @param defaultValue
+     *            The value if the option is absent.
+     * @param min
+     *            The smallest allowed value.
+     * @param max
+     *            The largest allowed value.
+     *
+     * @return The value.
+     *
+     * @throws IllegalArgumentException
+     *             If the value is not an integer or is out of range.
+     */
+    public long getLong(String name, long defaultValue, long min, long max) {
+        String text = getString(name, Long.toString(defaultValue)).replace("_", "");
+        long value;
+        try {
+            value = Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " must be an integer: " + text);
+        }
+        if (value < min || value > max) {
+            throw new IllegalArgumentException("Option --" + name + " must be between " + min + " and " + max);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of an option as a double within a range.
+     *
+     * @param name
+     *            The option name without dashes.
+     * @param defaultValue
+     *            The value if the option is absent.
+     * @param min
+     *            The smallest allowed value.
+     * @param max
+     *            The largest allowed value.
+     *
+     * @return The value.
+     *
+     * @throws IllegalArgumentException
+     *             If the value is not a number or is out of range.
+     */
+    public double getDouble(String name, double defaultValue, double min, double max) {
+        String text = getString(name, Double.toString(defaultValue));
+        double value;
+        try {
+            value = Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option --" + name + " must be a number: " + text);
+        }
+        if (!(value >= min && value <= max)) {
+            throw new IllegalArgumentException("Option --" + name + " must be between " + min + " and " + max);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of an option as a date in {@code yyyy-MM-dd} format.
+     *
+     * @param name
+     *            The option name without dashes.
+     * @param defaultValue
+     *            The value if the option is absent.
+     *
+     * @return The date.
+     *
+     * @throws IllegalArgumentException
+     *             If the value is not a date.
+     */
+    public LocalDate getDate(String name, LocalDate defaultValue) {
+        String text = getString(name, defaultValue.toString());
+        try {
+            return LocalDate.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Option --" + name + " must be a date like 2019-01-01: " + text);
+        }
+    }
+
+    /**
+     * Returns the value of an option as a duration, written like {@code 30s}, {@code 500ms} or {@code PT1M}.
+     *
+     * @param name
+     *            The option name without dashes.
+     * @param defaultValue
+     *            The value if the option is absent.
+     *
+     * @return The duration.
+     *
+     * @throws IllegalArgumentException
+     *             If the value is not a duration or is negative.
+     */
+    public Duration getDuration(String name, Duration defaultValue) {
+        String text = getString(name, defaultValue.toString());
+        Duration value;
+        try {
+            value = DurationStyle.detectAndParse(text);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Option --" + name + " must be a duration like 30s: " + text);
+        }
+        if (value.isNegative()) {
+            throw new IllegalArgumentException("Option --" + name + " must not be negative");
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of an option as a data size, written like {@code 64MB} or {@code 512KB}; a plain number is in
+     * bytes.
+     *
+     * @param name
+     *            The option name without dashes.
+     * @param defaultValue
+     *            The value if the option is absent.
+     *
+     * @return The data size.
+     *
+     * @throws IllegalArgumentException
+     *             If the value is not a data size or is negative.
+     */
+    public DataSize getDataSize(String name, DataSize defaultValue) {
+        String text = getString(name, defaultValue.toString());
+        DataSize value;
+        try {
+            value = DataSize.parse(text);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Option --" + name + " must be a data size like 64MB: " + text);
+        }
+        if (value.isNegative()) {
+            throw new IllegalArgumentException("Option --" + name + " must not be negative");
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of an option as a comma separated list.
+     *
+     * @param name
+     *            The option name without dashes.
+     * @param defaultValue
+     *            The value if the option is absent, in the same format.
+     *
+     * @return The list items, in the given order.
+     *
+     * @throws IllegalArgumentException
+     *             If an item is empty.
+     */
+    public List<String> getList(String name, String defaultValue) {
+        String text = getString(name, defaultValue);
+        List<String> items = new ArrayList<>();
+        for (String item : text.split(",", -1)) {
+            if (item.isBlank()) {
+                throw new IllegalArgumentException("Option --" + name + " has an empty item: " + text);
+            }
+            items.add(item.trim());
+        }
+        return items;
+    }
+
+    /**
+     * Returns the value of an option as a list of weighted names, written like {@code a=3,b=1}. A name without a weight
+     * has weight 1.
+     *
+     * @param name
+     *            The option name without dashes.
+     * @param defaultValue
+     *            The value if the option is absent, in the same format.
+     *
+     * @return The weights by name, in the given order.
+     *
+     * @throws IllegalArgumentException
+     *             If a weight is not a non-negative number, a name is repeated or all weights are zero.
+     */
+    public Map<String, Double> getWeights(String name, String defaultValue) {
+        String text = getString(name, defaultValue);
+        Map<String, Double> weights = new LinkedHashMap<>();
+        double total = 0;
+        for (String entry : text.split(",")) {
+            int equals = entry.indexOf('=');
+            String key = (equals < 0 ? entry : entry.substring(0, equals)).trim();
+            double weight;
+            try {
+                weight = equals < 0 ? 1 : Double.parseDouble(entry.substring(equals + 1).trim());
+            } catch (NumberFormatException e) {
+                weight = -1;
+            }
+            if (key.isEmpty() || !(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Option --" + name + " must be like a=3,b=1: " + text);
+            }
+            if (weights.put(key, weight) != null) {
+                throw new IllegalArgumentException("Option --" + name + " names " + key + " more than once");
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Option --" + name + " needs a positive weight");
+        }
+        return weights;
+    }
+
+    /**
+     * Checks that every given option has been read.
+     *
+     * @throws IllegalArgumentException
+     *             If an option is unknown.
+     */
+    public void checkAllUsed() {
+        for (String name : values.keySet()) {
+            if (!used.contains(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+    }
+}
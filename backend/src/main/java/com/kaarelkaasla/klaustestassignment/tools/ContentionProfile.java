@@ -0,0 +1,181 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lock contention found in a flight recording: threads blocked entering a {@code synchronized} monitor
+ * ({@code jdk.JavaMonitorEnter}) and threads parked waiting for a {@code java.util.concurrent} lock or a connection
+ * pool ({@code jdk.ThreadPark}). Parks of idle pool threads waiting for work, and the locks of the flight recorder
+ * itself, are left out. Events are grouped into sites by the lock class and the first frame outside the JDK locking
+ * code, which is where the application asked for the lock.
+ *
+ * <p>
+ * Only events longer than the threshold of the recording settings are recorded; with the {@code profile} settings that
+ * is 10 ms, so short but frequent contention is not seen.
+ *
+ * @param monitorEvents
+ *            The number of blocked monitor enters.
+ * @param monitorBlockedMillis
+ *            The total time blocked entering monitors.
+ * @param parkEvents
+ *            The number of parks on locks.
+ * @param parkedMillis
+ *            The total time parked on locks.
+ * @param sites
+ *            The sites with the most blocked time, most first.
+ */
+public record ContentionProfile(long monitorEvents, double monitorBlockedMillis, long parkEvents, double parkedMillis,
+        List<Site> sites) {
+
+    private static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+    private static final String THREAD_PARK = "jdk.ThreadPark";
+    private static final String FLIGHT_RECORDER_PACKAGE = "jdk.jfr.";
+
+    /**
+     * Frames of these packages are the locking code itself, not the place that asked for the lock.
+     */
+    private static final List<String> LOCKING_PACKAGES = List.of("java.util.concurrent.locks.", "jdk.internal.misc.",
+            "java.util.concurrent.SynchronousQueue", "java.util.concurrent.LinkedTransferQueue");
+
+    /**
+     * Methods in which pool threads park while they wait for work.
+     */
+    private static final List<String> IDLE_METHODS = List.of("getTask", "awaitWork", "take");
+
+    /**
+     * Reads the contention events of a recording.
+     *
+     * @param recording
+     *            The .jfr file.
+     * @param topSites
+     *            The number of sites to keep.
+     *
+     * @return The contention.
+     *
+     * @throws IOException
+     *             If the file cannot be read.
+     */
+    public static ContentionProfile read(Path recording, int topSites) throws IOException {
+        Map<String, Site> sites = new HashMap<>();
+        long monitorEvents = 0;
+        long parkEvents = 0;
+        double monitorMillis = 0;
+        double parkedMillis = 0;
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String name = event.getEventType().getName();
+                String kind;
+                RecordedClass lockClass;
+                if (MONITOR_ENTER.equals(name)) {
+                    kind = "monitor";
+                    lockClass = event.getClass("monitorClass");
+                } else if (THREAD_PARK.equals(name) && !isIdle(event.getStackTrace())) {
+                    kind = "park";
+                    lockClass = event.getClass("parkedClass");
+                } else {
+                    continue;
+                }
+                double millis = event.getDuration().toNanos() / 1e6;
+                String lock = lockClass != null ? lockClass.getName() : "unknown";
+                if (lock.startsWith(FLIGHT_RECORDER_PACKAGE)) {
+                    continue;
+                }
+                if (kind.equals("monitor")) {
+                    monitorEvents++;
+                    monitorMillis += millis;
+                } else {
+                    parkEvents++;
+                    parkedMillis += millis;
+                }
+                String frame = callerFrame(event.getStackTrace());
+                sites.merge(kind + " " + lock + " " + frame, new Site(kind, lock, frame, 1, millis), Site::plus);
+            }
+        }
+        List<Site> top = sites.values().stream().sorted(Comparator.comparingDouble(Site::millis).reversed())
+                .limit(topSites).map(Site::rounded).toList();
+        return new ContentionProfile(monitorEvents, round(monitorMillis), parkEvents, round(parkedMillis), top);
+    }
+
+    /**
+     * Formats the totals and the sites, one per line.
+     *
+     * @return The text.
+     */
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("  blocked on monitors: %,d times, %,.1f ms; parked on locks: %,d times, %,.1f ms%n",
+                monitorEvents, monitorBlockedMillis, parkEvents, parkedMillis));
+        for (Site site : sites) {
+            out.append(String.format("    %,10.1f ms %,6d x %-7s %s in %s%n", site.millis(), site.events(), site.kind(),
+                    site.lock(), site.frame()));
+        }
+        return out.toString();
+    }
+
+    private static boolean isIdle(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return false;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.isJavaFrame() && IDLE_METHODS.contains(frame.getMethod().getName())
+                    && !frame.getMethod().getType().getName().startsWith("java.util.concurrent.locks.")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String callerFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (frame.isJavaFrame() && LOCKING_PACKAGES.stream().noneMatch(type::startsWith)) {
+                return type + "." + frame.getMethod().getName();
+            }
+        }
+        return "unknown";
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    /**
+     * Contention at one place in the code.
+     *
+     * @param kind
+     *            Either "monitor" or "park".
+     * @param lock
+     *            The class of the monitor object or of the lock the thread parked on.
+     * @param frame
+     *            The method that asked for the lock.
+     * @param events
+     *            The number of times a thread waited.
+     * @param millis
+     *            The total time waited.
+     */
+    public record Site(String kind, String lock, String frame, long events, double millis) {
+
+        private Site plus(Site other) {
+            return new Site(kind, lock, frame, events + other.events, millis + other.millis);
+        }
+
+        private Site rounded() {
+            return new Site(kind, lock, frame, events, round(millis));
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.kaarelkaasla.klaustestassignment.IngestSummary;
+import com.kaarelkaasla.klaustestassignment.NewRating;
+import com.kaarelkaasla.klaustestassignment.RatingIngestServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Command line benchmark of the client-streaming {@code IngestRatings} call. Synthetic ratings are generated from a
+ * seed and sent over one or more concurrent streams, as fast as gRPC flow control lets the client write them. The
+ * summaries of the streams are printed next to the throughput seen by the client.
+ *
+ * <p>
+ * Every ticket gets four ratings with categories drawn uniformly from the first categories, spread evenly over the time
+ * span. Every n-th rating can be given an unknown category, to measure the cost of rejected rows. Run it from the
+ * packaged jar against a running instance, for example:
+ *
+ * <pre>
+ * java -cp target/backend-0.0.1-SNAPSHOT.jar \
+ *     -Dloader.main=com.kaarelkaasla.klaustestassignment.tools.IngestBenchmark \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --rows 10000000 --streams 2 --invalid-every 1000
+ * </pre>
+ */
+public class IngestBenchmark {
+
+    /**
+     * The category ID of rejected rows, which no rating category has.
+     */
+    static final int UNKNOWN_CATEGORY_ID = Integer.MAX_VALUE;
+
+    private static final int RATINGS_PER_TICKET = 4;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final Settings settings;
+
+    /**
+     * Constructs a benchmark with the given settings.
+     *
+     * @param settings
+     *            The instance to send the ratings to and how many.
+     */
+    public IngestBenchmark(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Runs the benchmark with the given command line options and prints the results.
+     *
+     * @param args
+     *            The command line options, see {@link Settings#from(CommandLineOptions)}.
+     */
+    public static void main(String[] args) {
+        Settings settings;
+        try {
+            CommandLineOptions options = new CommandLineOptions(args);
+            settings = Settings.from(options);
+            options.checkAllUsed();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Settings.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            Result result = new IngestBenchmark(settings).run();
+            for (int i = 0; i < result.summaries().size(); i++) {
+                IngestSummary summary = result.summaries().get(i);
+                System.out.printf("Stream %d: %,d accepted, %,d rejected in %,d ms (%,d rows/s on the server)%n", i + 1,
+                        summary.getAcceptedRows(), summary.getRejectedRows(), summary.getElapsedMillis(),
+                        Math.round(summary.getRowsPerSecond()));
+                if (summary.getRejectionsCount() > 0) {
+                    System.out.printf("  first rejection: row %d, %s%n", summary.getRejections(0).getIndex(),
+                            summary.getRejections(0).getReason());
+                }
+            }
+            System.out.printf("Sent %,d ratings in %.1f s: %,d accepted, %,d rejected, %,d rows/s%n", result.sent(),
+                    result.elapsed().toMillis() / 1000.0, result.accepted(), result.rejected(), result.rowsPerSecond());
+        } catch (IOException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Sends the ratings over the configured number of streams and waits for their summaries.
+     *
+     * @return The number of sent, accepted and rejected ratings and the time it took.
+     *
+     * @throws IOException
+     *             If a stream fails or does not finish within the timeout.
+     * @throws InterruptedException
+     *             If the calling thread is interrupted.
+     */
+    public Result run() throws IOException, InterruptedException {
+        ManagedChannel channel = ManagedChannelBuilder.forAddress(settings.host(), settings.grpcPort()).usePlaintext()
+                .build();
+        try {
+            Metadata metadata = new Metadata();
+            metadata.put(Metadata.Key.of(settings.apiKeyHeader(), Metadata.ASCII_STRING_MARSHALLER), settings.apiKey());
+            RatingIngestServiceGrpc.RatingIngestServiceStub stub = RatingIngestServiceGrpc.newStub(channel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata))
+                    .withDeadlineAfter(settings.timeout().toMillis(), TimeUnit.MILLISECONDS);
+
+            long startNanos = System.nanoTime();
+            List<CompletableFuture<IngestSummary>> streams = new ArrayList<>();
+            long first = 0;
+            for (int i = 0; i < settings.streams(); i++) {
+                long rows = settings.rows() / settings.streams() + (i < settings.rows() % settings.streams() ? 1 : 0);
+                RowSource source = new RowSource(settings, first, first + rows);
+                CompletableFuture<IngestSummary> summary = new CompletableFuture<>();
+                stub.ingestRatings(new Sender(source, summary));
+                streams.add(summary);
+                first += rows;
+            }
+
+            List<IngestSummary> summaries = new ArrayList<>();
+            for (CompletableFuture<IngestSummary> stream : streams) {
+                summaries.add(stream.get(settings.timeout().toMillis(), TimeUnit.MILLISECONDS));
+            }
+            return new Result(settings.rows(), summaries, Duration.ofNanos(System.nanoTime() - startNanos));
+        } catch (ExecutionException e) {
+            throw new IOException("Ingestion failed: " + Status.fromThrowable(e.getCause()), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Ingestion did not finish within " + settings.timeout(), e);
+        } finally {
+            channel.shutdownNow();
+            channel.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Writes the ratings of one stream whenever the transport is ready for more, and completes the future with the
+     * summary of the server.
+     */
+    private static final class Sender implements ClientResponseObserver<NewRating, IngestSummary> {
+
+        private final RowSource source;
+        private final CompletableFuture<IngestSummary> summary;
+        private boolean completed;
+
+        Sender(RowSource source, CompletableFuture<IngestSummary> summary) {
+            this.source = source;
+            this.summary = summary;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<NewRating> requestStream) {
+            // Called on one thread at a time, whenever the outbound buffer has drained.
+            requestStream.setOnReadyHandler(() -> {
+                while (requestStream.isReady() && source.hasNext()) {
+                    requestStream.onNext(source.next());
+                }
+                if (!source.hasNext() && !completed) {
+                    completed = true;
+                    requestStream.onCompleted();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(IngestSummary value) {
+            summary.complete(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            summary.completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            summary.completeExceptionally(new IllegalStateException("The stream ended without a summary"));
+        }
+    }
+
+    /**
+     * Generates the ratings with the given indexes. A row depends only on the settings and its index, so the ratings
+     * are the same however they are split into streams.
+     */
+    static final class RowSource {
+
+        private final Settings settings;
+        private final long end;
+        private final long firstSecond;
+        private final long secondsPerRow;
+        private long next;
+
+        RowSource(Settings settings, long first, long end) {
+            this.settings = settings;
+            this.next = first;
+            this.end = end;
+            this.firstSecond = settings.startDate().atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            this.secondsPerRow = Math.max(1, settings.days() * SECONDS_PER_DAY / settings.rows());
+        }
+
+        boolean hasNext() {
+            return next < end;
+        }
+
+        NewRating next() {
+            long index = next++;
+            SplittableRandom random = new SplittableRandom(settings.seed() ^ index * 0x9E3779B97F4A7C15L);
+            long ticket = index / RATINGS_PER_TICKET;
+            boolean invalid = settings.invalidEvery() > 0 && (index + 1) % settings.invalidEvery() == 0;
+            return NewRating.newBuilder()
+                    .setRating(RatingsGenerator.pick(RatingsGenerator.RATING_CUMULATIVE, random.nextDouble()))
+                    .setTicketId((int) (ticket % Integer.MAX_VALUE) + 1)
+                    .setRatingCategoryId(invalid ? UNKNOWN_CATEGORY_ID : random.nextInt(settings.categories()) + 1)
+                    .setReviewerId(random.nextInt(settings.reviewers()) + 1)
+                    .setRevieweeId((int) (ticket % settings.reviewees()) + 1)
+                    .setCreatedAt(IsoDateTime.format(
+                            firstSecond + Math.min(index * secondsPerRow, settings.days() * SECONDS_PER_DAY - 1)))
+                    .build();
+        }
+    }
+
+    /**
+     * Instance to send the ratings to, and the ratings to send.
+     *
+     * @param host
+     *            The host of the instance.
+     * @param grpcPort
+     *            The gRPC port of the instance.
+     * @param apiKeyHeader
+     *            The name of the API key header.
+     * @param apiKey
+     *            The API key.
+     * @param rows
+     *            The number of ratings to send.
+     * @param streams
+     *            The number of concurrent streams the ratings are split over.
+     * @param seed
+     *            The random seed.
+     * @param startDate
+     *            The first day of the time span the ratings are created in.
+     * @param days
+     *            The number of days in the time span.
+     * @param categories
+     *            The number of rating categories the ratings are spread over, which must exist on the instance.
+     * @param reviewers
+     *            The number of distinct reviewers.
+     * @param reviewees
+     *            The number of distinct reviewees.
+     * @param invalidEvery
+     *            Every how many ratings one has an unknown category, 0 for none.
+     * @param timeout
+     *            The deadline of the streams.
+     */
+    public record Settings(String host, int grpcPort, String apiKeyHeader, String apiKey, long rows, int streams,
+            long seed, LocalDate startDate, int days, int categories, int reviewers, int reviewees, long invalidEvery,
+            Duration timeout) {
+
+        static final String USAGE = """
+                Usage: IngestBenchmark [options]
+                  --host HOST                host of the instance (default localhost)
+                  --grpc-port N              gRPC port (default 9090)
+                  --api-key-header NAME      API key header (default x-api-key)
+                  --api-key KEY              API key (default your-secret-api-key)
+                  --rows N                   ratings to send (default 10000000)
+                  --streams N                concurrent streams (default 1)
+                  --seed N                   random seed (default 42)
+                  --start-date yyyy-MM-dd    first day of the ratings (default 2020-01-01)
+                  --days N                   days the ratings are spread over (default 365)
+                  --categories N             rating categories used, which must exist (default 4)
+                  --reviewers N              distinct reviewers (default 50)
+                  --reviewees N              distinct reviewees (default 500)
+                  --invalid-every N          give every N-th rating an unknown category, 0 for none (default 0)
+                  --timeout DURATION         deadline of the streams (default 1h)""";
+
+        /**
+         * Reads the settings from command line options.
+         *
+         * @param options
+         *            The options.
+         *
+         * @return The settings.
+         *
+         * @throws IllegalArgumentException
+         *             If an option is invalid.
+         */
+        public static Settings from(CommandLineOptions options) {
+            Settings settings = new Settings(options.getString("host", "localhost"),
+                    options.getInt("grpc-port", 9090, 1, 65_535), options.getString("api-key-header", "x-api-key"),
+                    options.getString("api-key", "your-secret-api-key"),
+                    options.getLong("rows", 10_000_000, 1, Long.MAX_VALUE), options.getInt("streams", 1, 1, 64),
+                    options.getLong("seed", 42, Long.MIN_VALUE, Long.MAX_VALUE),
+                    options.getDate("start-date", LocalDate.of(2020, 1, 1)), options.getInt("days", 365, 1, 36_500),
+                    options.getInt("categories", 4, 1, 1_000), options.getInt("reviewers", 50, 1, 1_000_000_000),
+                    options.getInt("reviewees", 500, 1, 1_000_000_000),
+                    options.getLong("invalid-every", 0, 0, Long.MAX_VALUE),
+                    options.getDuration("timeout", Duration.ofHours(1)));
+            if (settings.timeout().isNegative() || settings.timeout().isZero()) {
+                throw new IllegalArgumentException("--timeout must be positive");
+            }
+            return settings;
+        }
+    }
+
+    /**
+     * Outcome of a run.
+     *
+     * @param sent
+     *            The ratings sent.
+     * @param summaries
+     *            The summaries of the streams.
+     * @param elapsed
+     *            The time from opening the streams to receiving the last summary.
+     */
+    public record Result(long sent, List<IngestSummary> summaries, Duration elapsed) {
+
+        /**
+         * Returns the number of ratings the server stored.
+         *
+         * @return The accepted ratings of all streams.
+         */
+        public long accepted() {
+            return summaries.stream().mapToLong(IngestSummary::getAcceptedRows).sum();
+        }
+
+        /**
+         * Returns the number of ratings the server skipped.
+         *
+         * @return The rejected ratings of all streams.
+         */
+        public long rejected() {
+            return summaries.stream().mapToLong(IngestSummary::getRejectedRows).sum();
+        }
+
+        /**
+         * Returns the throughput seen by the client.
+         *
+         * @return The ratings stored per second.
+         */
+        public long rowsPerSecond() {
+            return accepted() * 1_000_000_000L / Math.max(elapsed.toNanos(), 1);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JVM metrics of an instance at one moment, read from its {@code /actuator/prometheus} endpoint. Counters are totals
+ * since the instance started, so rates and GC pause distributions are taken from the difference of two samples.
+ *
+ * @param elapsedNanos
+ *            When the sample was taken, relative to the start of the run.
+ * @param retainedHeapBytes
+ *            The long-lived heap pool in use after the last collection, the heap that survived garbage collection.
+ * @param liveDataBytes
+ *            The long-lived heap pool in use after the last major collection, or 0 before the first one.
+ * @param heapUsedBytes
+ *            The heap in use, including garbage not yet collected.
+ * @param allocatedBytes
+ *            The bytes allocated in the young generation so far.
+ * @param gcPauses
+ *            The number of GC pauses so far.
+ * @param gcPauseBuckets
+ *            The cumulative number of GC pauses per upper bound in seconds, over all collectors and causes.
+ * @param threads
+ *            The number of live threads.
+ */
+public record JvmSample(long elapsedNanos, double retainedHeapBytes, double liveDataBytes, double heapUsedBytes,
+        double allocatedBytes, long gcPauses, TreeMap<Double, Long> gcPauseBuckets, long threads) {
+
+    /**
+     * Parses the metrics of a Prometheus text exposition.
+     *
+     * @param text
+     *            The response of {@code /actuator/prometheus}.
+     * @param elapsedNanos
+     *            When the sample was taken.
+     *
+     * @return The sample.
+     *
+     * @throws IllegalArgumentException
+     *             If a required JVM metric is missing.
+     */
+    public static JvmSample parse(String text, long elapsedNanos) {
+        Map<String, Double> values = new TreeMap<>();
+        TreeMap<Double, Long> buckets = new TreeMap<>();
+        for (String line : text.split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int labelsStart = line.indexOf('{');
+            int valueStart = line.lastIndexOf(' ');
+            if (valueStart < 0) {
+                continue;
+            }
+            String name = line.substring(0, labelsStart >= 0 && labelsStart < valueStart ? labelsStart : valueStart);
+            String labels = labelsStart >= 0 && labelsStart < valueStart ? line.substring(labelsStart, valueStart) : "";
+            double value = Double.parseDouble(line.substring(valueStart + 1));
+            switch (name) {
+            case "jvm_memory_used_bytes" -> {
+                if (labels.contains("area=\"heap\"")) {
+                    values.merge(name, value, Double::sum);
+                }
+            }
+            case "jvm_memory_usage_after_gc" -> {
+                if (labels.contains("area=\"heap\"")) {
+                    values.put(name, value);
+                }
+            }
+            case "jvm_gc_pause_seconds_bucket" -> buckets.merge(bucketBound(labels), (long) value, Long::sum);
+            case "jvm_gc_pause_seconds_count", "jvm_gc_live_data_size_bytes", "jvm_gc_max_data_size_bytes", "jvm_gc_memory_allocated_bytes_total", "jvm_threads_live_threads" -> values
+                    .merge(name, value, Double::sum);
+            default -> {
+            }
+            }
+        }
+        return new JvmSample(elapsedNanos,
+                require(values, "jvm_memory_usage_after_gc") * require(values, "jvm_gc_max_data_size_bytes"),
+                values.getOrDefault("jvm_gc_live_data_size_bytes", 0.0), require(values, "jvm_memory_used_bytes"),
+                require(values, "jvm_gc_memory_allocated_bytes_total"),
+                values.getOrDefault("jvm_gc_pause_seconds_count", 0.0).longValue(), buckets,
+                (long) require(values, "jvm_threads_live_threads"));
+    }
+
+    /**
+     * Returns a percentile of the GC pauses between an earlier sample and this one, as the upper bound of the histogram
+     * bucket it falls in.
+     *
+     * @param earlier
+     *            The earlier sample.
+     * @param percentile
+     *            The percentile, from 0 to 100.
+     *
+     * @return The pause in milliseconds, or 0 if there were no pauses or the pause histogram is not published.
+     */
+    public double gcPauseMillisSince(JvmSample earlier, double percentile) {
+        long pauses = gcPauses - earlier.gcPauses;
+        if (pauses <= 0 || gcPauseBuckets.isEmpty()) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(pauses * percentile / 100));
+        double largestBound = 0;
+        for (Map.Entry<Double, Long> bucket : gcPauseBuckets.entrySet()) {
+            if (bucket.getKey().isInfinite()) {
+                break;
+            }
+            largestBound = bucket.getKey();
+            if (bucket.getValue() - earlier.gcPauseBuckets.getOrDefault(bucket.getKey(), 0L) >= target) {
+                return bucket.getKey() * 1000;
+            }
+        }
+        return largestBound * 1000;
+    }
+
+    private static double bucketBound(String labels) {
+        int start = labels.indexOf("le=\"");
+        if (start < 0) {
+            throw new IllegalArgumentException("GC pause bucket without a bound: " + labels);
+        }
+        String bound = labels.substring(start + 4, labels.indexOf('"', start + 4));
+        return bound.equals("+Inf") ? Double.POSITIVE_INFINITY : Double.parseDouble(bound);
+    }
+
+    private static double require(Map<String, Double> values, String name) {
+        Double value = values.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Metric " + name + " is not published");
+        }
+        return value;
+    }
+}
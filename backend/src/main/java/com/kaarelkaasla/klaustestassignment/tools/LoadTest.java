@@ -0,0 +1,613 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Command line load generator for a running instance. Worker threads send a mix of aggregated scores, ticket category
+ * scores and weighted scores requests, over gRPC or the REST bridges, for periods of random length and position within
+ * the dataset. Latencies of successful requests are recorded in HdrHistograms and reported per operation with the
+ * throughput, after a warm-up that is not measured.
+ *
+ * <p>
+ * Without a rate, each worker sends its next request as soon as the previous one completes. With a rate, requests are
+ * scheduled at fixed intervals and latency is measured from the scheduled start, so that a stalled server is not hidden
+ * by the workers waiting for it.
+ *
+ * <p>
+ * The request sequence of every worker is derived from the seed, so runs with the same options send the same requests
+ * and their reports can be compared. Run it from the packaged jar, for example:
+ *
+ * <pre>
+ * java -cp target/backend-0.0.1-SNAPSHOT.jar \
+ *     -Dloader.main=com.kaarelkaasla.klaustestassignment.tools.LoadTest \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --protocol grpc --concurrency 8 --duration 60s --report /tmp/run.json
+ * </pre>
+ */
+public class LoadTest {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * Lengths in days of the named period kinds of {@code --ranges}. Other kinds are written as a number of days, like
+     * {@code 3d}.
+     */
+    private static final Map<String, Integer> RANGE_DAYS = Map.of("day", 1, "week", 7, "month", 30, "quarter", 91,
+            "year", 365);
+
+    /**
+     * The protocol requests are sent over.
+     */
+    public enum Protocol {
+        GRPC, REST
+    }
+
+    /**
+     * The calls the load test makes.
+     */
+    public enum Operation {
+        /**
+         * RatingService.GetAggregatedScores, or {@code /api/v1/scores/aggregated}.
+         */
+        AGGREGATED("aggregated"),
+        /**
+         * TicketScoreService.GetTicketCategoryScores, or {@code /api/v1/tickets/category-scores}.
+         */
+        TICKET_SCORES("ticket-scores"),
+        /**
+         * TicketWeightedScoreService.GetWeightedScores with the previous period, or
+         * {@code /api/v1/tickets/weighted-scores}.
+         */
+        WEIGHTED_SCORES("weighted-scores");
+
+        private final String optionName;
+
+        Operation(String optionName) {
+            this.optionName = optionName;
+        }
+
+        /**
+         * Returns the name used in {@code --mix} and in reports.
+         *
+         * @return The name.
+         */
+        public String optionName() {
+            return optionName;
+        }
+
+        static Operation fromOptionName(String name) {
+            for (Operation operation : values()) {
+                if (operation.optionName.equals(name)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException(
+                    "Unknown operation " + name + ", use aggregated, ticket-scores or weighted-scores");
+        }
+    }
+
+    private final Settings settings;
+    private final Workload workload;
+
+    /**
+     * Constructs a load test with the given settings.
+     *
+     * @param settings
+     *            The target, workload and length of the run.
+     */
+    public LoadTest(Settings settings) {
+        this.settings = settings;
+        this.workload = new Workload(settings);
+    }
+
+    /**
+     * Runs the load test with the given command line options and prints the report.
+     *
+     * @param args
+     *            The command line options, see {@link Settings#from(CommandLineOptions)}.
+     */
+    public static void main(String[] args) {
+        Settings settings;
+        try {
+            CommandLineOptions options = new CommandLineOptions(args);
+            settings = Settings.from(options);
+            options.checkAllUsed();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Settings.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            LoadTestReport report = new LoadTest(settings).run();
+            System.out.print(report.format());
+            if (settings.report() != null) {
+                report.write(settings.report());
+                System.out.println("Report written to " + settings.report());
+            }
+            if (settings.compare() != null) {
+                System.out.print(report.compare(LoadTestReport.read(settings.compare())));
+            }
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Load test failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the warm-up and the measurement.
+     *
+     * @return The report of the measurement.
+     *
+     * @throws ExecutionException
+     *             If a worker fails.
+     * @throws InterruptedException
+     *             If the calling thread is interrupted.
+     */
+    public LoadTestReport run() throws ExecutionException, InterruptedException {
+        String startedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
+        int concurrency = settings.concurrency();
+        // Each worker sends its share of the rate, so the interval between its requests is concurrency / rate.
+        long intervalNanos = settings.rate() > 0 ? Math.round(concurrency * 1e9 / settings.rate()) : 0;
+        SplittableRandom seeds = new SplittableRandom(settings.seed());
+        LongAdder completed = new LongAdder();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "load-test-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<WorkerResult> results = new ArrayList<>();
+        try (LoadTestClient client = LoadTestClient.create(settings)) {
+            long startNanos = System.nanoTime();
+            long measureStartNanos = startNanos + settings.warmup().toNanos();
+            long endNanos = measureStartNanos + settings.duration().toNanos();
+            List<Future<WorkerResult>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                Worker worker = new Worker(client, seeds.split(), startNanos + intervalNanos * i / concurrency,
+                        measureStartNanos, endNanos, intervalNanos, completed);
+                futures.add(executor.submit(worker::run));
+            }
+            System.out.printf("Running %s load test with %d workers: %s warm-up, %s measurement%n",
+                    settings.protocol().name().toLowerCase(Locale.ROOT), concurrency, settings.warmup(),
+                    settings.duration());
+            for (Future<WorkerResult> future : futures) {
+                while (true) {
+                    try {
+                        results.add(future.get(PROGRESS_INTERVAL_NANOS, TimeUnit.NANOSECONDS));
+                        break;
+                    } catch (TimeoutException e) {
+                        System.out.printf("%ds elapsed, %,d requests completed%n",
+                                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos), completed.sum());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return report(startedAt, results);
+    }
+
+    private LoadTestReport report(String startedAt, List<WorkerResult> results) {
+        double seconds = settings.duration().toNanos() / 1e9;
+        Histogram totalLatencies = new Histogram(3);
+        Map<String, Long> totalOutcomes = new TreeMap<>();
+        List<LoadTestReport.OperationResult> operations = new ArrayList<>();
+        for (Operation operation : workload.operations()) {
+            Histogram latencies = new Histogram(3);
+            Map<String, Long> outcomes = new TreeMap<>();
+            for (WorkerResult result : results) {
+                latencies.add(result.latencies.get(operation));
+                result.outcomes.get(operation).forEach((outcome, count) -> outcomes.merge(outcome, count, Long::sum));
+            }
+            totalLatencies.add(latencies);
+            outcomes.forEach((outcome, count) -> totalOutcomes.merge(outcome, count, Long::sum));
+            operations.add(LoadTestReport.OperationResult.of(operation.optionName(), latencies, outcomes, seconds));
+        }
+        return new LoadTestReport(settings.label(), startedAt, settings.describe(), seconds, operations,
+                LoadTestReport.OperationResult.of("total", totalLatencies, totalOutcomes, seconds));
+    }
+
+    /**
+     * Sends requests from one thread until the end of the run, recording the requests that start after the warm-up.
+     */
+    private class Worker {
+
+        private final LoadTestClient client;
+        private final SplittableRandom random;
+        private final long measureStartNanos;
+        private final long endNanos;
+        private final long intervalNanos;
+        private final LongAdder completed;
+        private long nextStartNanos;
+
+        Worker(LoadTestClient client, SplittableRandom random, long firstStartNanos, long measureStartNanos,
+                long endNanos, long intervalNanos, LongAdder completed) {
+            this.client = client;
+            this.random = random;
+            this.nextStartNanos = firstStartNanos;
+            this.measureStartNanos = measureStartNanos;
+            this.endNanos = endNanos;
+            this.intervalNanos = intervalNanos;
+            this.completed = completed;
+        }
+
+        WorkerResult run() throws InterruptedException {
+            WorkerResult result = new WorkerResult();
+            while (true) {
+                long startNanos;
+                if (intervalNanos > 0) {
+                    startNanos = nextStartNanos;
+                    nextStartNanos += intervalNanos;
+                    long waitNanos = startNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                    }
+                } else {
+                    startNanos = System.nanoTime();
+                }
+                if (startNanos >= endNanos) {
+                    return result;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+
+                Request request = workload.next(random);
+                String outcome = client.call(request.operation(), request.startDate(), request.endDate());
+                long latencyNanos = System.nanoTime() - startNanos;
+                completed.increment();
+                if (startNanos >= measureStartNanos) {
+                    result.record(request.operation(), outcome, latencyNanos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Latencies and outcome counts recorded by one worker.
+     */
+    private static class WorkerResult {
+
+        private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, Map<String, Long>> outcomes = new EnumMap<>(Operation.class);
+
+        WorkerResult() {
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new Histogram(3));
+                outcomes.put(operation, new TreeMap<>());
+            }
+        }
+
+        void record(Operation operation, String outcome, long latencyNanos) {
+            if (LoadTestClient.OK.equals(outcome)) {
+                latencies.get(operation).recordValue(Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 1));
+            }
+            outcomes.get(operation).merge(outcome, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * One request of the workload.
+     *
+     * @param operation
+     *            The operation to call.
+     * @param startDate
+     *            The start of the period.
+     * @param endDate
+     *            The end of the period.
+     */
+    record Request(Operation operation, String startDate, String endDate) {
+    }
+
+    /**
+     * Draws requests from the operation mix and the period length distribution. Periods start at midnight on a random
+     * day of the dataset and end at the last second of their last day; periods longer than the dataset start on its
+     * first day.
+     */
+    static class Workload {
+
+        private final Operation[] operations;
+        private final double[] operationCumulative;
+        private final int[] rangeDays;
+        private final double[] rangeCumulative;
+        private final long dataStartEpochSecond;
+        private final int dataDays;
+
+        Workload(Settings settings) {
+            this.operations = new Operation[settings.mix().size()];
+            this.operationCumulative = new double[operations.length];
+            int index = 0;
+            for (Map.Entry<String, Double> entry : settings.mix().entrySet()) {
+                operations[index++] = Operation.fromOptionName(entry.getKey());
+            }
+            cumulative(settings.mix().values(), operationCumulative);
+
+            this.rangeDays = new int[settings.ranges().size()];
+            this.rangeCumulative = new double[rangeDays.length];
+            index = 0;
+            for (String kind : settings.ranges().keySet()) {
+                rangeDays[index++] = rangeDays(kind);
+            }
+            cumulative(settings.ranges().values(), rangeCumulative);
+
+            this.dataStartEpochSecond = settings.dataStart().atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            this.dataDays = settings.dataDays();
+        }
+
+        List<Operation> operations() {
+            return List.of(operations);
+        }
+
+        Request next(SplittableRandom random) {
+            Operation operation = operations[pick(operationCumulative, random.nextDouble())];
+            int days = rangeDays[pick(rangeCumulative, random.nextDouble())];
+            long firstDay = days < dataDays ? random.nextInt(dataDays - days + 1) : 0;
+            long start = dataStartEpochSecond + firstDay * SECONDS_PER_DAY;
+            return new Request(operation, IsoDateTime.format(start),
+                    IsoDateTime.format(start + days * SECONDS_PER_DAY - 1));
+        }
+
+        static int rangeDays(String kind) {
+            Integer days = RANGE_DAYS.get(kind);
+            if (days != null) {
+                return days;
+            }
+            if (kind.matches("[1-9][0-9]{0,4}d")) {
+                return Integer.parseInt(kind.substring(0, kind.length() - 1));
+            }
+            throw new IllegalArgumentException(
+                    "Unknown range " + kind + ", use day, week, month, quarter, year or a number of days like 3d");
+        }
+
+        private static void cumulative(Iterable<Double> weights, double[] cumulative) {
+            double total = 0;
+            int index = 0;
+            for (double weight : weights) {
+                total += weight;
+                cumulative[index++] = total;
+            }
+            for (int i = 0; i < cumulative.length; i++) {
+                cumulative[i] /= total;
+            }
+        }
+
+        private static int pick(double[] cumulative, double sample) {
+            for (int i = 0; i < cumulative.length - 1; i++) {
+                if (sample < cumulative[i]) {
+                    return i;
+                }
+            }
+            return cumulative.length - 1;
+        }
+    }
+
+    /**
+     * Target, workload and length of a load test run.
+     *
+     * @param protocol
+     *            Whether the gRPC services or the REST bridges are called.
+     * @param host
+     *            The host of the instance.
+     * @param grpcPort
+     *            The gRPC port.
+     * @param httpPort
+     *            The HTTP port.
+     * @param apiKeyHeader
+     *            The name of the API key header.
+     * @param apiKey
+     *            The API key.
+     * @param concurrency
+     *            The number of worker threads.
+     * @param rate
+     *            The requests per second over all workers, or 0 to send requests back to back.
+     * @param warmup
+     *            The time before the measurement starts.
+     * @param duration
+     *            The length of the measurement.
+     * @param timeout
+     *            The deadline of each request.
+     * @param mix
+     *            The relative weights of the operations, by name.
+     * @param ranges
+     *            The relative weights of the period lengths, by kind.
+     * @param dataStart
+     *            The first day of the dataset.
+     * @param dataDays
+     *            The number of days in the dataset.
+     * @param seed
+     *            The random seed of the request sequence.
+     * @param label
+     *            The label of the report.
+     * @param report
+     *            The file to write the JSON report to, or null.
+     * @param compare
+     *            The JSON report of an earlier run to compare with, or null.
+     */
+    public record Settings(Protocol protocol, String host, int grpcPort, int httpPort, String apiKeyHeader,
+            String apiKey, int concurrency, double rate, Duration warmup, Duration duration, Duration timeout,
+            Map<String, Double> mix, Map<String, Double> ranges, LocalDate dataStart, int dataDays, long seed,
+            String label, Path report, Path compare) {
+
+        static final String USAGE = """
+                Usage: LoadTest [options]
+                  --protocol grpc|rest       call the gRPC services or the REST bridges (default grpc)
+                  --host HOST                host of the instance (default localhost)
+                  --grpc-port N              gRPC port (default 9090)
+                  --http-port N              HTTP port (default 8080)
+                  --api-key-header NAME      API key header (default x-api-key)
+                  --api-key KEY              API key (default your-secret-api-key)
+                  --concurrency N            worker threads (default 8)
+                  --rate N                   requests per second over all workers, 0 for back to back (default 0)
+                  --warmup DURATION          time before measuring (default 10s)
+                  --duration DURATION        length of the measurement (default 60s)
+                  --timeout DURATION         deadline of each request (default 30s)
+                  --mix NAME=WEIGHT,...      operation mix of aggregated, ticket-scores and weighted-scores
+                                             (default aggregated=4,ticket-scores=2,weighted-scores=4)
+                  --ranges KIND=WEIGHT,...   period lengths of day, week, month, quarter, year or Nd
+                                             (default day=2,week=3,month=3,quarter=1,year=1)
+                  --data-start yyyy-MM-dd    first day of the dataset (default 2019-01-01)
+                  --data-days N              days in the dataset (default 365)
+                  --seed N                   random seed of the request sequence (default 42)
+                  --label TEXT               label of the report (default the protocol)
+                  --report FILE              write the report as JSON
+                  --compare FILE             compare with the JSON report of an earlier run""";
+
+        /**
+         * Reads the settings from command line options.
+         *
+         * @param options
+         *            The options.
+         *
+         * @return The settings.
+         *
+         * @throws IllegalArgumentException
+         *             If an option is invalid.
+         */
+        public static Settings from(CommandLineOptions options) {
+            return from(options, Duration.ofSeconds(10), Duration.ofSeconds(60));
+        }
+
+        /**
+         * Reads the settings from command line options, with the given defaults for the warm-up and the measurement.
+         *
+         * @param options
+         *            The options.
+         * @param defaultWarmup
+         *            The warm-up if {@code --warmup} is absent.
+         * @param defaultDuration
+         *            The length of the measurement if {@code --duration} is absent.
+         *
+         * @return The settings.
+         *
+         * @throws IllegalArgumentException
+         *             If an option is invalid.
+         */
+        static Settings from(CommandLineOptions options, Duration defaultWarmup, Duration defaultDuration) {
+            String protocolName = options.getString("protocol", "grpc");
+            Protocol protocol;
+            try {
+                protocol = Protocol.valueOf(protocolName.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Option --protocol must be grpc or rest: " + protocolName);
+            }
+            Settings settings = new Settings(protocol, options.getString("host", "localhost"),
+                    options.getInt("grpc-port", 9090, 1, 65_535), options.getInt("http-port", 8080, 1, 65_535),
+                    options.getString("api-key-header", "x-api-key"),
+                    options.getString("api-key", "your-secret-api-key"), options.getInt("concurrency", 8, 1, 10_000),
+                    options.getDouble("rate", 0, 0, 1_000_000), options.getDuration("warmup", defaultWarmup),
+                    options.getDuration("duration", defaultDuration),
+                    options.getDuration("timeout", Duration.ofSeconds(30)),
+                    options.getWeights("mix", "aggregated=4,ticket-scores=2,weighted-scores=4"),
+                    options.getWeights("ranges", "day=2,week=3,month=3,quarter=1,year=1"),
+                    options.getDate("data-start", LocalDate.of(2019, 1, 1)),
+                    options.getInt("data-days", 365, 1, 36_500),
+                    options.getLong("seed", 42, Long.MIN_VALUE, Long.MAX_VALUE),
+                    options.getString("label", protocol.name().toLowerCase(Locale.ROOT)),
+                    options.has("report") ? Path.of(options.getString("report", null)) : null,
+                    options.has("compare") ? Path.of(options.getString("compare", null)) : null);
+            if (settings.duration().isZero() || settings.timeout().isZero()) {
+                throw new IllegalArgumentException("Options --duration and --timeout must be positive");
+            }
+            // Validates the operation and range names.
+            new Workload(settings);
+            return settings;
+        }
+
+        /**
+         * Returns a copy of these settings that calls only the given operation with the given number of workers, and
+         * writes no report files.
+         *
+         * @param operation
+         *            The operation to call.
+         * @param workers
+         *            The number of worker threads.
+         *
+         * @return The settings of one run.
+         */
+        Settings forOperation(Operation operation, int workers) {
+            return new Settings(protocol, host, grpcPort, httpPort, apiKeyHeader, apiKey, workers, rate, warmup,
+                    duration, timeout, Map.of(operation.optionName(), 1.0), ranges, dataStart, dataDays, seed,
+                    operation.optionName() + " x " + workers, null, null);
+        }
+
+        /**
+         * Returns a copy of these settings for one window of a longer run, with its own warm-up, length and seed so
+         * that windows do not repeat the same requests, and no report files.
+         *
+         * @param index
+         *            The number of the window, from 0.
+         * @param windowWarmup
+         *            The warm-up of the window.
+         * @param windowDuration
+         *            The length of the window.
+         *
+         * @return The settings of the window.
+         */
+        Settings forWindow(int index, Duration windowWarmup, Duration windowDuration) {
+            return new Settings(protocol, host, grpcPort, httpPort, apiKeyHeader, apiKey, concurrency, rate,
+                    windowWarmup, windowDuration, timeout, mix, ranges, dataStart, dataDays, seed + index,
+                    label + " window " + (index + 1), null, null);
+        }
+
+        /**
+         * Returns the settings that determine the workload, for the report. Two runs are comparable when these are the
+         * same.
+         *
+         * @return The settings by option name.
+         */
+        Map<String, String> describe() {
+            Map<String, String> description = new LinkedHashMap<>();
+            description.put("protocol", protocol.name().toLowerCase(Locale.ROOT));
+            description.put("target", host + ":" + (protocol == Protocol.GRPC ? grpcPort : httpPort));
+            description.put("concurrency", Integer.toString(concurrency));
+            description.put("rate", rate > 0 ? rate + "/s" : "unlimited");
+            description.put("warmup", warmup.toString());
+            description.put("duration", duration.toString());
+            description.put("mix", weights(mix));
+            description.put("ranges", weights(ranges));
+            description.put("data", dataStart + " + " + dataDays + " days");
+            description.put("seed", Long.toString(seed));
+            return description;
+        }
+
+        private static String weights(Map<String, Double> weights) {
+            StringBuilder text = new StringBuilder();
+            weights.forEach((name, weight) -> text.append(text.isEmpty() ? "" : ",").append(name).append('=')
+                    .append(weight == Math.rint(weight) ? Long.toString(weight.longValue()) : weight.toString()));
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.kaarelkaasla.klaustestassignment.AggregatedScoresRequest;
+import com.kaarelkaasla.klaustestassignment.RatingServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresRequest;
+import com.kaarelkaasla.klaustestassignment.TicketScoreServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.TicketWeightedScoreServiceGrpc;
+import com.kaarelkaasla.klaustestassignment.WeightedScoresRequest;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.MetadataUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client that sends the load test requests to a running instance, either to the gRPC services or to their REST bridges.
+ * Implementations are shared by all worker threads.
+ */
+interface LoadTestClient extends AutoCloseable {
+
+    /**
+     * The outcome of a successful call.
+     */
+    String OK = "OK";
+
+    /**
+     * Sends one request and waits for the complete response.
+     *
+     * @param operation
+     *            The operation to call.
+     * @param startDate
+     *            The start of the period in {@code yyyy-MM-ddTHH:mm:ss} format.
+     * @param endDate
+     *            The end of the period in the same format.
+     *
+     * @return {@link #OK}, the gRPC status code of a failed call, or {@code HTTP} and the status code of a failed REST
+     *         call.
+     *
+     * @throws InterruptedException
+     *             If the calling thread is interrupted.
+     */
+    String call(LoadTest.Operation operation, String startDate, String endDate) throws InterruptedException;
+
+    @Override
+    void close();
+
+    /**
+     * Creates the client for the protocol of the given settings.
+     *
+     * @param settings
+     *            The load test settings.
+     *
+     * @return The client.
+     */
+    static LoadTestClient create(LoadTest.Settings settings) {
+        return settings.protocol() == LoadTest.Protocol.GRPC ? new Grpc(settings) : new Rest(settings);
+    }
+
+    /**
+     * Calls the gRPC services with blocking stubs over one plaintext channel.
+     */
+    final class Grpc implements LoadTestClient {
+
+        private final ManagedChannel channel;
+        private final long timeoutMillis;
+        private final RatingServiceGrpc.RatingServiceBlockingStub ratingService;
+        private final TicketScoreServiceGrpc.TicketScoreServiceBlockingStub ticketScoreService;
+        private final TicketWeightedScoreServiceGrpc.TicketWeightedScoreServiceBlockingStub weightedScoreService;
+
+        Grpc(LoadTest.Settings settings) {
+            this.channel = ManagedChannelBuilder.forAddress(settings.host(), settings.grpcPort()).usePlaintext()
+                    .build();
+            this.timeoutMillis = settings.timeout().toMillis();
+            Metadata metadata = new Metadata();
+            metadata.put(Metadata.Key.of(settings.apiKeyHeader(), Metadata.ASCII_STRING_MARSHALLER), settings.apiKey());
+            this.ratingService = RatingServiceGrpc.newBlockingStub(channel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata));
+            this.ticketScoreService = TicketScoreServiceGrpc.newBlockingStub(channel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata));
+            this.weightedScoreService = TicketWeightedScoreServiceGrpc.newBlockingStub(channel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(metadata));
+        }
+
+        @Override
+        public String call(LoadTest.Operation operation, String startDate, String endDate) {
+            try {
+                switch (operation) {
+                case AGGREGATED -> ratingService.withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS)
+                        .getAggregatedScores(AggregatedScoresRequest.newBuilder().setStartDate(startDate)
+                                .setEndDate(endDate).build());
+                case TICKET_SCORES -> ticketScoreService.withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS)
+                        .getTicketCategoryScores(TicketCategoryScoresRequest.newBuilder().setStartDate(startDate)
+                                .setEndDate(endDate).build());
+                case WEIGHTED_SCORES -> weightedScoreService.withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS)
+                        .getWeightedScores(WeightedScoresRequest.newBuilder().setStartDate(startDate)
+                                .setEndDate(endDate).setIncludePreviousPeriod(true).build());
+                }
+                return OK;
+            } catch (StatusRuntimeException e) {
+                return e.getStatus().getCode().name();
+            }
+        }
+
+        @Override
+        public void close() {
+            channel.shutdownNow();
+        }
+    }
+
+    /**
+     * Calls the REST bridges over HTTP/1.1, reading and discarding the response bodies.
+     */
+    final class Rest implements LoadTestClient {
+
+        private final HttpClient httpClient;
+        private final String baseUrl;
+        private final LoadTest.Settings settings;
+
+        Rest(LoadTest.Settings settings) {
+            this.settings = settings;
+            this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(settings.timeout()).build();
+            this.baseUrl = "http://" + settings.host() + ":" + settings.httpPort();
+        }
+
+        @Override
+        public String call(LoadTest.Operation operation, String startDate, String endDate) throws InterruptedException {
+            String path = switch (operation) {
+            case AGGREGATED -> "/api/v1/scores/aggregated";
+            case TICKET_SCORES -> "/api/v1/tickets/category-scores";
+            case WEIGHTED_SCORES -> "/api/v1/tickets/weighted-scores";
+            };
+            String query = "?startDate=" + startDate + "&endDate=" + endDate
+                    + (operation == LoadTest.Operation.WEIGHTED_SCORES ? "&includePreviousPeriod=true" : "");
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path + query))
+                    .header(settings.apiKeyHeader(), settings.apiKey()).timeout(settings.timeout()).GET().build();
+            try {
+                int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                return status == 200 ? OK : "HTTP " + status;
+            } catch (HttpTimeoutException e) {
+                return "TIMEOUT";
+            } catch (IOException e) {
+                return e.getClass().getSimpleName();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
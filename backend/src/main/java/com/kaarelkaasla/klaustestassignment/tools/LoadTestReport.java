@@ -0,0 +1,209 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Results of a load test run: the settings it ran with and, per operation and in total, the outcome counts, throughput
+ * and latency percentiles. Reports are written as JSON so that later runs can be compared against them.
+ *
+ * @param label
+ *            The label given to the run.
+ * @param startedAt
+ *            When the run started, in ISO 8601 format.
+ * @param settings
+ *            The settings that determine the workload, by option name.
+ * @param durationSeconds
+ *            The length of the measurement, excluding warm-up.
+ * @param operations
+ *            The results per operation.
+ * @param total
+ *            The results of all operations together.
+ */
+public record LoadTestReport(String label, String startedAt, Map<String, String> settings, double durationSeconds,
+        List<OperationResult> operations, OperationResult total) {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * Writes the report as JSON.
+     *
+     * @param path
+     *            The file to write.
+     *
+     * @throws IOException
+     *             If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        OBJECT_MAPPER.writeValue(path.toFile(), this);
+    }
+
+    /**
+     * Reads a report written by {@link #write(Path)}.
+     *
+     * @param path
+     *            The file to read.
+     *
+     * @return The report.
+     *
+     * @throws IOException
+     *             If the file cannot be read or is not a report.
+     */
+    public static LoadTestReport read(Path path) throws IOException {
+        return OBJECT_MAPPER.readValue(path.toFile(), LoadTestReport.class);
+    }
+
+    /**
+     * Formats the report as a table with one row per operation.
+     *
+     * @return The table.
+     */
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        out.append("Load test ").append(label).append(", started ").append(startedAt).append('\n');
+        settings.forEach((name, value) -> out.append("  ").append(name).append(": ").append(value).append('\n'));
+        out.append(String.format("%-16s %10s %8s %9s %9s %9s %9s %9s %9s %9s%n", "operation", "requests", "errors",
+                "req/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (OperationResult result : operations) {
+            out.append(result.format());
+        }
+        out.append(total.format());
+        for (OperationResult result : operations) {
+            result.outcomes().forEach((outcome, count) -> {
+                if (!LoadTestClient.OK.equals(outcome)) {
+                    out.append(String.format("  %s: %,d x %s%n", result.operation(), count, outcome));
+                }
+            });
+        }
+        return out.toString();
+    }
+
+    /**
+     * Formats the change in throughput and latency percentiles relative to an earlier run, and lists the settings that
+     * differ between the runs.
+     *
+     * @param baseline
+     *            The earlier run.
+     *
+     * @return The comparison table.
+     */
+    public String compare(LoadTestReport baseline) {
+        StringBuilder out = new StringBuilder();
+        out.append("Compared with ").append(baseline.label()).append(", started ").append(baseline.startedAt())
+                .append('\n');
+        Map<String, String> allSettings = new TreeMap<>(baseline.settings());
+        allSettings.putAll(settings);
+        for (String name : allSettings.keySet()) {
+            String before = baseline.settings().get(name);
+            String after = settings.get(name);
+            if (before == null || !before.equals(after)) {
+                out.append(String.format("  %s differs: %s -> %s%n", name, before, after));
+            }
+        }
+        out.append(String.format("%-16s %18s %18s %18s %18s%n", "operation", "req/s", "p50 ms", "p99 ms", "p99.9 ms"));
+        List<OperationResult> rows = new ArrayList<>(operations);
+        rows.add(total);
+        for (OperationResult result : rows) {
+            OperationResult before = baseline.find(result.operation());
+            if (before == null) {
+                continue;
+            }
+            out.append(String.format("%-16s %18s %18s %18s %18s%n", result.operation(),
+                    change(before.throughput(), result.throughput()), change(before.p50Millis(), result.p50Millis()),
+                    change(before.p99Millis(), result.p99Millis()), change(before.p999Millis(), result.p999Millis())));
+        }
+        return out.toString();
+    }
+
+    private OperationResult find(String operation) {
+        if (total.operation().equals(operation)) {
+            return total;
+        }
+        return operations.stream().filter(result -> result.operation().equals(operation)).findFirst().orElse(null);
+    }
+
+    private static String change(double before, double after) {
+        if (before == 0) {
+            return String.format("%.1f", after);
+        }
+        return String.format("%.1f (%+.0f%%)", after, (after - before) * 100 / before);
+    }
+
+    /**
+     * Results of one operation, or of all operations together.
+     *
+     * @param operation
+     *            The operation name, or {@code total}.
+     * @param requests
+     *            The requests completed during the measurement.
+     * @param errors
+     *            The requests that did not succeed.
+     * @param outcomes
+     *            The number of requests per outcome, see {@link LoadTestClient#call}.
+     * @param throughput
+     *            The successful requests per second.
+     * @param meanMillis
+     *            The mean latency of successful requests.
+     * @param p50Millis
+     *            The median latency of successful requests.
+     * @param p90Millis
+     *            The 90th percentile latency.
+     * @param p99Millis
+     *            The 99th percentile latency.
+     * @param p999Millis
+     *            The 99.9th percentile latency.
+     * @param maxMillis
+     *            The highest latency.
+     */
+    public record OperationResult(String operation, long requests, long errors, Map<String, Long> outcomes,
+            double throughput, double meanMillis, double p50Millis, double p90Millis, double p99Millis,
+            double p999Millis, double maxMillis) {
+
+        /**
+         * Summarizes the latencies of successful requests, recorded in microseconds, and the outcome counts.
+         *
+         * @param operation
+         *            The operation name.
+         * @param latencies
+         *            The latencies of successful requests in microseconds.
+         * @param outcomes
+         *            The number of requests per outcome.
+         * @param durationSeconds
+         *            The length of the measurement.
+         *
+         * @return The results.
+         */
+        public static OperationResult of(String operation, Histogram latencies, Map<String, Long> outcomes,
+                double durationSeconds) {
+            long requests = outcomes.values().stream().mapToLong(Long::longValue).sum();
+            long successes = outcomes.getOrDefault(LoadTestClient.OK, 0L);
+            return new OperationResult(operation, requests, requests - successes, new LinkedHashMap<>(outcomes),
+                    round(successes / durationSeconds), millis(latencies.getMean()),
+                    millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(90)),
+                    millis(latencies.getValueAtPercentile(99)), millis(latencies.getValueAtPercentile(99.9)),
+                    millis(latencies.getMaxValue()));
+        }
+
+        private String format() {
+            return String.format("%-16s %,10d %,8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", operation, requests,
+                    errors, throughput, meanMillis, p50Millis, p90Millis, p99Millis, p999Millis, maxMillis);
+        }
+
+        private static double millis(double micros) {
+            return round(micros / 1000);
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+}
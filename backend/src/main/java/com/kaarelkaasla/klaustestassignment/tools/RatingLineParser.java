@@ -0,0 +1,515 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.format.DateTimeParseException;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * Parser of the lines of a ratings dump, reading the fields straight from the bytes of a buffer, usually a mapped file.
+ * Numbers are accumulated digit by digit and date-times are parsed through a reusable character view of the buffer, so
+ * a valid line creates no objects. Only rejected lines build a message.
+ *
+ * <p>
+ * A line holds one rating with the fields {@code rating}, {@code ticket_id}, {@code rating_category_id},
+ * {@code reviewer_id}, {@code reviewee_id} and {@code created_at}, which the JSON form also accepts in camel case, as
+ * in the gRPC API. Other fields, such as {@code id}, are ignored. Ratings are validated like ratings added through the
+ * API.
+ */
+abstract class RatingLineParser {
+
+    /**
+     * The highest rating value a reviewer can give.
+     */
+    static final int MAX_RATING = 5;
+
+    static final int RATING = 0;
+    static final int TICKET_ID = 1;
+    static final int CATEGORY_ID = 2;
+    static final int REVIEWER_ID = 3;
+    static final int REVIEWEE_ID = 4;
+    static final int CREATED_AT = 5;
+
+    private static final String[] FIELD_NAMES = { "rating", "ticket_id", "rating_category_id", "reviewer_id",
+            "reviewee_id", "created_at" };
+    private static final String[] CAMEL_CASE_NAMES = { "rating", "ticketId", "ratingCategoryId", "reviewerId",
+            "revieweeId", "createdAt" };
+    private static final int ALL_FIELDS = (1 << FIELD_NAMES.length) - 1;
+    private static final long INVALID = Long.MIN_VALUE;
+
+    private final BitSet categories;
+    private final ByteSequence text = new ByteSequence();
+    private final int[] values = new int[CREATED_AT];
+    private long createdAt;
+    private int seen;
+
+    /**
+     * Constructs a parser that accepts the given rating categories.
+     *
+     * @param categories
+     *            The IDs of the existing rating categories.
+     */
+    RatingLineParser(BitSet categories) {
+        this.categories = categories;
+    }
+
+    /**
+     * Input file formats.
+     */
+    enum Format {
+        /**
+         * Comma separated values with a header line naming the columns.
+         */
+        CSV,
+        /**
+         * One flat JSON object per line.
+         */
+        NDJSON;
+
+        /**
+         * Returns the format of a file by its extension.
+         *
+         * @param file
+         *            The file.
+         *
+         * @return The format.
+         *
+         * @throws IllegalArgumentException
+         *             If the extension is not {@code .csv}, {@code .ndjson}, {@code .jsonl} or {@code .json}.
+         */
+        static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+                return NDJSON;
+            }
+            throw new IllegalArgumentException("Cannot tell the format of " + file + ", use --format csv or ndjson");
+        }
+    }
+
+    /**
+     * Creates a parser for CSV lines with the given header.
+     *
+     * @param header
+     *            The header line.
+     * @param categories
+     *            The IDs of the existing rating categories.
+     *
+     * @return The parser.
+     *
+     * @throws IllegalArgumentException
+     *             If the header lacks a field or names one twice.
+     */
+    static RatingLineParser csv(String header, BitSet categories) {
+        return new Csv(header, categories);
+    }
+
+    /**
+     * Creates a parser for NDJSON lines.
+     *
+     * @param categories
+     *            The IDs of the existing rating categories.
+     *
+     * @return The parser.
+     */
+    static RatingLineParser ndjson(BitSet categories) {
+        return new Ndjson(categories);
+    }
+
+    /**
+     * Parses and validates one line. The fields of a valid line are available through the getters until the next call.
+     *
+     * @param buffer
+     *            The buffer holding the line.
+     * @param start
+     *            The index of the first byte of the line.
+     * @param end
+     *            The index after the last byte of the line, without the line terminator.
+     *
+     * @return Null if the rating is valid, otherwise the reason it is rejected.
+     */
+    final String parse(ByteBuffer buffer, int start, int end) {
+        seen = 0;
+        String error = parseFields(buffer, start, end);
+        if (error != null) {
+            return error;
+        }
+        if (seen != ALL_FIELDS) {
+            return "missing " + FIELD_NAMES[Integer.numberOfTrailingZeros(~seen)];
+        }
+        if (values[RATING] < 0 || values[RATING] > MAX_RATING) {
+            return "rating must be between 0 and " + MAX_RATING;
+        }
+        if (values[TICKET_ID] <= 0 || values[CATEGORY_ID] <= 0 || values[REVIEWER_ID] <= 0
+                || values[REVIEWEE_ID] <= 0) {
+            return "identifiers must be positive";
+        }
+        if (!categories.get(values[CATEGORY_ID])) {
+            return "unknown rating category " + values[CATEGORY_ID];
+        }
+        return null;
+    }
+
+    /**
+     * Reads the fields of a line with {@link #setNumber} and {@link #setCreatedAt}.
+     *
+     * @return Null if the line is well-formed, otherwise the reason it is not.
+     */
+    abstract String parseFields(ByteBuffer buffer, int start, int end);
+
+    int getRating() {
+        return values[RATING];
+    }
+
+    int getTicketId() {
+        return values[TICKET_ID];
+    }
+
+    int getCategoryId() {
+        return values[CATEGORY_ID];
+    }
+
+    int getReviewerId() {
+        return values[REVIEWER_ID];
+    }
+
+    int getRevieweeId() {
+        return values[REVIEWEE_ID];
+    }
+
+    /**
+     * Returns the creation time of the rating.
+     *
+     * @return The seconds since the epoch.
+     */
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Sets a numeric field from the bytes of its value.
+     *
+     * @return Null if the value is an int, otherwise the reason it is rejected.
+     */
+    String setNumber(int field, ByteBuffer buffer, int start, int end) {
+        long value = parseInt(buffer, start, end);
+        if (value == INVALID) {
+            return FIELD_NAMES[field] + " must be an integer";
+        }
+        values[field] = (int) value;
+        seen |= 1 << field;
+        return null;
+    }
+
+    /**
+     * Sets the creation time from the bytes of a {@code yyyy-MM-dd'T'HH:mm:ss} date-time.
+     *
+     * @return Null if the value is a valid date-time, otherwise the reason it is rejected.
+     */
+    String setCreatedAt(ByteBuffer buffer, int start, int end) {
+        try {
+            createdAt = IsoDateTime.parseEpochSecond(text.wrap(buffer, start, end));
+        } catch (DateTimeParseException e) {
+            return "created_at must be a date-time like 2019-01-01T00:00:00";
+        }
+        seen |= 1 << CREATED_AT;
+        return null;
+    }
+
+    /**
+     * Sets a field from its value, unless it is not one of the rating fields.
+     */
+    String setField(int field, ByteBuffer buffer, int start, int end) {
+        if (field < 0) {
+            return null;
+        }
+        if ((seen & 1 << field) != 0) {
+            return FIELD_NAMES[field] + " is given twice";
+        }
+        return field == CREATED_AT ? setCreatedAt(buffer, start, end) : setNumber(field, buffer, start, end);
+    }
+
+    /**
+     * Parses an optionally negative decimal integer.
+     *
+     * @return The value, or {@link #INVALID} if the bytes are not an integer within the int range.
+     */
+    private static long parseInt(ByteBuffer buffer, int start, int end) {
+        boolean negative = start < end && buffer.get(start) == '-';
+        int position = negative ? start + 1 : start;
+        if (position == end || end - position > 10) {
+            return INVALID;
+        }
+        long value = 0;
+        for (; position < end; position++) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? INVALID : value;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Comma separated lines. Fields may be surrounded by spaces and double quotes, but may not contain commas.
+     */
+    private static final class Csv extends RatingLineParser {
+
+        /**
+         * The rating field of each column, or -1 for ignored columns.
+         */
+        private final int[] columns;
+
+        Csv(String header, BitSet categories) {
+            super(categories);
+            String[] names = header.split(",", -1);
+            columns = new int[names.length];
+            int found = 0;
+            for (int i = 0; i < names.length; i++) {
+                columns[i] = fieldOf(names[i].trim().replace("\"", ""));
+                if (columns[i] >= 0) {
+                    if ((found & 1 << columns[i]) != 0) {
+                        throw new IllegalArgumentException("The header names " + names[i].trim() + " twice");
+                    }
+                    found |= 1 << columns[i];
+                }
+            }
+            if (found != ALL_FIELDS) {
+                throw new IllegalArgumentException(
+                        "The header has no " + FIELD_NAMES[Integer.numberOfTrailingZeros(~found)] + " column, it needs "
+                                + String.join(",", FIELD_NAMES) + ": " + header);
+            }
+        }
+
+        private static int fieldOf(String name) {
+            for (int i = 0; i < FIELD_NAMES.length; i++) {
+                if (FIELD_NAMES[i].equalsIgnoreCase(name) || CAMEL_CASE_NAMES[i].equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        String parseFields(ByteBuffer buffer, int start, int end) {
+            int column = 0;
+            int fieldStart = start;
+            for (int position = start; position <= end; position++) {
+                if (position < end && buffer.get(position) != ',') {
+                    continue;
+                }
+                if (column == columns.length) {
+                    return "more columns than the header";
+                }
+                int valueStart = fieldStart;
+                int valueEnd = position;
+                while (valueStart < valueEnd && isWhitespace(buffer.get(valueStart))) {
+                    valueStart++;
+                }
+                while (valueEnd > valueStart && isWhitespace(buffer.get(valueEnd - 1))) {
+                    valueEnd--;
+                }
+                if (valueEnd - valueStart >= 2 && buffer.get(valueStart) == '"' && buffer.get(valueEnd - 1) == '"') {
+                    valueStart++;
+                    valueEnd--;
+                }
+                String error = setField(columns[column++], buffer, valueStart, valueEnd);
+                if (error != null) {
+                    return error;
+                }
+                fieldStart = position + 1;
+            }
+            return column < columns.length ? "fewer columns than the header" : null;
+        }
+    }
+
+    /**
+     * Lines holding one flat JSON object. Values of the rating fields must be numbers, and the date-time a string;
+     * values of other fields may be anything but objects and arrays.
+     */
+    private static final class Ndjson extends RatingLineParser {
+
+        private static final byte[][][] KEYS = new byte[FIELD_NAMES.length][][];
+
+        static {
+            for (int i = 0; i < FIELD_NAMES.length; i++) {
+                KEYS[i] = new byte[][] { FIELD_NAMES[i].getBytes(StandardCharsets.US_ASCII),
+                        CAMEL_CASE_NAMES[i].getBytes(StandardCharsets.US_ASCII) };
+            }
+        }
+
+        Ndjson(BitSet categories) {
+            super(categories);
+        }
+
+        @Override
+        String parseFields(ByteBuffer buffer, int start, int end) {
+            int position = skipWhitespace(buffer, start, end);
+            if (position == end || buffer.get(position) != '{') {
+                return "not a JSON object";
+            }
+            position = skipWhitespace(buffer, position + 1, end);
+            if (position < end && buffer.get(position) == '}') {
+                return trailing(buffer, position + 1, end);
+            }
+            while (true) {
+                if (position == end || buffer.get(position) != '"') {
+                    return "malformed JSON object";
+                }
+                int keyStart = position + 1;
+                int keyEnd = endOfString(buffer, keyStart, end);
+                if (keyEnd < 0) {
+                    return "malformed JSON object";
+                }
+                position = skipWhitespace(buffer, keyEnd + 1, end);
+                if (position == end || buffer.get(position) != ':') {
+                    return "malformed JSON object";
+                }
+                position = skipWhitespace(buffer, position + 1, end);
+                if (position == end) {
+                    return "malformed JSON object";
+                }
+                int field = fieldOf(buffer, keyStart, keyEnd);
+                byte first = buffer.get(position);
+                int valueStart;
+                int valueEnd;
+                if (first == '"') {
+                    valueStart = position + 1;
+                    valueEnd = endOfString(buffer, valueStart, end);
+                    if (valueEnd < 0) {
+                        return "malformed JSON object";
+                    }
+                    position = valueEnd + 1;
+                    if (field >= 0 && field != CREATED_AT) {
+                        return FIELD_NAMES[field] + " must be an integer";
+                    }
+                } else if (first == '{' || first == '[') {
+                    return "nested JSON values are not supported";
+                } else {
+                    valueStart = position;
+                    while (position < end && buffer.get(position) != ',' && buffer.get(position) != '}'
+                            && !isWhitespace(buffer.get(position))) {
+                        position++;
+                    }
+                    valueEnd = position;
+                    if (field == CREATED_AT) {
+                        return "created_at must be a string";
+                    }
+                }
+                String error = setField(field, buffer, valueStart, valueEnd);
+                if (error != null) {
+                    return error;
+                }
+                position = skipWhitespace(buffer, position, end);
+                if (position < end && buffer.get(position) == ',') {
+                    position = skipWhitespace(buffer, position + 1, end);
+                } else if (position < end && buffer.get(position) == '}') {
+                    return trailing(buffer, position + 1, end);
+                } else {
+                    return "malformed JSON object";
+                }
+            }
+        }
+
+        private static String trailing(ByteBuffer buffer, int position, int end) {
+            return skipWhitespace(buffer, position, end) == end ? null : "text after the JSON object";
+        }
+
+        private static int skipWhitespace(ByteBuffer buffer, int position, int end) {
+            while (position < end && (isWhitespace(buffer.get(position)) || buffer.get(position) == '\n')) {
+                position++;
+            }
+            return position;
+        }
+
+        /**
+         * Returns the index of the closing quote of a string, skipping escaped characters, or -1 if there is none.
+         */
+        private static int endOfString(ByteBuffer buffer, int position, int end) {
+            for (; position < end; position++) {
+                byte b = buffer.get(position);
+                if (b == '\\') {
+                    position++;
+                } else if (b == '"') {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        private static int fieldOf(ByteBuffer buffer, int start, int end) {
+            for (int field = 0; field < KEYS.length; field++) {
+                for (byte[] key : KEYS[field]) {
+                    if (matches(buffer, start, end, key)) {
+                        return field;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private static boolean matches(ByteBuffer buffer, int start, int end, byte[] key) {
+            if (end - start != key.length) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (buffer.get(start + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reusable view of a range of single-byte characters in a buffer. A string is only created when the view is
+     * printed.
+     */
+    private static final class ByteSequence implements CharSequence {
+
+        private ByteBuffer buffer;
+        private int start;
+        private int length;
+
+        ByteSequence wrap(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = end - start;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Command line tool that writes a synthetic {@code ratings} and {@code rating_categories} dataset into a new SQLite
+ * file, for testing the queries at production scale. The output depends only on the options, so the same options always
+ * produce the same rows.
+ *
+ * <p>
+ * Every day of the time span gets the same number of tickets, spread evenly over the day, and every ticket gets the
+ * same number of ratings, created within an hour after the ticket and on the same day. Each ticket has one reviewee;
+ * each rating has a random reviewer and a category drawn from a Zipf distribution, so that with a positive skew the
+ * first categories are rated more often. Rating values lean towards the top of the 0 to 5 scale.
+ *
+ * <p>
+ * Rows are written with batched multi-row prepared inserts, with journaling and syncing turned off while the file is
+ * built, and committed in large transactions. Run it from the packaged jar, for example:
+ *
+ * <pre>
+ * java -cp target/backend-0.0.1-SNAPSHOT.jar \
+ *     -Dloader.main=com.kaarelkaasla.klaustestassignment.tools.RatingsGenerator \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --output /tmp/ratings.db --days 365 --tickets-per-day 70000 --ratings-per-ticket 4
+ * </pre>
+ */
+public class RatingsGenerator {
+
+    /**
+     * Rows per INSERT statement. SQLite allows 32766 bound parameters per statement.
+     */
+    static final int ROWS_PER_INSERT = 500;
+
+    private static final String[] CATEGORY_NAMES = { "Spelling", "Grammar", "GDPR", "Randomness" };
+    private static final double[] CATEGORY_WEIGHTS = { 1.0, 0.7, 1.2, 0.0 };
+
+    /**
+     * Cumulative probabilities of the rating values 0 to 5.
+     */
+    static final double[] RATING_CUMULATIVE = { 0.03, 0.08, 0.16, 0.32, 0.60, 1.0 };
+
+    private static final int COLUMNS = 6;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long RATING_SPREAD_SECONDS = 3_600;
+
+    private final Settings settings;
+
+    /**
+     * Constructs a generator with the given settings.
+     *
+     * @param settings
+     *            The size and shape of the dataset.
+     */
+    public RatingsGenerator(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Runs the generator with the given command line options.
+     *
+     * @param args
+     *            The command line options, see {@link Settings#from(CommandLineOptions)}.
+     */
+    public static void main(String[] args) {
+        Settings settings;
+        try {
+            CommandLineOptions options = new CommandLineOptions(args);
+            settings = Settings.from(options);
+            options.checkAllUsed();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Settings.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            Result result = new RatingsGenerator(settings).generate();
+            System.out.printf("Wrote %,d ratings of %,d tickets to %s in %s (%,d rows/s, %,d MB)%n", result.rows(),
+                    result.tickets(), settings.output(), formatDuration(result.elapsed()), result.rowsPerSecond(),
+                    Files.size(settings.output()) >> 20);
+        } catch (IOException | SQLException e) {
+            System.err.println("Failed to generate ratings: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes the dataset. The output file must not exist unless overwriting is enabled.
+     *
+     * @return The number of rows and tickets written and the time it took.
+     *
+     * @throws IOException
+     *             If the output file exists or cannot be replaced.
+     * @throws SQLException
+     *             If writing to the database fails.
+     */
+    public Result generate() throws IOException, SQLException {
+        Path output = settings.output();
+        if (Files.exists(output)) {
+            if (!settings.overwrite()) {
+                throw new IOException("Output file " + output + " exists, use --overwrite to replace it");
+            }
+            Files.delete(output);
+        }
+
+        long startNanos = System.nanoTime();
+        long tickets = (long) settings.days() * settings.ticketsPerDay();
+        long rows = tickets * settings.ratingsPerTicket();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + output)) {
+            try (Statement statement = connection.createStatement()) {
+                // The file is rebuilt from scratch on failure, so durability is not needed while writing.
+                statement.execute("PRAGMA journal_mode = OFF");
+                statement.execute("PRAGMA synchronous = OFF");
+                statement.execute("PRAGMA locking_mode = EXCLUSIVE");
+                statement.execute("PRAGMA temp_store = MEMORY");
+                statement.execute("PRAGMA cache_size = -262144");
+                createSchema(statement);
+            }
+            connection.setAutoCommit(false);
+            insertCategories(connection);
+            insertRatings(connection, rows);
+            connection.commit();
+        }
+        return new Result(rows, tickets, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    private static void createSchema(Statement statement) throws SQLException {
+        statement.execute("CREATE TABLE rating_categories (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "name TEXT NOT NULL, weight REAL NOT NULL)");
+        statement.execute("CREATE TABLE ratings (id INTEGER PRIMARY KEY AUTOINCREMENT, rating INTEGER NOT NULL, "
+                + "ticket_id INTEGER NOT NULL, rating_category_id INTEGER NOT NULL, reviewer_id INTEGER NOT NULL, "
+                + "reviewee_id INTEGER NOT NULL, created_at TEXT)");
+    }
+
+    private void insertCategories(Connection connection) throws SQLException {
+        try (PreparedStatement insert = connection
+                .prepareStatement("INSERT INTO rating_categories (id, name, weight) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < settings.categories(); i++) {
+                insert.setInt(1, i + 1);
+                insert.setString(2, i < CATEGORY_NAMES.length ? CATEGORY_NAMES[i] : "Category " + (i + 1));
+                insert.setDouble(3, i < CATEGORY_WEIGHTS.length ? CATEGORY_WEIGHTS[i] : 1.0);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private void insertRatings(Connection connection, long totalRows) throws SQLException {
+        SplittableRandom random = new SplittableRandom(settings.seed());
+        double[] categoryCumulative = zipfCumulative(settings.categories(), settings.categorySkew());
+        long firstDay = settings.startDate().atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        int ticketsPerDay = settings.ticketsPerDay();
+        int ratingsPerTicket = settings.ratingsPerTicket();
+
+        RowBatch batch = new RowBatch(connection, totalRows);
+        try {
+            long ticketId = 0;
+            for (int day = 0; day < settings.days(); day++) {
+                long dayStart = firstDay + day * SECONDS_PER_DAY;
+                for (int t = 0; t < ticketsPerDay; t++) {
+                    ticketId++;
+                    long ticketSecond = dayStart + t * (SECONDS_PER_DAY - RATING_SPREAD_SECONDS) / ticketsPerDay;
+                    int revieweeId = random.nextInt(settings.reviewees()) + 1;
+                    for (int r = 0; r < ratingsPerTicket; r++) {
+                        long createdAt = ticketSecond + random.nextLong(RATING_SPREAD_SECONDS);
+                        batch.add(pick(RATING_CUMULATIVE, random.nextDouble()), ticketId,
+                                pick(categoryCumulative, random.nextDouble()) + 1,
+                                random.nextInt(settings.reviewers()) + 1, revieweeId, IsoDateTime.format(createdAt));
+                    }
+                }
+            }
+            batch.flush();
+        } finally {
+            batch.close();
+        }
+    }
+
+    /**
+     * Returns the cumulative probabilities of a Zipf distribution over the given number of values. An exponent of zero
+     * gives a uniform distribution.
+     */
+    static double[] zipfCumulative(int values, double exponent) {
+        double[] cumulative = new double[values];
+        double total = 0;
+        for (int i = 0; i < values; i++) {
+            total += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < values; i++) {
+            cumulative[i] /= total;
+        }
+        cumulative[values - 1] = 1.0;
+        return cumulative;
+    }
+
+    /**
+     * Returns the index of the first cumulative probability above the given uniform sample.
+     */
+    static int pick(double[] cumulative, double sample) {
+        int index = Arrays.binarySearch(cumulative, sample);
+        return index >= 0 ? Math.min(index + 1, cumulative.length - 1) : -index - 1;
+    }
+
+    static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ratings "
+                + "(rating, ticket_id, rating_category_id, reviewer_id, reviewee_id, created_at) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+        }
+        return sql.toString();
+    }
+
+    static String formatDuration(Duration duration) {
+        return duration.toMinutes() > 0 ? duration.toMinutes() + "m " + duration.toSecondsPart() + "s"
+                : duration.toSeconds() + "." + duration.toMillisPart() / 100 + "s";
+    }
+
+    /**
+     * Collects rows into multi-row INSERT statements, which are executed in JDBC batches and committed every
+     * transaction size rows. Progress is reported about every 5% of the rows.
+     */
+    private class RowBatch {
+
+        private final Connection connection;
+        private final PreparedStatement insert;
+        private final long totalRows;
+        private final long progressInterval;
+        private final long startNanos = System.nanoTime();
+        private final int[] ratings = new int[ROWS_PER_INSERT];
+        private final long[] ticketIds = new long[ROWS_PER_INSERT];
+        private final int[] categoryIds = new int[ROWS_PER_INSERT];
+        private final int[] reviewerIds = new int[ROWS_PER_INSERT];
+        private final int[] revieweeIds = new int[ROWS_PER_INSERT];
+        private final String[] createdAts = new String[ROWS_PER_INSERT];
+        private int rowsInStatement;
+        private int statementsInBatch;
+        private long rowsInTransaction;
+        private long rowsWritten;
+        private long nextProgress;
+
+        RowBatch(Connection connection, long totalRows) throws SQLException {
+            this.connection = connection;
+            this.totalRows = totalRows;
+            this.progressInterval = Math.max(totalRows / 20, 1);
+            this.nextProgress = progressInterval;
+            this.insert = connection.prepareStatement(insertSql(ROWS_PER_INSERT));
+        }
+
+        void add(int rating, long ticketId, int categoryId, int reviewerId, int revieweeId, String createdAt)
+                throws SQLException {
+            int row = rowsInStatement;
+            ratings[row] = rating;
+            ticketIds[row] = ticketId;
+            categoryIds[row] = categoryId;
+            reviewerIds[row] = reviewerId;
+            revieweeIds[row] = revieweeId;
+            createdAts[row] = createdAt;
+            if (++rowsInStatement == ROWS_PER_INSERT) {
+                bind(insert, 0, ROWS_PER_INSERT);
+                insert.addBatch();
+                rowsInStatement = 0;
+                rowsWritten += ROWS_PER_INSERT;
+                rowsInTransaction += ROWS_PER_INSERT;
+                if (++statementsInBatch * ROWS_PER_INSERT >= settings.batchSize()) {
+                    executeBatch();
+                }
+            }
+        }
+
+        /**
+         * Writes the collected rows, inserting the rows of an incomplete statement one by one.
+         */
+        void flush() throws SQLException {
+            executeBatch();
+            if (rowsInStatement > 0) {
+                try (PreparedStatement single = connection.prepareStatement(insertSql(1))) {
+                    for (int row = 0; row < rowsInStatement; row++) {
+                        bind(single, row, 1);
+                        single.addBatch();
+                    }
+                    single.executeBatch();
+                }
+                rowsWritten += rowsInStatement;
+                rowsInStatement = 0;
+            }
+        }
+
+        private void bind(PreparedStatement statement, int firstRow, int rows) throws SQLException {
+            for (int i = 0; i < rows; i++) {
+                int row = firstRow + i;
+                int offset = i * COLUMNS;
+                statement.setInt(offset + 1, ratings[row]);
+                statement.setLong(offset + 2, ticketIds[row]);
+                statement.setInt(offset + 3, categoryIds[row]);
+                statement.setInt(offset + 4, reviewerIds[row]);
+                statement.setInt(offset + 5, revieweeIds[row]);
+                statement.setString(offset + 6, createdAts[row]);
+            }
+        }
+
+        private void executeBatch() throws SQLException {
+            if (statementsInBatch == 0) {
+                return;
+            }
+            insert.executeBatch();
+            statementsInBatch = 0;
+            if (rowsInTransaction >= settings.transactionSize()) {
+                connection.commit();
+                rowsInTransaction = 0;
+            }
+            if (rowsWritten >= nextProgress) {
+                nextProgress += progressInterval;
+                long elapsedNanos = System.nanoTime() - startNanos;
+                System.out.printf("%,d of %,d rows (%d%%), %,d rows/s%n", rowsWritten, totalRows,
+                        rowsWritten * 100 / totalRows, rowsWritten * 1_000_000_000L / Math.max(elapsedNanos, 1));
+            }
+        }
+
+        void close() throws SQLException {
+            insert.close();
+        }
+    }
+
+    /**
+     * Size and shape of the generated dataset.
+     *
+     * @param output
+     *            The SQLite file to create.
+     * @param overwrite
+     *            Whether an existing output file is replaced.
+     * @param seed
+     *            The random seed.
+     * @param startDate
+     *            The first day of the time span.
+     * @param days
+     *            The number of days in the time span.
+     * @param ticketsPerDay
+     *            The tickets created per day.
+     * @param ratingsPerTicket
+     *            The ratings given per ticket.
+     * @param categories
+     *            The number of rating categories. The first four are the categories of the sample database.
+     * @param categorySkew
+     *            The Zipf exponent of the category distribution, 0 for uniform.
+     * @param reviewers
+     *            The number of distinct reviewers.
+     * @param reviewees
+     *            The number of distinct reviewees.
+     * @param batchSize
+     *            The rows sent to SQLite per JDBC batch.
+     * @param transactionSize
+     *            The rows written per transaction.
+     */
+    public record Settings(Path output, boolean overwrite, long seed, LocalDate startDate, int days, int ticketsPerDay,
+            int ratingsPerTicket, int categories, double categorySkew, int reviewers, int reviewees, int batchSize,
+            long transactionSize) {
+
+        static final String USAGE = """
+                Usage: RatingsGenerator --output FILE [options]
+                  --overwrite                replace an existing output file
+                  --seed N                   random seed (default 42)
+                  --start-date yyyy-MM-dd    first day (default 2019-01-01)
+                  --days N                   days in the time span (default 365)
+                  --tickets-per-day N        tickets created per day (default 1000)
+                  --ratings-per-ticket N     ratings per ticket (default 4)
+                  --categories N             rating categories (default 4)
+                  --category-skew X          Zipf exponent of the category distribution, 0 for uniform (default 0)
+                  --reviewers N              distinct reviewers (default 50)
+                  --reviewees N              distinct reviewees (default 500)
+                  --batch-size N             rows per JDBC batch (default 50000)
+                  --transaction-size N       rows per transaction (default 5000000)""";
+
+        /**
+         * Reads the settings from command line options.
+         *
+         * @param options
+         *            The options.
+         *
+         * @return The settings.
+         *
+         * @throws IllegalArgumentException
+         *             If an option is missing or invalid.
+         */
+        public static Settings from(CommandLineOptions options) {
+            return new Settings(Path.of(options.getString("output", null)), options.has("overwrite"),
+                    options.getLong("seed", 42, Long.MIN_VALUE, Long.MAX_VALUE),
+                    options.getDate("start-date", LocalDate.of(2019, 1, 1)), options.getInt("days", 365, 1, 36_500),
+                    options.getInt("tickets-per-day", 1_000, 1, 10_000_000),
+                    options.getInt("ratings-per-ticket", 4, 1, 1_000), options.getInt("categories", 4, 1, 1_000),
+                    options.getDouble("category-skew", 0, 0, 10), options.getInt("reviewers", 50, 1, 1_000_000_000),
+                    options.getInt("reviewees", 500, 1, 1_000_000_000),
+                    options.getInt("batch-size", 50_000, ROWS_PER_INSERT, 10_000_000),
+                    options.getLong("transaction-size", 5_000_000, 1, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Outcome of a run.
+     *
+     * @param rows
+     *            The ratings written.
+     * @param tickets
+     *            The tickets the ratings belong to.
+     * @param elapsed
+     *            The time it took.
+     */
+    public record Result(long rows, long tickets, Duration elapsed) {
+
+        /**
+         * Returns the write throughput.
+         *
+         * @return The rows written per second.
+         */
+        public long rowsPerSecond() {
+            return rows * 1_000_000_000L / Math.max(elapsed.toNanos(), 1);
+        }
+    }
+}
@@ -0,0 +1,652 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line tool that loads a CSV or NDJSON dump of ratings into the {@code ratings} table of an existing SQLite
+ * database. The file is memory-mapped in windows of up to the map size and each line is parsed straight from the mapped
+ * bytes by a {@link RatingLineParser}; valid ratings are written with batched multi-row prepared inserts, and invalid
+ * ones are counted and skipped.
+ *
+ * <p>
+ * The import commits every checkpoint interval. In the same transaction, the byte offset of the next line is stored in
+ * the {@code rating_imports} table, so an interrupted import resumes from its last commit when run again with the same
+ * file, without loading any line twice. A checkpoint is only reused while the file keeps its size and modification
+ * time.
+ *
+ * <p>
+ * The backend keeps no aggregate tables, since the dashboards aggregate the ratings at query time, so the derived
+ * structures that grow with the table are its indexes and the query planner statistics. The indexes on {@code ratings}
+ * are dropped before the first line and rebuilt once after the last, which is faster than updating them for every
+ * insert, and the statistics are refreshed if the database has any. The dropped indexes are stored with the checkpoint,
+ * so a resumed import still rebuilds them. Run it from the packaged jar, for example:
+ *
+ * <pre>
+ * java -cp target/backend-0.0.1-SNAPSHOT.jar \
+ *     -Dloader.main=com.kaarelkaasla.klaustestassignment.tools.RatingsImporter \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --input /data/ratings-2023.csv --database /data/database.db
+ * </pre>
+ */
+public class RatingsImporter {
+
+    /**
+     * The number of rejected lines that are described in the result.
+     */
+    static final int MAX_REPORTED_REJECTIONS = 20;
+
+    private static final String CREATE_CHECKPOINTS_SQL = "CREATE TABLE IF NOT EXISTS rating_imports "
+            + "(file TEXT PRIMARY KEY, size INTEGER NOT NULL, modified INTEGER NOT NULL, offset INTEGER NOT NULL, "
+            + "imported INTEGER NOT NULL, rejected INTEGER NOT NULL, dropped_indexes TEXT NOT NULL)";
+
+    private static final String INDEX_SEPARATOR = ";\n";
+
+    private final Settings settings;
+
+    /**
+     * Constructs an importer with the given settings.
+     *
+     * @param settings
+     *            The file to import and the database to import it into.
+     */
+    public RatingsImporter(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Runs the importer with the given command line options.
+     *
+     * @param args
+     *            The command line options, see {@link Settings#from(CommandLineOptions)}.
+     */
+    public static void main(String[] args) {
+        Settings settings;
+        try {
+            CommandLineOptions options = new CommandLineOptions(args);
+            settings = Settings.from(options);
+            options.checkAllUsed();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Settings.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            Result result = new RatingsImporter(settings).run();
+            if (result.resumed()) {
+                System.out.printf("Resumed at byte %,d%n", result.resumedFrom());
+            }
+            for (String rejection : result.rejections()) {
+                System.out.println("Rejected " + rejection);
+            }
+            System.out.printf("Imported %,d ratings and rejected %,d from %s in %s (%,d rows/s, %,d MB/s this run)%n",
+                    result.imported(), result.rejected(), settings.input(),
+                    RatingsGenerator.formatDuration(result.elapsed()), result.rowsPerSecond(),
+                    result.bytesPerSecond() >> 20);
+        } catch (IOException | SQLException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Imports the file, resuming an interrupted import of it.
+     *
+     * @return The numbers of imported and rejected ratings and the time it took.
+     *
+     * @throws IOException
+     *             If a file cannot be read, the file changed since its import was interrupted, or a line is longer than
+     *             the map size.
+     * @throws SQLException
+     *             If the database lacks the ratings tables or writing to it fails.
+     */
+    public Result run() throws IOException, SQLException {
+        return run(Long.MAX_VALUE);
+    }
+
+    /**
+     * Imports the file, stopping after the given number of checkpoints as if interrupted.
+     */
+    Result run(long maxCheckpoints) throws IOException, SQLException {
+        Path input = settings.input().toAbsolutePath().normalize();
+        if (!Files.exists(settings.database())) {
+            throw new IOException("Database " + settings.database() + " does not exist");
+        }
+        long startNanos = System.nanoTime();
+        try (FileChannel file = FileChannel.open(input, StandardOpenOption.READ);
+                Connection connection = DriverManager.getConnection("jdbc:sqlite:" + settings.database())) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA busy_timeout = 10000");
+                statement.execute("PRAGMA temp_store = MEMORY");
+                statement.execute("PRAGMA cache_size = -262144");
+            }
+            connection.setAutoCommit(false);
+            BitSet categories = readCategories(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_CHECKPOINTS_SQL);
+            }
+
+            long size = file.size();
+            long modified = Files.getLastModifiedTime(input).toMillis();
+            Checkpoint checkpoint = readCheckpoint(connection, input.toString());
+            RatingLineParser parser;
+            long dataStart = 0;
+            if (settings.format() == RatingLineParser.Format.CSV) {
+                String header = readHeader(file);
+                dataStart = header.length() + 1;
+                try {
+                    parser = RatingLineParser.csv(header.strip(), categories);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            } else {
+                parser = RatingLineParser.ndjson(categories);
+            }
+
+            if (checkpoint != null && (checkpoint.size() != size || checkpoint.modified() != modified)
+                    && !settings.restart()) {
+                throw new IOException("The file changed since its import was interrupted at byte " + checkpoint.offset()
+                        + ", use --restart to import it again from the start");
+            }
+            boolean resumed = checkpoint != null && !settings.restart();
+            if (!resumed) {
+                // Indexes dropped by an earlier attempt are kept in the checkpoint until they are rebuilt.
+                String droppedIndexes = checkpoint != null ? checkpoint.droppedIndexes() : "";
+                if (!settings.keepIndexes()) {
+                    droppedIndexes = join(droppedIndexes, dropIndexes(connection));
+                }
+                checkpoint = new Checkpoint(size, modified, dataStart, 0, 0, droppedIndexes);
+                writeCheckpoint(connection, input.toString(), checkpoint);
+                connection.commit();
+            }
+
+            Import run = new Import(connection, input.toString(), file, parser, checkpoint, startNanos);
+            boolean complete = run.importLines(maxCheckpoints);
+            if (complete) {
+                run.writer.flush();
+                rebuildIndexes(connection, checkpoint.droppedIndexes());
+                try (PreparedStatement delete = connection
+                        .prepareStatement("DELETE FROM rating_imports WHERE file = ?")) {
+                    delete.setString(1, input.toString());
+                    delete.executeUpdate();
+                }
+                connection.commit();
+            }
+            return new Result(run.imported, run.rejected, resumed, checkpoint.offset(), run.offset, size,
+                    run.rowsThisRun, Duration.ofNanos(System.nanoTime() - startNanos), run.rejections);
+        }
+    }
+
+    private static BitSet readCategories(Connection connection) throws SQLException {
+        BitSet categories = new BitSet();
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement
+                .executeQuery("SELECT id FROM rating_categories WHERE id BETWEEN 1 AND " + Integer.MAX_VALUE)) {
+            while (resultSet.next()) {
+                categories.set(resultSet.getInt(1));
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            // Fails early, before any index is dropped, if the ratings table is missing.
+            statement.executeQuery("SELECT 1 FROM ratings LIMIT 1").close();
+        }
+        return categories;
+    }
+
+    /**
+     * Reads the CSV header, which must fit in the first window. Column names are ASCII, so the header is decoded byte
+     * by byte, keeping its length equal to its size in bytes.
+     */
+    private String readHeader(FileChannel file) throws IOException {
+        MappedByteBuffer window = file.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(settings.mapSize(), file.size()));
+        for (int i = 0; i < window.limit(); i++) {
+            if (window.get(i) == '\n') {
+                byte[] header = new byte[i];
+                window.get(0, header);
+                return new String(header, StandardCharsets.ISO_8859_1);
+            }
+        }
+        throw new IOException("The CSV file has no header line within the first " + window.limit() + " bytes");
+    }
+
+    private static Checkpoint readCheckpoint(Connection connection, String file) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT size, modified, offset, imported, rejected, dropped_indexes FROM rating_imports WHERE file = ?")) {
+            select.setString(1, file);
+            try (ResultSet resultSet = select.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                return new Checkpoint(resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3),
+                        resultSet.getLong(4), resultSet.getLong(5), resultSet.getString(6));
+            }
+        }
+    }
+
+    private static void writeCheckpoint(Connection connection, String file, Checkpoint checkpoint) throws SQLException {
+        try (PreparedStatement upsert = connection.prepareStatement("INSERT OR REPLACE INTO rating_imports "
+                + "(file, size, modified, offset, imported, rejected, dropped_indexes) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            upsert.setString(1, file);
+            upsert.setLong(2, checkpoint.size());
+            upsert.setLong(3, checkpoint.modified());
+            upsert.setLong(4, checkpoint.offset());
+            upsert.setLong(5, checkpoint.imported());
+            upsert.setLong(6, checkpoint.rejected());
+            upsert.setString(7, checkpoint.droppedIndexes());
+            upsert.executeUpdate();
+        }
+    }
+
+    /**
+     * Drops the indexes of the ratings table.
+     *
+     * @return The statements that create them again.
+     */
+    private static String dropIndexes(Connection connection) throws SQLException {
+        List<String> names = new ArrayList<>();
+        List<String> statements = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT name, sql FROM sqlite_master "
+                        + "WHERE type = 'index' AND tbl_name = 'ratings' AND sql IS NOT NULL")) {
+            while (resultSet.next()) {
+                names.add(resultSet.getString(1));
+                statements.add(resultSet.getString(2));
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String name : names) {
+                statement.execute("DROP INDEX \"" + name.replace("\"", "\"\"") + "\"");
+            }
+        }
+        return String.join(INDEX_SEPARATOR, statements);
+    }
+
+    private static void rebuildIndexes(Connection connection, String droppedIndexes) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            if (!droppedIndexes.isEmpty()) {
+                for (String sql : droppedIndexes.split(INDEX_SEPARATOR)) {
+                    statement.execute(sql);
+                }
+            }
+            boolean hasStatistics;
+            try (ResultSet resultSet = statement
+                    .executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'sqlite_stat1'")) {
+                hasStatistics = resultSet.next();
+            }
+            if (hasStatistics) {
+                statement.execute("ANALYZE ratings");
+            }
+        }
+    }
+
+    private static String join(String first, String second) {
+        return first.isEmpty() ? second : second.isEmpty() ? first : first + INDEX_SEPARATOR + second;
+    }
+
+    /**
+     * The state of one run: the position in the file, the counts since the start of the import and the rows waiting to
+     * be written.
+     */
+    private final class Import {
+
+        private final Connection connection;
+        private final String file;
+        private final FileChannel channel;
+        private final RatingLineParser parser;
+        private final Checkpoint start;
+        private final long startNanos;
+        private final RowWriter writer;
+        private final List<String> rejections = new ArrayList<>();
+        private long offset;
+        private long imported;
+        private long rejected;
+        private long rowsThisRun;
+        private long linesSinceCheckpoint;
+
+        Import(Connection connection, String file, FileChannel channel, RatingLineParser parser, Checkpoint start,
+                long startNanos) throws SQLException {
+            this.connection = connection;
+            this.file = file;
+            this.channel = channel;
+            this.parser = parser;
+            this.start = start;
+            this.startNanos = startNanos;
+            this.writer = new RowWriter(connection);
+            this.offset = start.offset();
+            this.imported = start.imported();
+            this.rejected = start.rejected();
+        }
+
+        /**
+         * Imports the lines from the offset of the checkpoint to the end of the file, mapping one window at a time. A
+         * line that runs past the end of a window is read again at the start of the next one.
+         *
+         * @return True if the end of the file was reached, false if the import stopped at a checkpoint.
+         */
+        boolean importLines(long maxCheckpoints) throws IOException, SQLException {
+            long size = channel.size();
+            long checkpoints = 0;
+            while (offset < size) {
+                long windowSize = Math.min(settings.mapSize(), size - offset);
+                boolean lastWindow = offset + windowSize == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, windowSize);
+                int limit = (int) windowSize;
+                int lineStart = 0;
+                while (lineStart < limit) {
+                    int newline = indexOf(window, (byte) '\n', lineStart, limit);
+                    if (newline < 0 && !lastWindow) {
+                        break;
+                    }
+                    int next = newline < 0 ? limit : newline + 1;
+                    int lineEnd = newline < 0 ? limit : newline;
+                    if (lineEnd > lineStart && window.get(lineEnd - 1) == '\r') {
+                        lineEnd--;
+                    }
+                    importLine(window, lineStart, lineEnd);
+                    lineStart = next;
+                    if (linesSinceCheckpoint >= settings.checkpointLines()) {
+                        checkpoint(offset + lineStart, size);
+                        if (++checkpoints >= maxCheckpoints) {
+                            offset += lineStart;
+                            return false;
+                        }
+                    }
+                }
+                if (lineStart == 0) {
+                    throw new IOException("The line at byte " + offset + " is longer than the map size of "
+                            + settings.mapSize() + " bytes");
+                }
+                offset += lineStart;
+            }
+            return true;
+        }
+
+        private void importLine(MappedByteBuffer window, int start, int end) throws SQLException {
+            if (isBlank(window, start, end)) {
+                return;
+            }
+            linesSinceCheckpoint++;
+            String error = parser.parse(window, start, end);
+            if (error != null) {
+                rejected++;
+                if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                    rejections.add("line at byte " + (offset + start) + ": " + error);
+                }
+                return;
+            }
+            writer.add(parser);
+            imported++;
+            rowsThisRun++;
+        }
+
+        /**
+         * Writes the pending rows and commits them with the offset of the next line.
+         */
+        private void checkpoint(long nextOffset, long size) throws SQLException {
+            writer.flush();
+            writeCheckpoint(connection, file, new Checkpoint(start.size(), start.modified(), nextOffset, imported,
+                    rejected, start.droppedIndexes()));
+            connection.commit();
+            linesSinceCheckpoint = 0;
+            long elapsedNanos = Math.max(System.nanoTime() - startNanos, 1);
+            System.out.printf("Checkpoint at %,d of %,d MB (%d%%): %,d ratings imported, %,d rejected, %,d rows/s%n",
+                    nextOffset >> 20, size >> 20, nextOffset * 100 / Math.max(size, 1), imported, rejected,
+                    rowsThisRun * 1_000_000_000L / elapsedNanos);
+        }
+
+        private static int indexOf(MappedByteBuffer window, byte value, int from, int limit) {
+            for (int i = from; i < limit; i++) {
+                if (window.get(i) == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean isBlank(MappedByteBuffer window, int start, int end) {
+            for (int i = start; i < end; i++) {
+                byte b = window.get(i);
+                if (b != ' ' && b != '\t') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Collects rows into multi-row INSERT statements, which are executed in JDBC batches of the batch size. A flush
+     * also writes the rows of an incomplete statement.
+     */
+    private final class RowWriter {
+
+        private static final int COLUMNS = 6;
+        private static final int ROWS = RatingsGenerator.ROWS_PER_INSERT;
+
+        private final Connection connection;
+        private final PreparedStatement insert;
+        private final int[] ratings = new int[ROWS];
+        private final int[] ticketIds = new int[ROWS];
+        private final int[] categoryIds = new int[ROWS];
+        private final int[] reviewerIds = new int[ROWS];
+        private final int[] revieweeIds = new int[ROWS];
+        private final long[] createdAts = new long[ROWS];
+        private int rowsInStatement;
+        private int statementsInBatch;
+
+        RowWriter(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.insert = connection.prepareStatement(RatingsGenerator.insertSql(ROWS));
+        }
+
+        void add(RatingLineParser row) throws SQLException {
+            int index = rowsInStatement;
+            ratings[index] = row.getRating();
+            ticketIds[index] = row.getTicketId();
+            categoryIds[index] = row.getCategoryId();
+            reviewerIds[index] = row.getReviewerId();
+            revieweeIds[index] = row.getRevieweeId();
+            createdAts[index] = row.getCreatedAt();
+            if (++rowsInStatement == ROWS) {
+                bind(insert, ROWS);
+                insert.addBatch();
+                rowsInStatement = 0;
+                if (++statementsInBatch * ROWS >= settings.batchSize()) {
+                    executeBatch();
+                }
+            }
+        }
+
+        void flush() throws SQLException {
+            executeBatch();
+            if (rowsInStatement > 0) {
+                try (PreparedStatement remainder = connection
+                        .prepareStatement(RatingsGenerator.insertSql(rowsInStatement))) {
+                    bind(remainder, rowsInStatement);
+                    remainder.executeUpdate();
+                }
+                rowsInStatement = 0;
+            }
+        }
+
+        private void executeBatch() throws SQLException {
+            if (statementsInBatch > 0) {
+                insert.executeBatch();
+                statementsInBatch = 0;
+            }
+        }
+
+        private void bind(PreparedStatement statement, int rows) throws SQLException {
+            for (int row = 0; row < rows; row++) {
+                int offset = row * COLUMNS;
+                statement.setInt(offset + 1, ratings[row]);
+                statement.setInt(offset + 2, ticketIds[row]);
+                statement.setInt(offset + 3, categoryIds[row]);
+                statement.setInt(offset + 4, reviewerIds[row]);
+                statement.setInt(offset + 5, revieweeIds[row]);
+                // The column holds text, so the date-time is formatted only here, once per written row.
+                statement.setString(offset + 6, IsoDateTime.format(createdAts[row]));
+            }
+        }
+    }
+
+    /**
+     * Progress of an import, as stored in the {@code rating_imports} table.
+     *
+     * @param size
+     *            The size of the file when the import started.
+     * @param modified
+     *            The modification time of the file when the import started, in epoch milliseconds.
+     * @param offset
+     *            The byte offset of the first line that is not committed.
+     * @param imported
+     *            The ratings committed so far.
+     * @param rejected
+     *            The lines rejected so far.
+     * @param droppedIndexes
+     *            The statements that rebuild the dropped indexes, separated by semicolons and newlines.
+     */
+    private record Checkpoint(long size, long modified, long offset, long imported, long rejected,
+            String droppedIndexes) {
+    }
+
+    /**
+     * The file to import and how.
+     *
+     * @param input
+     *            The CSV or NDJSON file.
+     * @param format
+     *            The format of the file.
+     * @param database
+     *            The SQLite database with the {@code ratings} and {@code rating_categories} tables.
+     * @param checkpointLines
+     *            The lines read between commits.
+     * @param batchSize
+     *            The rows sent to SQLite per JDBC batch.
+     * @param mapSize
+     *            The bytes mapped at a time, which limits the length of a line.
+     * @param keepIndexes
+     *            Whether the indexes are kept up to date during the import instead of being rebuilt at the end.
+     * @param restart
+     *            Whether an interrupted import of the file is started again from the beginning. Ratings committed by
+     *            the earlier attempt are not removed.
+     */
+    public record Settings(Path input, RatingLineParser.Format format, Path database, long checkpointLines,
+            int batchSize, long mapSize, boolean keepIndexes, boolean restart) {
+
+        static final String USAGE = """
+                Usage: RatingsImporter --input FILE --database FILE [options]
+                  --format csv|ndjson        format of the input (default from the file extension)
+                  --checkpoint-lines N       lines read between commits (default 1000000)
+                  --batch-size N             rows per JDBC batch (default 50000)
+                  --map-size SIZE            bytes mapped at a time, the longest possible line (default 1GB)
+                  --keep-indexes             update the indexes during the import instead of rebuilding them
+                  --restart                  import the file again from the start, ignoring its checkpoint""";
+
+        /**
+         * Reads the settings from command line options.
+         *
+         * @param options
+         *            The options.
+         *
+         * @return The settings.
+         *
+         * @throws IllegalArgumentException
+         *             If an option is missing or invalid.
+         */
+        public static Settings from(CommandLineOptions options) {
+            Path input = Path.of(options.getString("input", null));
+            RatingLineParser.Format format = options.has("format") ? parseFormat(options.getString("format", null))
+                    : RatingLineParser.Format.of(input);
+            DataSize mapSize = options.getDataSize("map-size", DataSize.ofGigabytes(1));
+            if (mapSize.toBytes() < 1 || mapSize.toBytes() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Option --map-size must be between 1 byte and 2GB");
+            }
+            return new Settings(input, format, Path.of(options.getString("database", null)),
+                    options.getLong("checkpoint-lines", 1_000_000, 1, Long.MAX_VALUE),
+                    options.getInt("batch-size", 50_000, RatingsGenerator.ROWS_PER_INSERT, 10_000_000),
+                    mapSize.toBytes(), options.has("keep-indexes"), options.has("restart"));
+        }
+
+        private static RatingLineParser.Format parseFormat(String text) {
+            try {
+                return RatingLineParser.Format.valueOf(text.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Option --format must be csv or ndjson: " + text);
+            }
+        }
+    }
+
+    /**
+     * Outcome of a run.
+     *
+     * @param imported
+     *            The ratings imported since the import started, including earlier runs.
+     * @param rejected
+     *            The lines rejected since the import started, including earlier runs.
+     * @param resumed
+     *            Whether the run continued an interrupted import.
+     * @param resumedFrom
+     *            The byte offset the run started at.
+     * @param offset
+     *            The byte offset the run stopped at.
+     * @param size
+     *            The size of the file.
+     * @param rowsThisRun
+     *            The ratings imported by this run.
+     * @param elapsed
+     *            The time the run took.
+     * @param rejections
+     *            The first rejected lines of this run with the reasons.
+     */
+    public record Result(long imported, long rejected, boolean resumed, long resumedFrom, long offset, long size,
+            long rowsThisRun, Duration elapsed, List<String> rejections) {
+
+        /**
+         * Returns whether the whole file has been imported.
+         *
+         * @return True if the run reached the end of the file.
+         */
+        public boolean complete() {
+            return offset == size;
+        }
+
+        /**
+         * Returns the write throughput of this run.
+         *
+         * @return The ratings imported per second.
+         */
+        public long rowsPerSecond() {
+            return rowsThisRun * 1_000_000_000L / Math.max(elapsed.toNanos(), 1);
+        }
+
+        /**
+         * Returns the read throughput of this run.
+         *
+         * @return The bytes read per second.
+         */
+        public long bytesPerSecond() {
+            return (offset - resumedFrom) * 1_000_000_000L / Math.max(elapsed.toNanos(), 1);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line soak test of a running instance. The load test workload is sent for hours as a series of windows, while
+ * the JVM metrics of the instance are sampled from {@code /actuator/prometheus}. Every window reports the throughput
+ * and latency next to the heap retained after garbage collection, the allocation rate, the GC pause percentiles and the
+ * thread count, so a slow leak shows up as a retained heap or thread count that keeps rising from window to window.
+ *
+ * <p>
+ * The test fails if the retained heap of the last window is more than {@code --max-heap-growth} above that of the
+ * first, or the thread count more than {@code --max-thread-growth} above it. The first window already includes the
+ * caches and pools that fill up once, so only growth under steady load counts. Windows should be long enough to include
+ * a few collections of the long-lived heap, because the retained heap of a window is the lowest seen in it. Run it from
+ * the packaged jar, for example:
+ *
+ * <pre>
+ * java -cp target/backend-0.0.1-SNAPSHOT.jar \
+ *     -Dloader.main=com.kaarelkaasla.klaustestassignment.tools.SoakTest \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --duration 4h --window 10m --rate 200 --report /tmp/soak.json
+ * </pre>
+ */
+public class SoakTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final String METRICS_PATH = "/actuator/prometheus";
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    private final Settings settings;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final List<JvmSample> samples = new ArrayList<>();
+    private long startNanos;
+
+    /**
+     * Constructs a soak test with the given settings.
+     *
+     * @param settings
+     *            The workload, length and thresholds of the run.
+     */
+    public SoakTest(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Runs the soak test with the given command line options, prints the windows and exits with status 1 if a threshold
+     * is exceeded.
+     *
+     * @param args
+     *            The command line options, see {@link Settings#from(CommandLineOptions)}.
+     */
+    public static void main(String[] args) {
+        Settings settings;
+        try {
+            CommandLineOptions options = new CommandLineOptions(args);
+            settings = Settings.from(options);
+            options.checkAllUsed();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Settings.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            List<Window> windows = new SoakTest(settings).run();
+            List<String> failures = check(windows, settings);
+            System.out.print(format(windows));
+            if (settings.loadTest().report() != null) {
+                Map<String, Object> report = new LinkedHashMap<>();
+                report.put("settings", settings.describe());
+                report.put("windows", windows);
+                report.put("failures", failures);
+                OBJECT_MAPPER.writeValue(settings.loadTest().report().toFile(), report);
+                System.out.println("Report written to " + settings.loadTest().report());
+            }
+            if (!failures.isEmpty()) {
+                failures.forEach(failure -> System.err.println("FAILED: " + failure));
+                System.exit(1);
+            }
+            System.out.println("PASSED");
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Soak test failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the windows one after another, sampling the JVM metrics of the instance throughout.
+     *
+     * @return The results of the windows.
+     *
+     * @throws IOException
+     *             If the metrics cannot be read at the start or end of a window.
+     * @throws ExecutionException
+     *             If a load test worker fails.
+     * @throws InterruptedException
+     *             If the calling thread is interrupted.
+     */
+    public List<Window> run() throws IOException, ExecutionException, InterruptedException {
+        startNanos = System.nanoTime();
+        sample();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "soak-test-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = settings.sampleInterval().toNanos();
+        sampler.scheduleAtFixedRate(() -> {
+            try {
+                sample();
+            } catch (IOException e) {
+                // A missed sample only thins out the window; the samples at its ends are required.
+                System.err.println("Sampling the metrics failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+
+        List<Window> windows = new ArrayList<>();
+        try {
+            Duration remaining = settings.loadTest().duration();
+            for (int index = 0; !remaining.isZero(); index++) {
+                Duration length = remaining.compareTo(settings.window()) < 0 ? remaining : settings.window();
+                remaining = remaining.minus(length);
+                Duration warmup = index == 0 ? settings.loadTest().warmup() : Duration.ZERO;
+                LoadTest.Settings windowSettings = settings.loadTest().forWindow(index, warmup, length);
+                long measureStartNanos = System.nanoTime() - startNanos + warmup.toNanos();
+                LoadTestReport report = new LoadTest(windowSettings).run();
+                sample();
+                Window window = window(index + 1, report.total(), samplesSince(measureStartNanos));
+                windows.add(window);
+                System.out.printf(
+                        "Window %d: %.1f req/s, p99 %.1f ms, retained heap %.1f MB, allocating %.1f MB/s, "
+                                + "%d GC pauses, p99 %.1f ms, %d threads%n",
+                        window.window(), window.throughput(), window.p99Millis(), window.retainedHeapMb(),
+                        window.allocationMbPerSecond(), window.gcPauses(), window.gcPauseP99Millis(), window.threads());
+            }
+        } finally {
+            sampler.shutdownNow();
+        }
+        return windows;
+    }
+
+    private void sample() throws IOException, InterruptedException {
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(
+                    HttpRequest
+                            .newBuilder(URI.create("http://" + settings.loadTest().host() + ":"
+                                    + settings.loadTest().httpPort() + METRICS_PATH))
+                            .timeout(settings.loadTest().timeout()).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new IOException("Reading " + METRICS_PATH + " failed: " + e, e);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Reading " + METRICS_PATH + " failed with HTTP " + response.statusCode());
+        }
+        JvmSample sample;
+        try {
+            sample = JvmSample.parse(response.body(), System.nanoTime() - startNanos);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        synchronized (samples) {
+            samples.add(sample);
+        }
+    }
+
+    /**
+     * Returns the samples taken from the given time on, preceded by the last sample before it so that counters can be
+     * differenced over the whole window.
+     */
+    private List<JvmSample> samplesSince(long elapsedNanos) {
+        synchronized (samples) {
+            int first = samples.size() - 1;
+            while (first > 0 && samples.get(first).elapsedNanos() > elapsedNanos) {
+                first--;
+            }
+            return List.copyOf(samples.subList(first, samples.size()));
+        }
+    }
+
+    /**
+     * Summarizes one window from its load test result and the JVM samples taken during it.
+     *
+     * @param number
+     *            The number of the window, from 1.
+     * @param result
+     *            The total load test result of the window.
+     * @param samples
+     *            At least two samples, in order, from the start to the end of the window.
+     *
+     * @return The window.
+     */
+    static Window window(int number, LoadTestReport.OperationResult result, List<JvmSample> samples) {
+        JvmSample first = samples.get(0);
+        JvmSample last = samples.get(samples.size() - 1);
+        double retained = samples.stream().skip(1).mapToDouble(JvmSample::retainedHeapBytes).min().orElse(0);
+        double heapUsedMax = samples.stream().mapToDouble(JvmSample::heapUsedBytes).max().orElse(0);
+        long threads = samples.stream().mapToLong(JvmSample::threads).max().orElse(0);
+        double seconds = (last.elapsedNanos() - first.elapsedNanos()) / 1e9;
+        double allocationRate = seconds > 0 ? (last.allocatedBytes() - first.allocatedBytes()) / seconds : 0;
+        return new Window(number, round(first.elapsedNanos() / 60e9), result.requests(), result.errors(),
+                result.throughput(), result.p99Millis(), megabytes(retained), megabytes(last.liveDataBytes()),
+                megabytes(heapUsedMax), megabytes(allocationRate), last.gcPauses() - first.gcPauses(),
+                round(last.gcPauseMillisSince(first, 50)), round(last.gcPauseMillisSince(first, 99)),
+                round(last.gcPauseMillisSince(first, 100)), threads);
+    }
+
+    /**
+     * Compares the last window with the first against the thresholds.
+     *
+     * @param windows
+     *            The windows of the run.
+     * @param settings
+     *            The thresholds.
+     *
+     * @return A description of every threshold exceeded, or an empty list if the run passed.
+     */
+    static List<String> check(List<Window> windows, Settings settings) {
+        List<String> failures = new ArrayList<>();
+        if (windows.size() < 2) {
+            return failures;
+        }
+        Window first = windows.get(0);
+        Window last = windows.get(windows.size() - 1);
+        double heapGrowth = last.retainedHeapMb() - first.retainedHeapMb();
+        double maxHeapGrowth = settings.maxHeapGrowth().toBytes() / BYTES_PER_MB;
+        if (heapGrowth > maxHeapGrowth) {
+            failures.add(String.format(
+                    "retained heap grew by %.1f MB from %.1f MB in window 1 to %.1f MB in window"
+                            + " %d, more than %.1f MB",
+                    heapGrowth, first.retainedHeapMb(), last.retainedHeapMb(), last.window(), maxHeapGrowth));
+        }
+        long threadGrowth = last.threads() - first.threads();
+        if (threadGrowth > settings.maxThreadGrowth()) {
+            failures.add(String.format("thread count grew by %d from %d in window 1 to %d in window %d, more than %d",
+                    threadGrowth, first.threads(), last.threads(), last.window(), settings.maxThreadGrowth()));
+        }
+        return failures;
+    }
+
+    /**
+     * Formats the windows as a table.
+     *
+     * @param windows
+     *            The windows of the run.
+     *
+     * @return The table.
+     */
+    static String format(List<Window> windows) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%n%6s %7s %9s %8s %8s %11s %9s %10s %7s %8s %8s %8s %7s%n", "window", "minute",
+                "req/s", "p99 ms", "errors", "retained MB", "live MB", "alloc MB/s", "pauses", "p50 ms", "p99 ms",
+                "max ms", "threads"));
+        for (Window window : windows) {
+            out.append(String.format("%6d %7.1f %9.1f %8.2f %8d %11.1f %9.1f %10.1f %7d %8.1f %8.1f %8.1f %7d%n",
+                    window.window(), window.startMinutes(), window.throughput(), window.p99Millis(), window.errors(),
+                    window.retainedHeapMb(), window.liveDataMb(), window.allocationMbPerSecond(), window.gcPauses(),
+                    window.gcPauseP50Millis(), window.gcPauseP99Millis(), window.gcPauseMaxMillis(), window.threads()));
+        }
+        return out.toString();
+    }
+
+    private static double megabytes(double bytes) {
+        return round(bytes / BYTES_PER_MB);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    /**
+     * Load and JVM metrics of one window. GC pause percentiles are the upper bounds of the histogram buckets they fall
+     * in.
+     *
+     * @param window
+     *            The number of the window, from 1.
+     * @param startMinutes
+     *            When the measurement of the window started, in minutes from the start of the run.
+     * @param requests
+     *            The number of requests completed.
+     * @param errors
+     *            The number of failed requests.
+     * @param throughput
+     *            The requests completed per second.
+     * @param p99Millis
+     *            The 99th percentile latency of successful requests.
+     * @param retainedHeapMb
+     *            The lowest long-lived heap in use after a collection.
+     * @param liveDataMb
+     *            The long-lived heap in use after the last major collection, or 0 before the first one.
+     * @param heapUsedMaxMb
+     *            The highest heap in use, including garbage.
+     * @param allocationMbPerSecond
+     *            The allocation rate.
+     * @param gcPauses
+     *            The number of GC pauses.
+     * @param gcPauseP50Millis
+     *            The median GC pause.
+     * @param gcPauseP99Millis
+     *            The 99th percentile GC pause.
+     * @param gcPauseMaxMillis
+     *            The longest GC pause.
+     * @param threads
+     *            The highest number of live threads.
+     */
+    public record Window(int window, double startMinutes, long requests, long errors, double throughput,
+            double p99Millis, double retainedHeapMb, double liveDataMb, double heapUsedMaxMb,
+            double allocationMbPerSecond, long gcPauses, double gcPauseP50Millis, double gcPauseP99Millis,
+            double gcPauseMaxMillis, long threads) {
+    }
+
+    /**
+     * Workload, length and thresholds of a soak test run.
+     *
+     * @param loadTest
+     *            The load test settings; the duration is that of the whole run and the warm-up precedes the first
+     *            window only.
+     * @param window
+     *            The length of each window.
+     * @param sampleInterval
+     *            The time between samples of the JVM metrics.
+     * @param maxHeapGrowth
+     *            The most the retained heap may grow from the first window to the last.
+     * @param maxThreadGrowth
+     *            The most the thread count may grow from the first window to the last.
+     */
+    public record Settings(LoadTest.Settings loadTest, Duration window, Duration sampleInterval, DataSize maxHeapGrowth,
+            int maxThreadGrowth) {
+
+        static final String USAGE = """
+                Usage: SoakTest [options]
+                  --window DURATION          length of each reported window (default 5m)
+                  --sample-interval DURATION time between samples of the JVM metrics (default 10s)
+                  --max-heap-growth SIZE     most the retained heap may grow from the first window to the last
+                                             (default 64MB)
+                  --max-thread-growth N      most the thread count may grow from the first window to the last
+                                             (default 20)
+                and the options of LoadTest other than --compare, with --warmup defaulting to 1m, --duration (the
+                whole run) to 2h, and --report writing the windows as JSON.""";
+
+        /**
+         * Reads the settings from command line options.
+         *
+         * @param options
+         *            The options.
+         *
+         * @return The settings.
+         *
+         * @throws IllegalArgumentException
+         *             If an option is invalid.
+         */
+        public static Settings from(CommandLineOptions options) {
+            if (options.has("compare")) {
+                throw new IllegalArgumentException("Option --compare is not supported by the soak test");
+            }
+            Duration window = options.getDuration("window", Duration.ofMinutes(5));
+            Duration sampleInterval = options.getDuration("sample-interval", Duration.ofSeconds(10));
+            if (window.isZero() || sampleInterval.isZero()) {
+                throw new IllegalArgumentException("Options --window and --sample-interval must be positive");
+            }
+            DataSize maxHeapGrowth = options.getDataSize("max-heap-growth", DataSize.ofMegabytes(64));
+            int maxThreadGrowth = options.getInt("max-thread-growth", 20, 0, 100_000);
+            LoadTest.Settings loadTest = LoadTest.Settings.from(options, Duration.ofMinutes(1), Duration.ofHours(2));
+            return new Settings(loadTest, window, sampleInterval, maxHeapGrowth, maxThreadGrowth);
+        }
+
+        /**
+         * Returns the settings of the run, for the report.
+         *
+         * @return The settings by option name.
+         */
+        Map<String, String> describe() {
+            Map<String, String> description = new LinkedHashMap<>(loadTest.describe());
+            description.put("window", window.toString());
+            description.put("sample-interval", sampleInterval.toString());
+            description.put("max-heap-growth", maxHeapGrowth.toString());
+            description.put("max-thread-growth", Integer.toString(maxThreadGrowth));
+            return description;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kaarelkaasla.klaustestassignment.util.IsoDateTime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Command line benchmark of how long the application takes to serve its first request. Each run starts the packaged
+ * application as a new process, waits until the gRPC or HTTP port accepts connections, and then sends an aggregated
+ * scores request until one succeeds. The time from starting the process to the first successful response is reported
+ * next to the startup time Spring logs, so the effect of the {@code fast-startup} profile and of a class data sharing
+ * archive can be compared run against run.
+ *
+ * <p>
+ * Run it from the packaged jar against an existing database, for example:
+ *
+ * <pre>
+ * java -cp target/backend-0.0.1-SNAPSHOT.jar \
+ *     -Dloader.main=com.kaarelkaasla.klaustestassignment.tools.StartupBenchmark \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --database src/main/resources/database.db --profiles fast-startup --runs 5
+ * </pre>
+ */
+public class StartupBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final long POLL_INTERVAL_MILLIS = 10;
+    private static final int OUTPUT_TAIL_LINES = 40;
+
+    /**
+     * Matches the line Spring logs once the application context is ready.
+     */
+    private static final Pattern STARTED = Pattern
+            .compile("Started \\S+ in ([0-9.]+) seconds \\(process running for ([0-9.]+)\\)");
+
+    private final Settings settings;
+
+    /**
+     * Constructs a benchmark with the given settings.
+     *
+     * @param settings
+     *            The application to start and how often.
+     */
+    public StartupBenchmark(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Runs the benchmark with the given command line options and prints the results.
+     *
+     * @param args
+     *            The command line options, see {@link Settings#from(CommandLineOptions)}.
+     */
+    public static void main(String[] args) {
+        Settings settings;
+        try {
+            CommandLineOptions options = new CommandLineOptions(args);
+            settings = Settings.from(options);
+            options.checkAllUsed();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Settings.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            List<Run> runs = new StartupBenchmark(settings).run();
+            System.out.print(format(settings.loadTest().label(), runs));
+            if (settings.loadTest().report() != null) {
+                Map<String, Object> report = new LinkedHashMap<>();
+                report.put("label", settings.loadTest().label());
+                report.put("command", settings.command());
+                report.put("runs", runs);
+                OBJECT_MAPPER.writeValue(settings.loadTest().report().toFile(), report);
+                System.out.println("Report written to " + settings.loadTest().report());
+            }
+        } catch (IOException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Starts the application the configured number of times, one run after another.
+     *
+     * @return The results of the runs.
+     *
+     * @throws IOException
+     *             If the application cannot be started, exits early or does not serve a request in time.
+     * @throws InterruptedException
+     *             If the calling thread is interrupted.
+     */
+    public List<Run> run() throws IOException, InterruptedException {
+        List<Run> runs = new ArrayList<>();
+        for (int number = 1; number <= settings.runs(); number++) {
+            Run run = runOnce(number);
+            runs.add(run);
+            System.out.printf(
+                    "Run %d: port open after %d ms, first response after %d ms (request %d ms), "
+                            + "Spring ready after %s ms%n",
+                    number, run.portOpenMillis(), run.firstResponseMillis(), run.firstRequestMillis(),
+                    run.springReadyMillis() >= 0 ? run.springReadyMillis() : "?");
+        }
+        return runs;
+    }
+
+    private Run runOnce(int number) throws IOException, InterruptedException {
+        LoadTest.Settings target = settings.loadTest();
+        int port = target.protocol() == LoadTest.Protocol.GRPC ? target.grpcPort() : target.httpPort();
+        ProcessBuilder builder = new ProcessBuilder(settings.command()).redirectErrorStream(true);
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + settings.timeout().toNanos();
+        Process process = builder.start();
+        OutputReader output = new OutputReader(process);
+        output.start();
+        long portOpenNanos;
+        long requestStartNanos;
+        long responseNanos;
+        try {
+            while (!accepts(target.host(), port)) {
+                checkRunning(process, output, deadlineNanos, "open port " + port);
+                TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MILLIS);
+            }
+            portOpenNanos = System.nanoTime();
+            String startDate = IsoDateTime.format(target.dataStart().atStartOfDay().toEpochSecond(ZoneOffset.UTC));
+            String endDate = IsoDateTime
+                    .format(target.dataStart().plusDays(7).atStartOfDay().toEpochSecond(ZoneOffset.UTC) - 1);
+            while (true) {
+                requestStartNanos = System.nanoTime();
+                // A new client for every attempt, so that a gRPC channel does not back off after a failed attempt.
+                String outcome;
+                try (LoadTestClient client = LoadTestClient.create(target)) {
+                    outcome = client.call(LoadTest.Operation.AGGREGATED, startDate, endDate);
+                }
+                responseNanos = System.nanoTime();
+                if (LoadTestClient.OK.equals(outcome)) {
+                    break;
+                }
+                checkRunning(process, output, deadlineNanos, "serve a request, last outcome " + outcome);
+                TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MILLIS);
+            }
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+            output.join();
+        }
+        // The startup line may be logged after the first response, so it is read once all output has been.
+        return new Run(number, millis(portOpenNanos - startNanos), millis(responseNanos - startNanos),
+                millis(responseNanos - requestStartNanos), output.springReadyMillis());
+    }
+
+    private static void checkRunning(Process process, OutputReader output, long deadlineNanos, String waitingFor)
+            throws IOException {
+        if (!process.isAlive()) {
+            throw new IOException("The application exited with status " + process.exitValue() + " before it could "
+                    + waitingFor + ":\n" + output.tail());
+        }
+        if (System.nanoTime() > deadlineNanos) {
+            throw new IOException("The application did not " + waitingFor + " in time:\n" + output.tail());
+        }
+    }
+
+    private static boolean accepts(String host, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), 100);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Returns the seconds since the JVM started that Spring logs in a line, once the application context is ready.
+     *
+     * @param line
+     *            A line of the application output.
+     *
+     * @return The seconds, or -1 if the line is not the startup line.
+     */
+    static double processRunningSeconds(String line) {
+        Matcher matcher = STARTED.matcher(line);
+        return matcher.find() ? Double.parseDouble(matcher.group(2)) : -1;
+    }
+
+    /**
+     * Formats the runs and their minimum, median and maximum.
+     *
+     * @param label
+     *            The label of the benchmark.
+     * @param runs
+     *            The results of the runs.
+     *
+     * @return The table.
+     */
+    static String format(String label, List<Run> runs) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%n%s%n%-28s %8s %8s %8s%n", label, "", "min", "median", "max"));
+        out.append(row("port open ms", runs, Run::portOpenMillis));
+        out.append(row("first response ms", runs, Run::firstResponseMillis));
+        out.append(row("first request ms", runs, Run::firstRequestMillis));
+        out.append(row("Spring ready ms", runs, Run::springReadyMillis));
+        return out.toString();
+    }
+
+    private static String row(String name, List<Run> runs, ToDoubleFunction<Run> value) {
+        double[] values = runs.stream().mapToDouble(value).filter(v -> v >= 0).sorted().toArray();
+        if (values.length == 0) {
+            return String.format("%-28s %8s %8s %8s%n", name, "-", "-", "-");
+        }
+        int middle = values.length / 2;
+        double median = values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+        return String.format("%-28s %8.0f %8.0f %8.0f%n", name, values[0], median, values[values.length - 1]);
+    }
+
+    /**
+     * Reads the output of the application, remembering its last lines and when Spring reported being ready.
+     */
+    private static class OutputReader extends Thread {
+
+        private final Process process;
+        private final Deque<String> tail = new ArrayDeque<>();
+        private volatile long springReadyMillis = -1;
+
+        OutputReader(Process process) {
+            super("startup-benchmark-output");
+            this.process = process;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    double seconds = processRunningSeconds(line);
+                    if (seconds >= 0) {
+                        springReadyMillis = Math.round(seconds * 1000);
+                    }
+                    synchronized (tail) {
+                        tail.addLast(line);
+                        if (tail.size() > OUTPUT_TAIL_LINES) {
+                            tail.removeFirst();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // The stream is closed when the process is destroyed.
+            }
+        }
+
+        long springReadyMillis() {
+            return springReadyMillis;
+        }
+
+        String tail() {
+            synchronized (tail) {
+                return String.join("\n", tail);
+            }
+        }
+    }
+
+    /**
+     * Timings of one start of the application, in milliseconds from starting the process unless noted otherwise.
+     *
+     * @param run
+     *            The number of the run, from 1.
+     * @param portOpenMillis
+     *            When the port of the protocol accepted connections.
+     * @param firstResponseMillis
+     *            When the first successful response was received.
+     * @param firstRequestMillis
+     *            How long the successful request took, from sending it.
+     * @param springReadyMillis
+     *            The time from the start of the JVM to the ready application context that Spring logs, or -1 if it was
+     *            not logged.
+     */
+    public record Run(int run, long portOpenMillis, long firstResponseMillis, long firstRequestMillis,
+            long springReadyMillis) {
+    }
+
+    /**
+     * The application to start and how often.
+     *
+     * @param loadTest
+     *            The protocol, ports and API key of the first request, the first day of the dataset, the label and the
+     *            report file.
+     * @param command
+     *            The command that starts the application.
+     * @param runs
+     *            The number of runs.
+     * @param timeout
+     *            The longest a run may take to serve its first request.
+     */
+    public record Settings(LoadTest.Settings loadTest, List<String> command, int runs, Duration timeout) {
+
+        static final String USAGE = """
+                Usage: StartupBenchmark [options]
+                  --jar FILE                 application jar (default target/backend-0.0.1-SNAPSHOT.jar)
+                  --java FILE                java launcher (default the one running the benchmark)
+                  --jvm-args "ARGS"          JVM options, like "-XX:SharedArchiveFile=app.jsa -Xmx512m"
+                  --profiles NAMES           Spring profiles to activate, like fast-startup
+                  --database FILE            SQLite database of the application
+                  --app-args="ARGS"          further application arguments
+                  --runs N                   number of starts (default 5)
+                  --startup-timeout DURATION longest wait for the first response of a start (default 3m)
+                  --protocol grpc|rest       send the first request over gRPC or REST (default grpc)
+                  --grpc-port N, --http-port N, --api-key-header NAME, --api-key KEY, --data-start yyyy-MM-dd,
+                  --label TEXT, --report FILE
+                                             as for LoadTest; the ports are passed to the application""";
+
+        /**
+         * Reads the settings from command line options.
+         *
+         * @param options
+         *            The options.
+         *
+         * @return The settings.
+         *
+         * @throws IllegalArgumentException
+         *             If an option is invalid.
+         */
+        public static Settings from(CommandLineOptions options) {
+            for (String workload : List.of("concurrency", "rate", "warmup", "duration", "mix", "ranges", "compare")) {
+                if (options.has(workload)) {
+                    throw new IllegalArgumentException("Option --" + workload + " does not apply to startup runs");
+                }
+            }
+            List<String> command = new ArrayList<>();
+            command.add(options.getString("java", Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+            if (options.has("jvm-args")) {
+                command.addAll(words(options.getString("jvm-args", null)));
+            }
+            Path jar = Path.of(options.getString("jar", "target/backend-0.0.1-SNAPSHOT.jar"));
+            if (!Files.isRegularFile(jar)) {
+                throw new IllegalArgumentException("Option --jar must name an existing file: " + jar);
+            }
+            command.add("-jar");
+            command.add(jar.toString());
+            if (options.has("profiles")) {
+                command.add("--spring.profiles.active=" + options.getString("profiles", null));
+            }
+            if (options.has("database")) {
+                command.add("--spring.datasource.url=jdbc:sqlite:" + options.getString("database", null));
+            }
+            if (options.has("app-args")) {
+                command.addAll(words(options.getString("app-args", null)));
+            }
+            int runs = options.getInt("runs", 5, 1, 1000);
+            Duration timeout = options.getDuration("startup-timeout", Duration.ofMinutes(3));
+            LoadTest.Settings loadTest = LoadTest.Settings.from(options);
+            command.add("--server.port=" + loadTest.httpPort());
+            command.add("--grpc.server.port=" + loadTest.grpcPort());
+            return new Settings(loadTest, List.copyOf(command), runs, timeout);
+        }
+
+        private static List<String> words(String text) {
+            return Arrays.stream(text.trim().split("\\s+")).filter(word -> !word.isEmpty()).toList();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Command line benchmark of how each service scales with the number of client threads. For every operation and thread
+ * count, a load test that calls only that operation is run, while the instance records a flight recording through
+ * {@code /api/v1/admin/recording} with the admin key. The lock contention in the recording is summarized next to the
+ * throughput and latency of the step, so the thread count at which a lock starts to dominate shows up in one table.
+ *
+ * <p>
+ * The output directory gets {@code scaling.csv} with one row per step for plotting the curves, {@code scaling.json}
+ * with the full results, and the recording of every step for a closer look in JDK Mission Control. Run it from the
+ * packaged jar, for example:
+ *
+ * <pre>
+ * java -cp target/backend-0.0.1-SNAPSHOT.jar \
+ *     -Dloader.main=com.kaarelkaasla.klaustestassignment.tools.ThreadScalingBenchmark \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     --threads 1,2,4,8,16,32 --warmup 5s --duration 20s --admin-key KEY --output /tmp/scaling
+ * </pre>
+ */
+public class ThreadScalingBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final String RECORDING_PATH = "/api/v1/admin/recording";
+
+    /**
+     * The recording runs for at most this much longer than a step, in case the benchmark dies before stopping it.
+     */
+    private static final Duration RECORDING_SLACK = Duration.ofMinutes(1);
+
+    private final Settings settings;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    /**
+     * Constructs a benchmark with the given settings.
+     *
+     * @param settings
+     *            The steps to run and where to write the results.
+     */
+    public ThreadScalingBenchmark(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Runs the benchmark with the given command line options and prints the results.
+     *
+     * @param args
+     *            The command line options, see {@link Settings#from(CommandLineOptions)}.
+     */
+    public static void main(String[] args) {
+        Settings settings;
+        try {
+            CommandLineOptions options = new CommandLineOptions(args);
+            settings = Settings.from(options);
+            options.checkAllUsed();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Settings.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            List<Step> steps = new ThreadScalingBenchmark(settings).run();
+            System.out.print(format(steps));
+            System.out.println("Results written to " + settings.output());
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs every step and writes the results.
+     *
+     * @return The results of the steps, by operation and then thread count.
+     *
+     * @throws IOException
+     *             If a recording cannot be started or collected, or the results cannot be written.
+     * @throws ExecutionException
+     *             If a load test worker fails.
+     * @throws InterruptedException
+     *             If the calling thread is interrupted.
+     */
+    public List<Step> run() throws IOException, ExecutionException, InterruptedException {
+        Files.createDirectories(settings.output());
+        List<Step> steps = new ArrayList<>();
+        for (LoadTest.Operation operation : settings.operations()) {
+            for (int threads : settings.threads()) {
+                LoadTest.Settings stepSettings = settings.loadTest().forOperation(operation, threads);
+                Path recording = settings.output().resolve(operation.optionName() + "-" + threads + ".jfr");
+                if (settings.record()) {
+                    startRecording(stepSettings.warmup().plus(stepSettings.duration()).plus(RECORDING_SLACK));
+                }
+                LoadTestReport report = new LoadTest(stepSettings).run();
+                ContentionProfile contention = null;
+                if (settings.record()) {
+                    stopRecording(recording);
+                    contention = ContentionProfile.read(recording, settings.topSites());
+                }
+                Step step = new Step(operation.optionName(), threads, report.total(), contention);
+                steps.add(step);
+                System.out.printf("%s with %d threads: %.1f req/s, p99 %.1f ms%n", step.operation(), threads,
+                        step.result().throughput(), step.result().p99Millis());
+                if (contention != null) {
+                    System.out.print(contention.format());
+                }
+            }
+        }
+        writeCsv(steps, settings.output().resolve("scaling.csv"));
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("settings", settings.loadTest().describe());
+        results.put("steps", steps);
+        OBJECT_MAPPER.writeValue(settings.output().resolve("scaling.json").toFile(), results);
+        return steps;
+    }
+
+    /**
+     * Formats the curves as one table per operation.
+     *
+     * @param steps
+     *            The results of the steps.
+     *
+     * @return The tables.
+     */
+    static String format(List<Step> steps) {
+        StringBuilder out = new StringBuilder();
+        String operation = null;
+        for (Step step : steps) {
+            if (!step.operation().equals(operation)) {
+                operation = step.operation();
+                out.append(String.format("%n%s%n%7s %9s %8s %9s %9s %9s %9s %12s %12s%n", operation, "threads", "req/s",
+                        "speedup", "p50 ms", "p99 ms", "p99.9 ms", "errors", "monitor ms", "parked ms"));
+            }
+            LoadTestReport.OperationResult result = step.result();
+            double baseline = steps.stream().filter(other -> other.operation().equals(step.operation())).findFirst()
+                    .map(first -> first.result().throughput()).orElse(0.0);
+            out.append(String.format("%7d %9.1f %8s %9.2f %9.2f %9.2f %9d %12s %12s%n", step.threads(),
+                    result.throughput(), baseline > 0 ? String.format("%.2fx", result.throughput() / baseline) : "-",
+                    result.p50Millis(), result.p99Millis(), result.p999Millis(), result.errors(),
+                    step.contention() != null ? String.format("%.1f", step.contention().monitorBlockedMillis()) : "-",
+                    step.contention() != null ? String.format("%.1f", step.contention().parkedMillis()) : "-"));
+        }
+        return out.toString();
+    }
+
+    private static void writeCsv(List<Step> steps, Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("operation,threads,requests,errors,throughput,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,"
+                    + "monitor_events,monitor_ms,park_events,parked_ms,top_site");
+            for (Step step : steps) {
+                LoadTestReport.OperationResult result = step.result();
+                ContentionProfile contention = step.contention();
+                ContentionProfile.Site top = contention != null && !contention.sites().isEmpty()
+                        ? contention.sites().get(0) : null;
+                out.println(String.join(",", step.operation(), Integer.toString(step.threads()),
+                        Long.toString(result.requests()), Long.toString(result.errors()),
+                        Double.toString(result.throughput()), Double.toString(result.p50Millis()),
+                        Double.toString(result.p90Millis()), Double.toString(result.p99Millis()),
+                        Double.toString(result.p999Millis()), Double.toString(result.maxMillis()),
+                        contention != null ? Long.toString(contention.monitorEvents()) : "",
+                        contention != null ? Double.toString(contention.monitorBlockedMillis()) : "",
+                        contention != null ? Long.toString(contention.parkEvents()) : "",
+                        contention != null ? Double.toString(contention.parkedMillis()) : "",
+                        top != null ? "\"" + top.lock() + " in " + top.frame() + "\"" : ""));
+            }
+        }
+    }
+
+    private void startRecording(Duration duration) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(
+                recordingRequest(
+                        "/start?settings=" + settings.recordingSettings() + "&duration=" + duration.toSeconds() + "s"),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException(
+                    "Starting the recording failed with HTTP " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private void stopRecording(Path file) throws IOException, InterruptedException {
+        HttpResponse<Path> response = httpClient.send(recordingRequest("/stop"),
+                HttpResponse.BodyHandlers.ofFile(file));
+        if (response.statusCode() != 200) {
+            String body = Files.readString(file);
+            Files.delete(file);
+            throw new IOException("Stopping the recording failed with HTTP " + response.statusCode() + ": " + body);
+        }
+    }
+
+    private HttpRequest recordingRequest(String pathAndQuery) {
+        LoadTest.Settings loadTest = settings.loadTest();
+        return HttpRequest
+                .newBuilder(URI.create(
+                        "http://" + loadTest.host() + ":" + loadTest.httpPort() + RECORDING_PATH + pathAndQuery))
+                .header(settings.adminKeyHeader(), settings.adminKey()).POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    /**
+     * Results of one operation at one thread count.
+     *
+     * @param operation
+     *            The operation name.
+     * @param threads
+     *            The number of client threads.
+     * @param result
+     *            The throughput and latency.
+     * @param contention
+     *            The lock contention on the instance, or null if nothing was recorded.
+     */
+    public record Step(String operation, int threads, LoadTestReport.OperationResult result,
+            ContentionProfile contention) {
+    }
+
+    /**
+     * Steps of a benchmark run and where to write the results.
+     *
+     * @param loadTest
+     *            The load test settings shared by all steps; the concurrency and mix are set per step.
+     * @param operations
+     *            The operations to benchmark.
+     * @param threads
+     *            The thread counts to run each operation with.
+     * @param output
+     *            The directory for the results and recordings.
+     * @param record
+     *            Whether a flight recording is taken at each step.
+     * @param recordingSettings
+     *            The JFR settings to record with.
+     * @param adminKeyHeader
+     *            The header of the admin key.
+     * @param adminKey
+     *            The admin key for starting and stopping the recordings, or null if nothing is recorded.
+     * @param topSites
+     *            The number of contention sites to report per step.
+     */
+    public record Settings(LoadTest.Settings loadTest, List<LoadTest.Operation> operations, List<Integer> threads,
+            Path output, boolean record, String recordingSettings, String adminKeyHeader, String adminKey,
+            int topSites) {
+
+        static final String USAGE = """
+                Usage: ThreadScalingBenchmark --output DIR [options]
+                  --threads N,...            client thread counts (default 1,2,4,8,16,32)
+                  --operations NAME,...      operations to run one at a time
+                                             (default aggregated,ticket-scores,weighted-scores)
+                  --no-recording             do not take flight recordings
+                  --recording-settings NAME  JFR settings of the recordings (default profile)
+                  --admin-key-header NAME    admin key header (default x-admin-key)
+                  --admin-key KEY            admin key of the instance, required for recordings
+                  --top-sites N              contention sites reported per step (default 5)
+                and the options of LoadTest other than --concurrency, --mix, --report and --compare, with
+                --warmup defaulting to 5s and --duration to 20s.""";
+
+        /**
+         * Reads the settings from command line options.
+         *
+         * @param options
+         *            The options.
+         *
+         * @return The settings.
+         *
+         * @throws IllegalArgumentException
+         *             If an option is missing or invalid.
+         */
+        public static Settings from(CommandLineOptions options) {
+            for (String perStep : List.of("concurrency", "mix", "report", "compare")) {
+                if (options.has(perStep)) {
+                    throw new IllegalArgumentException("Option --" + perStep + " is set per step");
+                }
+            }
+            List<Integer> threads = new ArrayList<>();
+            for (String count : options.getList("threads", "1,2,4,8,16,32")) {
+                int value;
+                try {
+                    value = Integer.parseInt(count);
+                } catch (NumberFormatException e) {
+                    value = 0;
+                }
+                if (value < 1 || value > 10_000) {
+                    throw new IllegalArgumentException("Option --threads must list counts from 1 to 10000: " + count);
+                }
+                threads.add(value);
+            }
+            List<LoadTest.Operation> operations = options
+                    .getList("operations", "aggregated,ticket-scores,weighted-scores").stream()
+                    .map(LoadTest.Operation::fromOptionName).toList();
+            String recordingSettings = options.getString("recording-settings", "profile");
+            if (!recordingSettings.matches("[a-z]+")) {
+                throw new IllegalArgumentException("Option --recording-settings must be a JFR settings name");
+            }
+            Path output = Path.of(options.getString("output", null));
+            boolean record = !options.has("no-recording");
+            String adminKeyHeader = options.getString("admin-key-header", "x-admin-key");
+            String adminKey = options.getString("admin-key", record ? null : "");
+            int topSites = options.getInt("top-sites", 5, 0, 100);
+            LoadTest.Settings loadTest = LoadTest.Settings.from(options, Duration.ofSeconds(5), Duration.ofSeconds(20));
+            return new Settings(loadTest, operations, threads, output, record, recordingSettings, adminKeyHeader,
+                    record ? adminKey : null, topSites);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.kaarelkaasla.klaustestassignment.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Utility class for the key of the admin endpoints under {@code /api/v1/admin}.
+ * <p>
+ * The admin key in {@code api.admin-key} is separate from the client keys, which are built into the dashboard and so
+ * known to every browser that opens it. When no admin key is configured, the admin endpoints reject every request.
+ */
+@Slf4j
+@Component
+public class AdminKeyUtils {
+
+    private final byte[] adminKey;
+
+    /**
+     * Constructs an AdminKeyUtils with the configured key.
+     *
+     * @param adminKey
+     *            The admin key, or an empty string to disable the admin endpoints.
+     */
+    @Autowired
+    public AdminKeyUtils(@Value("${api.admin-key:}") String adminKey) {
+        this.adminKey = adminKey.isBlank() ? null : adminKey.getBytes(StandardCharsets.UTF_8);
+        if (this.adminKey == null) {
+            log.info("No admin key is configured, the admin endpoints are disabled.");
+        }
+    }
+
+    /**
+     * Checks whether a key is the admin key. The comparison takes the same time wherever the keys differ.
+     *
+     * @param key
+     *            The admin key of a request, may be null.
+     *
+     * @return True if an admin key is configured and the key matches it.
+     */
+    public boolean isValid(String key) {
+        return adminKey != null && key != null && MessageDigest.isEqual(adminKey, key.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,98 @@
+package com.kaarelkaasla.klaustestassignment.util;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Utility class for the API keys of the configured clients.
+ * <p>
+ * The key in {@code api.key} belongs to the client {@value #DEFAULT_CLIENT_ID}. Further clients are listed in
+ * {@code api.client-keys} as comma-separated {@code clientId=key} pairs. The clients are fixed at startup, so
+ * everything keyed by client, such as rate limit buckets, is bounded by the configuration.
+ */
+@Component
+public class ApiKeyUtils {
+
+    /**
+     * ID of the client that owns the key in {@code api.key}.
+     */
+    public static final String DEFAULT_CLIENT_ID = "default";
+
+    /**
+     * Client IDs by API key.
+     */
+    private final Map<String, String> clientIdsByKey;
+
+    /**
+     * Constructs an ApiKeyUtils with the configured keys.
+     *
+     * @param defaultKey
+     *            The API key of the default client.
+     * @param clientKeys
+     *            Further clients as comma-separated {@code clientId=key} pairs, or an empty string.
+     *
+     * @throws IllegalArgumentException
+     *             If a pair is malformed, or a client ID or key is used twice.
+     */
+    @Autowired
+    public ApiKeyUtils(@Value("${api.key}") String defaultKey, @Value("${api.client-keys:}") String clientKeys) {
+        Map<String, String> keys = new HashMap<>();
+        keys.put(defaultKey, DEFAULT_CLIENT_ID);
+        for (String pair : clientKeys.split(",")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            String clientId = separator < 0 ? "" : pair.substring(0, separator).trim();
+            String key = separator < 0 ? "" : pair.substring(separator + 1).trim();
+            if (clientId.isEmpty() || key.isEmpty()) {
+                throw new IllegalArgumentException("Client keys must be clientId=key pairs, got: " + pair.trim());
+            }
+            if (keys.containsValue(clientId)) {
+                throw new IllegalArgumentException("Duplicate client ID: " + clientId);
+            }
+            if (keys.putIfAbsent(key, clientId) != null) {
+                throw new IllegalArgumentException("Duplicate API key for client: " + clientId);
+            }
+        }
+        this.clientIdsByKey = Map.copyOf(keys);
+    }
+
+    /**
+     * Retrieves the client an API key belongs to.
+     *
+     * @param apiKey
+     *            The API key of a request, may be null.
+     *
+     * @return The client ID, or null if the key is not valid.
+     */
+    public String getClientId(String apiKey) {
+        return apiKey == null ? null : clientIdsByKey.get(apiKey);
+    }
+
+    /**
+     * Checks whether an API key belongs to a configured client.
+     *
+     * @param apiKey
+     *            The API key of a request, may be null.
+     *
+     * @return True if the key is valid.
+     */
+    public boolean isValid(String apiKey) {
+        return getClientId(apiKey) != null;
+    }
+
+    /**
+     * Retrieves the IDs of all configured clients.
+     *
+     * @return An unmodifiable set of client IDs.
+     */
+    public Set<String> getClientIds() {
+        return Set.copyOf(clientIdsByKey.values());
+    }
+}
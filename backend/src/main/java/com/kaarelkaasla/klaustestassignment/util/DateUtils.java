@@ -1,23 +1,24 @@
 package com.kaarelkaasla.klaustestassignment.util;
 
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.Timestamps;
 import org.springframework.stereotype.Component;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.LocalDate;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 
 /**
- * Utility class for various date operations.
+ * Utility class for various date operations. Date-times use the {@code yyyy-MM-dd'T'HH:mm:ss} layout stored in the
+ * database and are read as UTC wall-clock time. All methods are thread-safe; text is handled by {@link IsoDateTime}.
  */
 @Component
 public class DateUtils {
 
-    private static final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-    private static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final long SECONDS_PER_DAY = 86_400;
 
     /**
      * Validates if the given date string matches the expected date format.
@@ -28,12 +29,7 @@ public class DateUtils {
      * @return True if the date string is valid, false otherwise.
      */
     public static boolean isValidDate(String dateStr) {
-        try {
-            dateFormat.parse(dateStr);
-            return true;
-        } catch (ParseException e) {
-            return false;
-        }
+        return IsoDateTime.isValid(dateStr);
     }
 
     /**
@@ -48,7 +44,11 @@ public class DateUtils {
      *             If the date string is invalid.
      */
     public static Date parseDate(String dateStr) throws ParseException {
-        return dateFormat.parse(dateStr);
+        try {
+            return new Date(IsoDateTime.parseEpochSecond(dateStr) * 1000);
+        } catch (DateTimeParseException e) {
+            throw new ParseException(e.getMessage(), e.getErrorIndex());
+        }
     }
 
     /**
@@ -60,7 +60,7 @@ public class DateUtils {
      * @return The formatted date string.
      */
     public static String formatDate(Date date) {
-        return dateFormat.format(date);
+        return IsoDateTime.format(Math.floorDiv(date.getTime(), 1000));
     }
 
     /**
@@ -72,7 +72,7 @@ public class DateUtils {
      * @return The parsed LocalDateTime object.
      */
     public static LocalDateTime parseDateTime(String dateStr) {
-        return LocalDateTime.parse(dateStr, dateTimeFormatter);
+        return LocalDateTime.ofEpochSecond(IsoDateTime.parseEpochSecond(dateStr), 0, ZoneOffset.UTC);
     }
 
     /**
@@ -86,9 +86,7 @@ public class DateUtils {
      * @return The number of days between the two dates.
      */
     public static long getDaysBetween(String startDateStr, String endDateStr) {
-        LocalDate startDate = LocalDate.parse(startDateStr.substring(0, 10));
-        LocalDate endDate = LocalDate.parse(endDateStr.substring(0, 10));
-        return ChronoUnit.DAYS.between(startDate, endDate);
+        return IsoDateTime.parseEpochDay(endDateStr) - IsoDateTime.parseEpochDay(startDateStr);
     }
 
     /**
@@ -102,8 +100,141 @@ public class DateUtils {
      * @return True if the dates are in different months or years, false otherwise.
      */
     public static boolean isDifferentMonthOrYear(String startDateStr, String endDateStr) {
-        LocalDate startDate = LocalDate.parse(startDateStr.substring(0, 10));
-        LocalDate endDate = LocalDate.parse(endDateStr.substring(0, 10));
-        return startDate.getMonthValue() != endDate.getMonthValue() || startDate.getYear() != endDate.getYear();
+        IsoDateTime.parseEpochDay(startDateStr);
+        IsoDateTime.parseEpochDay(endDateStr);
+        return !startDateStr.regionMatches(0, endDateStr, 0, 7);
+    }
+
+    /**
+     * Parses the given date-time string into seconds since the epoch. The date-time is read as UTC wall-clock time,
+     * matching the zone-less timestamps stored in the database.
+     *
+     * @param dateStr
+     *            The date-time string to parse.
+     *
+     * @return The number of seconds since 1970-01-01T00:00:00.
+     *
+     * @throws DateTimeParseException
+     *             If the date-time string is invalid.
+     */
+    public static long toEpochSecond(String dateStr) {
+        return IsoDateTime.parseEpochSecond(dateStr);
+    }
+
+    /**
+     * Returns the seconds since the epoch of the given timestamp. Fractional seconds are ignored, as the stored
+     * timestamps have second precision.
+     *
+     * @param timestamp
+     *            The timestamp.
+     *
+     * @return The number of seconds since 1970-01-01T00:00:00.
+     *
+     * @throws DateTimeException
+     *             If the timestamp is outside the range 0001-01-01 to 9999-12-31.
+     */
+    public static long toEpochSecond(Timestamp timestamp) {
+        if (!Timestamps.isValid(timestamp)) {
+            throw new DateTimeException("Timestamp out of range: " + timestamp.getSeconds());
+        }
+        return timestamp.getSeconds();
+    }
+
+    /**
+     * Converts the given date-time to a timestamp, reading it as UTC wall-clock time.
+     *
+     * @param dateTime
+     *            The date-time to convert.
+     *
+     * @return The timestamp.
+     */
+    public static Timestamp toTimestamp(LocalDateTime dateTime) {
+        return Timestamp.newBuilder().setSeconds(dateTime.toEpochSecond(ZoneOffset.UTC)).build();
+    }
+
+    /**
+     * Formats the given seconds since the epoch as a date-time string in the format stored in the database.
+     *
+     * @param epochSecond
+     *            The number of seconds since 1970-01-01T00:00:00.
+     *
+     * @return The formatted date-time string.
+     */
+    public static String formatEpochSecond(long epochSecond) {
+        return IsoDateTime.format(epochSecond);
+    }
+
+    /**
+     * Returns the day since the epoch that contains the given second since the epoch.
+     *
+     * @param epochSecond
+     *            The number of seconds since 1970-01-01T00:00:00.
+     *
+     * @return The number of days since 1970-01-01.
+     */
+    public static long toEpochDay(long epochSecond) {
+        return Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+    }
+
+    /**
+     * Returns the first second of the given day since the epoch.
+     *
+     * @param epochDay
+     *            The number of days since 1970-01-01.
+     *
+     * @return The number of seconds since 1970-01-01T00:00:00 at the start of the day.
+     */
+    public static long startOfEpochDay(long epochDay) {
+        return epochDay * SECONDS_PER_DAY;
+    }
+
+    /**
+     * Calculates the number of calendar days between two points in time.
+     *
+     * @param startEpochSecond
+     *            The start in seconds since the epoch.
+     * @param endEpochSecond
+     *            The end in seconds since the epoch.
+     *
+     * @return The number of days between the dates of the two points in time.
+     */
+    public static long getDaysBetween(long startEpochSecond, long endEpochSecond) {
+        return toEpochDay(endEpochSecond) - toEpochDay(startEpochSecond);
+    }
+
+    /**
+     * Checks if two points in time belong to different months or years.
+     *
+     * @param startEpochSecond
+     *            The start in seconds since the epoch.
+     * @param endEpochSecond
+     *            The end in seconds since the epoch.
+     *
+     * @return True if the dates are in different months or years, false otherwise.
+     */
+    public static boolean isDifferentMonthOrYear(long startEpochSecond, long endEpochSecond) {
+        long startDay = toEpochDay(startEpochSecond);
+        long endDay = toEpochDay(endEpochSecond);
+        return IsoDateTime.month(startDay) != IsoDateTime.month(endDay)
+                || IsoDateTime.year(startDay) != IsoDateTime.year(endDay);
+    }
+
+    /**
+     * Returns the week key of the given date as produced by SQLite's {@code strftime('%Y-%W', date)}: the year and the
+     * zero-padded week of the year, where weeks start on Monday and days before the first Monday fall into week 00.
+     *
+     * @param dateStr
+     *            The date string, of which only the leading 'yyyy-MM-dd' part is used.
+     *
+     * @return The week key, for example "2023-05".
+     */
+    public static String getWeekOfYearKey(String dateStr) {
+        long epochDay = IsoDateTime.parseEpochDay(dateStr);
+        int year = IsoDateTime.year(epochDay);
+        long dayOfYear = epochDay - IsoDateTime.epochDay(year, 1, 1);
+        // 1970-01-01 was a Thursday, so Monday is 0 after shifting the epoch day by three.
+        long dayOfWeek = Math.floorMod(epochDay + 3, 7);
+        long week = (dayOfYear + 7 - dayOfWeek) / 7;
+        return dateStr.substring(0, 4) + (week < 10 ? "-0" : "-") + week;
     }
 }
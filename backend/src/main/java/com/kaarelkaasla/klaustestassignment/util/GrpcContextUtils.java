@@ -0,0 +1,76 @@
+package com.kaarelkaasla.klaustestassignment.util;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+/**
+ * Utility class for observing the cancellation of the current gRPC call. A call's {@link Context} is cancelled when the
+ * client cancels it, disconnects, or its deadline expires. Outside of a gRPC call the current context is never
+ * cancelled, so these methods are safe to use from any thread.
+ */
+public class GrpcContextUtils {
+
+    /**
+     * Handle for a cancellation listener registered with {@link #onCancel(Runnable)}.
+     */
+    @FunctionalInterface
+    public interface Registration extends AutoCloseable {
+
+        /**
+         * Removes the listener. Does not throw.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Checks whether the current gRPC call has been cancelled or has passed its deadline.
+     *
+     * @return True if the call has been cancelled, false otherwise.
+     */
+    public static boolean isCancelled() {
+        return Context.current().isCancelled();
+    }
+
+    /**
+     * Throws if the current gRPC call has been cancelled or has passed its deadline. Long-running loops call this
+     * periodically to stop work nobody is waiting for.
+     *
+     * @throws StatusRuntimeException
+     *             With status CANCELLED or DEADLINE_EXCEEDED if the call has been cancelled.
+     */
+    public static void throwIfCancelled() {
+        if (isCancelled()) {
+            throw cancelledException();
+        }
+    }
+
+    /**
+     * Returns the exception describing why the current gRPC call was cancelled.
+     *
+     * @return An exception with status DEADLINE_EXCEEDED if the deadline expired, CANCELLED otherwise.
+     */
+    public static StatusRuntimeException cancelledException() {
+        Status status = Contexts.statusFromCancelled(Context.current());
+        return (status != null ? status : Status.CANCELLED).asRuntimeException();
+    }
+
+    /**
+     * Runs the action when the current gRPC call is cancelled. The action runs on the thread that cancels the call, so
+     * it must be quick and thread-safe. If the call is already cancelled, the action runs immediately.
+     *
+     * @param action
+     *            The action to run on cancellation.
+     *
+     * @return A registration that removes the listener when closed.
+     */
+    public static Registration onCancel(Runnable action) {
+        Context context = Context.current();
+        Context.CancellationListener listener = cancelled -> action.run();
+        context.addListener(listener, MoreExecutors.directExecutor());
+        return () -> context.removeListener(listener);
+    }
+}
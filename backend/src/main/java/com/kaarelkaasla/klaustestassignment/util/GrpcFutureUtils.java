@@ -0,0 +1,201 @@
+package com.kaarelkaasla.klaustestassignment.util;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.kaarelkaasla.klaustestassignment.interceptor.RateLimitInterceptor;
+import com.kaarelkaasla.klaustestassignment.profiling.RequestCost;
+import io.grpc.ClientInterceptor;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.MetadataUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Utility class for bridging gRPC future stubs to asynchronous Spring MVC responses.
+ */
+public class GrpcFutureUtils {
+
+    /**
+     * Extra time given to the servlet request on top of the gRPC deadline, so that the deadline normally fires first
+     * and is reported with its own status.
+     */
+    private static final Duration REQUEST_TIMEOUT_MARGIN = Duration.ofSeconds(1);
+
+    /**
+     * HTTP header summarizing the database, compute and serialization times of a call.
+     */
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    /**
+     * Adapts a gRPC call future to a {@link DeferredResult}. The servlet thread is released while the call is in
+     * flight, and the call is cancelled if the servlet request times out or fails.
+     *
+     * @param future
+     *            The future returned by a gRPC future stub.
+     * @param timeout
+     *            The deadline set on the gRPC call.
+     * @param onSuccess
+     *            Maps the gRPC response to the HTTP response.
+     * @param onFailure
+     *            Maps a failure, usually a {@link io.grpc.StatusRuntimeException}, to the HTTP response.
+     * @param <T>
+     *            The gRPC response type.
+     *
+     * @return The deferred HTTP response.
+     */
+    public static <T> DeferredResult<ResponseEntity<Object>> toDeferredResult(ListenableFuture<T> future,
+            Duration timeout, Function<T, ResponseEntity<Object>> onSuccess,
+            Function<Throwable, ResponseEntity<Object>> onFailure) {
+        return toDeferredResult(future, timeout, null, onSuccess, onFailure);
+    }
+
+    /**
+     * Adapts a gRPC call future to a {@link DeferredResult} like
+     * {@link #toDeferredResult(ListenableFuture, Duration, Function, Function)}, copying the cost trailers of the call
+     * to the HTTP response headers.
+     *
+     * @param future
+     *            The future returned by a gRPC future stub.
+     * @param timeout
+     *            The deadline set on the gRPC call.
+     * @param trailers
+     *            The trailers captured by {@link #captureTrailers(AtomicReference)}, or null to add no cost headers.
+     * @param onSuccess
+     *            Maps the gRPC response to the HTTP response.
+     * @param onFailure
+     *            Maps a failure, usually a {@link io.grpc.StatusRuntimeException}, to the HTTP response.
+     * @param <T>
+     *            The gRPC response type.
+     *
+     * @return The deferred HTTP response.
+     */
+    public static <T> DeferredResult<ResponseEntity<Object>> toDeferredResult(ListenableFuture<T> future,
+            Duration timeout, AtomicReference<Metadata> trailers, Function<T, ResponseEntity<Object>> onSuccess,
+            Function<Throwable, ResponseEntity<Object>> onFailure) {
+        DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>(
+                timeout.plus(REQUEST_TIMEOUT_MARGIN).toMillis());
+        result.onTimeout(() -> {
+            future.cancel(true);
+            result.setResult(onFailure.apply(Status.DEADLINE_EXCEEDED.asRuntimeException()));
+        });
+        result.onError(throwable -> future.cancel(true));
+
+        Futures.addCallback(future, new FutureCallback<>() {
+            @Override
+            public void onSuccess(T response) {
+                ResponseEntity<Object> httpResponse;
+                try {
+                    httpResponse = onSuccess.apply(response);
+                } catch (Exception e) {
+                    httpResponse = onFailure.apply(e);
+                }
+                result.setResult(withCostHeaders(httpResponse, trailers));
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                result.setResult(withCostHeaders(onFailure.apply(throwable), trailers));
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    /**
+     * Creates a client interceptor that stores the trailers of a call, so that its cost can be reported in the HTTP
+     * response. The trailers are stored before the call future completes.
+     *
+     * @param trailers
+     *            The reference to store the trailers in.
+     *
+     * @return The client interceptor.
+     */
+    public static ClientInterceptor captureTrailers(AtomicReference<Metadata> trailers) {
+        return MetadataUtils.newCaptureMetadataInterceptor(new AtomicReference<>(), trailers);
+    }
+
+    /**
+     * Copies the cost trailers of a gRPC call to the headers of the HTTP response, and summarizes the times in a
+     * {@code Server-Timing} header that browser developer tools display.
+     *
+     * @param response
+     *            The HTTP response.
+     * @param trailers
+     *            The captured trailers, or null.
+     *
+     * @return The response with the cost headers, or the given response if the call returned no cost trailers.
+     */
+    static ResponseEntity<Object> withCostHeaders(ResponseEntity<Object> response, AtomicReference<Metadata> trailers) {
+        Metadata metadata = trailers != null ? trailers.get() : null;
+        if (metadata == null) {
+            return response;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(response.getHeaders());
+        for (String name : RequestCost.HEADERS) {
+            String value = metadata.get(Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER));
+            if (value != null) {
+                headers.set(name, value);
+            }
+        }
+        StringJoiner serverTiming = new StringJoiner(", ");
+        addServerTiming(serverTiming, "db", headers.getFirst(RequestCost.DB_TIME_HEADER));
+        addServerTiming(serverTiming, "compute", headers.getFirst(RequestCost.COMPUTE_TIME_HEADER));
+        addServerTiming(serverTiming, "serialization", headers.getFirst(RequestCost.SERIALIZATION_TIME_HEADER));
+        if (serverTiming.length() == 0) {
+            return response;
+        }
+        headers.add(SERVER_TIMING_HEADER, serverTiming.toString());
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    private static void addServerTiming(StringJoiner serverTiming, String name, String millis) {
+        if (millis != null) {
+            serverTiming.add(name + ";dur=" + millis);
+        }
+    }
+
+    /**
+     * Creates a {@link DeferredResult} that is already completed, for responses decided before any gRPC call is made.
+     *
+     * @param response
+     *            The HTTP response.
+     *
+     * @return The completed deferred result.
+     */
+    public static DeferredResult<ResponseEntity<Object>> completed(ResponseEntity<Object> response) {
+        DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
+
+    /**
+     * Maps a RESOURCE_EXHAUSTED failure to the HTTP response. Calls rejected by the per-API-key rate limit carry a
+     * retry-after trailer and are answered with 429 and a Retry-After header; calls shed by the concurrency limit are
+     * answered with 503.
+     *
+     * @param e
+     *            The RESOURCE_EXHAUSTED failure.
+     *
+     * @return The HTTP response.
+     */
+    public static ResponseEntity<Object> resourceExhausted(StatusRuntimeException e) {
+        Metadata trailers = e.getTrailers();
+        String retryAfter = trailers != null ? trailers.get(RateLimitInterceptor.RETRY_AFTER_KEY) : null;
+        if (retryAfter != null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, retryAfter)
+                    .body("Rate limit exceeded, try again later.");
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Server is overloaded, try again later.");
+    }
+}
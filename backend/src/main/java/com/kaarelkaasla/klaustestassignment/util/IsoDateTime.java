@@ -0,0 +1,241 @@
+package com.kaarelkaasla.klaustestassignment.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parser and formatter for the fixed-layout {@code yyyy-MM-dd'T'HH:mm:ss} date-times stored in the database.
+ * <p>
+ * Date-times are converted directly between characters and seconds since the epoch, read as UTC wall-clock time, using
+ * integer calendar arithmetic. No formatter, calendar or temporal objects are created, and all methods are stateless
+ * and thread-safe. Parsing is strict: exactly nineteen characters, four-digit years and calendar-valid fields.
+ */
+public final class IsoDateTime {
+
+    /**
+     * Length of a date-time in the {@code yyyy-MM-dd'T'HH:mm:ss} format.
+     */
+    public static final int LENGTH = 19;
+
+    /**
+     * Length of the leading {@code yyyy-MM-dd} date part.
+     */
+    public static final int DATE_LENGTH = 10;
+
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long INVALID = Long.MIN_VALUE;
+
+    private IsoDateTime() {
+    }
+
+    /**
+     * Parses a {@code yyyy-MM-dd'T'HH:mm:ss} date-time into seconds since the epoch.
+     *
+     * @param text
+     *            The date-time to parse.
+     *
+     * @return The number of seconds since 1970-01-01T00:00:00.
+     *
+     * @throws DateTimeParseException
+     *             If the text is not a valid date-time in the expected format.
+     */
+    public static long parseEpochSecond(CharSequence text) {
+        long epochSecond = text == null || text.length() != LENGTH ? INVALID : parseOrInvalid(text);
+        if (epochSecond == INVALID) {
+            throw new DateTimeParseException("Text '" + text + "' could not be parsed as yyyy-MM-dd'T'HH:mm:ss",
+                    text == null ? "" : text, 0);
+        }
+        return epochSecond;
+    }
+
+    /**
+     * Checks whether the text is a valid {@code yyyy-MM-dd'T'HH:mm:ss} date-time without throwing.
+     *
+     * @param text
+     *            The text to check.
+     *
+     * @return True if the text can be parsed, false otherwise.
+     */
+    public static boolean isValid(CharSequence text) {
+        return text != null && text.length() == LENGTH && parseOrInvalid(text) != INVALID;
+    }
+
+    /**
+     * Parses the leading {@code yyyy-MM-dd} part of the text into days since the epoch. Any characters after the date
+     * are ignored.
+     *
+     * @param text
+     *            The date or date-time to parse.
+     *
+     * @return The number of days since 1970-01-01.
+     *
+     * @throws DateTimeParseException
+     *             If the text does not start with a valid date.
+     */
+    public static long parseEpochDay(CharSequence text) {
+        long epochDay = text == null || text.length() < DATE_LENGTH ? INVALID : parseDateOrInvalid(text);
+        if (epochDay == INVALID) {
+            throw new DateTimeParseException("Text '" + text + "' could not be parsed as yyyy-MM-dd",
+                    text == null ? "" : text, 0);
+        }
+        return epochDay;
+    }
+
+    /**
+     * Formats seconds since the epoch as a {@code yyyy-MM-dd'T'HH:mm:ss} date-time.
+     *
+     * @param epochSecond
+     *            The number of seconds since 1970-01-01T00:00:00, within years 0000 to 9999.
+     *
+     * @return The formatted date-time.
+     *
+     * @throws IllegalArgumentException
+     *             If the year is outside 0000 to 9999.
+     */
+    public static String format(long epochSecond) {
+        byte[] out = new byte[LENGTH];
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+
+        long yearMonthDay = civilFromDays(epochDay);
+        int year = (int) (yearMonthDay >> 9);
+        if (year < 0 || year > 9999) {
+            throw new IllegalArgumentException("Year out of range: " + year);
+        }
+        writeDigits(out, 0, year, 4);
+        out[4] = '-';
+        writeDigits(out, 5, (int) (yearMonthDay >> 5) & 0xF, 2);
+        out[7] = '-';
+        writeDigits(out, 8, (int) yearMonthDay & 0x1F, 2);
+        out[10] = 'T';
+        writeDigits(out, 11, secondOfDay / 3600, 2);
+        out[13] = ':';
+        writeDigits(out, 14, secondOfDay / 60 % 60, 2);
+        out[16] = ':';
+        writeDigits(out, 17, secondOfDay % 60, 2);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns the number of days since the epoch of the given calendar date, using the proleptic Gregorian calendar.
+     *
+     * @param year
+     *            The year.
+     * @param month
+     *            The month, from 1 to 12.
+     * @param day
+     *            The day of the month, from 1 to 31.
+     *
+     * @return The number of days since 1970-01-01.
+     */
+    public static long epochDay(int year, int month, int day) {
+        // Days from civil: shift the year to start in March so the leap day is the last day of the year.
+        long y = month <= 2 ? year - 1L : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        int monthFromMarch = month > 2 ? month - 3 : month + 9;
+        long dayOfYear = (153L * monthFromMarch + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    /**
+     * Returns the year of the given day since the epoch.
+     *
+     * @param epochDay
+     *            The number of days since 1970-01-01.
+     *
+     * @return The year.
+     */
+    public static int year(long epochDay) {
+        return (int) (civilFromDays(epochDay) >> 9);
+    }
+
+    /**
+     * Returns the month of the given day since the epoch.
+     *
+     * @param epochDay
+     *            The number of days since 1970-01-01.
+     *
+     * @return The month, from 1 to 12.
+     */
+    public static int month(long epochDay) {
+        return (int) (civilFromDays(epochDay) >> 5) & 0xF;
+    }
+
+    /**
+     * Converts days since the epoch to a calendar date packed as {@code year << 9 | month << 5 | day}, so that no
+     * object is needed to return the three fields.
+     */
+    private static long civilFromDays(long epochDay) {
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthFromMarch = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * monthFromMarch + 2) / 5 + 1;
+        long month = monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 9 | month << 5 | day;
+    }
+
+    private static long parseOrInvalid(CharSequence text) {
+        long epochDay = parseDateOrInvalid(text);
+        if (epochDay == INVALID || text.charAt(10) != 'T' || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return INVALID;
+        }
+        int hour = twoDigits(text, 11);
+        int minute = twoDigits(text, 14);
+        int second = twoDigits(text, 17);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        return epochDay * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+    }
+
+    private static long parseDateOrInvalid(CharSequence text) {
+        if (text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return INVALID;
+        }
+        int yearHigh = twoDigits(text, 0);
+        int yearLow = twoDigits(text, 2);
+        int month = twoDigits(text, 5);
+        int day = twoDigits(text, 8);
+        if (yearHigh < 0 || yearLow < 0 || month < 1 || month > 12 || day < 1) {
+            return INVALID;
+        }
+        int year = yearHigh * 100 + yearLow;
+        if (day > lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        return epochDay(year, month, day);
+    }
+
+    /**
+     * Reads two ASCII digits at the given offset, returning -1 if either character is not a digit.
+     */
+    private static int twoDigits(CharSequence text, int offset) {
+        int tens = text.charAt(offset) - '0';
+        int ones = text.charAt(offset + 1) - '0';
+        if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+            return -1;
+        }
+        return tens * 10 + ones;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+        case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        case 4, 6, 9, 11 -> 30;
+        default -> 31;
+        };
+    }
+
+    private static void writeDigits(byte[] out, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            out[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
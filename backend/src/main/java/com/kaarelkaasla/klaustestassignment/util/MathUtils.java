@@ -19,4 +19,16 @@ public class MathUtils {
     public static double roundToTwoDecimalPlaces(double value) {
         return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).doubleValue();
     }
+
+    /**
+     * Converts a percentage to basis points, rounding half up like {@link #roundToTwoDecimalPlaces(double)}.
+     *
+     * @param percentage
+     *            The percentage to convert, e.g. 80.25.
+     *
+     * @return The percentage in basis points, e.g. 8025.
+     */
+    public static int toBasisPoints(double percentage) {
+        return BigDecimal.valueOf(percentage).setScale(2, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+    }
 }
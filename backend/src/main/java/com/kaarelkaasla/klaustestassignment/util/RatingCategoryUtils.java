@@ -1,30 +1,59 @@
 package com.kaarelkaasla.klaustestassignment.util;
 
 import com.kaarelkaasla.klaustestassignment.entity.RatingCategory;
+import com.kaarelkaasla.klaustestassignment.profiling.RequestCost;
 import com.kaarelkaasla.klaustestassignment.repository.RatingCategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.LongSupplier;
 
 /**
  * Utility class for operations related to rating categories.
+ * <p>
+ * Rating categories change rarely, so they are cached in memory and reloaded from the database once the cache is older
+ * than {@code api.rating-categories.cache-ttl}. Categories added to the table, for example by the ratings importer, are
+ * therefore picked up without a restart. Call {@link #refresh()} to reload them on next access.
  */
 @Component
 public class RatingCategoryUtils {
 
     private final RatingCategoryRepository ratingCategoryRepository;
+    private final long cacheTtlNanos;
+    private final LongSupplier nanoClock;
+
+    /**
+     * Cached snapshot of the rating categories, or null if not loaded yet.
+     */
+    private volatile CategorySnapshot snapshot;
 
     /**
      * Constructs a RatingCategoryUtils with the given RatingCategoryRepository.
      *
      * @param ratingCategoryRepository
      *            The repository for accessing rating category data.
+     * @param cacheTtl
+     *            How long loaded categories are used before they are reloaded.
      */
     @Autowired
-    public RatingCategoryUtils(RatingCategoryRepository ratingCategoryRepository) {
+    public RatingCategoryUtils(RatingCategoryRepository ratingCategoryRepository,
+            @Value("${api.rating-categories.cache-ttl}") Duration cacheTtl) {
+        this(ratingCategoryRepository, cacheTtl, System::nanoTime);
+    }
+
+    RatingCategoryUtils(RatingCategoryRepository ratingCategoryRepository, Duration cacheTtl, LongSupplier nanoClock) {
+        if (cacheTtl.isNegative()) {
+            throw new IllegalArgumentException("Cache TTL must not be negative: " + cacheTtl);
+        }
         this.ratingCategoryRepository = ratingCategoryRepository;
+        this.cacheTtlNanos = cacheTtl.toNanos();
+        this.nanoClock = nanoClock;
     }
 
     /**
@@ -33,7 +62,71 @@ public class RatingCategoryUtils {
      * @return A map where the key is the category ID and the value is the category name.
      */
     public Map<Long, String> getCategoryIdToNameMap() {
-        return ratingCategoryRepository.findAll().stream()
-                .collect(Collectors.toMap(RatingCategory::getId, RatingCategory::getName));
+        return getSnapshot().idToName();
+    }
+
+    /**
+     * Retrieves the names of all rating categories in the order they are stored in the database.
+     *
+     * @return An unmodifiable list of category names.
+     */
+    public List<String> getCategoryNames() {
+        return getSnapshot().names();
+    }
+
+    /**
+     * Retrieves a map of category IDs to the weights used for weighted scores.
+     *
+     * @return A map where the key is the category ID and the value is the category weight.
+     */
+    public Map<Long, Double> getCategoryWeights() {
+        return getSnapshot().weights();
+    }
+
+    /**
+     * Discards the cached categories so that they are reloaded from the database on next access.
+     */
+    public void refresh() {
+        snapshot = null;
+    }
+
+    private CategorySnapshot getSnapshot() {
+        CategorySnapshot current = snapshot;
+        long now = nanoClock.getAsLong();
+        if (current == null || now - current.loadedAtNanos() >= cacheTtlNanos) {
+            RequestCost.current().cacheMiss();
+            current = CategorySnapshot.of(ratingCategoryRepository.findAll(), now);
+            snapshot = current;
+        } else {
+            RequestCost.current().cacheHit();
+        }
+        return current;
+    }
+
+    /**
+     * Immutable view of the rating categories loaded from the database.
+     *
+     * @param idToName
+     *            Map from category IDs to category names.
+     * @param names
+     *            Category names in database order.
+     * @param weights
+     *            Map from category IDs to category weights.
+     * @param loadedAtNanos
+     *            When the categories were loaded, in {@link System#nanoTime()} units.
+     */
+    private record CategorySnapshot(Map<Long, String> idToName, List<String> names, Map<Long, Double> weights,
+            long loadedAtNanos) {
+
+        static CategorySnapshot of(List<RatingCategory> categories, long loadedAtNanos) {
+            Map<Long, String> idToName = new LinkedHashMap<>();
+            Map<Long, Double> weights = new LinkedHashMap<>();
+            for (RatingCategory category : categories) {
+                idToName.put(category.getId(), category.getName());
+                weights.put(category.getId(), category.getWeight());
+            }
+            return new CategorySnapshot(Collections.unmodifiableMap(idToName), List.copyOf(idToName.values()),
+                    Collections.unmodifiableMap(weights), loadedAtNanos);
+        }
     }
 }
@@ -0,0 +1,98 @@
+package com.kaarelkaasla.klaustestassignment.config;
+
+import io.grpc.Context;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CancellableDataSource class.
+ */
+public class CancellableDataSourceTest {
+
+    private static final String LONG_QUERY = "WITH RECURSIVE c(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM c "
+            + "WHERE x < 1000000000) SELECT count(*) FROM c";
+
+    @TempDir
+    Path tempDir;
+
+    private CancellableDataSource dataSource;
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    public void setUp() {
+        SQLiteDataSource target = new SQLiteDataSource();
+        target.setUrl("jdbc:sqlite:" + tempDir.resolve("test.db"));
+        dataSource = new CancellableDataSource(target);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Tests that a running query is interrupted when the gRPC context it was executed in is cancelled.
+     */
+    @Test
+    public void testQueryInterruptedOnCancellation() throws Exception {
+        Context.CancellableContext context = Context.current().withCancellation();
+        scheduler.schedule(() -> context.cancel(null), 200, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        SQLException exception = assertThrows(SQLException.class, () -> context.call(() -> {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(LONG_QUERY)) {
+                return resultSet.next();
+            }
+        }));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < 10_000, "Query ran for " + elapsedMillis + " ms after cancellation");
+        assertNotNull(exception.getMessage());
+    }
+
+    /**
+     * Tests that no statement is executed in a context that is already cancelled.
+     */
+    @Test
+    public void testStatementRejectedInCancelledContext() throws Exception {
+        Context.CancellableContext context = Context.current().withCancellation();
+        context.cancel(null);
+
+        SQLException exception = assertThrows(SQLException.class, () -> context.call(() -> {
+            try (Connection connection = dataSource.getConnection();
+                    Statement statement = connection.prepareStatement("SELECT 1")) {
+                return statement.execute("SELECT 1");
+            }
+        }));
+
+        assertTrue(exception.getMessage().contains("cancelled"));
+    }
+
+    /**
+     * Tests that statements executed outside of a gRPC call run normally.
+     */
+    @Test
+    public void testStatementOutsideOfCall() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT 42")) {
+            assertTrue(resultSet.next());
+            assertEquals(42, resultSet.getInt(1));
+        }
+    }
+}
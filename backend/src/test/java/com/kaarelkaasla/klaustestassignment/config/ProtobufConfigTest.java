@@ -0,0 +1,79 @@
+package com.kaarelkaasla.klaustestassignment.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import com.kaarelkaasla.klaustestassignment.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the streaming ProtobufJsonSerializer.
+ */
+public class ProtobufConfigTest {
+
+    private ObjectMapper mapper;
+
+    @BeforeEach
+    public void setUp() {
+        mapper = new ObjectMapper();
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(Message.class, new ProtobufConfig.ProtobufJsonSerializer());
+        mapper.registerModule(module);
+    }
+
+    /**
+     * Tests that nested and repeated messages are written the same way as by JsonFormat.
+     */
+    @Test
+    public void testSerialize_AggregatedScoresResponse() throws Exception {
+        PeriodScore periodScore = PeriodScore.newBuilder().setPeriod("2023-01-01").setAverageScorePercentage(80.5)
+                .build();
+        AggregatedScoresResponse response = AggregatedScoresResponse.newBuilder()
+                .addCategoryRatingResults(CategoryRatingResult.newBuilder().setCategoryName("Spelling").setFrequency(3)
+                        .setOverallAverageScorePercentage(80.5).addPeriodScores(periodScore))
+                .addCategoryRatingResults(CategoryRatingResult.newBuilder().setCategoryName("Grammar")).build();
+
+        assertSameAsJsonFormat(response);
+    }
+
+    /**
+     * Tests that unset message fields are omitted while default scalar values are included.
+     */
+    @Test
+    public void testSerialize_WeightedScoresResponseWithoutPreviousPeriod() throws Exception {
+        WeightedScoresResponse response = WeightedScoresResponse.newBuilder()
+                .setCurrentPeriodScore(PeriodScore.newBuilder().setPeriod("2023-01-01T00:00:00 to 2023-01-31T23:59:59")
+                        .setAverageScorePercentage(0).setMessage("N/A"))
+                .build();
+
+        JsonNode json = mapper.readTree(mapper.writeValueAsString(response));
+
+        assertSameAsJsonFormat(response);
+        assertFalse(json.has("previousPeriodScore"));
+        assertEquals(0.0, json.get("currentPeriodScore").get("averageScorePercentage").asDouble());
+    }
+
+    /**
+     * Tests that map fields are written as JSON objects and empty repeated fields as empty arrays.
+     */
+    @Test
+    public void testSerialize_TicketCategoryScoresResponse() throws Exception {
+        TicketCategoryScoresResponse response = TicketCategoryScoresResponse.newBuilder()
+                .addTicketCategoryScores(TicketCategoryScore.newBuilder().setTicketId(1)
+                        .putCategoryScores("Spelling", 80.0).putCategoryScores("GDPR", 100.0))
+                .addTicketCategoryScores(TicketCategoryScore.newBuilder().setTicketId(2)).build();
+
+        assertSameAsJsonFormat(response);
+        assertSameAsJsonFormat(TicketCategoryScoresResponse.getDefaultInstance());
+    }
+
+    private void assertSameAsJsonFormat(Message message) throws Exception {
+        String expected = JsonFormat.printer().includingDefaultValueFields().preservingProtoFieldNames().print(message);
+        assertEquals(mapper.readTree(expected), mapper.readTree(mapper.writeValueAsString(message)));
+    }
+}
@@ -0,0 +1,122 @@
+package com.kaarelkaasla.klaustestassignment.config;
+
+import com.kaarelkaasla.klaustestassignment.profiling.SlowQueryLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SlowQueryDataSource class.
+ */
+public class SlowQueryDataSourceTest {
+
+    private static final String SELECT_SQL = "SELECT ticket_id, rating FROM ratings WHERE created_at BETWEEN ? AND ?";
+
+    @TempDir
+    Path tempDir;
+
+    private SQLiteDataSource target;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        target = new SQLiteDataSource();
+        target.setUrl("jdbc:sqlite:" + tempDir.resolve("test.db"));
+        try (Connection connection = target.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE ratings (ticket_id INTEGER, rating INTEGER, created_at TEXT)");
+            statement.executeUpdate(
+                    "INSERT INTO ratings VALUES (1, 5, '2024-01-01'), (2, 3, '2024-01-02'), " + "(3, 4, '2024-02-01')");
+        }
+    }
+
+    /**
+     * Tests that a slow query is recorded with its parameters, the rows read and its query plan.
+     */
+    @Test
+    public void testSlowQueryRecordedWithPlan() throws Exception {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(true, Duration.ZERO, 10);
+        SlowQueryDataSource dataSource = new SlowQueryDataSource(target, slowQueryLog);
+
+        assertEquals(2, query(dataSource));
+
+        List<SlowQueryLog.QueryShape> shapes = slowQueryLog.getSlowest(10);
+        assertEquals(1, shapes.size());
+        SlowQueryLog.QueryShape shape = shapes.get(0);
+        assertEquals(SELECT_SQL, shape.sql());
+        assertEquals(1, shape.executions());
+        assertEquals(1, shape.slowExecutions());
+        assertEquals(2, shape.maxRows());
+        assertEquals(List.of("2024-01-01", "2024-01-31"), shape.maxParameters());
+        assertEquals(List.of("SCAN ratings"), shape.plan());
+        assertTrue(shape.fullTableScan());
+    }
+
+    /**
+     * Tests that the plan of a query that uses an index is not reported as a full table scan.
+     */
+    @Test
+    public void testIndexedQueryIsNotFullScan() throws Exception {
+        try (Connection connection = target.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE INDEX idx_ratings_created_at ON ratings (created_at)");
+        }
+        SlowQueryLog slowQueryLog = new SlowQueryLog(true, Duration.ZERO, 10);
+
+        query(new SlowQueryDataSource(target, slowQueryLog));
+
+        SlowQueryLog.QueryShape shape = slowQueryLog.getSlowest(1).get(0);
+        assertTrue(shape.plan().get(0).startsWith("SEARCH ratings USING"), shape.plan().toString());
+        assertFalse(shape.fullTableScan());
+    }
+
+    /**
+     * Tests that fast statements are counted without a plan, and that updates record the rows they changed.
+     */
+    @Test
+    public void testFastStatementsRecordedWithoutPlan() throws Exception {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(true, Duration.ofHours(1), 10);
+        SlowQueryDataSource dataSource = new SlowQueryDataSource(target, slowQueryLog);
+
+        query(dataSource);
+        query(dataSource);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE ratings SET rating = 1 WHERE rating > 3");
+        }
+
+        List<SlowQueryLog.QueryShape> shapes = slowQueryLog.getSlowest(10);
+        assertEquals(2, shapes.size());
+        SlowQueryLog.QueryShape select = shapes.stream().filter(s -> s.sql().equals(SELECT_SQL)).findFirst()
+                .orElseThrow();
+        assertEquals(2, select.executions());
+        assertEquals(0, select.slowExecutions());
+        assertNull(select.plan());
+        SlowQueryLog.QueryShape update = shapes.stream().filter(s -> s.sql().startsWith("UPDATE")).findFirst()
+                .orElseThrow();
+        assertEquals("UPDATE ratings SET rating = ? WHERE rating > ?", update.sql());
+        assertEquals(2, update.maxRows());
+    }
+
+    private static int query(SlowQueryDataSource dataSource) throws Exception {
+        int rows = 0;
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_SQL)) {
+            statement.setString(1, "2024-01-01");
+            statement.setString(2, "2024-01-31");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+}
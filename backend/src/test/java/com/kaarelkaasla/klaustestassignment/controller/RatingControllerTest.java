@@ -0,0 +1,183 @@
+package com.kaarelkaasla.klaustestassignment.controller;
+
+import com.kaarelkaasla.klaustestassignment.*;
+import com.kaarelkaasla.klaustestassignment.config.ProtobufConfig;
+import com.kaarelkaasla.klaustestassignment.interceptor.RateLimitInterceptor;
+import com.kaarelkaasla.klaustestassignment.util.ApiKeyUtils;
+import com.kaarelkaasla.klaustestassignment.util.DateUtils;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Unit tests for the asynchronous RatingController REST bridge, backed by a local gRPC server on a random port.
+ */
+@WebMvcTest(RatingController.class)
+@Import({ DateUtils.class, ApiKeyUtils.class, ProtobufConfig.class, RatingControllerTest.GrpcTestConfig.class })
+@TestPropertySource(properties = { "api.key=test-api-key", "api.timeouts.aggregated-scores=2s" })
+public class RatingControllerTest {
+
+    private static final String API_KEY = "test-api-key";
+    private static final String RATE_LIMITED_DATE = "2024-01-01T00:00:00";
+    private static final String OVERLOADED_DATE = "2024-02-01T00:00:00";
+
+    private static Server server;
+    private static volatile CountDownLatch releaseResponse;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        server = ServerBuilder.forPort(0).addService(new RatingServiceGrpc.RatingServiceImplBase() {
+            @Override
+            public void getAggregatedScores(AggregatedScoresRequest request,
+                    StreamObserver<AggregatedScoresResponse> responseObserver) {
+                long startTime = request.getStartTime().getSeconds();
+                if (startTime == DateUtils.toEpochSecond(RATE_LIMITED_DATE)) {
+                    Metadata trailers = new Metadata();
+                    trailers.put(RateLimitInterceptor.RETRY_AFTER_KEY, "7");
+                    responseObserver.onError(Status.RESOURCE_EXHAUSTED.asRuntimeException(trailers));
+                    return;
+                }
+                if (startTime == DateUtils.toEpochSecond(OVERLOADED_DATE)) {
+                    responseObserver.onError(Status.RESOURCE_EXHAUSTED.asRuntimeException());
+                    return;
+                }
+                try {
+                    if (!releaseResponse.await(10, TimeUnit.SECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                responseObserver.onNext(AggregatedScoresResponse.newBuilder()
+                        .addCategoryRatingResults(CategoryRatingResult.newBuilder().setCategoryName("Spelling"))
+                        .build());
+                responseObserver.onCompleted();
+            }
+        }).build().start();
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        server.shutdownNow();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        releaseResponse = new CountDownLatch(1);
+    }
+
+    /**
+     * Tests that the servlet thread is released before the gRPC call completes, and that the gRPC response is returned
+     * once the call completes.
+     */
+    @Test
+    public void testGetAggregatedScores_ReleasesServletThread() throws Exception {
+        MvcResult result = mockMvc
+                .perform(get("/api/v1/scores/aggregated").header("x-api-key", API_KEY)
+                        .param("startDate", "2023-01-01T00:00:00").param("endDate", "2023-01-31T23:59:59"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        assertThrows(IllegalStateException.class, () -> result.getAsyncResult(0),
+                "Response must not be ready before the gRPC call completes");
+
+        releaseResponse.countDown();
+        result.getAsyncResult(10000);
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(jsonPath("$.categoryRatingResults[0].categoryName").value("Spelling"));
+    }
+
+    /**
+     * Tests that an expired deadline is reported as a gateway timeout.
+     */
+    @Test
+    public void testGetAggregatedScores_DeadlineExceeded() throws Exception {
+        MvcResult result = mockMvc
+                .perform(get("/api/v1/scores/aggregated").header("x-api-key", API_KEY)
+                        .param("startDate", "2023-01-01T00:00:00").param("endDate", "2023-01-31T23:59:59"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        result.getAsyncResult(10000);
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isGatewayTimeout());
+    }
+
+    /**
+     * Tests that requests with an invalid API key are rejected without calling the gRPC service.
+     */
+    @Test
+    public void testGetAggregatedScores_InvalidApiKey() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/scores/aggregated").header("x-api-key", "wrong")
+                .param("startDate", "2023-01-01T00:00:00").param("endDate", "2023-01-31T23:59:59")).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * Tests that a call rejected by the rate limit is reported as too many requests with the Retry-After header from
+     * the gRPC trailers.
+     */
+    @Test
+    public void testGetAggregatedScores_RateLimited() throws Exception {
+        MvcResult result = mockMvc
+                .perform(get("/api/v1/scores/aggregated").header("x-api-key", API_KEY)
+                        .param("startDate", RATE_LIMITED_DATE).param("endDate", "2024-01-31T23:59:59"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        result.getAsyncResult(10000);
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "7"));
+    }
+
+    /**
+     * Tests that a call shed by the concurrency limit is reported as service unavailable.
+     */
+    @Test
+    public void testGetAggregatedScores_Overloaded() throws Exception {
+        MvcResult result = mockMvc
+                .perform(get("/api/v1/scores/aggregated").header("x-api-key", API_KEY)
+                        .param("startDate", OVERLOADED_DATE).param("endDate", "2024-02-28T23:59:59"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        result.getAsyncResult(10000);
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable())
+                .andExpect(header().doesNotExist("Retry-After"));
+    }
+
+    @TestConfiguration
+    static class GrpcTestConfig {
+
+        @Bean(destroyMethod = "shutdownNow")
+        public ManagedChannel grpcChannel() {
+            return ManagedChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.kaarelkaasla.klaustestassignment.interceptor;
+
+import io.grpc.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ConcurrencyLimitInterceptor class.
+ */
+public class ConcurrencyLimitInterceptorTest {
+
+    private static final MethodDescriptor<String, String> METHOD = MethodDescriptor.<String, String> newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY).setFullMethodName("test.TestService/Get")
+            .setRequestMarshaller(new StringMarshaller()).setResponseMarshaller(new StringMarshaller()).build();
+
+    private SimpleMeterRegistry meterRegistry;
+    private List<ServerCall<String, String>> startedCalls;
+    private ServerCallHandler<String, String> handler;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        startedCalls = new ArrayList<>();
+        handler = (call, headers) -> {
+            startedCalls.add(call);
+            return new ServerCall.Listener<>() {
+            };
+        };
+    }
+
+    /**
+     * Tests that calls over the limit are rejected with RESOURCE_EXHAUSTED and counted, and that completed calls
+     * release their permit.
+     */
+    @Test
+    public void testRejectsCallsOverLimit() {
+        ConcurrencyLimitInterceptor interceptor = createInterceptor(false);
+
+        interceptor.interceptCall(mockCall(), new Metadata(), handler);
+        ServerCall<String, String> rejectedCall = mockCall();
+        interceptor.interceptCall(rejectedCall, new Metadata(), handler);
+
+        ArgumentCaptor<Status> status = ArgumentCaptor.forClass(Status.class);
+        verify(rejectedCall).close(status.capture(), any(Metadata.class));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, status.getValue().getCode());
+        assertEquals(1, startedCalls.size());
+        assertEquals(1.0,
+                meterRegistry.get("grpc.server.concurrency.rejected").tag("outcome", "rejected").counter().count());
+        assertEquals(1.0, meterRegistry.get("grpc.server.concurrency.limit").gauge().value());
+
+        startedCalls.get(0).close(Status.OK, new Metadata());
+        interceptor.interceptCall(mockCall(), new Metadata(), handler);
+
+        assertEquals(2, startedCalls.size());
+    }
+
+    /**
+     * Tests that a rejected call is answered with the last successful response to the same request when stale responses
+     * are enabled.
+     */
+    @Test
+    public void testServesStaleResponse() {
+        ConcurrencyLimitInterceptor interceptor = createInterceptor(true);
+
+        ServerCall.Listener<String> listener = interceptor.interceptCall(mockCall(), new Metadata(), handler);
+        listener.onMessage("request");
+        startedCalls.get(0).sendMessage("response");
+        startedCalls.get(0).close(Status.OK, new Metadata());
+
+        interceptor.interceptCall(mockCall(), new Metadata(), handler);
+        ServerCall<String, String> staleCall = mockCall();
+        ServerCall.Listener<String> staleListener = interceptor.interceptCall(staleCall, new Metadata(), handler);
+        staleListener.onMessage("request");
+        staleListener.onHalfClose();
+
+        ArgumentCaptor<Metadata> headers = ArgumentCaptor.forClass(Metadata.class);
+        verify(staleCall).sendHeaders(headers.capture());
+        verify(staleCall).sendMessage("response");
+        verify(staleCall).close(eq(Status.OK), any(Metadata.class));
+        assertEquals("true", headers.getValue().get(
+                Metadata.Key.of(ConcurrencyLimitInterceptor.STALE_RESPONSE_HEADER, Metadata.ASCII_STRING_MARSHALLER)));
+        assertEquals(1.0,
+                meterRegistry.get("grpc.server.concurrency.rejected").tag("outcome", "stale").counter().count());
+
+        ServerCall<String, String> uncachedCall = mockCall();
+        interceptor.interceptCall(uncachedCall, new Metadata(), handler).onMessage("other request");
+
+        ArgumentCaptor<Status> status = ArgumentCaptor.forClass(Status.class);
+        verify(uncachedCall).close(status.capture(), any(Metadata.class));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, status.getValue().getCode());
+    }
+
+    /**
+     * Tests that calls pass through untouched when the limit is disabled.
+     */
+    @Test
+    public void testDisabled() {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(false, 1, 1, 1, 1.5, 0.2, false, 1,
+                Duration.ofMinutes(1), meterRegistry);
+
+        ServerCall<String, String> call = mockCall();
+        interceptor.interceptCall(call, new Metadata(), handler);
+        interceptor.interceptCall(call, new Metadata(), handler);
+
+        assertEquals(2, startedCalls.size());
+        assertSame(call, startedCalls.get(0));
+    }
+
+    /**
+     * Tests that streaming calls are not limited.
+     */
+    @Test
+    public void testStreamingCallsNotLimited() {
+        ConcurrencyLimitInterceptor interceptor = createInterceptor(false);
+        MethodDescriptor<String, String> streaming = METHOD.toBuilder()
+                .setType(MethodDescriptor.MethodType.CLIENT_STREAMING).setFullMethodName("test.TestService/Ingest")
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            ServerCall<String, String> call = mockCall();
+            when(call.getMethodDescriptor()).thenReturn(streaming);
+            interceptor.interceptCall(call, new Metadata(), handler);
+            verify(call, never()).close(any(), any());
+        }
+
+        assertEquals(3, startedCalls.size());
+    }
+
+    private ConcurrencyLimitInterceptor createInterceptor(boolean staleResponses) {
+        return new ConcurrencyLimitInterceptor(true, 1, 1, 1, 1.5, 0.2, staleResponses, 16, Duration.ofMinutes(1),
+                meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerCall<String, String> mockCall() {
+        ServerCall<String, String> call = mock(ServerCall.class);
+        when(call.getMethodDescriptor()).thenReturn(METHOD);
+        return call;
+    }
+
+    private static class StringMarshaller implements MethodDescriptor.Marshaller<String> {
+
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes());
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.kaarelkaasla.klaustestassignment.interceptor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the GradientConcurrencyLimit class.
+ */
+public class GradientConcurrencyLimitTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    /**
+     * Tests that calls beyond the limit are refused until a permit is released.
+     */
+    @Test
+    public void testTryAcquire() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(2, 2, 2, 1.5, 0.2);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+
+        limit.onIgnored();
+
+        assertTrue(limit.tryAcquire());
+    }
+
+    /**
+     * Tests that the limit grows while the limit is saturated and latency stays at the baseline.
+     */
+    @Test
+    public void testLimitGrowsWithStableLatency() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(10, 1, 100, 1.5, 0.2);
+
+        for (int i = 0; i < 50; i++) {
+            saturate(limit);
+            limit.onSuccess(10 * MILLIS);
+            limit.onIgnored();
+            drain(limit);
+        }
+
+        assertTrue(limit.getLimit() > 10, "Limit was " + limit.getLimit());
+    }
+
+    /**
+     * Tests that the limit shrinks when latency rises well above the baseline.
+     */
+    @Test
+    public void testLimitShrinksWhenLatencyRises() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(50, 1, 100, 1.5, 0.2);
+        saturate(limit);
+        for (int i = 0; i < 10; i++) {
+            limit.onSuccess(10 * MILLIS);
+            limit.tryAcquire();
+        }
+        int before = limit.getLimit();
+
+        for (int i = 0; i < 30; i++) {
+            saturate(limit);
+            limit.onSuccess(200 * MILLIS);
+        }
+
+        assertTrue(limit.getLimit() < before, "Limit went from " + before + " to " + limit.getLimit());
+    }
+
+    /**
+     * Tests that the limit is not raised by calls that do not use it, and that timeouts cut it down to the minimum.
+     */
+    @Test
+    public void testAppLimitedAndDropped() {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(20, 5, 100, 1.5, 0.2);
+
+        for (int i = 0; i < 50; i++) {
+            limit.tryAcquire();
+            limit.onSuccess(10 * MILLIS);
+        }
+        assertEquals(20, limit.getLimit());
+
+        for (int i = 0; i < 50; i++) {
+            limit.tryAcquire();
+            limit.onDropped();
+        }
+        assertEquals(5, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    private static void saturate(GradientConcurrencyLimit limit) {
+        while (limit.tryAcquire()) {
+            // Take every available permit.
+        }
+    }
+
+    private static void drain(GradientConcurrencyLimit limit) {
+        while (limit.getInFlight() > 0) {
+            limit.onIgnored();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.kaarelkaasla.klaustestassignment.interceptor;
+
+import com.kaarelkaasla.klaustestassignment.ratelimit.ApiKeyRateLimiter;
+import com.kaarelkaasla.klaustestassignment.util.ApiKeyUtils;
+import io.grpc.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the RateLimitInterceptor class.
+ */
+public class RateLimitInterceptorTest {
+
+    private static final MethodDescriptor<String, String> METHOD = MethodDescriptor.<String, String> newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY).setFullMethodName("test.TestService/Get")
+            .setRequestMarshaller(new StringMarshaller()).setResponseMarshaller(new StringMarshaller()).build();
+
+    private RateLimitInterceptor interceptor;
+    private List<String> handledMessages;
+    private ServerCallHandler<String, String> handler;
+
+    @BeforeEach
+    public void setUp() {
+        ApiKeyUtils apiKeyUtils = new ApiKeyUtils("key", "other=other-key");
+        ApiKeyRateLimiter rateLimiter = new ApiKeyRateLimiter(true, 0.001, 2, apiKeyUtils);
+        interceptor = new RateLimitInterceptor(rateLimiter, apiKeyUtils, "x-api-key", new SimpleMeterRegistry());
+        handledMessages = new ArrayList<>();
+        handler = (call, headers) -> new ServerCall.Listener<>() {
+            @Override
+            public void onMessage(String message) {
+                handledMessages.add(message);
+            }
+        };
+    }
+
+    /**
+     * Tests that calls are started only after their request has been paid for, and that calls over the limit are
+     * rejected with RESOURCE_EXHAUSTED and a retry-after trailer without reaching the service.
+     */
+    @Test
+    public void testRejectsCallsOverLimit() {
+        ServerCall<String, String> firstCall = mockCall();
+        ServerCall.Listener<String> first = interceptor.interceptCall(firstCall, headers("key"), handler);
+        verify(firstCall).request(1);
+        assertTrue(handledMessages.isEmpty());
+        first.onMessage("first");
+
+        interceptor.interceptCall(mockCall(), headers("key"), handler).onMessage("second");
+        ServerCall<String, String> rejectedCall = mockCall();
+        interceptor.interceptCall(rejectedCall, headers("key"), handler).onMessage("third");
+
+        assertEquals(List.of("first", "second"), handledMessages);
+        ArgumentCaptor<Status> status = ArgumentCaptor.forClass(Status.class);
+        ArgumentCaptor<Metadata> trailers = ArgumentCaptor.forClass(Metadata.class);
+        verify(rejectedCall).close(status.capture(), trailers.capture());
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, status.getValue().getCode());
+        assertNotNull(trailers.getValue().get(RateLimitInterceptor.RETRY_AFTER_KEY));
+        assertTrue(Long.parseLong(trailers.getValue().get(RateLimitInterceptor.RETRY_AFTER_KEY)) > 0);
+
+        interceptor.interceptCall(mockCall(), headers("other-key"), handler).onMessage("fourth");
+
+        assertEquals(List.of("first", "second", "fourth"), handledMessages);
+    }
+
+    private static Metadata headers(String apiKey) {
+        Metadata headers = new Metadata();
+        headers.put(Metadata.Key.of("x-api-key", Metadata.ASCII_STRING_MARSHALLER), apiKey);
+        return headers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerCall<String, String> mockCall() {
+        ServerCall<String, String> call = mock(ServerCall.class);
+        when(call.getMethodDescriptor()).thenReturn(METHOD);
+        return call;
+    }
+
+    private static class StringMarshaller implements MethodDescriptor.Marshaller<String> {
+
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes());
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.kaarelkaasla.klaustestassignment.interceptor;
+
+import com.kaarelkaasla.klaustestassignment.profiling.RequestCost;
+import io.grpc.*;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the RequestCostInterceptor class.
+ */
+public class RequestCostInterceptorTest {
+
+    /**
+     * Handler that fills in the cost of the current call and answers it when the request is complete.
+     */
+    private final ServerCallHandler<String, String> handler = (call, headers) -> new ServerCall.Listener<>() {
+        @Override
+        public void onHalfClose() {
+            RequestCost cost = RequestCost.current();
+            cost.addRowsScanned(120);
+            cost.addTicketsAggregated(7);
+            cost.cacheHit();
+            cost.cacheHit();
+            cost.cacheMiss();
+            cost.addDbNanos(TimeUnit.MICROSECONDS.toNanos(12_345));
+            cost.addComputeNanos(TimeUnit.MILLISECONDS.toNanos(3));
+            call.sendMessage("response");
+            call.close(Status.OK, new Metadata());
+        }
+    };
+
+    /**
+     * Tests that the cost filled in by the service is sent as trailers when the call is closed.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWritesCostTrailers() {
+        ServerCall<String, String> call = mock(ServerCall.class);
+        RequestCostInterceptor interceptor = new RequestCostInterceptor(true);
+
+        interceptor.interceptCall(call, new Metadata(), handler).onHalfClose();
+
+        ArgumentCaptor<Metadata> trailers = ArgumentCaptor.forClass(Metadata.class);
+        verify(call).sendMessage("response");
+        verify(call).close(eq(Status.OK), trailers.capture());
+        assertEquals("120", get(trailers.getValue(), RequestCost.ROWS_SCANNED_HEADER));
+        assertEquals("7", get(trailers.getValue(), RequestCost.TICKETS_AGGREGATED_HEADER));
+        assertEquals("2", get(trailers.getValue(), RequestCost.CACHE_HITS_HEADER));
+        assertEquals("1", get(trailers.getValue(), RequestCost.CACHE_MISSES_HEADER));
+        assertEquals("12.35", get(trailers.getValue(), RequestCost.DB_TIME_HEADER));
+        assertEquals("3.0", get(trailers.getValue(), RequestCost.COMPUTE_TIME_HEADER));
+        assertNotNull(get(trailers.getValue(), RequestCost.SERIALIZATION_TIME_HEADER));
+    }
+
+    /**
+     * Tests that calls pass through untouched when cost reporting is disabled, and that updates outside a reported call
+     * are ignored.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDisabled() {
+        ServerCall<String, String> call = mock(ServerCall.class);
+        RequestCostInterceptor interceptor = new RequestCostInterceptor(false);
+
+        interceptor.interceptCall(call, new Metadata(), handler).onHalfClose();
+
+        ArgumentCaptor<Metadata> trailers = ArgumentCaptor.forClass(Metadata.class);
+        verify(call).close(any(Status.class), trailers.capture());
+        assertTrue(trailers.getValue().keys().isEmpty());
+
+        Metadata unused = new Metadata();
+        RequestCost.current().writeTo(unused);
+        assertEquals("0", get(unused, RequestCost.ROWS_SCANNED_HEADER));
+    }
+
+    private static String get(Metadata metadata, String name) {
+        return metadata.get(Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER));
+    }
+}
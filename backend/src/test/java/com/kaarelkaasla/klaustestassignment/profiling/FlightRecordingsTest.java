@@ -0,0 +1,108 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the FlightRecordings class and the score phase events.
+ */
+public class FlightRecordingsTest {
+
+    private FlightRecordings flightRecordings;
+    private Path file;
+
+    @BeforeEach
+    public void setUp() {
+        flightRecordings = new FlightRecordings(Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (flightRecordings.isRunning()) {
+            Files.deleteIfExists(flightRecordings.stop());
+        }
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests that phase events committed during a recording are written to the returned file with their fields.
+     */
+    @Test
+    public void testRecordsScoreEvents() throws Exception {
+        flightRecordings.start("default", null);
+        assertTrue(flightRecordings.isRunning());
+
+        QueryEvent queryEvent = new QueryEvent();
+        queryEvent.begin();
+        queryEvent.finish("GetAggregatedScores", 42, 86_400);
+        JsonPrintEvent printEvent = new JsonPrintEvent();
+        printEvent.begin();
+        printEvent.finish("AggregatedScoresResponse", 4);
+
+        file = flightRecordings.stop();
+        assertFalse(flightRecordings.isRunning());
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent query = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.kaarelkaasla.klaustestassignment.Query"))
+                .findFirst().orElseThrow();
+        assertEquals("GetAggregatedScores", query.getString("method"));
+        assertEquals(42, query.getLong("rows"));
+        assertEquals(Duration.ofDays(1), query.getDuration("rangeSeconds"));
+
+        RecordedEvent print = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.kaarelkaasla.klaustestassignment.JsonPrint"))
+                .findFirst().orElseThrow();
+        assertEquals("AggregatedScoresResponse", print.getString("type"));
+        assertEquals(4, print.getLong("rows"));
+    }
+
+    /**
+     * Tests that only one recording can run at a time.
+     */
+    @Test
+    public void testStartWhileRunningFails() {
+        flightRecordings.start("default", Duration.ofSeconds(30));
+
+        assertThrows(IllegalStateException.class, () -> flightRecordings.start("default", null));
+    }
+
+    /**
+     * Tests that the environment variables, system properties and processes of the instance are not recorded, while the
+     * other events emitted when a recording starts are.
+     */
+    @Test
+    public void testExcludesEnvironment() throws Exception {
+        flightRecordings.start("profile", null);
+        file = flightRecordings.stop();
+
+        List<String> eventTypes = RecordingFile.readAllEvents(file).stream().map(e -> e.getEventType().getName())
+                .distinct().toList();
+        assertTrue(eventTypes.contains("jdk.JVMInformation"), eventTypes.toString());
+        for (String excluded : FlightRecordings.EXCLUDED_EVENTS) {
+            assertFalse(eventTypes.contains(excluded), excluded);
+        }
+    }
+
+    /**
+     * Tests that unknown settings and stopping without a recording are rejected.
+     */
+    @Test
+    public void testInvalidUse() {
+        assertThrows(IllegalArgumentException.class, () -> flightRecordings.start("no-such-settings", null));
+        assertFalse(flightRecordings.isRunning());
+        assertThrows(IllegalStateException.class, () -> flightRecordings.stop());
+    }
+}
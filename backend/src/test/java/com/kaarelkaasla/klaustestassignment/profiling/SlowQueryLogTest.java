@@ -0,0 +1,73 @@
+package com.kaarelkaasla.klaustestassignment.profiling;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SlowQueryLog class.
+ */
+public class SlowQueryLogTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    /**
+     * Tests that literals and whitespace are normalized so that equivalent statements share a shape.
+     */
+    @Test
+    public void testToShape() {
+        assertEquals("SELECT * FROM ratings WHERE ticket_id = ? AND created_at > ? AND t1_0.id = ?",
+                SlowQueryLog.toShape("SELECT *\n  FROM ratings WHERE ticket_id = 42 AND created_at > 'it''s'"
+                        + " AND t1_0.id = 1.5"));
+    }
+
+    /**
+     * Tests that shapes are returned slowest first and that executions of a shape are aggregated.
+     */
+    @Test
+    public void testGetSlowest() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(true, Duration.ofMillis(100), 10);
+        slowQueryLog.record("SELECT 1", List.of(), 1, 10 * MILLIS, null);
+        slowQueryLog.record("SELECT 2", List.of(), 1, 30 * MILLIS, null);
+        slowQueryLog.record("SELECT a FROM t", List.of("x"), 5, 200 * MILLIS, List.of("SCAN t"));
+        slowQueryLog.record("SELECT a FROM t", List.of("y"), 2, 50 * MILLIS, null);
+
+        List<SlowQueryLog.QueryShape> slowest = slowQueryLog.getSlowest(2);
+
+        assertEquals(2, slowest.size());
+        SlowQueryLog.QueryShape first = slowest.get(0);
+        assertEquals("SELECT a FROM t", first.sql());
+        assertEquals(2, first.executions());
+        assertEquals(1, first.slowExecutions());
+        assertEquals(250.0, first.totalMillis());
+        assertEquals(125.0, first.meanMillis());
+        assertEquals(200.0, first.maxMillis());
+        assertEquals(5, first.maxRows());
+        assertEquals(List.of("x"), first.maxParameters());
+        assertTrue(first.fullTableScan());
+        assertNotNull(first.lastSlowAt());
+        assertEquals("SELECT ?", slowest.get(1).sql());
+        assertEquals(2, slowest.get(1).executions());
+    }
+
+    /**
+     * Tests that a full table replaces its fastest shape only with a slower one.
+     */
+    @Test
+    public void testBoundedShapes() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(true, Duration.ofSeconds(1), 2);
+        slowQueryLog.record("SELECT a FROM t", List.of(), 0, 10 * MILLIS, null);
+        slowQueryLog.record("SELECT b FROM t", List.of(), 0, 20 * MILLIS, null);
+
+        slowQueryLog.record("SELECT c FROM t", List.of(), 0, 5 * MILLIS, null);
+        assertEquals(List.of("SELECT b FROM t", "SELECT a FROM t"),
+                slowQueryLog.getSlowest(10).stream().map(SlowQueryLog.QueryShape::sql).toList());
+
+        slowQueryLog.record("SELECT d FROM t", List.of(), 0, 30 * MILLIS, null);
+        assertEquals(List.of("SELECT d FROM t", "SELECT b FROM t"),
+                slowQueryLog.getSlowest(10).stream().map(SlowQueryLog.QueryShape::sql).toList());
+    }
+}
@@ -0,0 +1,99 @@
+package com.kaarelkaasla.klaustestassignment.ratelimit;
+
+import com.kaarelkaasla.klaustestassignment.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ApiKeyRateLimiter class.
+ */
+public class ApiKeyRateLimiterTest {
+
+    private static final Set<String> CLIENTS = Set.of("noisy", "quiet");
+
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * Tests that every client has its own bucket, so one client running out does not affect another.
+     */
+    @Test
+    public void testSeparateBucketPerClient() {
+        ApiKeyRateLimiter rateLimiter = new ApiKeyRateLimiter(true, 1, 2, CLIENTS, clock::get);
+
+        assertEquals(0, rateLimiter.tryAcquire("noisy", 1));
+        assertEquals(0, rateLimiter.tryAcquire("noisy", 1));
+        assertTrue(rateLimiter.tryAcquire("noisy", 1) > 0);
+
+        assertEquals(0, rateLimiter.tryAcquire("quiet", 2));
+    }
+
+    /**
+     * Tests that weighted scores with the previous period cost double, ticket scores cost more than aggregated scores,
+     * writes cost more per 100 ratings, and costs never exceed the burst size.
+     */
+    @Test
+    public void testGetCost() {
+        ApiKeyRateLimiter rateLimiter = new ApiKeyRateLimiter(true, 1, 3, CLIENTS, clock::get);
+        String weighted = TicketWeightedScoreServiceGrpc.getGetWeightedScoresMethod().getFullMethodName();
+        String batch = RatingServiceGrpc.getBatchGetAggregatedScoresMethod().getFullMethodName();
+
+        assertEquals(1, rateLimiter.getCost(RatingServiceGrpc.getGetAggregatedScoresMethod().getFullMethodName(),
+                AggregatedScoresRequest.getDefaultInstance()));
+        assertEquals(1, rateLimiter.getCost(weighted, WeightedScoresRequest.getDefaultInstance()));
+        assertEquals(2, rateLimiter.getCost(weighted,
+                WeightedScoresRequest.newBuilder().setIncludePreviousPeriod(true).build()));
+        assertEquals(2,
+                rateLimiter.getCost(TicketScoreServiceGrpc.getGetTicketCategoryScoresMethod().getFullMethodName(),
+                        TicketCategoryScoresRequest.getDefaultInstance()));
+
+        BatchAggregatedScoresRequest.Builder batchRequest = BatchAggregatedScoresRequest.newBuilder();
+        for (int i = 0; i < 20; i++) {
+            batchRequest.addRanges(AggregatedScoresRequest.getDefaultInstance());
+        }
+        assertEquals(3, rateLimiter.getCost(batch, batchRequest.build()));
+
+        String addRatings = RatingIngestServiceGrpc.getAddRatingsMethod().getFullMethodName();
+        AddRatingsRequest.Builder addRequest = AddRatingsRequest.newBuilder();
+        for (int i = 0; i < 100; i++) {
+            addRequest.addRatings(NewRating.getDefaultInstance());
+        }
+        assertEquals(1, rateLimiter.getCost(addRatings, addRequest.build()));
+        assertEquals(2, rateLimiter.getCost(addRatings, addRequest.addRatings(NewRating.getDefaultInstance()).build()));
+    }
+
+    /**
+     * Tests that only configured clients have a bucket, so unknown clients cannot grow the limiter.
+     */
+    @Test
+    public void testUnknownClientRejected() {
+        ApiKeyRateLimiter rateLimiter = new ApiKeyRateLimiter(true, 1, 1, CLIENTS, clock::get);
+
+        assertThrows(IllegalArgumentException.class, () -> rateLimiter.tryAcquire("unknown", 1));
+    }
+
+    /**
+     * Tests that a disabled rate limiter allows every request.
+     */
+    @Test
+    public void testDisabled() {
+        ApiKeyRateLimiter rateLimiter = new ApiKeyRateLimiter(false, 1, 1, CLIENTS, clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("quiet", 1));
+        }
+    }
+
+    /**
+     * Tests that wait times are rounded up to whole seconds for the Retry-After header.
+     */
+    @Test
+    public void testToRetryAfterSeconds() {
+        assertEquals(1, ApiKeyRateLimiter.toRetryAfterSeconds(1));
+        assertEquals(1, ApiKeyRateLimiter.toRetryAfterSeconds(1_000_000_000L));
+        assertEquals(2, ApiKeyRateLimiter.toRetryAfterSeconds(1_000_000_001L));
+    }
+}
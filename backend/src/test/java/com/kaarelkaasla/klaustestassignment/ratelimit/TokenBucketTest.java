@@ -0,0 +1,82 @@
+package com.kaarelkaasla.klaustestassignment.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the TokenBucket class.
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * Tests that a full bucket allows a burst of its capacity and then refills at the configured rate.
+     */
+    @Test
+    public void testBurstAndRefill() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryConsume(1, 0));
+        }
+        assertEquals(SECOND / 10, bucket.tryConsume(1, 0));
+
+        assertEquals(0, bucket.tryConsume(1, SECOND / 10));
+        assertTrue(bucket.tryConsume(1, SECOND / 10) > 0);
+
+        assertEquals(0, bucket.tryConsume(5, 10 * SECOND));
+    }
+
+    /**
+     * Tests that costs larger than one take the matching number of tokens and report the wait for all of them.
+     */
+    @Test
+    public void testWeightedCost() {
+        TokenBucket bucket = new TokenBucket(1, 4, 0);
+
+        assertEquals(0, bucket.tryConsume(2, 0));
+        assertEquals(0, bucket.tryConsume(2, 0));
+        assertEquals(2 * SECOND, bucket.tryConsume(2, 0));
+        assertEquals(SECOND, bucket.tryConsume(2, SECOND));
+    }
+
+    /**
+     * Tests that concurrent consumers are never granted more tokens than the bucket holds.
+     */
+    @Test
+    public void testConcurrentConsumers() throws Exception {
+        int capacity = 10_000;
+        TokenBucket bucket = new TokenBucket(1, capacity, 0);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int granted = 0;
+                    for (int i = 0; i < capacity; i++) {
+                        if (bucket.tryConsume(1, 0) == 0) {
+                            granted++;
+                        }
+                    }
+                    return granted;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(capacity, total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.kaarelkaasla.klaustestassignment.repository;
+
+import com.kaarelkaasla.klaustestassignment.entity.Rating;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RatingRepositoryImpl class.
+ */
+public class RatingRepositoryImplTest {
+
+    private static final int ROW_COUNT = 5000;
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private RatingRepositoryImpl ratingRepository;
+
+    @BeforeEach
+    public void setUp() {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + tempDir.resolve("test.db"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE ratings (id INTEGER PRIMARY KEY, rating INTEGER, ticket_id INTEGER, "
+                + "rating_category_id INTEGER, reviewer_id INTEGER, reviewee_id INTEGER, created_at DATETIME)");
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            rows.add(new Object[] { i % 6, i, 1 + i % 4, "2024-01-01T00:00:00" });
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO ratings (rating, ticket_id, rating_category_id, created_at) VALUES (?, ?, ?, ?)", rows);
+        ratingRepository = new RatingRepositoryImpl(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Tests that all rows within the period are handed to the handler.
+     */
+    @Test
+    public void testScanRatingsBetween() {
+        AtomicInteger handled = new AtomicInteger();
+
+        ratingRepository.scanRatingsBetween("2024-01-01T00:00:00", "2024-01-01T23:59:59",
+                (createdAt, ticketId, ratingCategoryId, rating) -> handled.incrementAndGet());
+
+        assertEquals(ROW_COUNT, handled.get());
+    }
+
+    /**
+     * Tests that a scan bounded by ID leaves out the rows inserted after the given ID.
+     */
+    @Test
+    public void testScanRatingsBetween_MaxId() {
+        AtomicInteger handled = new AtomicInteger();
+
+        ratingRepository.scanRatingsBetween("2024-01-01T00:00:00", "2024-01-01T23:59:59", 100,
+                (createdAt, ticketId, ratingCategoryId, rating) -> handled.incrementAndGet());
+
+        assertEquals(100, handled.get());
+    }
+
+    /**
+     * Tests that the scan stops shortly after the gRPC call it serves is cancelled.
+     */
+    @Test
+    public void testScanRatingsBetween_Cancelled() {
+        Context.CancellableContext context = Context.current().withCancellation();
+        AtomicInteger handled = new AtomicInteger();
+
+        StatusRuntimeException exception = assertThrows(StatusRuntimeException.class,
+                () -> context.run(() -> ratingRepository.scanRatingsBetween("2024-01-01T00:00:00",
+                        "2024-01-01T23:59:59", (createdAt, ticketId, ratingCategoryId, rating) -> {
+                            if (handled.incrementAndGet() == 10) {
+                                context.cancel(null);
+                            }
+                        })));
+
+        assertEquals(Status.Code.CANCELLED, exception.getStatus().getCode());
+        assertTrue(handled.get() < ROW_COUNT);
+    }
+
+    /**
+     * Tests that inserted ratings are stored with their creation time in the text format and get the IDs of their rows,
+     * also when more than one statement is needed.
+     */
+    @Test
+    public void testInsertRatings() {
+        List<Rating> ratings = List.of(
+                Rating.builder().rating(5).ticketId(7).ratingCategoryId(2).reviewerId(3).revieweeId(4)
+                        .createdAt(Date.from(Instant.parse("2024-02-03T04:05:06Z"))).build(),
+                Rating.builder().rating(1).ticketId(8).ratingCategoryId(3).reviewerId(3).revieweeId(4)
+                        .createdAt(Date.from(Instant.parse("2024-02-03T04:05:07Z"))).build());
+
+        transactionTemplate.executeWithoutResult(status -> ratingRepository.insertRatings(ratings));
+
+        assertEquals(ROW_COUNT + 1, ratings.get(0).getId());
+        assertEquals(ROW_COUNT + 2, ratings.get(1).getId());
+        assertEquals("2024-02-03T04:05:07|8|3|1", jdbcTemplate.queryForObject(
+                "SELECT created_at || '|' || ticket_id || '|' || rating_category_id || '|' || rating FROM ratings "
+                        + "WHERE id = ?",
+                String.class, ratings.get(1).getId()));
+
+        List<Rating> many = new ArrayList<>();
+        for (int i = 0; i < RatingRepositoryImpl.ROWS_PER_INSERT + 3; i++) {
+            many.add(Rating.builder().rating(i % 6).ticketId(1000 + i).ratingCategoryId(1).reviewerId(3).revieweeId(4)
+                    .createdAt(Date.from(Instant.parse("2024-02-03T04:05:06Z"))).build());
+        }
+        transactionTemplate.executeWithoutResult(status -> ratingRepository.insertRatings(many));
+
+        for (Rating rating : many) {
+            assertEquals(rating.getTicketId(), jdbcTemplate.queryForObject("SELECT ticket_id FROM ratings WHERE id = ?",
+                    Integer.class, rating.getId()));
+        }
+        assertEquals(ROW_COUNT + 3, many.get(0).getId());
+    }
+}
@@ -0,0 +1,190 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.AggregatedScoresRequest;
+import com.kaarelkaasla.klaustestassignment.TicketCategoryScoresRequest;
+import com.kaarelkaasla.klaustestassignment.WeightedScoresRequest;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.actuate.health.Status;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the CacheWarmUp class.
+ */
+public class CacheWarmUpTest {
+
+    @Mock
+    private RatingRepository ratingRepository;
+
+    @Mock
+    private RatingServiceImpl ratingService;
+
+    @Mock
+    private TicketScoreServiceImpl ticketScoreService;
+
+    @Mock
+    private TicketWeightedScoreServiceImpl ticketWeightedScoreService;
+
+    private MutableClock clock;
+
+    private CacheWarmUp cacheWarmUp;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    public void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        clock = new MutableClock(Instant.parse("2024-03-12T10:00:00Z"));
+        cacheWarmUp = warmUp("today");
+        latestRating(100, "2019-06-20T08:00:00");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        cacheWarmUp.stop();
+        mocks.close();
+    }
+
+    /**
+     * Tests that the range names resolve to the days ending on the anchor day, and that unknown names are rejected.
+     */
+    @Test
+    public void testRanges() {
+        List<CacheWarmUp.Range> ranges = CacheWarmUp
+                .ranges(List.of("last-7-days", "last-30-days", "this-month", "last-1-day"), LocalDate.of(2024, 3, 12));
+
+        assertEquals(
+                List.of(new CacheWarmUp.Range("last-7-days", LocalDate.of(2024, 3, 6), LocalDate.of(2024, 3, 12)),
+                        new CacheWarmUp.Range("last-30-days", LocalDate.of(2024, 2, 12), LocalDate.of(2024, 3, 12)),
+                        new CacheWarmUp.Range("this-month", LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 12)),
+                        new CacheWarmUp.Range("last-1-day", LocalDate.of(2024, 3, 12), LocalDate.of(2024, 3, 12))),
+                ranges);
+        assertThrows(IllegalArgumentException.class, () -> CacheWarmUp.ranges(List.of("last-week"), LocalDate.EPOCH));
+        assertThrows(IllegalArgumentException.class, () -> warmUp("yesterday"));
+    }
+
+    /**
+     * Tests that a warm-up sends the requests of all dashboard components for every range, covering whole days.
+     */
+    @Test
+    public void testCheck_RequestsAllComponents() {
+        cacheWarmUp.check();
+
+        ArgumentCaptor<AggregatedScoresRequest> aggregated = ArgumentCaptor.forClass(AggregatedScoresRequest.class);
+        verify(ratingService, times(2)).getAggregatedScores(aggregated.capture(), any());
+        assertEquals("2024-03-06T00:00:00", aggregated.getAllValues().get(0).getStartDate());
+        assertEquals("2024-03-12T23:59:59", aggregated.getAllValues().get(0).getEndDate());
+        assertEquals("2024-03-01T00:00:00", aggregated.getAllValues().get(1).getStartDate());
+        verify(ticketScoreService, times(2)).getTicketCategoryScores(any(TicketCategoryScoresRequest.class), any());
+        ArgumentCaptor<WeightedScoresRequest> weighted = ArgumentCaptor.forClass(WeightedScoresRequest.class);
+        verify(ticketWeightedScoreService, times(4)).getWeightedScores(weighted.capture(), any());
+        assertEquals(2,
+                weighted.getAllValues().stream().filter(WeightedScoresRequest::getIncludePreviousPeriod).count());
+    }
+
+    /**
+     * Tests that the ranges are only warmed up again once the day rolls over or a rating is inserted.
+     */
+    @Test
+    public void testCheck_RepeatsOnDayChangeOrNewData() {
+        cacheWarmUp.check();
+        cacheWarmUp.check();
+        verify(ratingService, times(2)).getAggregatedScores(any(), any());
+
+        clock.set(Instant.parse("2024-03-13T00:00:01Z"));
+        cacheWarmUp.check();
+        verify(ratingService, times(4)).getAggregatedScores(any(), any());
+
+        latestRating(101, "2019-06-20T09:00:00");
+        cacheWarmUp.check();
+        verify(ratingService, times(6)).getAggregatedScores(any(), any());
+    }
+
+    /**
+     * Tests that the ranges end on the day of the latest rating with the latest-rating anchor.
+     */
+    @Test
+    public void testCheck_LatestRatingAnchor() {
+        cacheWarmUp.stop();
+        cacheWarmUp = warmUp("latest-rating");
+
+        cacheWarmUp.check();
+
+        ArgumentCaptor<AggregatedScoresRequest> aggregated = ArgumentCaptor.forClass(AggregatedScoresRequest.class);
+        verify(ratingService, times(2)).getAggregatedScores(aggregated.capture(), any());
+        assertEquals("2019-06-14T00:00:00", aggregated.getAllValues().get(0).getStartDate());
+        assertEquals("2019-06-20T23:59:59", aggregated.getAllValues().get(0).getEndDate());
+    }
+
+    /**
+     * Tests that the instance is out of service until the first warm-up has finished, even if it failed.
+     */
+    @Test
+    public void testHealth() {
+        assertEquals(Status.OUT_OF_SERVICE, cacheWarmUp.health().getStatus());
+
+        when(ratingRepository.findLatestRating()).thenThrow(new IllegalStateException("database is locked"));
+        cacheWarmUp.check();
+
+        assertEquals(Status.UP, cacheWarmUp.health().getStatus());
+        assertEquals("failed: database is locked", cacheWarmUp.health().getDetails().get("lastWarmUp"));
+    }
+
+    private CacheWarmUp warmUp(String anchor) {
+        return new CacheWarmUp(true, List.of("last-7-days", "this-month"), anchor, 1, Duration.ofMinutes(1),
+                ratingRepository, ratingService, ticketScoreService, ticketWeightedScoreService, clock);
+    }
+
+    private void latestRating(long id, String createdAt) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { id, createdAt });
+        when(ratingRepository.findLatestRating()).thenReturn(rows);
+    }
+
+    /**
+     * A UTC clock that tests can move.
+     */
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void set(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
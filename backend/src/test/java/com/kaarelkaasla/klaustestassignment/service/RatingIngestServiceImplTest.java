@@ -0,0 +1,276 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.AddRatingsRequest;
+import com.kaarelkaasla.klaustestassignment.AddRatingsResponse;
+import com.kaarelkaasla.klaustestassignment.IngestSummary;
+import com.kaarelkaasla.klaustestassignment.NewRating;
+import com.kaarelkaasla.klaustestassignment.entity.Rating;
+import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the RatingIngestServiceImpl class.
+ */
+public class RatingIngestServiceImplTest {
+
+    private static final NewRating VALID_RATING = NewRating.newBuilder().setRating(4).setTicketId(10)
+            .setRatingCategoryId(2).setReviewerId(3).setRevieweeId(5).setCreatedAt("2024-01-02T03:04:05").build();
+
+    @Mock
+    private RatingWriteQueue ratingWriteQueue;
+
+    @Mock
+    private RatingCategoryUtils ratingCategoryUtils;
+
+    @Mock
+    private StreamObserver<AddRatingsResponse> responseObserver;
+
+    @Mock
+    private ServerCallStreamObserver<IngestSummary> ingestCall;
+
+    private RatingIngestServiceImpl ratingIngestService;
+
+    /**
+     * Waits for room in the write queue, run on the calling thread unless deferred.
+     */
+    private final List<Runnable> deferredQueueWaits = new ArrayList<>();
+
+    private boolean deferQueueWaits;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    public void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        when(ratingCategoryUtils.getCategoryIdToNameMap())
+                .thenReturn(Map.of(1L, "Spelling", 2L, "Grammar", 3L, "GDPR"));
+        ratingIngestService = new RatingIngestServiceImpl(ratingWriteQueue, ratingCategoryUtils,
+                Clock.fixed(Instant.parse("2024-03-12T10:00:00Z"), ZoneOffset.UTC), runnable -> {
+                    if (deferQueueWaits) {
+                        deferredQueueWaits.add(runnable);
+                    } else {
+                        runnable.run();
+                    }
+                });
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    /**
+     * Tests that the ratings are queued as entities and the call completes with the ID of the first committed rating.
+     */
+    @Test
+    public void testAddRatings() {
+        when(ratingWriteQueue.submit(any())).thenAnswer(invocation -> {
+            List<Rating> ratings = invocation.getArgument(0);
+            ratings.get(0).setId(42L);
+            ratings.get(1).setId(43L);
+            return CompletableFuture.completedFuture(ratings);
+        });
+
+        ratingIngestService.addRatings(AddRatingsRequest.newBuilder().addRatings(VALID_RATING)
+                .addRatings(VALID_RATING.toBuilder().clearCreatedAt()).build(), responseObserver);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Rating>> ratings = ArgumentCaptor.forClass(List.class);
+        verify(ratingWriteQueue).submit(ratings.capture());
+        Rating first = ratings.getValue().get(0);
+        assertEquals(4, first.getRating());
+        assertEquals(10, first.getTicketId());
+        assertEquals(2, first.getRatingCategoryId());
+        assertEquals(Date.from(Instant.parse("2024-01-02T03:04:05Z")), first.getCreatedAt());
+        assertEquals(Date.from(Instant.parse("2024-03-12T10:00:00Z")), ratings.getValue().get(1).getCreatedAt());
+        verify(responseObserver).onNext(AddRatingsResponse.newBuilder().setCount(2).setFirstId(42).build());
+        verify(responseObserver).onCompleted();
+    }
+
+    /**
+     * Tests that invalid ratings fail the call with INVALID_ARGUMENT before anything is queued.
+     */
+    @Test
+    public void testAddRatings_InvalidRating() {
+        for (NewRating invalid : List.of(VALID_RATING.toBuilder().setRating(6).build(),
+                VALID_RATING.toBuilder().setRatingCategoryId(0).build(),
+                VALID_RATING.toBuilder().setRatingCategoryId(9).build(),
+                VALID_RATING.toBuilder().setCreatedAt("yesterday").build())) {
+            StreamObserver<AddRatingsResponse> observer = mockObserver();
+
+            ratingIngestService.addRatings(AddRatingsRequest.newBuilder().addRatings(invalid).build(), observer);
+
+            assertEquals(Status.Code.INVALID_ARGUMENT, errorCode(observer));
+        }
+        verify(ratingWriteQueue, never()).submit(any());
+    }
+
+    /**
+     * Tests that a full queue fails the call with RESOURCE_EXHAUSTED and a failed commit with UNAVAILABLE.
+     */
+    @Test
+    public void testAddRatings_NotStored() {
+        AddRatingsRequest request = AddRatingsRequest.newBuilder().addRatings(VALID_RATING).build();
+        when(ratingWriteQueue.submit(any())).thenThrow(new RejectedExecutionException("The queue is full"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("database is locked")));
+
+        ratingIngestService.addRatings(request, responseObserver);
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, errorCode(responseObserver));
+
+        StreamObserver<AddRatingsResponse> failedObserver = mockObserver();
+        ratingIngestService.addRatings(request, failedObserver);
+        assertEquals(Status.Code.UNAVAILABLE, errorCode(failedObserver));
+    }
+
+    /**
+     * Tests that a stream queues its valid ratings in chunks of the batch size and reports the skipped ones in the
+     * summary once every chunk is committed.
+     */
+    @Test
+    public void testIngestRatings() throws InterruptedException {
+        when(ratingWriteQueue.getBatchSize()).thenReturn(2);
+        List<CompletableFuture<List<Rating>>> commits = new ArrayList<>();
+        when(ratingWriteQueue.submit(any(), any(Duration.class))).thenAnswer(invocation -> {
+            CompletableFuture<List<Rating>> commit = new CompletableFuture<>();
+            commits.add(commit);
+            return commit;
+        });
+
+        StreamObserver<NewRating> stream = ratingIngestService.ingestRatings(ingestCall);
+        stream.onNext(VALID_RATING);
+        stream.onNext(VALID_RATING.toBuilder().setRatingCategoryId(9).build());
+        stream.onNext(VALID_RATING);
+        stream.onNext(VALID_RATING);
+
+        verify(ingestCall).disableAutoRequest();
+        verify(ingestCall, times(2)).request(2);
+        assertEquals(2, commits.size());
+        commits.forEach(commit -> commit.complete(List.of()));
+        verify(ingestCall, times(3)).request(2);
+
+        stream.onNext(VALID_RATING);
+        stream.onNext(VALID_RATING.toBuilder().setRating(7).build());
+        stream.onNext(VALID_RATING);
+        stream.onCompleted();
+        assertEquals(4, commits.size());
+        verify(ingestCall, never()).onNext(any());
+        commits.get(2).complete(List.of());
+        commits.get(3).complete(List.of());
+
+        ArgumentCaptor<IngestSummary> summary = ArgumentCaptor.forClass(IngestSummary.class);
+        verify(ingestCall).onNext(summary.capture());
+        verify(ingestCall).onCompleted();
+        assertEquals(5, summary.getValue().getAcceptedRows());
+        assertEquals(2, summary.getValue().getRejectedRows());
+        assertEquals(1, summary.getValue().getRejections(0).getIndex());
+        assertEquals("unknown rating category 9", summary.getValue().getRejections(0).getReason());
+        assertEquals(5, summary.getValue().getRejections(1).getIndex());
+    }
+
+    /**
+     * Tests that a stream stops requesting ratings while the maximum number of chunks waits to be committed, and
+     * resumes when one of them is.
+     */
+    @Test
+    public void testIngestRatings_Backpressure() throws InterruptedException {
+        when(ratingWriteQueue.getBatchSize()).thenReturn(1);
+        CompletableFuture<List<Rating>> firstCommit = new CompletableFuture<>();
+        when(ratingWriteQueue.submit(any(), any(Duration.class))).thenReturn(firstCommit)
+                .thenReturn(new CompletableFuture<>());
+
+        StreamObserver<NewRating> stream = ratingIngestService.ingestRatings(ingestCall);
+        for (int i = 0; i < RatingIngestServiceImpl.MAX_CHUNKS_IN_FLIGHT; i++) {
+            stream.onNext(VALID_RATING);
+        }
+        verify(ingestCall, times(RatingIngestServiceImpl.MAX_CHUNKS_IN_FLIGHT)).request(1);
+
+        firstCommit.complete(List.of());
+        verify(ingestCall, times(RatingIngestServiceImpl.MAX_CHUNKS_IN_FLIGHT + 1)).request(1);
+    }
+
+    /**
+     * Tests that a stream hands its chunks off without waiting for room in the write queue on the gRPC thread, and
+     * submits them in order once the waits run.
+     */
+    @Test
+    public void testIngestRatings_QueueWaitOffCallbackThread() throws InterruptedException {
+        when(ratingWriteQueue.getBatchSize()).thenReturn(1);
+        when(ratingWriteQueue.submit(any(), any(Duration.class))).thenReturn(new CompletableFuture<>());
+        deferQueueWaits = true;
+
+        StreamObserver<NewRating> stream = ratingIngestService.ingestRatings(ingestCall);
+        stream.onNext(VALID_RATING);
+        stream.onNext(VALID_RATING.toBuilder().setTicketId(11).build());
+
+        verify(ratingWriteQueue, never()).submit(any(), any(Duration.class));
+        verify(ingestCall, times(RatingIngestServiceImpl.MAX_CHUNKS_IN_FLIGHT)).request(1);
+        assertEquals(1, deferredQueueWaits.size());
+
+        deferredQueueWaits.remove(0).run();
+        assertEquals(1, deferredQueueWaits.size());
+        deferredQueueWaits.remove(0).run();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Rating>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(ratingWriteQueue, times(2)).submit(chunks.capture(), any(Duration.class));
+        assertEquals(List.of(10, 11), chunks.getAllValues().stream().map(chunk -> chunk.get(0).getTicketId()).toList());
+    }
+
+    /**
+     * Tests that a stream fails with RESOURCE_EXHAUSTED when the queue stays full, and with UNAVAILABLE when a chunk
+     * fails to commit.
+     */
+    @Test
+    public void testIngestRatings_NotStored() throws InterruptedException {
+        when(ratingWriteQueue.getBatchSize()).thenReturn(1);
+        when(ratingWriteQueue.submit(any(), any(Duration.class)))
+                .thenThrow(new RejectedExecutionException("The queue is full"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("database is locked")));
+
+        ratingIngestService.ingestRatings(ingestCall).onNext(VALID_RATING);
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, errorCode(ingestCall));
+
+        @SuppressWarnings("unchecked")
+        ServerCallStreamObserver<IngestSummary> failedCall = mock(ServerCallStreamObserver.class);
+        StreamObserver<NewRating> stream = ratingIngestService.ingestRatings(failedCall);
+        stream.onNext(VALID_RATING);
+        stream.onCompleted();
+        assertEquals(Status.Code.UNAVAILABLE, errorCode(failedCall));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StreamObserver<AddRatingsResponse> mockObserver() {
+        return mock(StreamObserver.class);
+    }
+
+    private static Status.Code errorCode(StreamObserver<?> observer) {
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(observer).onError(error.capture());
+        verify(observer, never()).onCompleted();
+        return ((StatusRuntimeException) error.getValue()).getStatus().getCode();
+    }
+}
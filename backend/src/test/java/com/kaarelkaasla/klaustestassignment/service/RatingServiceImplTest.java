@@ -1,10 +1,14 @@
 package com.kaarelkaasla.klaustestassignment.service;
 
+import com.google.protobuf.Timestamp;
 import com.kaarelkaasla.klaustestassignment.*;
+import com.kaarelkaasla.klaustestassignment.metrics.ScoreMetrics;
 import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRowHandler;
 import com.kaarelkaasla.klaustestassignment.util.DateUtils;
 import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,6 +31,9 @@ public class RatingServiceImplTest {
     @Mock
     private RatingCategoryUtils ratingCategoryUtils;
 
+    @Spy
+    private ScoreMetrics scoreMetrics = new ScoreMetrics(new SimpleMeterRegistry());
+
     @InjectMocks
     private RatingServiceImpl ratingService;
 
@@ -35,7 +42,7 @@ public class RatingServiceImplTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        dateUtilsMockedStatic = mockStatic(DateUtils.class);
+        dateUtilsMockedStatic = mockStatic(DateUtils.class, Mockito.CALLS_REAL_METHODS);
     }
 
     @AfterEach
@@ -54,8 +61,6 @@ public class RatingServiceImplTest {
 
         StreamObserver<AggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
 
-        dateUtilsMockedStatic.when(() -> DateUtils.isValidDate("invalid-date")).thenReturn(false);
-
         ratingService.getAggregatedScores(request, responseObserver);
 
         verify(responseObserver).onError(any(Throwable.class));
@@ -71,9 +76,6 @@ public class RatingServiceImplTest {
 
         StreamObserver<AggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
 
-        dateUtilsMockedStatic.when(() -> DateUtils.isValidDate("2023-01-01T00:00:00")).thenReturn(true);
-        dateUtilsMockedStatic.when(() -> DateUtils.isValidDate("invalid-date")).thenReturn(false);
-
         ratingService.getAggregatedScores(request, responseObserver);
 
         verify(responseObserver).onError(any(Throwable.class));
@@ -89,8 +91,7 @@ public class RatingServiceImplTest {
 
         StreamObserver<AggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
 
-        dateUtilsMockedStatic.when(() -> DateUtils.isValidDate(anyString())).thenReturn(true);
-        dateUtilsMockedStatic.when(() -> DateUtils.getDaysBetween(anyString(), anyString()))
+        dateUtilsMockedStatic.when(() -> DateUtils.toEpochSecond("2023-12-31T23:59:59"))
                 .thenThrow(DateTimeParseException.class);
 
         ratingService.getAggregatedScores(request, responseObserver);
@@ -98,6 +99,27 @@ public class RatingServiceImplTest {
         verify(responseObserver).onError(any(Throwable.class));
     }
 
+    /**
+     * Tests that typed timestamps take precedence over the date strings and select the weekly query for periods that
+     * cross a month boundary.
+     */
+    @Test
+    public void testGetAggregatedScores_Timestamps() {
+        AggregatedScoresRequest request = AggregatedScoresRequest.newBuilder().setStartDate("invalid-date")
+                .setStartTime(Timestamp.newBuilder().setSeconds(1672531200L))
+                .setEndTime(Timestamp.newBuilder().setSeconds(1676505599L)).build();
+
+        StreamObserver<AggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
+
+        when(ratingRepository.findWeeklyAggregatedRatingsBetween(anyString(), anyString()))
+                .thenReturn(Collections.emptyList());
+
+        ratingService.getAggregatedScores(request, responseObserver);
+
+        verify(ratingRepository).findWeeklyAggregatedRatingsBetween("2023-01-01T00:00:00", "2023-02-15T23:59:59");
+        verify(ratingRepository, never()).findAggregatedRatingsBetween(anyString(), anyString());
+    }
+
     /**
      * Tests that getAggregatedScores handles a database query exception.
      */
@@ -108,8 +130,6 @@ public class RatingServiceImplTest {
 
         StreamObserver<AggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
 
-        dateUtilsMockedStatic.when(() -> DateUtils.isValidDate(anyString())).thenReturn(true);
-        dateUtilsMockedStatic.when(() -> DateUtils.getDaysBetween(anyString(), anyString())).thenReturn(14L);
         when(ratingRepository.findAggregatedRatingsBetween(anyString(), anyString())).thenThrow(RuntimeException.class);
 
         ratingService.getAggregatedScores(request, responseObserver);
@@ -127,9 +147,6 @@ public class RatingServiceImplTest {
 
         StreamObserver<AggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
 
-        dateUtilsMockedStatic.when(() -> DateUtils.isValidDate(anyString())).thenReturn(true);
-        dateUtilsMockedStatic.when(() -> DateUtils.getDaysBetween(anyString(), anyString())).thenReturn(14L);
-
         List<Object[]> aggregatedRatingsRaw = Arrays.asList(new Object[] { "2023-01-01 to 2023-01-07", 1L, 10, 4.5 },
                 new Object[] { "2023-01-08 to 2023-01-14", 1L, 5, 3.5 });
 
@@ -159,10 +176,6 @@ public class RatingServiceImplTest {
 
         StreamObserver<AggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
 
-        dateUtilsMockedStatic.when(() -> DateUtils.isValidDate(anyString())).thenReturn(true);
-        dateUtilsMockedStatic.when(() -> DateUtils.getDaysBetween(anyString(), anyString())).thenReturn(45L);
-        dateUtilsMockedStatic.when(() -> DateUtils.isDifferentMonthOrYear(anyString(), anyString())).thenReturn(true);
-
         List<Object[]> aggregatedRatingsRaw = Arrays.asList(new Object[] { "2023-01-01 to 2023-01-07", 1L, 10, 4.5 },
                 new Object[] { "2023-01-08 to 2023-01-14", 1L, 5, 3.5 });
 
@@ -193,8 +206,6 @@ public class RatingServiceImplTest {
 
         StreamObserver<AggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
 
-        dateUtilsMockedStatic.when(() -> DateUtils.isValidDate(anyString())).thenReturn(true);
-        dateUtilsMockedStatic.when(() -> DateUtils.getDaysBetween(anyString(), anyString())).thenReturn(14L);
         when(ratingRepository.findAggregatedRatingsBetween(anyString(), anyString()))
                 .thenReturn(Collections.emptyList());
 
@@ -213,9 +224,6 @@ public class RatingServiceImplTest {
 
         StreamObserver<AggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
 
-        dateUtilsMockedStatic.when(() -> DateUtils.isValidDate(anyString())).thenReturn(true);
-        dateUtilsMockedStatic.when(() -> DateUtils.getDaysBetween(anyString(), anyString())).thenReturn(14L);
-
         List<Object[]> aggregatedRatingsRaw = Arrays.asList(new Object[] { "2023-01-01 to 2023-01-07", 1L, 10, 4.5 },
                 new Object[] { "2023-01-08 to 2023-01-14", 1L, 5, 3.5 });
 
@@ -234,4 +242,66 @@ public class RatingServiceImplTest {
         assertEquals(1, response.getCategoryRatingResultsCount());
         assertEquals("Category 1", response.getCategoryRatingResults(0).getCategoryName());
     }
+
+    /**
+     * Tests that batchGetAggregatedScores scans the union of all periods once and aggregates each period separately.
+     */
+    @Test
+    public void testBatchGetAggregatedScores_SharedScan() {
+        BatchAggregatedScoresRequest request = BatchAggregatedScoresRequest.newBuilder()
+                .addRanges(AggregatedScoresRequest.newBuilder().setStartDate("2023-01-01T00:00:00")
+                        .setEndDate("2023-01-02T23:59:59"))
+                .addRanges(AggregatedScoresRequest.newBuilder().setStartDate("2023-01-02T00:00:00")
+                        .setEndDate("2023-01-02T23:59:59"))
+                .addRanges(AggregatedScoresRequest.newBuilder().setStartDate("2023-01-05T00:00:00")
+                        .setEndDate("2023-01-05T23:59:59"))
+                .build();
+
+        StreamObserver<BatchAggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
+
+        doAnswer(invocation -> {
+            RatingRowHandler handler = invocation.getArgument(2);
+            handler.handle("2023-01-01T10:00:00", 1, 1L, 5);
+            handler.handle("2023-01-02T10:00:00", 2, 1L, 3);
+            return null;
+        }).when(ratingRepository).scanRatingsBetween(anyString(), anyString(), any());
+        when(ratingCategoryUtils.getCategoryIdToNameMap()).thenReturn(Collections.singletonMap(1L, "Category 1"));
+
+        ratingService.batchGetAggregatedScores(request, responseObserver);
+
+        verify(ratingRepository, times(1)).scanRatingsBetween(eq("2023-01-01T00:00:00"), eq("2023-01-05T23:59:59"),
+                any());
+        ArgumentCaptor<BatchAggregatedScoresResponse> responseCaptor = ArgumentCaptor
+                .forClass(BatchAggregatedScoresResponse.class);
+        verify(responseObserver).onNext(responseCaptor.capture());
+        verify(responseObserver).onCompleted();
+
+        BatchAggregatedScoresResponse response = responseCaptor.getValue();
+        assertEquals(3, response.getResponsesCount());
+
+        CategoryRatingResult first = response.getResponses(0).getCategoryRatingResults(0);
+        assertEquals(2, first.getFrequency());
+        assertEquals(80.0, first.getOverallAverageScorePercentage());
+        assertEquals(2, first.getPeriodScoresCount());
+        assertEquals("2023-01-01", first.getPeriodScores(0).getPeriod());
+
+        CategoryRatingResult second = response.getResponses(1).getCategoryRatingResults(0);
+        assertEquals(1, second.getFrequency());
+        assertEquals(60.0, second.getOverallAverageScorePercentage());
+
+        assertEquals(0, response.getResponses(2).getCategoryRatingResultsCount());
+    }
+
+    /**
+     * Tests that batchGetAggregatedScores rejects a request without periods.
+     */
+    @Test
+    public void testBatchGetAggregatedScores_NoPeriods() {
+        StreamObserver<BatchAggregatedScoresResponse> responseObserver = mock(StreamObserver.class);
+
+        ratingService.batchGetAggregatedScores(BatchAggregatedScoresRequest.getDefaultInstance(), responseObserver);
+
+        verify(responseObserver).onError(any(Throwable.class));
+        verify(ratingRepository, never()).scanRatingsBetween(anyString(), anyString(), any());
+    }
 }
@@ -0,0 +1,243 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.entity.Rating;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the RatingWriteQueue class.
+ */
+public class RatingWriteQueueTest {
+
+    @Mock
+    private RatingRepository ratingRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<List<Rating>> insertedBatches = new ArrayList<>();
+
+    private RatingWriteQueue queue;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    public void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            List<Rating> ratings = invocation.getArgument(0);
+            long id = 100;
+            for (Rating rating : ratings) {
+                rating.setId(++id);
+            }
+            synchronized (insertedBatches) {
+                insertedBatches.add(List.copyOf(ratings));
+            }
+            return null;
+        }).when(ratingRepository).insertRatings(any());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (queue != null) {
+            queue.close();
+        }
+        mocks.close();
+    }
+
+    /**
+     * Tests that writes arriving within the linger time are committed in one transaction, and that the futures complete
+     * with the ratings and their IDs after the change event has been published.
+     */
+    @Test
+    public void testSubmit_GroupCommit() throws Exception {
+        queue = createQueue(100, 100, Duration.ofMillis(500));
+
+        CompletableFuture<List<Rating>> first = queue.submit(ratings(2));
+        CompletableFuture<List<Rating>> second = queue.submit(ratings(3));
+
+        assertEquals(101, first.get(5, TimeUnit.SECONDS).get(0).getId());
+        assertEquals(103, second.get(5, TimeUnit.SECONDS).get(0).getId());
+        assertEquals(1, insertedBatches.size());
+        assertEquals(5, insertedBatches.get(0).size());
+        verify(eventPublisher).publishEvent(new RatingsCommittedEvent(insertedBatches.get(0)));
+        assertEquals(1, meterRegistry.get("ratings.ingest.batch.rows").summary().count());
+    }
+
+    /**
+     * Tests that a batch is committed once it reaches the batch size, without waiting for the linger time, and that
+     * writes are never split across batches.
+     */
+    @Test
+    public void testSubmit_BatchSize() throws Exception {
+        queue = createQueue(100, 4, Duration.ofSeconds(30));
+
+        CompletableFuture<List<Rating>> first = queue.submit(ratings(3));
+        CompletableFuture<List<Rating>> second = queue.submit(ratings(3));
+        CompletableFuture<List<Rating>> third = queue.submit(ratings(1));
+
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(6), insertedBatches.stream().map(List::size).toList());
+        assertFalse(third.isDone());
+    }
+
+    /**
+     * Tests that writes that do not fit into the queue are rejected, and that room is freed once they are committed.
+     */
+    @Test
+    public void testSubmit_QueueFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(ratingRepository).insertRatings(any());
+        queue = createQueue(5, 5, Duration.ZERO);
+
+        CompletableFuture<List<Rating>> first = queue.submit(ratings(4));
+        assertThrows(RejectedExecutionException.class, () -> queue.submit(ratings(2)));
+        assertThrows(IllegalArgumentException.class, () -> queue.submit(ratings(6)));
+        assertEquals(1, meterRegistry.get("ratings.ingest.rejected").counter().count());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertDoesNotThrow(() -> queue.submit(ratings(5)).get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Tests that a failed transaction fails the futures of its writes without publishing an event, and that the writer
+     * keeps going.
+     */
+    @Test
+    public void testSubmit_CommitFails() throws Exception {
+        doThrow(new IllegalStateException("database is locked")).doNothing().when(ratingRepository)
+                .insertRatings(any());
+        queue = createQueue(100, 100, Duration.ZERO);
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> queue.submit(ratings(1)).get(5, TimeUnit.SECONDS));
+        assertEquals("database is locked", failure.getCause().getMessage());
+        verify(eventPublisher, never()).publishEvent(any(RatingsCommittedEvent.class));
+
+        assertDoesNotThrow(() -> queue.submit(ratings(1)).get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Tests that when a grouped transaction fails, its writes are retried one by one, so only the bad write fails.
+     */
+    @Test
+    public void testSubmit_GroupCommitFailsRetriesWrites() throws Exception {
+        doAnswer(invocation -> {
+            List<Rating> ratings = invocation.getArgument(0);
+            if (ratings.stream().anyMatch(rating -> rating.getTicketId() == 99)) {
+                throw new IllegalStateException("constraint failed");
+            }
+            synchronized (insertedBatches) {
+                insertedBatches.add(List.copyOf(ratings));
+            }
+            return null;
+        }).when(ratingRepository).insertRatings(any());
+        queue = createQueue(100, 100, Duration.ofMillis(500));
+        List<Rating> bad = ratings(1);
+        bad.get(0).setTicketId(99);
+
+        CompletableFuture<List<Rating>> first = queue.submit(ratings(2));
+        CompletableFuture<List<Rating>> failed = queue.submit(bad);
+        CompletableFuture<List<Rating>> third = queue.submit(ratings(3));
+
+        assertEquals(2, first.get(5, TimeUnit.SECONDS).size());
+        assertEquals(3, third.get(5, TimeUnit.SECONDS).size());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertEquals("constraint failed", failure.getCause().getMessage());
+        verify(ratingRepository, times(4)).insertRatings(any());
+        verify(eventPublisher, times(2)).publishEvent(any(RatingsCommittedEvent.class));
+    }
+
+    /**
+     * Tests that writes submitted while the queue is closing are either committed or rejected, never left waiting.
+     */
+    @Test
+    public void testClose_ConcurrentSubmits() throws Exception {
+        queue = createQueue(1000, 100, Duration.ZERO);
+        List<CompletableFuture<List<Rating>>> futures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> submitters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread submitter = new Thread(() -> {
+                started.countDown();
+                while (true) {
+                    try {
+                        futures.add(queue.submit(ratings(1), Duration.ofSeconds(1)));
+                    } catch (RejectedExecutionException e) {
+                        return;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            submitter.start();
+            submitters.add(submitter);
+        }
+        started.await();
+
+        queue.close();
+        for (Thread submitter : submitters) {
+            submitter.join(5000);
+            assertFalse(submitter.isAlive());
+        }
+
+        assertFalse(futures.isEmpty());
+        assertTrue(futures.stream().allMatch(CompletableFuture::isDone));
+    }
+
+    /**
+     * Tests that closing the queue commits the queued writes and rejects new ones.
+     */
+    @Test
+    public void testClose() throws Exception {
+        queue = createQueue(100, 100, Duration.ofSeconds(1));
+        CompletableFuture<List<Rating>> queued = queue.submit(ratings(2));
+
+        queue.close();
+
+        assertTrue(queued.isDone());
+        assertFalse(queued.isCompletedExceptionally());
+        assertThrows(RejectedExecutionException.class, () -> queue.submit(ratings(1)));
+    }
+
+    private RatingWriteQueue createQueue(int capacity, int batchSize, Duration linger) {
+        return new RatingWriteQueue(capacity, batchSize, linger, ratingRepository,
+                TransactionOperations.withoutTransaction(), eventPublisher, meterRegistry);
+    }
+
+    private static List<Rating> ratings(int count) {
+        List<Rating> ratings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ratings.add(Rating.builder().rating(i % 6).ticketId(i + 1).ratingCategoryId(1).reviewerId(1).revieweeId(2)
+                    .build());
+        }
+        return ratings;
+    }
+}
@@ -0,0 +1,183 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.CategoryDayScore;
+import com.kaarelkaasla.klaustestassignment.ScoreUpdate;
+import com.kaarelkaasla.klaustestassignment.entity.Rating;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
+import com.kaarelkaasla.klaustestassignment.repository.RatingRowHandler;
+import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ScoreSubscriptions class.
+ */
+public class ScoreSubscriptionsTest {
+
+    private static final String START_DATE = "2019-01-01T00:00:00";
+    private static final String END_DATE = "2019-01-31T23:59:59";
+
+    @Mock
+    private RatingRepository ratingRepository;
+
+    @Mock
+    private RatingCategoryUtils ratingCategoryUtils;
+
+    @Mock
+    private ServerCallStreamObserver<ScoreUpdate> observer;
+
+    private final BlockingQueue<ScoreUpdate> updates = new LinkedBlockingQueue<>();
+
+    private final AtomicBoolean ready = new AtomicBoolean(true);
+
+    private ScoreSubscriptions subscriptions;
+
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    public void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        when(ratingCategoryUtils.getCategoryIdToNameMap()).thenReturn(Map.of(1L, "Spelling", 2L, "Grammar"));
+        when(ratingCategoryUtils.getCategoryWeights()).thenReturn(Map.of(1L, 1.0, 2L, 0.5));
+        when(ratingRepository.findLatestRating())
+                .thenReturn(List.<Object[]> of(new Object[] { 10L, "2019-01-05T00:00:00" }));
+        when(observer.isReady()).thenAnswer(invocation -> ready.get());
+        doAnswer(invocation -> updates.add(invocation.getArgument(0))).when(observer).onNext(any());
+        subscriptions = new ScoreSubscriptions(ratingRepository, ratingCategoryUtils, 2, Duration.ZERO,
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        subscriptions.close();
+        mocks.close();
+    }
+
+    /**
+     * Tests that the first update is a snapshot of the scanned period, and that ratings committed while the period is
+     * scanned are added once: those up to the latest ID at the start of the scan come from the scan only.
+     */
+    @Test
+    public void testSnapshotIncludesRatingsCommittedDuringScan() throws Exception {
+        doAnswer(invocation -> {
+            RatingRowHandler handler = invocation.getArgument(3);
+            handler.handle("2019-01-02T10:00:00", 1, 1, 4);
+            subscriptions
+                    .onRatingsCommitted(new RatingsCommittedEvent(List.of(rating(10, "2019-01-02T10:00:00", 1, 1, 4),
+                            rating(11, "2019-01-03T10:00:00", 2, 1, 5), rating(12, "2019-02-03T10:00:00", 2, 1, 5))));
+            return null;
+        }).when(ratingRepository).scanRatingsBetween(eq(START_DATE), eq(END_DATE), eq(10L), any());
+
+        subscriptions.subscribe(START_DATE, END_DATE, observer);
+        ScoreUpdate snapshot = updates.poll(5, TimeUnit.SECONDS);
+
+        assertNotNull(snapshot);
+        assertTrue(snapshot.getSnapshot());
+        assertEquals(1, snapshot.getSequence());
+        assertEquals(List.of(score("Spelling", "2019-01-02", 1, 80.0), score("Spelling", "2019-01-03", 1, 100.0)),
+                snapshot.getScoresList());
+        assertEquals(2, snapshot.getRatedTickets());
+        assertEquals(90.0, snapshot.getWeightedScore().getAverageScorePercentage());
+        assertEquals(START_DATE + " to " + END_DATE, snapshot.getWeightedScore().getPeriod());
+        verify(ratingRepository, times(1)).scanRatingsBetween(anyString(), anyString(), anyLong(), any());
+    }
+
+    /**
+     * Tests that changes committed while the stream is not ready are merged into one update with only the changed
+     * scores, which is sent once the stream becomes ready.
+     */
+    @Test
+    public void testUpdatesAreMergedWhileNotReady() throws Exception {
+        ScoreSubscriptions.Subscription subscription = subscriptions.subscribe(START_DATE, END_DATE, observer);
+        assertTrue(updates.poll(5, TimeUnit.SECONDS).getSnapshot());
+
+        ready.set(false);
+        subscriptions
+                .onRatingsCommitted(new RatingsCommittedEvent(List.of(rating(11, "2019-01-02T10:00:00", 1, 1, 4))));
+        subscriptions
+                .onRatingsCommitted(new RatingsCommittedEvent(List.of(rating(12, "2019-01-02T11:00:00", 1, 2, 2))));
+        subscriptions
+                .onRatingsCommitted(new RatingsCommittedEvent(List.of(rating(13, "2019-01-02T12:00:00", 2, 1, 5))));
+        assertNull(updates.poll(200, TimeUnit.MILLISECONDS));
+
+        ready.set(true);
+        subscription.onReady();
+        ScoreUpdate update = updates.poll(5, TimeUnit.SECONDS);
+
+        assertNotNull(update);
+        assertFalse(update.getSnapshot());
+        assertEquals(2, update.getSequence());
+        assertEquals(3, update.getMergedCommits());
+        assertEquals(List.of(score("Spelling", "2019-01-02", 2, 90.0), score("Grammar", "2019-01-02", 1, 40.0)),
+                update.getScoresList());
+        assertEquals(83.34, update.getWeightedScore().getAverageScorePercentage());
+        assertNull(updates.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Tests that subscribers of the same period share one scan, that the subscriber limit is enforced, and that the
+     * period is dropped with its last subscriber.
+     */
+    @Test
+    public void testSharedWindowAndLimit() {
+        ScoreSubscriptions.Subscription first = subscriptions.subscribe(START_DATE, END_DATE, observer);
+        ScoreSubscriptions.Subscription second = subscriptions.subscribe(START_DATE, END_DATE, observer);
+
+        assertThrows(RejectedExecutionException.class, () -> subscriptions.subscribe(START_DATE, END_DATE, observer));
+        assertEquals(2, subscriptions.getSubscriberCount());
+        assertEquals(1, subscriptions.getWindowCount());
+        verify(ratingRepository, times(1)).scanRatingsBetween(anyString(), anyString(), anyLong(), any());
+
+        first.cancel();
+        first.cancel();
+        assertEquals(1, subscriptions.getWindowCount());
+        second.cancel();
+        assertEquals(0, subscriptions.getSubscriberCount());
+        assertEquals(0, subscriptions.getWindowCount());
+    }
+
+    /**
+     * Tests that a failed scan is reported to the subscriber and leaves no period behind.
+     */
+    @Test
+    public void testFailedScan() {
+        doThrow(new IllegalStateException("database is locked")).when(ratingRepository).scanRatingsBetween(anyString(),
+                anyString(), anyLong(), any());
+
+        assertThrows(IllegalStateException.class, () -> subscriptions.subscribe(START_DATE, END_DATE, observer));
+        assertEquals(0, subscriptions.getSubscriberCount());
+        assertEquals(0, subscriptions.getWindowCount());
+    }
+
+    private static Rating rating(long id, String createdAt, int ticketId, int categoryId, int rating) {
+        return Rating.builder().id(id).createdAt(Date.from(Instant.parse(createdAt + "Z"))).ticketId(ticketId)
+                .ratingCategoryId(categoryId).rating(rating).build();
+    }
+
+    private static CategoryDayScore score(String categoryName, String day, int frequency, double percentage) {
+        return CategoryDayScore.newBuilder().setCategoryName(categoryName).setDay(day).setFrequency(frequency)
+                .setAverageScorePercentage(percentage).build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.kaarelkaasla.klaustestassignment.service;
+
+import com.kaarelkaasla.klaustestassignment.service.ScoreWindowAccumulator.CategoryDay;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ScoreWindowAccumulator class.
+ */
+public class ScoreWindowAccumulatorTest {
+
+    private ScoreWindowAccumulator accumulator;
+
+    @BeforeEach
+    public void setUp() {
+        Map<Long, Double> weights = new LinkedHashMap<>();
+        weights.put(1L, 1.0);
+        weights.put(2L, 0.5);
+        accumulator = new ScoreWindowAccumulator("2019-01-01T00:00:00", "2019-01-02T23:59:59", weights);
+    }
+
+    /**
+     * Tests that ratings are aggregated by category and day, and that ratings outside the period are ignored.
+     */
+    @Test
+    public void testCategoryDays() {
+        assertEquals(new CategoryDay("2019-01-01", 1), accumulator.add("2019-01-01T08:00:00", 1, 1, 4));
+        accumulator.add("2019-01-01T23:59:59", 2, 1, 5);
+        accumulator.add("2019-01-02T00:00:00", 2, 3, 1);
+        assertNull(accumulator.add("2019-01-03T00:00:00", 2, 1, 0));
+        assertNull(accumulator.add("2018-12-31T23:59:59", 2, 1, 0));
+
+        assertEquals(Set.of(new CategoryDay("2019-01-01", 1), new CategoryDay("2019-01-02", 3)),
+                accumulator.getCategoryDays());
+        assertEquals(2, accumulator.getFrequency(new CategoryDay("2019-01-01", 1)));
+        assertEquals(90.0, accumulator.getAverageScorePercentage(new CategoryDay("2019-01-01", 1)));
+        assertEquals(20.0, accumulator.getAverageScorePercentage(new CategoryDay("2019-01-02", 3)));
+        assertEquals(0, accumulator.getFrequency(new CategoryDay("2019-01-02", 1)));
+    }
+
+    /**
+     * Tests that the weighted score averages the rounded ticket scores, ignores categories without a weight, and is
+     * updated when a ticket's rating in a category is replaced.
+     */
+    @Test
+    public void testWeightedScore() {
+        assertEquals(0, accumulator.getWeightedScorePercentage());
+
+        accumulator.add("2019-01-01T08:00:00", 1, 1, 4);
+        accumulator.add("2019-01-01T09:00:00", 1, 2, 2);
+        accumulator.add("2019-01-01T10:00:00", 2, 1, 5);
+        accumulator.add("2019-01-01T11:00:00", 3, 3, 5);
+
+        assertEquals(2, accumulator.getRatedTickets());
+        assertEquals(83.34, accumulator.getWeightedScorePercentage());
+
+        accumulator.add("2019-01-02T10:00:00", 2, 1, 0);
+
+        assertEquals(2, accumulator.getRatedTickets());
+        assertEquals(33.34, accumulator.getWeightedScorePercentage());
+    }
+}
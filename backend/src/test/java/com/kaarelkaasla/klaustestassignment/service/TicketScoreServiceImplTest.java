@@ -1,7 +1,10 @@
 package com.kaarelkaasla.klaustestassignment.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kaarelkaasla.klaustestassignment.*;
 import com.kaarelkaasla.klaustestassignment.entity.RatingCategory;
+import com.kaarelkaasla.klaustestassignment.metrics.ScoreMetrics;
 import com.kaarelkaasla.klaustestassignment.repository.RatingCategoryRepository;
 import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
 import com.kaarelkaasla.klaustestassignment.util.DateUtils;
@@ -10,6 +13,7 @@ import com.kaarelkaasla.klaustestassignment.util.RatingCategoryUtils;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.mockito.*;
 
@@ -37,6 +41,11 @@ public class TicketScoreServiceImplTest {
     @Mock
     private RatingCategoryUtils ratingCategoryUtils;
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private ScoreMetrics scoreMetrics = new ScoreMetrics(meterRegistry);
+
     @InjectMocks
     private TicketScoreServiceImpl ticketService;
 
@@ -138,6 +147,79 @@ public class TicketScoreServiceImplTest {
         assertEquals(40.00, score2.getCategoryScoresMap().get("Category 2"));
     }
 
+    /**
+     * Tests that getDenseTicketCategoryScores lists category names once and aligns per-ticket scores in basis points,
+     * marking categories without ratings as missing.
+     */
+    @Test
+    public void testGetDenseTicketCategoryScores_Success() {
+        TicketCategoryScoresRequest request = TicketCategoryScoresRequest.newBuilder()
+                .setStartDate("2023-01-01T00:00:00").setEndDate("2023-12-31T23:59:59").build();
+
+        StreamObserver<DenseTicketCategoryScoresResponse> responseObserver = mock(StreamObserver.class);
+
+        List<Object[]> ratingsRaw = Arrays.asList(new Object[] { 2, 1L, 5 }, new Object[] { 1, 1L, 4 },
+                new Object[] { 1, 2L, 3 }, new Object[] { 1, 2L, 4 }, new Object[] { 1, 9L, 1 });
+
+        Map<Long, String> categories = new LinkedHashMap<>();
+        categories.put(1L, "Category 1");
+        categories.put(2L, "Category 2");
+
+        when(ratingRepository.findRatingsWithinPeriod(anyString(), anyString())).thenReturn(ratingsRaw);
+        when(ratingCategoryUtils.getCategoryIdToNameMap()).thenReturn(categories);
+
+        ticketService.getDenseTicketCategoryScores(request, responseObserver);
+
+        ArgumentCaptor<DenseTicketCategoryScoresResponse> responseCaptor = ArgumentCaptor
+                .forClass(DenseTicketCategoryScoresResponse.class);
+        verify(responseObserver).onNext(responseCaptor.capture());
+        verify(responseObserver).onCompleted();
+
+        DenseTicketCategoryScoresResponse response = responseCaptor.getValue();
+        assertEquals(List.of("Category 1", "Category 2"), response.getCategoryNamesList());
+        assertEquals(2, response.getTicketCategoryScoresCount());
+
+        DenseTicketCategoryScore score1 = response.getTicketCategoryScores(0);
+        assertEquals(1, score1.getTicketId());
+        assertEquals(List.of(8000, 7000), score1.getScoresList());
+
+        DenseTicketCategoryScore score2 = response.getTicketCategoryScores(1);
+        assertEquals(2, score2.getTicketId());
+        assertEquals(List.of(10000, TicketScoreServiceImpl.MISSING_SCORE), score2.getScoresList());
+    }
+
+    /**
+     * Tests that the database and aggregation phases are timed and the rows, tickets and category scores are counted.
+     */
+    @Test
+    public void testGetDenseTicketCategoryScores_RecordsMetrics() {
+        TicketCategoryScoresRequest request = TicketCategoryScoresRequest.newBuilder()
+                .setStartDate("2023-01-01T00:00:00").setEndDate("2023-12-31T23:59:59").build();
+
+        StreamObserver<DenseTicketCategoryScoresResponse> responseObserver = mock(StreamObserver.class);
+
+        List<Object[]> ratingsRaw = Arrays.asList(new Object[] { 2, 1L, 5 }, new Object[] { 1, 1L, 4 },
+                new Object[] { 1, 2L, 3 }, new Object[] { 1, 2L, 4 });
+
+        Map<Long, String> categories = new LinkedHashMap<>();
+        categories.put(1L, "Category 1");
+        categories.put(2L, "Category 2");
+
+        when(ratingRepository.findRatingsWithinPeriod(anyString(), anyString())).thenReturn(ratingsRaw);
+        when(ratingCategoryUtils.getCategoryIdToNameMap()).thenReturn(categories);
+
+        ticketService.getDenseTicketCategoryScores(request, responseObserver);
+
+        String method = TicketScoreServiceGrpc.getGetDenseTicketCategoryScoresMethod().getBareMethodName();
+        assertEquals(1,
+                meterRegistry.get(ScoreMetrics.PHASE_TIMER).tag("method", method).tag("phase", "db").timer().count());
+        assertEquals(1, meterRegistry.get(ScoreMetrics.PHASE_TIMER).tag("method", method).tag("phase", "aggregation")
+                .timer().count());
+        assertEquals(4, meterRegistry.get(ScoreMetrics.ROWS_COUNTER).tag("method", method).counter().count());
+        assertEquals(2, meterRegistry.get(ScoreMetrics.TICKETS_COUNTER).tag("method", method).counter().count());
+        assertEquals(3, meterRegistry.get(ScoreMetrics.CATEGORIES_COUNTER).tag("method", method).counter().count());
+    }
+
     /**
      * Tests that getTicketCategoryScores handles no ratings found for the specified period.
      */
@@ -160,32 +242,32 @@ public class TicketScoreServiceImplTest {
     }
 
     /**
-     * Tests that processTicketCategoryScores processes the response correctly.
+     * Tests that processTicketCategoryScores writes tickets sorted by ID with every category filled in.
      */
     @Test
-    public void testProcessTicketCategoryScores() {
-        List<RatingCategory> ratingCategories = Arrays.asList(new RatingCategory(1L, "Category 1", 1.0),
-                new RatingCategory(2L, "Category 2", 1.0));
-
+    public void testProcessTicketCategoryScores() throws Exception {
         TicketCategoryScore score1 = TicketCategoryScore.newBuilder().setTicketId(1)
                 .putCategoryScores("Category 1", 80.0).putCategoryScores("Category 2", 60.0).build();
 
         TicketCategoryScore score2 = TicketCategoryScore.newBuilder().setTicketId(2)
-                .putCategoryScores("Category 1", 100.0).putCategoryScores("Category 2", 40.0).build();
+                .putCategoryScores("Category 1", 100.0).build();
 
         TicketCategoryScoresResponse response = TicketCategoryScoresResponse.newBuilder()
-                .addAllTicketCategoryScores(Arrays.asList(score1, score2)).build();
+                .addAllTicketCategoryScores(Arrays.asList(score2, score1)).build();
 
-        when(ratingCategoryRepository.findAll()).thenReturn(ratingCategories);
+        when(ratingCategoryUtils.getCategoryNames()).thenReturn(List.of("Category 1", "Category 2"));
 
-        List<Map<String, Object>> result = ticketService.processTicketCategoryScores(response);
+        TicketCategoryScoresView result = ticketService.processTicketCategoryScores(response);
+        JsonNode json = new ObjectMapper().readTree(new ObjectMapper().writeValueAsString(result));
 
         assertEquals(2, result.size());
-        assertEquals(1, result.get(0).get("TicketId"));
-        assertEquals(80.0, ((Map<String, Double>) result.get(0).get("CategoryScores")).get("Category 1"));
-        assertEquals(60.0, ((Map<String, Double>) result.get(0).get("CategoryScores")).get("Category 2"));
-        assertEquals(2, result.get(1).get("TicketId"));
-        assertEquals(100.0, ((Map<String, Double>) result.get(1).get("CategoryScores")).get("Category 1"));
-        assertEquals(40.0, ((Map<String, Double>) result.get(1).get("CategoryScores")).get("Category 2"));
+        assertEquals(2, json.size());
+        assertEquals(1, json.get(0).get("TicketId").asInt());
+        assertEquals(80.0, json.get(0).get("CategoryScores").get("Category 1").asDouble());
+        assertEquals(60.0, json.get(0).get("CategoryScores").get("Category 2").asDouble());
+        assertEquals(2, json.get(1).get("TicketId").asInt());
+        assertEquals(100.0, json.get(1).get("CategoryScores").get("Category 1").asDouble());
+        assertEquals(0.0, json.get(1).get("CategoryScores").get("Category 2").asDouble());
+        verify(ratingCategoryRepository, never()).findAll();
     }
 }
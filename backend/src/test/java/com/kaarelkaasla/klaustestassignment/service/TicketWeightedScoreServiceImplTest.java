@@ -1,18 +1,18 @@
 package com.kaarelkaasla.klaustestassignment.service;
 
+import com.google.protobuf.Timestamp;
 import com.kaarelkaasla.klaustestassignment.*;
 import com.kaarelkaasla.klaustestassignment.entity.RatingCategory;
+import com.kaarelkaasla.klaustestassignment.metrics.ScoreMetrics;
 import com.kaarelkaasla.klaustestassignment.repository.RatingCategoryRepository;
 import com.kaarelkaasla.klaustestassignment.repository.RatingRepository;
-import com.kaarelkaasla.klaustestassignment.util.DateUtils;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.mockito.*;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,20 +32,19 @@ public class TicketWeightedScoreServiceImplTest {
     @Mock
     private ScoreService scoreService;
 
+    @Spy
+    private ScoreMetrics scoreMetrics = new ScoreMetrics(new SimpleMeterRegistry());
+
     @InjectMocks
     private TicketWeightedScoreServiceImpl ticketWeightedScoreService;
 
-    private MockedStatic<DateUtils> dateUtilsMockedStatic;
-
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        dateUtilsMockedStatic = mockStatic(DateUtils.class);
     }
 
     @AfterEach
     public void tearDown() {
-        dateUtilsMockedStatic.close();
         Mockito.reset(ratingRepository, ratingCategoryRepository, scoreService);
     }
 
@@ -53,15 +52,12 @@ public class TicketWeightedScoreServiceImplTest {
      * Tests that getWeightedScores handles invalid date formats.
      */
     @Test
-    public void testGetWeightedScores_InvalidDateFormat() throws ParseException {
+    public void testGetWeightedScores_InvalidDateFormat() {
         WeightedScoresRequest request = WeightedScoresRequest.newBuilder().setStartDate("invalid-date")
                 .setEndDate("2023-12-31T23:59:59").build();
 
         StreamObserver<WeightedScoresResponse> responseObserver = mock(StreamObserver.class);
 
-        dateUtilsMockedStatic.when(() -> DateUtils.parseDate("invalid-date"))
-                .thenThrow(new ParseException("Unparseable date: \"invalid-date\"", 0));
-
         ticketWeightedScoreService.getWeightedScores(request, responseObserver);
 
         ArgumentCaptor<Throwable> errorCaptor = ArgumentCaptor.forClass(Throwable.class);
@@ -81,12 +77,6 @@ public class TicketWeightedScoreServiceImplTest {
 
         StreamObserver<WeightedScoresResponse> responseObserver = mock(StreamObserver.class);
 
-        dateUtilsMockedStatic.when(() -> DateUtils.parseDate(anyString())).thenAnswer(invocation -> {
-            String dateStr = invocation.getArgument(0);
-            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse(dateStr);
-        });
-
-        dateUtilsMockedStatic.when(() -> DateUtils.formatDate(any(Date.class))).thenReturn("2023-01-01T00:00:00");
         when(ratingRepository.findRatingsWithinPeriod(anyString(), anyString()))
                 .thenThrow(new RuntimeException("Database error"));
 
@@ -103,7 +93,7 @@ public class TicketWeightedScoreServiceImplTest {
      * Tests that getWeightedScores retrieves and processes data correctly.
      */
     @Test
-    public void testGetWeightedScores_Success() throws ParseException {
+    public void testGetWeightedScores_Success() {
         WeightedScoresRequest request = WeightedScoresRequest.newBuilder().setStartDate("2023-01-01T00:00:00")
                 .setEndDate("2023-12-31T23:59:59").build();
 
@@ -115,12 +105,6 @@ public class TicketWeightedScoreServiceImplTest {
         List<RatingCategory> ratingCategories = Arrays.asList(new RatingCategory(1L, "Category 1", 1.0),
                 new RatingCategory(2L, "Category 2", 1.0));
 
-        dateUtilsMockedStatic.when(() -> DateUtils.parseDate("2023-01-01T00:00:00"))
-                .thenReturn(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse("2023-01-01T00:00:00"));
-        dateUtilsMockedStatic.when(() -> DateUtils.parseDate("2023-12-31T23:59:59"))
-                .thenReturn(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse("2023-12-31T23:59:59"));
-        dateUtilsMockedStatic.when(() -> DateUtils.formatDate(any(Date.class))).thenAnswer(
-                invocation -> new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(invocation.getArgument(0)));
         when(ratingRepository.findRatingsWithinPeriod(anyString(), anyString())).thenReturn(ratingsRaw);
         when(ratingCategoryRepository.findAll()).thenReturn(ratingCategories);
         when(scoreService.calculateScore(anyMap())).thenReturn(70.0);
@@ -147,7 +131,7 @@ public class TicketWeightedScoreServiceImplTest {
      * Tests that getWeightedScores calculates and includes the previous period score correctly.
      */
     @Test
-    public void testGetWeightedScores_SuccessWithPreviousPeriod() throws ParseException {
+    public void testGetWeightedScores_SuccessWithPreviousPeriod() {
         WeightedScoresRequest request = WeightedScoresRequest.newBuilder().setStartDate("2023-01-01T00:00:00")
                 .setEndDate("2023-12-31T23:59:59").setIncludePreviousPeriod(true).build();
 
@@ -162,12 +146,6 @@ public class TicketWeightedScoreServiceImplTest {
         List<RatingCategory> ratingCategories = Arrays.asList(new RatingCategory(1L, "Category 1", 1.0),
                 new RatingCategory(2L, "Category 2", 1.0));
 
-        dateUtilsMockedStatic.when(() -> DateUtils.parseDate("2023-01-01T00:00:00"))
-                .thenReturn(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse("2023-01-01T00:00:00"));
-        dateUtilsMockedStatic.when(() -> DateUtils.parseDate("2023-12-31T23:59:59"))
-                .thenReturn(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").parse("2023-12-31T23:59:59"));
-        dateUtilsMockedStatic.when(() -> DateUtils.formatDate(any(Date.class))).thenAnswer(
-                invocation -> new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(invocation.getArgument(0)));
         when(ratingRepository.findRatingsWithinPeriod(eq("2023-01-01T00:00:00"), eq("2023-12-31T23:59:59")))
                 .thenReturn(currentRatingsRaw);
         when(ratingRepository.findRatingsWithinPeriod(eq("2022-01-01T00:00:00"), eq("2022-12-31T23:59:59")))
@@ -201,4 +179,30 @@ public class TicketWeightedScoreServiceImplTest {
         assertNotNull(scoreChange);
         assertEquals(20.0, scoreChange.getValue());
     }
+
+    /**
+     * Tests that typed timestamps take precedence over the date strings and that the previous period is derived from
+     * them.
+     */
+    @Test
+    public void testGetWeightedScores_TimestampsWithPreviousPeriod() {
+        WeightedScoresRequest request = WeightedScoresRequest.newBuilder().setStartDate("invalid-date")
+                .setStartTime(Timestamp.newBuilder().setSeconds(1675209600L))
+                .setEndTime(Timestamp.newBuilder().setSeconds(1677628799L)).setIncludePreviousPeriod(true).build();
+
+        StreamObserver<WeightedScoresResponse> responseObserver = mock(StreamObserver.class);
+
+        when(ratingRepository.findRatingsWithinPeriod(anyString(), anyString())).thenReturn(Collections.emptyList());
+
+        ticketWeightedScoreService.getWeightedScores(request, responseObserver);
+
+        ArgumentCaptor<WeightedScoresResponse> responseCaptor = ArgumentCaptor.forClass(WeightedScoresResponse.class);
+        verify(responseObserver).onNext(responseCaptor.capture());
+        verify(ratingRepository).findRatingsWithinPeriod("2023-02-01T00:00:00", "2023-02-28T23:59:59");
+        verify(ratingRepository).findRatingsWithinPeriod("2023-01-04T00:00:00", "2023-01-31T23:59:59");
+
+        WeightedScoresResponse response = responseCaptor.getValue();
+        assertEquals("2023-02-01T00:00:00 to 2023-02-28T23:59:59", response.getCurrentPeriodScore().getPeriod());
+        assertEquals("2023-01-04T00:00:00 to 2023-01-31T23:59:59", response.getPreviousPeriodScore().getPeriod());
+    }
 }
@@ -0,0 +1,155 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ContentionProfile class.
+ */
+public class ContentionProfileTest {
+
+    private static final long HOLD_MILLIS = 100;
+
+    private final Object monitor = new ContendedMonitor();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that a blocked monitor enter and a park on a lock are reported at the code that asked for them, and that an
+     * idle pool thread waiting for work is not.
+     */
+    @Test
+    public void testReadsMonitorAndLockContention() throws Exception {
+        Path file = tempDir.resolve("contention.jfr");
+        ExecutorService idlePool = Executors.newSingleThreadExecutor();
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ofMillis(10)).withStackTrace();
+            recording.enable("jdk.ThreadPark").withThreshold(Duration.ofMillis(10)).withStackTrace();
+            recording.start();
+
+            idlePool.submit(() -> {
+            }).get();
+            contendMonitor();
+            contendLock();
+            // The idle pool thread has been parked waiting for work all along; shutting the pool down ends the park.
+            idlePool.shutdown();
+            assertTrue(idlePool.awaitTermination(10, TimeUnit.SECONDS));
+
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            idlePool.shutdownNow();
+        }
+
+        // Read every site, so that contention elsewhere in the JVM cannot push this test's sites out.
+        ContentionProfile profile = ContentionProfile.read(file, Integer.MAX_VALUE);
+
+        List<ContentionProfile.Site> monitorSites = sitesOf(profile, "monitor");
+        assertEquals(1, monitorSites.stream().mapToLong(ContentionProfile.Site::events).sum(), profile.format());
+        assertTrue(monitorSites.get(0).millis() >= HOLD_MILLIS / 2, profile.format());
+        assertEquals(ContendedMonitor.class.getName(), monitorSites.get(0).lock());
+        assertEquals(ContentionProfileTest.class.getName() + ".enterMonitor", monitorSites.get(0).frame());
+        assertTrue(profile.sites().stream().noneMatch(site -> site.frame().endsWith(".take")), profile.format());
+        ContentionProfile.Site parkSite = sitesOf(profile, "park").stream()
+                .filter(site -> site.frame().equals(ContentionProfileTest.class.getName() + ".acquireLock")).findFirst()
+                .orElseThrow(() -> new AssertionError(profile.format()));
+        assertTrue(parkSite.lock().startsWith(ReentrantLock.class.getName()), parkSite.lock());
+    }
+
+    /**
+     * Tests that only the requested number of sites is kept.
+     */
+    @Test
+    public void testLimitsSites() throws Exception {
+        Path file = tempDir.resolve("limited.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ofMillis(10)).withStackTrace();
+            recording.enable("jdk.ThreadPark").withThreshold(Duration.ofMillis(10)).withStackTrace();
+            recording.start();
+            contendMonitor();
+            contendLock();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        ContentionProfile profile = ContentionProfile.read(file, 1);
+
+        assertEquals(1, profile.sites().size());
+        assertTrue(profile.monitorEvents() + profile.parkEvents() >= 2, profile.format());
+    }
+
+    /**
+     * Returns the sites of a kind whose frame is in this test class.
+     */
+    private static List<ContentionProfile.Site> sitesOf(ContentionProfile profile, String kind) {
+        return profile.sites().stream().filter(site -> site.kind().equals(kind))
+                .filter(site -> site.frame().startsWith(ContentionProfileTest.class.getName() + ".")).toList();
+    }
+
+    private void contendMonitor() throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            synchronized (monitor) {
+                held.countDown();
+                sleep(HOLD_MILLIS);
+            }
+        });
+        holder.start();
+        held.await();
+        enterMonitor();
+        holder.join();
+    }
+
+    private void enterMonitor() {
+        synchronized (monitor) {
+            assertTrue(Thread.holdsLock(monitor));
+        }
+    }
+
+    private void contendLock() throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            lock.lock();
+            try {
+                held.countDown();
+                sleep(HOLD_MILLIS);
+            } finally {
+                lock.unlock();
+            }
+        });
+        holder.start();
+        held.await();
+        acquireLock();
+        holder.join();
+    }
+
+    private void acquireLock() {
+        lock.lock();
+        lock.unlock();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class ContendedMonitor {
+    }
+}
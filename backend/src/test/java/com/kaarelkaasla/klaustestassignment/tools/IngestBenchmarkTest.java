@@ -0,0 +1,83 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import com.kaarelkaasla.klaustestassignment.NewRating;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the IngestBenchmark class.
+ */
+public class IngestBenchmarkTest {
+
+    /**
+     * Tests that the generated ratings are valid, spread over the time span, and that every n-th one has an unknown
+     * category.
+     */
+    @Test
+    public void testRowSource() {
+        IngestBenchmark.Settings settings = settings("--rows", "40", "--days", "2", "--start-date", "2020-01-01",
+                "--invalid-every", "10");
+
+        List<NewRating> rows = read(new IngestBenchmark.RowSource(settings, 0, 40));
+
+        assertEquals(40, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            NewRating row = rows.get(i);
+            assertTrue(row.getRating() >= 0 && row.getRating() <= 5);
+            assertEquals(i / 4 + 1, row.getTicketId());
+            if ((i + 1) % 10 == 0) {
+                assertEquals(IngestBenchmark.UNKNOWN_CATEGORY_ID, row.getRatingCategoryId());
+            } else {
+                assertTrue(row.getRatingCategoryId() >= 1 && row.getRatingCategoryId() <= 4);
+            }
+        }
+        assertEquals("2020-01-01T00:00:00", rows.get(0).getCreatedAt());
+        assertTrue(rows.get(39).getCreatedAt().startsWith("2020-01-02"));
+    }
+
+    /**
+     * Tests that a rating depends only on its index, so that splitting the rows over streams sends the same ratings.
+     */
+    @Test
+    public void testRowSource_Split() {
+        IngestBenchmark.Settings settings = settings("--rows", "30");
+
+        List<NewRating> split = read(new IngestBenchmark.RowSource(settings, 0, 11));
+        split.addAll(read(new IngestBenchmark.RowSource(settings, 11, 30)));
+
+        assertEquals(read(new IngestBenchmark.RowSource(settings, 0, 30)), split);
+    }
+
+    /**
+     * Tests that invalid and unknown options are rejected.
+     */
+    @Test
+    public void testInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> settings("--rows", "0"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--streams", "0"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--timeout", "0s"));
+
+        CommandLineOptions options = new CommandLineOptions(new String[] { "--row", "5" });
+        IngestBenchmark.Settings.from(options);
+        assertThrows(IllegalArgumentException.class, options::checkAllUsed);
+    }
+
+    private static IngestBenchmark.Settings settings(String... args) {
+        CommandLineOptions options = new CommandLineOptions(args);
+        IngestBenchmark.Settings settings = IngestBenchmark.Settings.from(options);
+        options.checkAllUsed();
+        return settings;
+    }
+
+    private static List<NewRating> read(IngestBenchmark.RowSource source) {
+        List<NewRating> rows = new ArrayList<>();
+        while (source.hasNext()) {
+            rows.add(source.next());
+        }
+        return rows;
+    }
+}
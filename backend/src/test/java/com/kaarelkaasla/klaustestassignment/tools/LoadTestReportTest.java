@@ -0,0 +1,86 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the LoadTestReport class.
+ */
+public class LoadTestReportTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that percentiles are taken from the latencies of successful requests and throughput counts only those.
+     */
+    @Test
+    public void testOperationResult() {
+        Histogram latencies = new Histogram(3);
+        for (int i = 1; i <= 1000; i++) {
+            latencies.recordValue(i * 1000L);
+        }
+
+        LoadTestReport.OperationResult result = LoadTestReport.OperationResult.of("aggregated", latencies,
+                Map.of("OK", 1000L, "UNAVAILABLE", 10L), 10);
+
+        assertEquals(1010, result.requests());
+        assertEquals(10, result.errors());
+        assertEquals(100.0, result.throughput());
+        assertEquals(500.0, result.p50Millis(), 1);
+        assertEquals(990.0, result.p99Millis(), 1);
+        assertEquals(999.0, result.p999Millis(), 1);
+        assertEquals(1000.0, result.maxMillis(), 1);
+    }
+
+    /**
+     * Tests that a report survives a JSON round trip and that a comparison shows the changes and differing settings.
+     */
+    @Test
+    public void testWriteReadAndCompare() throws Exception {
+        LoadTestReport baseline = report("before", "4", 100, 20);
+        Path path = tempDir.resolve("baseline.json");
+        baseline.write(path);
+
+        LoadTestReport read = LoadTestReport.read(path);
+        assertEquals(baseline, read);
+
+        String comparison = report("after", "8", 150, 10).compare(read);
+        assertTrue(comparison.contains("concurrency differs: 4 -> 8"), comparison);
+        assertTrue(comparison.contains("150.0 (+50%)"), comparison);
+        assertTrue(comparison.contains("10.0 (-50%)"), comparison);
+        assertFalse(comparison.contains("protocol differs"), comparison);
+    }
+
+    /**
+     * Tests that the table lists every operation, the total and the failed outcomes.
+     */
+    @Test
+    public void testFormat() {
+        String table = report("run", "4", 100, 20).format();
+
+        assertTrue(table.contains("concurrency: 4"), table);
+        assertTrue(table.lines().anyMatch(line -> line.startsWith("aggregated ")), table);
+        assertTrue(table.lines().anyMatch(line -> line.startsWith("total ")), table);
+        assertTrue(table.contains("aggregated: 3 x DEADLINE_EXCEEDED"), table);
+    }
+
+    private static LoadTestReport report(String label, String concurrency, double throughput, double p50) {
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("protocol", "grpc");
+        settings.put("concurrency", concurrency);
+        LoadTestReport.OperationResult result = new LoadTestReport.OperationResult("aggregated", 103, 3,
+                Map.of("OK", 100L, "DEADLINE_EXCEEDED", 3L), throughput, p50, p50, p50, p50, p50, p50);
+        return new LoadTestReport(label, "2024-01-01T00:00:00Z", settings, 60, List.of(result),
+                new LoadTestReport.OperationResult("total", 103, 3, Map.of("OK", 100L, "DEADLINE_EXCEEDED", 3L),
+                        throughput, p50, p50, p50, p50, p50, p50));
+    }
+}
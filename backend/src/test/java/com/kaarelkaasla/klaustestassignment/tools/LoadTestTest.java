@@ -0,0 +1,110 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the LoadTest class.
+ */
+public class LoadTestTest {
+
+    /**
+     * Tests that periods start at midnight within the dataset, last a whole number of days from the distribution and
+     * that the operation mix is followed.
+     */
+    @Test
+    public void testWorkloadFollowsMixAndRanges() {
+        LoadTest.Settings settings = settings("--mix", "aggregated=3,weighted-scores=1", "--ranges", "day,week",
+                "--data-start", "2019-01-01", "--data-days", "30");
+        LoadTest.Workload workload = new LoadTest.Workload(settings);
+        SplittableRandom random = new SplittableRandom(1);
+
+        Map<LoadTest.Operation, Integer> counts = new EnumMap<>(LoadTest.Operation.class);
+        for (int i = 0; i < 4000; i++) {
+            LoadTest.Request request = workload.next(random);
+            counts.merge(request.operation(), 1, Integer::sum);
+            assertTrue(request.startDate().endsWith("T00:00:00"), request.startDate());
+            assertTrue(request.endDate().endsWith("T23:59:59"), request.endDate());
+            assertTrue(request.startDate().compareTo("2019-01-01") >= 0, request.startDate());
+            assertTrue(request.endDate().compareTo("2019-01-31") < 0, request.endDate());
+        }
+        assertNull(counts.get(LoadTest.Operation.TICKET_SCORES));
+        assertEquals(3000, counts.get(LoadTest.Operation.AGGREGATED), 150);
+        assertEquals(List.of(LoadTest.Operation.AGGREGATED, LoadTest.Operation.WEIGHTED_SCORES), workload.operations());
+    }
+
+    /**
+     * Tests that the same seed gives the same request sequence.
+     */
+    @Test
+    public void testWorkloadIsDeterministic() {
+        LoadTest.Workload workload = new LoadTest.Workload(settings());
+        SplittableRandom first = new SplittableRandom(7);
+        SplittableRandom second = new SplittableRandom(7);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(workload.next(first), workload.next(second));
+        }
+    }
+
+    /**
+     * Tests that a period longer than the dataset starts on its first day.
+     */
+    @Test
+    public void testLongRangeStartsAtDataStart() {
+        LoadTest.Workload workload = new LoadTest.Workload(settings("--ranges", "year", "--data-days", "30"));
+
+        LoadTest.Request request = workload.next(new SplittableRandom(3));
+
+        assertEquals("2019-01-01T00:00:00", request.startDate());
+        assertEquals("2019-12-31T23:59:59", request.endDate());
+    }
+
+    /**
+     * Tests that range kinds are named or written as a number of days.
+     */
+    @Test
+    public void testRangeDays() {
+        assertEquals(1, LoadTest.Workload.rangeDays("day"));
+        assertEquals(91, LoadTest.Workload.rangeDays("quarter"));
+        assertEquals(14, LoadTest.Workload.rangeDays("14d"));
+        assertThrows(IllegalArgumentException.class, () -> LoadTest.Workload.rangeDays("0d"));
+        assertThrows(IllegalArgumentException.class, () -> LoadTest.Workload.rangeDays("fortnight"));
+    }
+
+    /**
+     * Tests the defaults and that invalid options are rejected.
+     */
+    @Test
+    public void testSettings() {
+        LoadTest.Settings settings = settings("--protocol", "rest", "--duration", "2m", "--rate", "50");
+        assertEquals(LoadTest.Protocol.REST, settings.protocol());
+        assertEquals(Duration.ofMinutes(2), settings.duration());
+        assertEquals("rest", settings.label());
+        assertNull(settings.report());
+        assertEquals("localhost:8080", settings.describe().get("target"));
+        assertEquals("50.0/s", settings.describe().get("rate"));
+        assertEquals("aggregated=4,ticket-scores=2,weighted-scores=4", settings.describe().get("mix"));
+
+        assertThrows(IllegalArgumentException.class, () -> settings("--protocol", "http"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--mix", "aggregated=1,ratings=1"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--mix", "aggregated=0"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--mix", "aggregated=-1"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--duration", "0s"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--warmup", "soon"));
+    }
+
+    private static LoadTest.Settings settings(String... args) {
+        CommandLineOptions options = new CommandLineOptions(args);
+        LoadTest.Settings settings = LoadTest.Settings.from(options);
+        options.checkAllUsed();
+        return settings;
+    }
+}
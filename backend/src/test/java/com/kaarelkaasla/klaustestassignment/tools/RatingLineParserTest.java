@@ -0,0 +1,108 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RatingLineParser class.
+ */
+public class RatingLineParserTest {
+
+    private static final BitSet CATEGORIES = BitSet.valueOf(new long[] { 0b11110 });
+
+    /**
+     * Tests that CSV columns are matched by the header in any order, with quotes, spaces and ignored columns, and that
+     * the line is read from its position in the buffer.
+     */
+    @Test
+    public void testCsv() {
+        RatingLineParser parser = RatingLineParser
+                .csv("id,created_at,\"rating\",ticketId,rating_category_id,reviewer_id,reviewee_id", CATEGORIES);
+
+        assertNull(parse(parser, "xx7,2019-03-04T05:06:07, 4 ,\"12\",3,8,9xx", 2, 2));
+
+        assertEquals(4, parser.getRating());
+        assertEquals(12, parser.getTicketId());
+        assertEquals(3, parser.getCategoryId());
+        assertEquals(8, parser.getReviewerId());
+        assertEquals(9, parser.getRevieweeId());
+        assertEquals(Instant.parse("2019-03-04T05:06:07Z").getEpochSecond(), parser.getCreatedAt());
+    }
+
+    /**
+     * Tests that flat JSON objects are read with snake or camel case keys, ignoring other fields.
+     */
+    @Test
+    public void testNdjson() {
+        RatingLineParser parser = RatingLineParser.ndjson(CATEGORIES);
+
+        assertNull(parse(parser,
+                " {\"id\": 7, \"note\": \"a \\\"b\\\", c\", \"flag\": true, \"rating\": 0, "
+                        + "\"ticketId\": 12, \"rating_category_id\": 4, \"reviewerId\": 8, \"reviewee_id\": 9, "
+                        + "\"createdAt\": \"2019-03-04T05:06:07\"} ",
+                0, 0));
+
+        assertEquals(0, parser.getRating());
+        assertEquals(12, parser.getTicketId());
+        assertEquals(4, parser.getCategoryId());
+        assertEquals(Instant.parse("2019-03-04T05:06:07Z").getEpochSecond(), parser.getCreatedAt());
+    }
+
+    /**
+     * Tests that malformed and invalid lines are rejected with the reason.
+     */
+    @Test
+    public void testRejected() {
+        RatingLineParser csv = RatingLineParser
+                .csv("rating,ticket_id,rating_category_id,reviewer_id,reviewee_id,created_at", CATEGORIES);
+        assertEquals("rating must be between 0 and 5", parse(csv, "6,1,1,1,1,2019-01-01T00:00:00", 0, 0));
+        assertEquals("identifiers must be positive", parse(csv, "5,0,1,1,1,2019-01-01T00:00:00", 0, 0));
+        assertEquals("unknown rating category 5", parse(csv, "5,1,5,1,1,2019-01-01T00:00:00", 0, 0));
+        assertEquals("ticket_id must be an integer", parse(csv, "5,1.0,1,1,1,2019-01-01T00:00:00", 0, 0));
+        assertEquals("ticket_id must be an integer", parse(csv, "5,3000000000,1,1,1,2019-01-01T00:00:00", 0, 0));
+        assertEquals("created_at must be a date-time like 2019-01-01T00:00:00",
+                parse(csv, "5,1,1,1,1,2019-02-30T00:00:00", 0, 0));
+        assertEquals("fewer columns than the header", parse(csv, "5,1,1,1,1", 0, 0));
+        assertEquals("more columns than the header", parse(csv, "5,1,1,1,1,2019-01-01T00:00:00,x", 0, 0));
+
+        RatingLineParser ndjson = RatingLineParser.ndjson(CATEGORIES);
+        assertEquals("missing created_at", parse(ndjson,
+                "{\"rating\": 1, \"ticketId\": 1, \"ratingCategoryId\": 1, \"reviewerId\": 1, \"revieweeId\": 1}", 0,
+                0));
+        assertEquals("rating is given twice", parse(ndjson, "{\"rating\": 1, \"rating\": 2}", 0, 0));
+        assertEquals("rating must be an integer", parse(ndjson, "{\"rating\": \"1\"}", 0, 0));
+        assertEquals("nested JSON values are not supported", parse(ndjson, "{\"tags\": [1]}", 0, 0));
+        assertEquals("malformed JSON object", parse(ndjson, "{\"rating\": 1", 0, 0));
+        assertEquals("not a JSON object", parse(ndjson, "rating,ticket_id", 0, 0));
+    }
+
+    /**
+     * Tests that a header without all rating fields is rejected, and that the format follows the file extension.
+     */
+    @Test
+    public void testHeaderAndFormat() {
+        assertThrows(IllegalArgumentException.class,
+                () -> RatingLineParser.csv("rating,ticket_id,rating_category_id,reviewer_id,reviewee_id", CATEGORIES));
+        assertThrows(IllegalArgumentException.class, () -> RatingLineParser
+                .csv("rating,ticket_id,rating_category_id,reviewer_id,reviewee_id,created_at,rating", CATEGORIES));
+
+        assertEquals(RatingLineParser.Format.CSV, RatingLineParser.Format.of(Path.of("/data/ratings.CSV")));
+        assertEquals(RatingLineParser.Format.NDJSON, RatingLineParser.Format.of(Path.of("ratings.jsonl")));
+        assertThrows(IllegalArgumentException.class, () -> RatingLineParser.Format.of(Path.of("ratings.txt")));
+    }
+
+    /**
+     * Parses a line surrounded by the given number of other bytes.
+     */
+    private static String parse(RatingLineParser parser, String text, int before, int after) {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        return parser.parse(buffer, before, buffer.limit() - after);
+    }
+}
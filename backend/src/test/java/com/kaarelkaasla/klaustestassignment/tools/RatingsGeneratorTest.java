@@ -0,0 +1,144 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RatingsGenerator class.
+ */
+public class RatingsGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that the same options produce the same rows, including the rows of an incomplete multi-row insert.
+     */
+    @Test
+    public void testSameSeedGivesSameRows() throws Exception {
+        Path first = tempDir.resolve("first.db");
+        Path second = tempDir.resolve("second.db");
+
+        generate(first, "--seed", "7");
+        generate(second, "--seed", "7");
+
+        // 3 days of 210 tickets with 2 ratings each: two full inserts of 500 rows and 260 rows inserted one by one.
+        List<String> rows = readRatings(first);
+        assertEquals(1260, rows.size());
+        assertEquals(rows, readRatings(second));
+        assertNotEquals(rows, readRatings(generate(tempDir.resolve("other.db"), "--seed", "8")));
+    }
+
+    /**
+     * Tests that ratings stay within the time span, each ticket has one reviewee and the categories of the sample
+     * database come first.
+     */
+    @Test
+    public void testDataShape() throws Exception {
+        Path output = generate(tempDir.resolve("shape.db"), "--categories", "6");
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + output);
+                Statement statement = connection.createStatement()) {
+            ResultSet span = statement.executeQuery(
+                    "SELECT MIN(created_at), MAX(created_at), MIN(rating), MAX(rating), MAX(reviewer_id) FROM ratings");
+            assertTrue(span.getString(1).startsWith("2019-01-01T"));
+            assertTrue(span.getString(2).startsWith("2019-01-03T"));
+            assertTrue(span.getInt(3) >= 0);
+            assertTrue(span.getInt(4) <= 5);
+            assertTrue(span.getInt(5) <= 50);
+
+            ResultSet reviewees = statement.executeQuery("SELECT COUNT(*) FROM (SELECT ticket_id FROM ratings "
+                    + "GROUP BY ticket_id HAVING COUNT(DISTINCT reviewee_id) > 1)");
+            assertEquals(0, reviewees.getInt(1));
+
+            ResultSet categories = statement.executeQuery("SELECT name, weight FROM rating_categories ORDER BY id");
+            List<String> names = new ArrayList<>();
+            while (categories.next()) {
+                names.add(categories.getString(1) + " " + categories.getDouble(2));
+            }
+            assertEquals(List.of("Spelling 1.0", "Grammar 0.7", "GDPR 1.2", "Randomness 0.0", "Category 5 1.0",
+                    "Category 6 1.0"), names);
+        }
+    }
+
+    /**
+     * Tests that the Zipf distribution is uniform without skew and favours the first values with it.
+     */
+    @Test
+    public void testZipfCumulative() {
+        assertArrayEquals(new double[] { 0.25, 0.5, 0.75, 1.0 }, RatingsGenerator.zipfCumulative(4, 0), 1e-9);
+        double[] skewed = RatingsGenerator.zipfCumulative(4, 1);
+        assertEquals(12.0 / 25, skewed[0], 1e-9);
+        assertEquals(1.0, skewed[3]);
+    }
+
+    /**
+     * Tests that an existing output file is only replaced with the overwrite option.
+     */
+    @Test
+    public void testExistingOutputRequiresOverwrite() throws Exception {
+        Path output = Files.writeString(tempDir.resolve("existing.db"), "not a database");
+
+        assertThrows(IOException.class, () -> generate(output));
+
+        generate(output, "--overwrite");
+        assertEquals(1260, readRatings(output).size());
+    }
+
+    /**
+     * Tests that missing, invalid and unknown options are rejected.
+     */
+    @Test
+    public void testInvalidOptions() {
+        assertThrows(IllegalArgumentException.class,
+                () -> RatingsGenerator.Settings.from(new CommandLineOptions(new String[] { "--days", "3" })));
+        assertThrows(IllegalArgumentException.class, () -> RatingsGenerator.Settings
+                .from(new CommandLineOptions(new String[] { "--output", "x.db", "--days", "0" })));
+        assertThrows(IllegalArgumentException.class, () -> RatingsGenerator.Settings
+                .from(new CommandLineOptions(new String[] { "--output", "x.db", "--start-date", "2019-13-01" })));
+
+        CommandLineOptions options = new CommandLineOptions(new String[] { "--output=x.db", "--tickets-per-dya", "5" });
+        RatingsGenerator.Settings.from(options);
+        assertThrows(IllegalArgumentException.class, options::checkAllUsed);
+    }
+
+    private Path generate(Path output, String... extraArgs) throws Exception {
+        List<String> args = new ArrayList<>(
+                List.of("--output", output.toString(), "--start-date", "2019-01-01", "--days", "3", "--tickets-per-day",
+                        "210", "--ratings-per-ticket", "2", "--category-skew", "1.0", "--batch-size", "500"));
+        args.addAll(List.of(extraArgs));
+        CommandLineOptions options = new CommandLineOptions(args.toArray(new String[0]));
+        RatingsGenerator.Settings settings = RatingsGenerator.Settings.from(options);
+        options.checkAllUsed();
+        new RatingsGenerator(settings).generate();
+        return output;
+    }
+
+    private static List<String> readRatings(Path database) throws Exception {
+        List<String> rows = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT * FROM ratings ORDER BY id")) {
+            while (resultSet.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int column = 1; column <= 7; column++) {
+                    row.append(resultSet.getString(column)).append('|');
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+}
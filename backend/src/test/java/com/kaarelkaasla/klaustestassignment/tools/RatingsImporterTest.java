@@ -0,0 +1,145 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RatingsImporter class.
+ */
+public class RatingsImporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path database;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        database = tempDir.resolve("ratings.db");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE rating_categories (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "name TEXT NOT NULL, weight REAL NOT NULL)");
+            statement.execute("CREATE TABLE ratings (id INTEGER PRIMARY KEY AUTOINCREMENT, rating INTEGER NOT NULL, "
+                    + "ticket_id INTEGER NOT NULL, rating_category_id INTEGER NOT NULL, reviewer_id INTEGER NOT NULL, "
+                    + "reviewee_id INTEGER NOT NULL, created_at TEXT)");
+            statement.execute("CREATE INDEX ratings_created_at ON ratings (created_at)");
+            statement.execute("INSERT INTO rating_categories (id, name, weight) VALUES (1, 'Spelling', 1), "
+                    + "(2, 'Grammar', 0.7)");
+        }
+    }
+
+    /**
+     * Tests that a CSV file is imported across window boundaries, skipping invalid lines, and that the dropped index is
+     * rebuilt and the checkpoint removed at the end.
+     */
+    @Test
+    public void testImportCsv() throws Exception {
+        Path input = tempDir.resolve("ratings.csv");
+        List<String> lines = new ArrayList<>(
+                List.of("rating,ticket_id,rating_category_id,reviewer_id,reviewee_id,created_at"));
+        for (int i = 0; i < 1200; i++) {
+            int category = i % 100 == 50 ? 3 : i % 2 + 1;
+            lines.add((i % 6) + "," + (i + 1) + "," + category + ",4,5,2019-01-" + String.format("%02d", i % 28 + 1)
+                    + "T10:00:00");
+        }
+        Files.writeString(input, String.join("\r\n", lines));
+
+        RatingsImporter.Result result = importer(input, "--map-size", "4KB", "--checkpoint-lines", "500").run();
+
+        assertTrue(result.complete());
+        assertFalse(result.resumed());
+        assertEquals(1188, result.imported());
+        assertEquals(12, result.rejected());
+        assertEquals(
+                "line at byte " + (Files.readString(input).indexOf("\n2,51,3,") + 1) + ": unknown rating category 3",
+                result.rejections().get(0));
+        assertEquals(1188, count("SELECT COUNT(*) FROM ratings"));
+        assertEquals(1, count("SELECT COUNT(*) FROM ratings WHERE ticket_id = 1200 AND rating = 5 "
+                + "AND rating_category_id = 2 AND created_at = '2019-01-24T10:00:00'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sqlite_master WHERE name = 'ratings_created_at'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM rating_imports"));
+    }
+
+    /**
+     * Tests that an interrupted import resumes after its last checkpoint without importing a line twice, and rebuilds
+     * the index it dropped in the first run.
+     */
+    @Test
+    public void testResume() throws Exception {
+        Path input = tempDir.resolve("ratings.ndjson");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 35; i++) {
+            text.append("{\"rating\": 3, \"ticketId\": ").append(i + 1).append(", \"ratingCategoryId\": 1, ")
+                    .append("\"reviewerId\": 2, \"revieweeId\": 3, \"createdAt\": \"2020-02-02T02:02:02\"}\n");
+        }
+        Files.writeString(input, text);
+
+        RatingsImporter.Result interrupted = importer(input, "--checkpoint-lines", "10").run(2);
+
+        assertFalse(interrupted.complete());
+        assertEquals(20, count("SELECT COUNT(*) FROM ratings"));
+        assertEquals(0, count("SELECT COUNT(*) FROM sqlite_master WHERE name = 'ratings_created_at'"));
+
+        RatingsImporter.Result resumed = importer(input, "--checkpoint-lines", "10").run();
+
+        assertTrue(resumed.complete());
+        assertTrue(resumed.resumed());
+        assertEquals(interrupted.offset(), resumed.resumedFrom());
+        assertEquals(35, resumed.imported());
+        assertEquals(15, resumed.rowsThisRun());
+        assertEquals(35, count("SELECT COUNT(DISTINCT ticket_id) FROM ratings"));
+        assertEquals(35, count("SELECT COUNT(*) FROM ratings"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sqlite_master WHERE name = 'ratings_created_at'"));
+    }
+
+    /**
+     * Tests that a file changed since its import was interrupted is only imported again with the restart option.
+     */
+    @Test
+    public void testChangedFile() throws Exception {
+        Path input = tempDir.resolve("ratings.ndjson");
+        Files.writeString(input, ("{\"rating\": 3, \"ticketId\": 1, \"ratingCategoryId\": 1, \"reviewerId\": 2, "
+                + "\"revieweeId\": 3, \"createdAt\": \"2020-02-02T02:02:02\"}\n").repeat(4));
+        importer(input, "--checkpoint-lines", "2").run(1);
+        Files.setLastModifiedTime(input, FileTime.fromMillis(Files.getLastModifiedTime(input).toMillis() + 1000));
+
+        assertThrows(IOException.class, () -> importer(input).run());
+
+        RatingsImporter.Result restarted = importer(input, "--restart").run();
+        assertEquals(4, restarted.imported());
+        assertEquals(6, count("SELECT COUNT(*) FROM ratings"));
+        assertEquals(1, count("SELECT COUNT(*) FROM sqlite_master WHERE name = 'ratings_created_at'"));
+    }
+
+    private RatingsImporter importer(Path input, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of("--input", input.toString(), "--database", database.toString()));
+        args.addAll(List.of(extraArgs));
+        CommandLineOptions options = new CommandLineOptions(args.toArray(new String[0]));
+        RatingsImporter.Settings settings = RatingsImporter.Settings.from(options);
+        options.checkAllUsed();
+        return new RatingsImporter(settings);
+    }
+
+    private long count(String sql) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+                Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
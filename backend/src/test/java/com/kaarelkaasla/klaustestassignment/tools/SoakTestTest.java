@@ -0,0 +1,163 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SoakTest and JvmSample classes.
+ */
+public class SoakTestTest {
+
+    private static final double MB = 1024 * 1024;
+
+    /**
+     * Tests that the heap, GC and thread metrics are read from a Prometheus exposition, summed over pools and
+     * collectors.
+     */
+    @Test
+    public void testParseSample() {
+        String text = """
+                # HELP jvm_memory_used_bytes The amount of used memory
+                # TYPE jvm_memory_used_bytes gauge
+                jvm_memory_used_bytes{area="heap",id="Eden Space"} 3.0E7
+                jvm_memory_used_bytes{area="heap",id="Tenured Gen"} 2.0E7
+                jvm_memory_used_bytes{area="nonheap",id="Metaspace"} 9.0E7
+                jvm_memory_usage_after_gc{area="heap",pool="long-lived"} 0.25
+                jvm_gc_max_data_size_bytes 8.0E7
+                jvm_gc_live_data_size_bytes 1.5E7
+                jvm_gc_memory_allocated_bytes_total 5.0E9
+                jvm_gc_pause_seconds_bucket{action="end of minor GC",cause="Allocation Failure",gc="Copy",le="0.001"} 10.0
+                jvm_gc_pause_seconds_bucket{action="end of minor GC",cause="Allocation Failure",gc="Copy",le="0.01"} 18.0
+                jvm_gc_pause_seconds_bucket{action="end of minor GC",cause="Allocation Failure",gc="Copy",le="+Inf"} 20.0
+                jvm_gc_pause_seconds_bucket{action="end of major GC",cause="Allocation Failure",gc="MarkSweepCompact",le="0.01"} 0.0
+                jvm_gc_pause_seconds_bucket{action="end of major GC",cause="Allocation Failure",gc="MarkSweepCompact",le="+Inf"} 2.0
+                jvm_gc_pause_seconds_count{action="end of minor GC",cause="Allocation Failure",gc="Copy"} 20.0
+                jvm_gc_pause_seconds_count{action="end of major GC",cause="Allocation Failure",gc="MarkSweepCompact"} 2.0
+                jvm_threads_live_threads 42.0
+                """;
+
+        JvmSample sample = JvmSample.parse(text, 7);
+
+        assertEquals(7, sample.elapsedNanos());
+        assertEquals(2.0e7, sample.retainedHeapBytes(), 1);
+        assertEquals(1.5e7, sample.liveDataBytes(), 1);
+        assertEquals(5.0e7, sample.heapUsedBytes(), 1);
+        assertEquals(5.0e9, sample.allocatedBytes(), 1);
+        assertEquals(22, sample.gcPauses());
+        assertEquals(Map.of(0.001, 10L, 0.01, 18L, Double.POSITIVE_INFINITY, 22L), sample.gcPauseBuckets());
+        assertEquals(42, sample.threads());
+        assertThrows(IllegalArgumentException.class, () -> JvmSample.parse("jvm_threads_live_threads 1.0\n", 0));
+    }
+
+    /**
+     * Tests that GC pause percentiles are taken from the pauses between two samples only.
+     */
+    @Test
+    public void testGcPausePercentiles() {
+        JvmSample earlier = sample(0, 10, 0, buckets(50, 50, 50, 50));
+        JvmSample later = sample(60, 10, 0, buckets(140, 148, 149, 150));
+
+        assertEquals(1, later.gcPauseMillisSince(earlier, 50));
+        assertEquals(10, later.gcPauseMillisSince(earlier, 98));
+        assertEquals(100, later.gcPauseMillisSince(earlier, 99));
+        // The slowest pause is beyond the largest bound, which is reported instead.
+        assertEquals(100, later.gcPauseMillisSince(earlier, 100));
+        assertEquals(0, earlier.gcPauseMillisSince(earlier, 99));
+    }
+
+    /**
+     * Tests that a window reports the lowest retained heap, the allocation rate and the highest thread count of its
+     * samples.
+     */
+    @Test
+    public void testWindow() {
+        List<JvmSample> samples = List.of(sample(60, 5, 1000, buckets(0, 0, 0, 0)),
+                sample(90, 40, 1500, buckets(10, 10, 10, 10)), sample(120, 30, 2000, buckets(20, 20, 20, 20)));
+
+        SoakTest.Window window = SoakTest.window(2, result(100), samples);
+
+        assertEquals(2, window.window());
+        assertEquals(1.0, window.startMinutes());
+        assertEquals(100, window.throughput());
+        assertEquals(30, window.retainedHeapMb());
+        assertEquals(1000 / 60.0, window.allocationMbPerSecond(), 0.1);
+        assertEquals(20, window.gcPauses());
+        assertEquals(1, window.gcPauseP99Millis());
+        assertEquals(40, window.threads());
+    }
+
+    /**
+     * Tests that the run fails only when the retained heap or the thread count grows by more than the threshold from
+     * the first window to the last.
+     */
+    @Test
+    public void testCheck() {
+        SoakTest.Settings settings = settings("--max-heap-growth", "32MB", "--max-thread-growth", "5");
+        SoakTest.Window first = window(1, 100, 40);
+        SoakTest.Window spike = window(2, 400, 80);
+
+        assertEquals(List.of(), SoakTest.check(List.of(first), settings));
+        assertEquals(List.of(), SoakTest.check(List.of(first, spike, window(3, 120, 44)), settings));
+        List<String> failures = SoakTest.check(List.of(first, window(2, 140, 60)), settings);
+        assertEquals(2, failures.size());
+        assertTrue(failures.get(0).startsWith("retained heap grew by 40.0 MB"), failures.get(0));
+        assertTrue(failures.get(1).startsWith("thread count grew by 20"), failures.get(1));
+        assertTrue(SoakTest.format(List.of(first, spike)).contains("retained MB"));
+    }
+
+    /**
+     * Tests the defaults and that invalid options are rejected.
+     */
+    @Test
+    public void testSettings() {
+        SoakTest.Settings settings = settings();
+
+        assertEquals(Duration.ofHours(2), settings.loadTest().duration());
+        assertEquals(Duration.ofMinutes(1), settings.loadTest().warmup());
+        assertEquals(Duration.ofMinutes(5), settings.window());
+        assertEquals(64 * 1024 * 1024, settings.maxHeapGrowth().toBytes());
+        LoadTest.Settings window = settings.loadTest().forWindow(3, Duration.ZERO, Duration.ofMinutes(5));
+        assertEquals(settings.loadTest().seed() + 3, window.seed());
+        assertEquals(Duration.ZERO, window.warmup());
+
+        assertThrows(IllegalArgumentException.class, () -> settings("--window", "0s"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--max-heap-growth", "lots"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--compare", "/tmp/run.json"));
+    }
+
+    private static SoakTest.Settings settings(String... args) {
+        CommandLineOptions options = new CommandLineOptions(args);
+        SoakTest.Settings settings = SoakTest.Settings.from(options);
+        options.checkAllUsed();
+        return settings;
+    }
+
+    private static SoakTest.Window window(int number, double retainedHeapMb, long threads) {
+        return new SoakTest.Window(number, number * 5, 1000, 0, 100, 10, retainedHeapMb, 0, 200, 50, 10, 1, 5, 10,
+                threads);
+    }
+
+    private static LoadTestReport.OperationResult result(double throughput) {
+        return new LoadTestReport.OperationResult("total", 100, 0, Map.of("OK", 100L), throughput, 1, 1, 1, 1, 1, 1);
+    }
+
+    private static JvmSample sample(long seconds, long value, long allocatedMb, TreeMap<Double, Long> buckets) {
+        return new JvmSample(seconds * 1_000_000_000L, value * MB, 0, 2 * value * MB, allocatedMb * MB,
+                buckets.get(Double.POSITIVE_INFINITY), buckets, value);
+    }
+
+    private static TreeMap<Double, Long> buckets(long upTo1ms, long upTo10ms, long upTo100ms, long total) {
+        TreeMap<Double, Long> buckets = new TreeMap<>();
+        buckets.put(0.001, upTo1ms);
+        buckets.put(0.01, upTo10ms);
+        buckets.put(0.1, upTo100ms);
+        buckets.put(Double.POSITIVE_INFINITY, total);
+        return buckets;
+    }
+}
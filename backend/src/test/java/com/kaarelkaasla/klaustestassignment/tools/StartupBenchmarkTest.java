@@ -0,0 +1,84 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the StartupBenchmark class.
+ */
+public class StartupBenchmarkTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that the command starts the jar with the JVM options, profiles, database and ports of the options.
+     */
+    @Test
+    public void testCommand() throws Exception {
+        Path jar = Files.createFile(tempDir.resolve("app.jar"));
+
+        StartupBenchmark.Settings settings = settings("--jar", jar.toString(), "--java", "java", "--jvm-args",
+                "-XX:SharedArchiveFile=app.jsa  -Xmx512m", "--profiles", "fast-startup", "--database", "/data/db.db",
+                "--app-args=--logging.level.root=WARN", "--grpc-port", "19090", "--runs", "3");
+
+        assertEquals(
+                List.of("java", "-XX:SharedArchiveFile=app.jsa", "-Xmx512m", "-jar", jar.toString(),
+                        "--spring.profiles.active=fast-startup", "--spring.datasource.url=jdbc:sqlite:/data/db.db",
+                        "--logging.level.root=WARN", "--server.port=8080", "--grpc.server.port=19090"),
+                settings.command());
+        assertEquals(3, settings.runs());
+    }
+
+    /**
+     * Tests that a missing jar and load test workload options are rejected.
+     */
+    @Test
+    public void testInvalidSettings() throws Exception {
+        Path jar = Files.createFile(tempDir.resolve("app.jar"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> settings("--jar", tempDir.resolve("missing.jar").toString()));
+        assertThrows(IllegalArgumentException.class, () -> settings("--jar", jar.toString(), "--concurrency", "4"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--jar", jar.toString(), "--runs", "0"));
+    }
+
+    /**
+     * Tests that the time since the JVM started is read from the startup line Spring logs.
+     */
+    @Test
+    public void testProcessRunningSeconds() {
+        assertEquals(26.358, StartupBenchmark.processRunningSeconds("2026-10-19T01:14:08.326Z  INFO 13266 --- [main] "
+                + "c.k.k.KlausTestAssignmentApplication     : Started KlausTestAssignmentApplication in 24.593 seconds "
+                + "(process running for 26.358)"));
+        assertEquals(-1, StartupBenchmark.processRunningSeconds("Tomcat initialized with port 8080 (http)"));
+    }
+
+    /**
+     * Tests that the table shows the minimum, median and maximum of each timing, leaving out unknown values.
+     */
+    @Test
+    public void testFormat() {
+        List<StartupBenchmark.Run> runs = List.of(new StartupBenchmark.Run(1, 900, 1300, 300, -1),
+                new StartupBenchmark.Run(2, 1000, 1200, 150, 1100), new StartupBenchmark.Run(3, 1100, 1500, 200, 1300));
+
+        String table = StartupBenchmark.format("fast-startup", runs);
+
+        assertTrue(table.contains("fast-startup"), table);
+        assertTrue(table.lines().anyMatch(line -> line.matches("first response ms +1200 +1300 +1500")), table);
+        assertTrue(table.lines().anyMatch(line -> line.matches("Spring ready ms +1100 +1200 +1300")), table);
+    }
+
+    private static StartupBenchmark.Settings settings(String... args) {
+        CommandLineOptions options = new CommandLineOptions(args);
+        StartupBenchmark.Settings settings = StartupBenchmark.Settings.from(options);
+        options.checkAllUsed();
+        return settings;
+    }
+}
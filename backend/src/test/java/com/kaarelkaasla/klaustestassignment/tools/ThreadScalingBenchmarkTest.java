@@ -0,0 +1,91 @@
+package com.kaarelkaasla.klaustestassignment.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ThreadScalingBenchmark class.
+ */
+public class ThreadScalingBenchmarkTest {
+
+    /**
+     * Tests the defaults, and that each step calls one operation with its own thread count.
+     */
+    @Test
+    public void testSettings() {
+        ThreadScalingBenchmark.Settings settings = settings("--output", "/tmp/scaling", "--admin-key", "admin-secret");
+
+        assertEquals(List.of(1, 2, 4, 8, 16, 32), settings.threads());
+        assertEquals(List.of(LoadTest.Operation.AGGREGATED, LoadTest.Operation.TICKET_SCORES,
+                LoadTest.Operation.WEIGHTED_SCORES), settings.operations());
+        assertTrue(settings.record());
+        assertEquals("x-admin-key", settings.adminKeyHeader());
+        assertEquals("admin-secret", settings.adminKey());
+        assertEquals(Duration.ofSeconds(5), settings.loadTest().warmup());
+        assertEquals(Duration.ofSeconds(20), settings.loadTest().duration());
+
+        LoadTest.Settings step = settings.loadTest().forOperation(LoadTest.Operation.TICKET_SCORES, 16);
+        assertEquals(16, step.concurrency());
+        assertEquals(Map.of("ticket-scores", 1.0), step.mix());
+        assertEquals(settings.loadTest().ranges(), step.ranges());
+        assertNull(step.report());
+    }
+
+    /**
+     * Tests that the admin key is only needed for recordings.
+     */
+    @Test
+    public void testAdminKey() {
+        assertThrows(IllegalArgumentException.class, () -> settings("--output", "x"));
+
+        ThreadScalingBenchmark.Settings settings = settings("--output", "x", "--no-recording");
+
+        assertFalse(settings.record());
+        assertNull(settings.adminKey());
+    }
+
+    /**
+     * Tests that options set per step and invalid thread counts are rejected.
+     */
+    @Test
+    public void testInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> settings());
+        assertThrows(IllegalArgumentException.class, () -> settings("--output", "x", "--concurrency", "4"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--output", "x", "--threads", "1,0"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--output", "x", "--threads", "1,,2"));
+        assertThrows(IllegalArgumentException.class, () -> settings("--output", "x", "--operations", "ratings"));
+    }
+
+    /**
+     * Tests that the table shows the speedup over the first thread count of each operation.
+     */
+    @Test
+    public void testFormat() {
+        List<ThreadScalingBenchmark.Step> steps = List.of(step("aggregated", 1, 10), step("aggregated", 4, 25),
+                step("weighted-scores", 1, 4), step("weighted-scores", 4, 4));
+
+        String table = ThreadScalingBenchmark.format(steps);
+
+        assertTrue(table.contains("aggregated"), table);
+        assertTrue(table.contains("2.50x"), table);
+        assertEquals(3, table.lines().filter(line -> line.contains("1.00x")).count(), table);
+    }
+
+    private static ThreadScalingBenchmark.Step step(String operation, int threads, double throughput) {
+        return new ThreadScalingBenchmark.Step(operation, threads,
+                new LoadTestReport.OperationResult(operation, 100, 0, Map.of("OK", 100L), throughput, 1, 1, 1, 1, 1, 1),
+                new ContentionProfile(0, 0, 0, 0, List.of()));
+    }
+
+    private static ThreadScalingBenchmark.Settings settings(String... args) {
+        CommandLineOptions options = new CommandLineOptions(args);
+        ThreadScalingBenchmark.Settings settings = ThreadScalingBenchmark.Settings.from(options);
+        options.checkAllUsed();
+        return settings;
+    }
+}
@@ -0,0 +1,36 @@
+package com.kaarelkaasla.klaustestassignment.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the AdminKeyUtils class.
+ */
+public class AdminKeyUtilsTest {
+
+    /**
+     * Tests that only the configured admin key is valid.
+     */
+    @Test
+    public void testIsValid() {
+        AdminKeyUtils adminKeyUtils = new AdminKeyUtils("admin-secret");
+
+        assertTrue(adminKeyUtils.isValid("admin-secret"));
+        assertFalse(adminKeyUtils.isValid("admin-secret2"));
+        assertFalse(adminKeyUtils.isValid(""));
+        assertFalse(adminKeyUtils.isValid(null));
+    }
+
+    /**
+     * Tests that no key is valid when no admin key is configured.
+     */
+    @Test
+    public void testNotConfigured() {
+        AdminKeyUtils adminKeyUtils = new AdminKeyUtils("");
+
+        assertFalse(adminKeyUtils.isValid(""));
+        assertFalse(adminKeyUtils.isValid(" "));
+        assertFalse(adminKeyUtils.isValid(null));
+    }
+}
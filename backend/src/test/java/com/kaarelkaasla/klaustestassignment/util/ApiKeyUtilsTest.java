@@ -0,0 +1,41 @@
+package com.kaarelkaasla.klaustestassignment.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ApiKeyUtils class.
+ */
+public class ApiKeyUtilsTest {
+
+    /**
+     * Tests that the default key and the listed client keys resolve to their clients, and that other keys are invalid.
+     */
+    @Test
+    public void testGetClientId() {
+        ApiKeyUtils apiKeyUtils = new ApiKeyUtils("secret", " reports = reports-key ,billing=billing-key,");
+
+        assertEquals(ApiKeyUtils.DEFAULT_CLIENT_ID, apiKeyUtils.getClientId("secret"));
+        assertEquals("reports", apiKeyUtils.getClientId("reports-key"));
+        assertEquals("billing", apiKeyUtils.getClientId("billing-key"));
+        assertNull(apiKeyUtils.getClientId("reports"));
+        assertFalse(apiKeyUtils.isValid(null));
+        assertTrue(apiKeyUtils.isValid("billing-key"));
+        assertEquals(Set.of("default", "reports", "billing"), apiKeyUtils.getClientIds());
+    }
+
+    /**
+     * Tests that malformed pairs and duplicate client IDs or keys are rejected.
+     */
+    @Test
+    public void testInvalidClientKeys() {
+        assertThrows(IllegalArgumentException.class, () -> new ApiKeyUtils("secret", "reports"));
+        assertThrows(IllegalArgumentException.class, () -> new ApiKeyUtils("secret", "reports="));
+        assertThrows(IllegalArgumentException.class, () -> new ApiKeyUtils("secret", "default=other"));
+        assertThrows(IllegalArgumentException.class, () -> new ApiKeyUtils("secret", "reports=secret"));
+        assertThrows(IllegalArgumentException.class, () -> new ApiKeyUtils("secret", "a=key,b=key"));
+    }
+}
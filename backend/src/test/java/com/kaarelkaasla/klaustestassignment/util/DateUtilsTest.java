@@ -1,12 +1,15 @@
 package com.kaarelkaasla.klaustestassignment.util;
 
+import com.google.protobuf.Timestamp;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.util.Date;
+import java.util.TimeZone;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -19,6 +22,7 @@ public class DateUtilsTest {
     public void setUp() {
         dateUtils = new DateUtils();
         dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
 
     /**
@@ -93,4 +97,45 @@ public class DateUtilsTest {
         assertTrue(DateUtils.isDifferentMonthOrYear("2023-01-01T00:00:00", "2023-02-01T00:00:00"));
         assertFalse(DateUtils.isDifferentMonthOrYear("2023-01-01T00:00:00", "2023-01-31T00:00:00"));
     }
+
+    /**
+     * Tests if week keys match SQLite's strftime('%Y-%W') numbering, where weeks start on Monday.
+     */
+    @Test
+    public void testGetWeekOfYearKey() {
+        assertEquals("2023-00", DateUtils.getWeekOfYearKey("2023-01-01T00:00:00"));
+        assertEquals("2023-01", DateUtils.getWeekOfYearKey("2023-01-02T00:00:00"));
+        assertEquals("2023-01", DateUtils.getWeekOfYearKey("2023-01-08T23:59:59"));
+        assertEquals("2024-01", DateUtils.getWeekOfYearKey("2024-01-01"));
+        assertEquals("2023-52", DateUtils.getWeekOfYearKey("2023-12-31T12:00:00"));
+    }
+
+    /**
+     * Tests that date strings and timestamps are converted to and from seconds since the epoch as UTC wall-clock time.
+     */
+    @Test
+    public void testEpochSecondConversions() {
+        assertEquals(1704067199L, DateUtils.toEpochSecond("2023-12-31T23:59:59"));
+        assertEquals("2023-12-31T23:59:59", DateUtils.formatEpochSecond(1704067199L));
+        assertEquals(1704067199L, DateUtils.toEpochSecond(Timestamp.newBuilder().setSeconds(1704067199L).build()));
+        assertEquals(1704067199L, DateUtils.toTimestamp(LocalDateTime.of(2023, 12, 31, 23, 59, 59)).getSeconds());
+        assertThrows(DateTimeException.class,
+                () -> DateUtils.toEpochSecond(Timestamp.newBuilder().setSeconds(Long.MAX_VALUE).build()));
+    }
+
+    /**
+     * Tests day arithmetic on seconds since the epoch, including times before 1970.
+     */
+    @Test
+    public void testEpochDayCalculations() {
+        long start = DateUtils.toEpochSecond("2023-01-31T23:59:59");
+        long end = DateUtils.toEpochSecond("2023-02-01T00:00:00");
+
+        assertEquals(1, DateUtils.getDaysBetween(start, end));
+        assertTrue(DateUtils.isDifferentMonthOrYear(start, end));
+        assertFalse(DateUtils.isDifferentMonthOrYear(end, DateUtils.toEpochSecond("2023-02-28T23:59:59")));
+        assertEquals(-1, DateUtils.toEpochDay(-1));
+        assertEquals("2023-02-01T00:00:00",
+                DateUtils.formatEpochSecond(DateUtils.startOfEpochDay(DateUtils.toEpochDay(end))));
+    }
 }
@@ -0,0 +1,46 @@
+package com.kaarelkaasla.klaustestassignment.util;
+
+import com.kaarelkaasla.klaustestassignment.profiling.RequestCost;
+import io.grpc.Metadata;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for GrpcFutureUtils class.
+ */
+public class GrpcFutureUtilsTest {
+
+    /**
+     * Tests that the cost trailers of a call are copied to the HTTP response with a Server-Timing summary, keeping the
+     * status, body and existing headers.
+     */
+    @Test
+    public void testWithCostHeaders() {
+        RequestCost cost = new RequestCost();
+        cost.addRowsScanned(42);
+        cost.addDbNanos(1_500_000);
+        Metadata trailers = new Metadata();
+        cost.writeTo(trailers);
+        ResponseEntity<Object> response = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1").body("Rate limit exceeded, try again later.");
+
+        ResponseEntity<Object> withCost = GrpcFutureUtils.withCostHeaders(response, new AtomicReference<>(trailers));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, withCost.getStatusCode());
+        assertEquals("Rate limit exceeded, try again later.", withCost.getBody());
+        assertEquals("1", withCost.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals("42", withCost.getHeaders().getFirst(RequestCost.ROWS_SCANNED_HEADER));
+        assertEquals("1.5", withCost.getHeaders().getFirst(RequestCost.DB_TIME_HEADER));
+        assertEquals("db;dur=1.5, compute;dur=0.0, serialization;dur=0.0",
+                withCost.getHeaders().getFirst(GrpcFutureUtils.SERVER_TIMING_HEADER));
+
+        assertSame(response, GrpcFutureUtils.withCostHeaders(response, new AtomicReference<>()));
+        assertSame(response, GrpcFutureUtils.withCostHeaders(response, null));
+    }
+}
@@ -0,0 +1,102 @@
+package com.kaarelkaasla.klaustestassignment.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the IsoDateTime parser and formatter.
+ */
+public class IsoDateTimeTest {
+
+    private static final DateTimeFormatter REFERENCE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    /**
+     * Tests that every day from 1600 to 2400, including all leap days, is parsed and formatted the same way as by
+     * java.time.
+     */
+    @Test
+    public void testMatchesJavaTimeForEveryDay() {
+        long first = LocalDate.of(1600, 1, 1).toEpochDay();
+        long last = LocalDate.of(2400, 12, 31).toEpochDay();
+        for (long day = first; day <= last; day++) {
+            long epochSecond = day * 86_400 + 86_399;
+            String expected = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).format(REFERENCE);
+
+            assertEquals(expected, IsoDateTime.format(epochSecond));
+            assertEquals(epochSecond, IsoDateTime.parseEpochSecond(expected));
+            assertEquals(day, IsoDateTime.parseEpochDay(expected));
+            assertEquals(LocalDate.ofEpochDay(day).getYear(), IsoDateTime.year(day));
+            assertEquals(LocalDate.ofEpochDay(day).getMonthValue(), IsoDateTime.month(day));
+        }
+    }
+
+    /**
+     * Tests that malformed and calendar-invalid date-times are rejected instead of being adjusted.
+     */
+    @Test
+    public void testRejectsInvalidDateTimes() {
+        String[] invalid = { "", "invalid-date", "2023-01-01", "2023-01-01T00:00:00Z", "2023-01-01 00:00:00",
+                "2023-1-01T00:00:00", "2023-00-10T00:00:00", "2023-13-10T00:00:00", "2023-02-29T00:00:00",
+                "2100-02-29T00:00:00", "2023-04-31T00:00:00", "2023-01-00T00:00:00", "2023-01-01T24:00:00",
+                "2023-01-01T23:60:00", "2023-01-01T23:59:60", "+023-01-01T00:00:00", "2023-01-01T0a:00:00" };
+        for (String text : invalid) {
+            assertFalse(IsoDateTime.isValid(text), text);
+            assertThrows(DateTimeParseException.class, () -> IsoDateTime.parseEpochSecond(text), text);
+        }
+        assertFalse(IsoDateTime.isValid(null));
+        assertTrue(IsoDateTime.isValid("2024-02-29T23:59:59"));
+        assertTrue(IsoDateTime.isValid("2000-02-29T00:00:00"));
+    }
+
+    /**
+     * Tests that many threads can parse and format concurrently without corrupting each other's results, which a shared
+     * SimpleDateFormat does not guarantee.
+     */
+    @Test
+    public void testConcurrentParsingAndFormatting() throws Exception {
+        int threads = 8;
+        int iterations = 50_000;
+        long min = LocalDate.of(2000, 1, 1).toEpochDay() * 86_400;
+        long max = LocalDate.of(2030, 1, 1).toEpochDay() * 86_400;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                results.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    start.await();
+                    int mismatches = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        long epochSecond = min + (long) (random.nextDouble() * (max - min));
+                        String text = IsoDateTime.format(epochSecond);
+                        String expected = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).format(REFERENCE);
+                        if (!text.equals(expected) || IsoDateTime.parseEpochSecond(text) != epochSecond
+                                || DateUtils.toEpochSecond(expected) != epochSecond) {
+                            mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(0, result.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -19,4 +19,15 @@ public class MathUtilsTest {
         assertEquals(0.00, MathUtils.roundToTwoDecimalPlaces(0));
         assertEquals(-123.46, MathUtils.roundToTwoDecimalPlaces(-123.456));
     }
+
+    /**
+     * Tests if percentages are correctly converted to basis points.
+     */
+    @Test
+    public void testToBasisPoints() {
+        assertEquals(8025, MathUtils.toBasisPoints(80.25));
+        assertEquals(6667, MathUtils.toBasisPoints(66.666666));
+        assertEquals(10000, MathUtils.toBasisPoints(100));
+        assertEquals(0, MathUtils.toBasisPoints(0));
+    }
 }
@@ -7,12 +7,13 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 /**
  * Unit tests for RatingCategoryUtils class.
@@ -23,11 +24,12 @@ public class RatingCategoryUtilsTest {
     private RatingCategoryRepository ratingCategoryRepository;
 
     private RatingCategoryUtils ratingCategoryUtils;
+    private long nanoTime;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        ratingCategoryUtils = new RatingCategoryUtils(ratingCategoryRepository);
+        ratingCategoryUtils = new RatingCategoryUtils(ratingCategoryRepository, Duration.ofMinutes(1), () -> nanoTime);
     }
 
     /**
@@ -46,4 +48,42 @@ public class RatingCategoryUtilsTest {
         assertEquals("Category 1", categoryIdToNameMap.get(1L));
         assertEquals("Category 2", categoryIdToNameMap.get(2L));
     }
+
+    /**
+     * Tests that categories are loaded once and reloaded only after a refresh.
+     */
+    @Test
+    public void testCategoriesAreCachedUntilRefresh() {
+        when(ratingCategoryRepository.findAll()).thenReturn(List.of(new RatingCategory(1L, "Category 1", 1.0)));
+
+        assertEquals(List.of("Category 1"), ratingCategoryUtils.getCategoryNames());
+        assertEquals("Category 1", ratingCategoryUtils.getCategoryIdToNameMap().get(1L));
+        verify(ratingCategoryRepository, times(1)).findAll();
+
+        when(ratingCategoryRepository.findAll()).thenReturn(
+                List.of(new RatingCategory(1L, "Category 1", 1.0), new RatingCategory(2L, "Category 2", 1.0)));
+        ratingCategoryUtils.refresh();
+
+        assertEquals(List.of("Category 1", "Category 2"), ratingCategoryUtils.getCategoryNames());
+        verify(ratingCategoryRepository, times(2)).findAll();
+    }
+
+    /**
+     * Tests that categories added to the database are picked up once the cache has expired.
+     */
+    @Test
+    public void testCategoriesAreReloadedAfterTtl() {
+        when(ratingCategoryRepository.findAll()).thenReturn(List.of(new RatingCategory(1L, "Category 1", 1.0)));
+        assertEquals(List.of("Category 1"), ratingCategoryUtils.getCategoryNames());
+
+        when(ratingCategoryRepository.findAll()).thenReturn(
+                List.of(new RatingCategory(1L, "Category 1", 1.0), new RatingCategory(2L, "Category 2", 0.5)));
+        nanoTime += Duration.ofSeconds(59).toNanos();
+        assertFalse(ratingCategoryUtils.getCategoryWeights().containsKey(2L));
+
+        nanoTime += Duration.ofSeconds(1).toNanos();
+        assertEquals(0.5, ratingCategoryUtils.getCategoryWeights().get(2L));
+        assertEquals("Category 2", ratingCategoryUtils.getCategoryIdToNameMap().get(2L));
+        verify(ratingCategoryRepository, times(2)).findAll();
+    }
 }